@@ -0,0 +1,98 @@
+package tech.tresearchgroup.libraries.compression.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.tresearchgroup.libraries.compression.controller.ByteCompressionController;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compression and decompression throughput of every codec at every profile, over every kind of data from 32 bytes to
+ * 64 MB. Add {@code -p size=1073741824} to also measure 1 GB inputs, which needs a larger heap than the default fork.
+ * Smaz has no levels, so it is measured by {@link SmazBenchmark} instead.
+ *
+ * <p>The {@link Bytes} counters report uncompressed and compressed bytes per second alongside the operations per
+ * second. The compression ratio is {@code bytes} divided by {@code compressedBytes}.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class CodecBenchmark {
+    @Param({"BROTLI", "BZIP2", "DEFLATE", "GZIP", "LZ4_BLOCK", "LZ4_FRAMED", "LZMA", "SNAPPY_FRAMED", "XZ", "ZSTD", "LZO"})
+    public CompressionMethodEnum method;
+
+    @Param
+    public CompressionProfileEnum profile;
+
+    @Param
+    public Corpus.DataType dataType;
+
+    @Param({"32", "4096", "1048576", "67108864"})
+    public int size;
+
+    private byte[] input;
+    private byte[] compressed;
+    private CompressionOptions options;
+    private ByteArrayOutputStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Corpus.generate(dataType, size);
+        options = new CompressionOptions(profile);
+        out = new ByteArrayOutputStream(size + size / 8 + 1024);
+        ByteCompressionController.compress(new ByteArrayInputStream(input), out, method, options);
+        compressed = out.toByteArray();
+    }
+
+    @Benchmark
+    public int compress(Bytes bytes) throws IOException {
+        out.reset();
+        ByteCompressionController.compress(new ByteArrayInputStream(input), out, method, options);
+        bytes.add(size, out.size());
+        return out.size();
+    }
+
+    @Benchmark
+    public int decompress(Bytes bytes) throws IOException {
+        out.reset();
+        ByteCompressionController.decompress(new ByteArrayInputStream(compressed), out, method);
+        bytes.add(size, compressed.length);
+        return out.size();
+    }
+
+    /**
+     * Counts uncompressed and compressed bytes processed, so JMH reports them per second next to the operation rate.
+     * Both are measured over the same time, so their quotient is the compression ratio.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+        public long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            compressedBytes = 0;
+        }
+
+        void add(long uncompressed, long compressed) {
+            bytes += uncompressed;
+            compressedBytes += compressed;
+        }
+    }
+}
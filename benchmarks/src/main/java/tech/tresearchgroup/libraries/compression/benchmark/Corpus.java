@@ -0,0 +1,207 @@
+package tech.tresearchgroup.libraries.compression.benchmark;
+
+import com.github.luben.zstd.Zstd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the benchmark inputs. Every input comes from a fixed seed, so the same type and size always give the same
+ * bytes on every machine and results from different runs can be compared without shipping large files.
+ */
+public class Corpus {
+    private static final long SEED = 42;
+    private static final int VOCABULARY_SIZE = 4096;
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "te", "vi", "zo", "an", "er", "in", "on", "ul", "th", "st", "re", "co",
+        "pro", "ment", "tion", "al", "ed", "ing", "ly", "de", "ex", "pre", "com", "con", "dis", "per"
+    };
+    private static final String[] KEYS = {"orders", "customers", "invoices", "shipments", "products", "sessions"};
+    private static final String[] ACTIONS = {"view", "edit", "history", "export", "delete", "create"};
+    private static final String[] LEVELS = {"INFO", "WARN", "DEBUG", "ERROR"};
+
+    public enum DataType {
+        /**
+         * Sentences drawn from a Zipf distributed vocabulary, like natural language.
+         */
+        TEXT,
+        /**
+         * One JSON record per line with repeated keys and varied values, like API payloads or logs.
+         */
+        JSON,
+        /**
+         * Little endian telemetry records: increasing timestamps, a few sensor IDs and noisy readings.
+         */
+        BINARY,
+        /**
+         * Uniformly random bytes, which no codec can shrink.
+         */
+        RANDOM,
+        /**
+         * Text that is already Zstd compressed, like media or archives.
+         */
+        COMPRESSED
+    }
+
+    /**
+     * @param type the kind of data
+     * @param size how many bytes to generate, up to 2 GB
+     * @return the same bytes for the same type and size every time
+     */
+    public static byte[] generate(DataType type, int size) {
+        return switch (type) {
+            case TEXT -> text(size, SEED);
+            case JSON -> json(size, SEED);
+            case BINARY -> binary(size, SEED);
+            case RANDOM -> random(size, SEED);
+            case COMPRESSED -> compressed(size, SEED);
+        };
+    }
+
+    /**
+     * Short ASCII strings of the kinds Smaz is meant for: URLs, log keys, identifiers and phrases.
+     *
+     * @param count how many strings to generate
+     * @return the same strings for the same count every time
+     */
+    public static String[] strings(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] vocabulary = createVocabulary(random);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = switch (i % 4) {
+                case 0 -> "https://api.example.com/v2/" + KEYS[random.nextInt(KEYS.length)] + "/" + random.nextInt(100_000)
+                    + "/" + ACTIONS[random.nextInt(ACTIONS.length)];
+                case 1 -> "app." + KEYS[random.nextInt(KEYS.length)] + "." + ACTIONS[random.nextInt(ACTIONS.length)] + ".latency_ms";
+                case 2 -> KEYS[random.nextInt(KEYS.length)].toUpperCase() + "-" + Long.toHexString(random.nextLong()).substring(0, 8);
+                default -> vocabulary[zipf(random)] + " " + vocabulary[zipf(random)] + " the " + vocabulary[zipf(random)];
+            };
+        }
+        return strings;
+    }
+
+    private static String[] createVocabulary(SplittableRandom random) {
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Picks a word index with roughly Zipf's law, so a few words are very common and most are rare.
+     */
+    private static int zipf(SplittableRandom random) {
+        return (int) Math.min(VOCABULARY_SIZE - 1, Math.exp(random.nextDouble() * Math.log(VOCABULARY_SIZE)) - 1);
+    }
+
+    private static byte[] text(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] vocabulary = createVocabulary(random);
+        byte[] data = new byte[size];
+        int position = 0;
+        int words = 0;
+        while (position < size) {
+            String word = vocabulary[zipf(random)];
+            if (words == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            words++;
+            String separator = " ";
+            if (words > 6 && random.nextInt(8) == 0) {
+                separator = random.nextInt(4) == 0 ? ".\n" : ". ";
+                words = 0;
+            } else if (random.nextInt(12) == 0) {
+                separator = ", ";
+            }
+            position = put(data, position, word + separator);
+        }
+        return data;
+    }
+
+    private static byte[] json(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] vocabulary = createVocabulary(random);
+        byte[] data = new byte[size];
+        int position = 0;
+        long id = 1_000_000;
+        while (position < size) {
+            id += 1 + random.nextInt(10);
+            String record = "{\"id\":" + id
+                + ",\"type\":\"" + KEYS[random.nextInt(KEYS.length)]
+                + "\",\"name\":\"" + vocabulary[zipf(random)] + " " + vocabulary[zipf(random)]
+                + "\",\"level\":\"" + LEVELS[random.nextInt(LEVELS.length)]
+                + "\",\"amount\":" + random.nextInt(100_000) / 100.0
+                + ",\"tags\":[\"" + vocabulary[zipf(random)] + "\",\"" + vocabulary[zipf(random)] + "\"]"
+                + ",\"active\":" + random.nextBoolean() + "}\n";
+            position = put(data, position, record);
+        }
+        return data;
+    }
+
+    private static byte[] binary(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        long timestamp = 1_670_000_000_000L;
+        double[] readings = new double[16];
+        while (buffer.remaining() >= 20) {
+            int sensor = random.nextInt(readings.length);
+            timestamp += random.nextInt(50);
+            readings[sensor] += random.nextGaussian() * 0.1;
+            buffer.putLong(timestamp);
+            buffer.putShort((short) sensor);
+            buffer.putShort((short) random.nextInt(4));
+            buffer.putFloat((float) readings[sensor]);
+            buffer.putInt(random.nextInt(16) == 0 ? random.nextInt() : 0);
+        }
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] random(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i += 8) {
+            long value = random.nextLong();
+            for (int j = 0; j < 8 && i + j < size; j++) {
+                data[i + j] = (byte) (value >>> j * 8);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Compresses text a megabyte at a time and concatenates the frames until there are enough bytes.
+     */
+    private static byte[] compressed(int size, long seed) {
+        byte[] data = new byte[size];
+        int position = 0;
+        long chunkSeed = seed;
+        while (position < size) {
+            byte[] frame = Zstd.compress(text(1024 * 1024, chunkSeed++), 3);
+            int length = Math.min(frame.length, size - position);
+            System.arraycopy(frame, 0, data, position, length);
+            position += length;
+        }
+        return data;
+    }
+
+    private static int put(byte[] data, int position, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+        int length = Math.min(bytes.length, data.length - position);
+        System.arraycopy(bytes, 0, data, position, length);
+        return position + length;
+    }
+
+    private Corpus() {
+    }
+}
@@ -0,0 +1,151 @@
+package tech.tresearchgroup.libraries.compression.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.tresearchgroup.libraries.compression.controller.Smaz;
+import tech.tresearchgroup.libraries.compression.controller.StringCompressionController;
+import tech.tresearchgroup.libraries.compression.model.SmazBatch;
+import tech.tresearchgroup.libraries.compression.model.SmazCodebook;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Smaz on the short strings it is meant for, one string at a time and in batches, with the built in codebook in ASCII
+ * and UTF-8 mode and with a codebook trained on the strings. Smaz is also run in UTF-8 mode over the same data as
+ * {@link CodecBenchmark}, without its levels, which Smaz does not have.
+ *
+ * <p>The {@link CodecBenchmark.Bytes} counters report uncompressed and compressed bytes per second, so the compression
+ * ratio is {@code bytes} divided by {@code compressedBytes}.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class SmazBenchmark {
+    private static final int STRINGS = 1000;
+
+    public enum Codebook {
+        ASCII,
+        UTF8,
+        TRAINED
+    }
+
+    @State(Scope.Thread)
+    public static class Strings {
+        @Param
+        public Codebook codebook;
+
+        private String[] strings;
+        private byte[][] compressed;
+        private Smaz smaz;
+        private SmazCodebook trained;
+        private SmazBatch batch;
+        private int index;
+        private long inputSize;
+        private long compressedSize;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            strings = Corpus.strings(STRINGS);
+            if (codebook == Codebook.TRAINED) {
+                List<byte[]> samples = new ArrayList<>(STRINGS);
+                for (String string : strings) {
+                    samples.add(string.getBytes(StandardCharsets.US_ASCII));
+                }
+                trained = StringCompressionController.trainCodebook(samples, 1);
+                smaz = new Smaz(trained);
+            } else {
+                smaz = new Smaz(codebook == Codebook.UTF8);
+            }
+            compressed = new byte[STRINGS][];
+            for (int i = 0; i < STRINGS; i++) {
+                compressed[i] = smaz.compress(strings[i]);
+                inputSize += strings[i].length();
+                compressedSize += compressed[i].length;
+            }
+            batch = StringCompressionController.compressAll(Arrays.asList(strings), trained);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Data {
+        @Param
+        public Corpus.DataType dataType;
+
+        @Param({"32", "4096", "1048576", "67108864"})
+        public int size;
+
+        private byte[] input;
+        private byte[] compressed;
+        private byte[] buffer;
+        // UTF-8 mode accepts any bytes
+        private final Smaz smaz = new Smaz(true);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            input = Corpus.generate(dataType, size);
+            buffer = new byte[Math.max(Smaz.maxCompressedLength(size), size)];
+            compressed = Arrays.copyOf(buffer, smaz.compress(input, 0, size, buffer, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public void compress(Strings state, CodecBenchmark.Bytes bytes, Blackhole blackhole) {
+        for (String string : state.strings) {
+            blackhole.consume(state.smaz.compress(string));
+        }
+        bytes.add(state.inputSize, state.compressedSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public void decompress(Strings state, CodecBenchmark.Bytes bytes, Blackhole blackhole) {
+        for (byte[] compressed : state.compressed) {
+            blackhole.consume(state.smaz.decompress(compressed));
+        }
+        bytes.add(state.inputSize, state.compressedSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public SmazBatch compressAll(Strings state) {
+        return StringCompressionController.compressAll(Arrays.asList(state.strings), state.trained);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public String[] decompressAll(Strings state) {
+        return StringCompressionController.decompressAll(state.batch, state.trained);
+    }
+
+    @Benchmark
+    public String get(Strings state) {
+        state.index = (state.index + 1) % STRINGS;
+        return StringCompressionController.get(state.batch, state.index, state.trained);
+    }
+
+    @Benchmark
+    public int compressData(Data data, CodecBenchmark.Bytes bytes) {
+        int length = data.smaz.compress(data.input, 0, data.size, data.buffer, 0);
+        bytes.add(data.size, length);
+        return length;
+    }
+
+    @Benchmark
+    public int decompressData(Data data, CodecBenchmark.Bytes bytes) {
+        bytes.add(data.size, data.compressed.length);
+        return data.smaz.decompress(data.compressed, 0, data.compressed.length, data.buffer, 0);
+    }
+}
@@ -0,0 +1,107 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file through two buffers: while the caller reads one, the next chunk of the file is already being read into
+ * the other. Closing waits for the outstanding read but leaves the channel open.
+ */
+class AsyncChannelInputStream extends InputStream {
+    private final AsynchronousFileChannel channel;
+    private ByteBuffer current;
+    private ByteBuffer next;
+    private Future<Integer> pending;
+    private long position;
+
+    AsyncChannelInputStream(AsynchronousFileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.current = ByteBuffer.allocate(bufferSize).flip();
+        this.next = ByteBuffer.allocate(bufferSize);
+        this.pending = channel.read(next, 0);
+    }
+
+    /**
+     * Waits for the read ahead, makes it the current buffer and starts the next one.
+     *
+     * @return false at the end of the file
+     */
+    private boolean advance() throws IOException {
+        if (pending == null) {
+            return false;
+        }
+        int n = await(pending);
+        if (n == -1) {
+            pending = null;
+            return false;
+        }
+        position += n;
+        ByteBuffer filled = next.flip();
+        next = current.clear();
+        current = filled;
+        pending = channel.read(next, position);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (!current.hasRemaining()) {
+            if (!advance()) {
+                return -1;
+            }
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (!current.hasRemaining()) {
+            if (!advance()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, current.remaining());
+        current.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pending != null) {
+            Future<Integer> outstanding = pending;
+            pending = null;
+            await(outstanding);
+        }
+    }
+
+    static int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the file", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a file through two buffers: while one is being written to the file, the caller fills the other. Only when
+ * both are full does a write wait. Closing writes what is left and waits for it, but leaves the channel open.
+ */
+class AsyncChannelOutputStream extends OutputStream {
+    private final AsynchronousFileChannel channel;
+    private ByteBuffer current;
+    private ByteBuffer writing;
+    private Future<Integer> pending;
+    private long pendingPosition;
+    private long position;
+
+    AsyncChannelOutputStream(AsynchronousFileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.current = ByteBuffer.allocate(bufferSize);
+        this.writing = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @return the number of bytes written so far, including those still buffered
+     */
+    long getCount() {
+        return position + current.position();
+    }
+
+    /**
+     * Starts writing the current buffer, once the previous write is done, and switches to the other buffer.
+     */
+    private void swap() throws IOException {
+        finishPending();
+        ByteBuffer full = current.flip();
+        current = writing.clear();
+        writing = full;
+        pendingPosition = position;
+        position += full.remaining();
+        pending = channel.write(writing, pendingPosition);
+    }
+
+    private void finishPending() throws IOException {
+        while (pending != null) {
+            pendingPosition += AsyncChannelInputStream.await(pending);
+            // Writes may be partial, so carry on from where this one stopped
+            pending = writing.hasRemaining() ? channel.write(writing, pendingPosition) : null;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!current.hasRemaining()) {
+            swap();
+        }
+        current.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!current.hasRemaining()) {
+                swap();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (current.position() > 0) {
+            swap();
+        }
+        finishPending();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
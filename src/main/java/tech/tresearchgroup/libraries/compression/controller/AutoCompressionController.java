@@ -0,0 +1,249 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Chooses the codec from the data itself. The first 64 KB are checked for the signatures of formats that are already
+ * compressed, then for the entropy of their byte histogram and how often 4 byte sequences repeat. Data that won't
+ * shrink is stored as is, data with little redundancy goes to LZ4 and everything else to Zstd. Calls without options
+ * also pick the level from that class, see {@link #chooseOptions(CompressionMethodEnum)}; calls with options use the
+ * levels they pick for those codecs.
+ *
+ * <p>The output starts with a 3 byte header, the magic bytes 0xC7 'A' and the codec's {@link MethodCodes} code (0 when
+ * stored), so {@link #decompress(InputStream, OutputStream)} needs nothing else to read it back.
+ */
+public class AutoCompressionController {
+    private static final int MAGIC_0 = 0xC7;
+    private static final int MAGIC_1 = 'A';
+    private static final int PREFIX_SIZE = 64 * 1024;
+    private static final int MIN_SIZE = 64;
+    private static final double STORE_ENTROPY = 7.5;
+    private static final double FAST_ENTROPY = 6.0;
+    private static final double MIN_REPEATS = 0.05;
+    private static final int[][] SIGNATURES = {
+        {0xFF, 0xD8, 0xFF},                         // JPEG
+        {0x89, 'P', 'N', 'G'},                      // PNG
+        {'G', 'I', 'F', '8'},                       // GIF
+        {'P', 'K', 0x03, 0x04},                     // ZIP, JAR, DOCX
+        {0x1F, 0x8B},                               // GZIP
+        {0x28, 0xB5, 0x2F, 0xFD},                   // Zstd
+        {0xFD, '7', 'z', 'X', 'Z', 0x00},           // XZ
+        {'B', 'Z', 'h'},                            // Bzip2
+        {'7', 'z', 0xBC, 0xAF, 0x27, 0x1C},         // 7z
+        {'R', 'a', 'r', '!'},                       // RAR
+        {0x04, 0x22, 0x4D, 0x18},                   // LZ4 frame
+        {0xFF, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P'}, // Snappy frame
+        {0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0x00}, // Snappy stream
+        {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k'},   // LZ4 block stream
+        {'O', 'g', 'g', 'S'},                       // Ogg
+        {'f', 'L', 'a', 'C'},                       // FLAC
+        {'I', 'D', '3'},                            // MP3
+        {0x1A, 0x45, 0xDF, 0xA3},                   // Matroska, WebM
+        {'w', 'O', 'F', '2'},                       // WOFF2
+    };
+
+    public static long compress(InputStream data, OutputStream out) throws IOException {
+        return compress(data, out, (CompressionOptions) null);
+    }
+
+    /**
+     * Compresses everything readable from data into out with the codec the first 64 KB call for. Neither stream is
+     * closed.
+     *
+     * @param data    the uncompressed input
+     * @param out     receives the header and the compressed or stored data
+     * @param options the profile or level used for the chosen codec, or null to pick one for it
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the chosen codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionOptions options) throws IOException {
+        byte[] prefix = data.readNBytes(PREFIX_SIZE);
+        CompressionMethodEnum method = chooseMethod(prefix, prefix.length);
+        InputStream whole = new SequenceInputStream(new ByteArrayInputStream(prefix), data);
+        writeHeader(out, method);
+        if (method == null) {
+            return whole.transferTo(out);
+        }
+        return ByteCompressionController.compress(whole, out, method, options != null ? options : chooseOptions(method));
+    }
+
+    public static byte[] compress(byte[] data) throws IOException {
+        return compress(data, (CompressionOptions) null);
+    }
+
+    /**
+     * Compresses data with the codec its first 64 KB call for. Unlike the stream variant this can see the result,
+     * so data is also stored as is when the chosen codec would have made it larger.
+     *
+     * @param data    the uncompressed input
+     * @param options the profile or level used for the chosen codec, or null to pick one for it
+     * @return the header followed by the compressed or stored data
+     * @throws IOException          if compressing fails
+     * @throws UnsatisfiedLinkError if the chosen codec's native library is not available
+     */
+    public static byte[] compress(byte[] data, CompressionOptions options) throws IOException {
+        CompressionMethodEnum method = chooseMethod(data, Math.min(data.length, PREFIX_SIZE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(method == null ? data.length + 3 : data.length / 2);
+        if (method != null) {
+            writeHeader(out, method);
+            ByteCompressionController.compress(new ByteArrayInputStream(data), out, method,
+                options != null ? options : chooseOptions(method));
+            if (out.size() < data.length + 3) {
+                return out.toByteArray();
+            }
+            out.reset();
+        }
+        writeHeader(out, null);
+        out.write(data);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads back output from {@link #compress(InputStream, OutputStream, CompressionOptions)}. Neither stream is
+     * closed.
+     *
+     * @param data the header followed by the compressed or stored data
+     * @param out  receives the decompressed data
+     * @return the number of decompressed bytes written
+     * @throws IOException          if the header is missing or names an unknown codec, or decompressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(InputStream data, OutputStream out) throws IOException {
+        byte[] header = data.readNBytes(3);
+        if (header.length < 3 || (header[0] & 0xFF) != MAGIC_0 || header[1] != MAGIC_1) {
+            throw new IOException("Not AUTO compressed data");
+        }
+        int code = header[2] & 0xFF;
+        if (code == MethodCodes.STORED) {
+            return data.transferTo(out);
+        }
+        CompressionMethodEnum method = MethodCodes.getMethod(code);
+        if (method == null) {
+            throw new IOException("Unknown compression method code: " + code);
+        }
+        return ByteCompressionController.decompress(data, out, method);
+    }
+
+    public static byte[] decompress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(data.length * 2L, Integer.MAX_VALUE - 8));
+        decompress(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Picks a codec from the start of the data.
+     *
+     * @param prefix the first bytes of the data, ideally 64 KB
+     * @param length how many bytes of prefix to look at
+     * @return the codec to use, or null if the data should be stored as is
+     */
+    public static CompressionMethodEnum chooseMethod(byte[] prefix, int length) {
+        if (length < MIN_SIZE || hasCompressedSignature(prefix, length)) {
+            return null;
+        }
+        double entropy = getEntropy(prefix, length);
+        double repeats = getRepeatRate(prefix, length);
+        if (entropy >= STORE_ENTROPY && repeats < MIN_REPEATS) {
+            return null;
+        }
+        if (entropy >= FAST_ENTROPY && repeats < MIN_REPEATS * 4) {
+            return CompressionMethodEnum.LZ4_FRAMED;
+        }
+        return CompressionMethodEnum.ZSTD;
+    }
+
+    /**
+     * Picks the level for a codec chosen by {@link #chooseMethod(byte[], int)}. LZ4 only gets data with little
+     * redundancy, where the high compressor finds almost nothing more, so it uses the fast one. Zstd gets redundant
+     * data, where level 3 already finds most of it at a small fraction of the cost of the highest levels.
+     *
+     * @param method the chosen codec
+     * @return the options to compress with
+     */
+    public static CompressionOptions chooseOptions(CompressionMethodEnum method) {
+        return new CompressionOptions(method == CompressionMethodEnum.LZ4_FRAMED ? CompressionProfileEnum.FASTEST
+            : CompressionProfileEnum.BALANCED);
+    }
+
+    private static void writeHeader(OutputStream out, CompressionMethodEnum method) throws IOException {
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(method == null ? MethodCodes.STORED : MethodCodes.getCode(method));
+    }
+
+    private static boolean hasCompressedSignature(byte[] prefix, int length) {
+        for (int[] signature : SIGNATURES) {
+            if (startsWith(prefix, length, 0, signature)) {
+                return true;
+            }
+        }
+        // MP4, MOV and HEIF keep their signature after the box size, WebP and AVI after the RIFF size
+        return startsWith(prefix, length, 4, new int[]{'f', 't', 'y', 'p'})
+            || (startsWith(prefix, length, 0, new int[]{'R', 'I', 'F', 'F'})
+            && (startsWith(prefix, length, 8, new int[]{'W', 'E', 'B', 'P'}) || startsWith(prefix, length, 8, new int[]{'A', 'V', 'I', ' '})));
+    }
+
+    private static boolean startsWith(byte[] prefix, int length, int offset, int[] signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((prefix[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the Shannon entropy of the byte histogram, in bits per byte
+     */
+    static double getEntropy(byte[] prefix, int length) {
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[prefix[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    /**
+     * Catches redundancy the histogram can't see, such as a repeated run of evenly spread bytes.
+     *
+     * @return the share of positions whose next 4 bytes already occurred, as far as a small hash table remembers
+     */
+    static double getRepeatRate(byte[] prefix, int length) {
+        if (length < 4) {
+            return 0;
+        }
+        int[] table = new int[4096];
+        int repeats = 0;
+        for (int i = 0; i + 4 <= length; i++) {
+            int sequence = (prefix[i] & 0xFF) | (prefix[i + 1] & 0xFF) << 8 | (prefix[i + 2] & 0xFF) << 16 | (prefix[i + 3] & 0xFF) << 24;
+            int slot = (sequence * 0x9E3779B1) >>> 20;
+            int candidate = table[slot] - 1;
+            if (candidate >= 0 && prefix[candidate] == prefix[i] && prefix[candidate + 1] == prefix[i + 1]
+                && prefix[candidate + 2] == prefix[i + 2] && prefix[candidate + 3] == prefix[i + 3]) {
+                repeats++;
+            }
+            table[slot] = i + 1;
+        }
+        return (double) repeats / (length - 3);
+    }
+}
@@ -0,0 +1,54 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Integer encodings shared by the self-describing formats. Varints are unsigned LEB128, seven bits a byte with the low
+ * bits first. Readers take the name of what is being read, so errors say which format was truncated or corrupt.
+ */
+class BinaryEncoding {
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in, String what) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated " + what);
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt " + what);
+    }
+
+    static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    static int readIntLE(InputStream in, String what) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated " + what);
+            }
+            value |= b << shift;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,568 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import net.jpountz.xxhash.XXHash32;
+import org.xerial.snappy.Snappy;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses between buffers without going through streams. Zstd, LZ4 and Snappy run straight on the buffers through
+ * their native direct-buffer (or array) entry points, so nothing is copied on the heap as long as src and dst are
+ * both direct or both array-backed. If only one of them is, src is copied once to match dst.
+ *
+ * <p>The output is the same format the stream API writes, so either side can read the other's output:
+ * <ul>
+ *     <li>ZSTD writes a single Zstd frame with the content size.</li>
+ *     <li>LZ4_BLOCK writes the {@link net.jpountz.lz4.LZ4BlockOutputStream} format.</li>
+ *     <li>LZ4_FRAMED writes a standard LZ4 frame with the content size and independent blocks.</li>
+ *     <li>SNAPPY_FRAMED writes the {@link org.xerial.snappy.SnappyOutputStream} format. Raw Snappy blocks are
+ *     accepted when decompressing.</li>
+ * </ul>
+ *
+ * <p>Every other codec has no direct-buffer entry point. Those fall back to the streams from
+ * {@link ByteCompressionController}, which read from src and write to dst through a pooled scratch buffer.
+ *
+ * <p>Every call consumes src from its position to its limit and writes to dst from its position. Both positions are
+ * advanced. If dst fills up a {@link BufferOverflowException} is thrown. For the native codecs this is checked up
+ * front against {@link #maxCompressedLength(int, CompressionMethodEnum, CompressionOptions)}.
+ */
+public class ByteBufferCompressionController {
+    private static final byte[] SNAPPY_HEADER = {(byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0, 0, 0, 0, 1, 0, 0, 0, 1};
+    private static final byte[] LZ4_BLOCK_MAGIC = {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k'};
+    private static final int LZ4_BLOCK_HEADER_LENGTH = LZ4_BLOCK_MAGIC.length + 13;
+    private static final int LZ4_BLOCK_METHOD_RAW = 0x10;
+    private static final int LZ4_BLOCK_METHOD_LZ4 = 0x20;
+    private static final int LZ4_BLOCK_SEED = 0x9747b28c;
+    private static final int LZ4_FRAME_MAGIC = 0x184D2204;
+    private static final int LZ4_FRAME_HEADER_LENGTH = 15;
+    private static final int LZ4_FRAME_INCOMPRESSIBLE = 0x80000000;
+    private static final int LZ4_FLG_VERSION = 0x40;
+    private static final int LZ4_FLG_BLOCK_INDEPENDENCE = 0x20;
+    private static final int LZ4_FLG_BLOCK_CHECKSUM = 0x10;
+    private static final int LZ4_FLG_CONTENT_SIZE = 0x08;
+    private static final int LZ4_FLG_CONTENT_CHECKSUM = 0x04;
+    private static final int LZ4_FLG_DICTIONARY_ID = 0x01;
+
+    public static int compress(ByteBuffer src, ByteBuffer dst, CompressionMethodEnum method) throws IOException {
+        return compress(src, dst, method, new CompressionOptions());
+    }
+
+    /**
+     * Compresses the remaining bytes of src into dst.
+     *
+     * @param src     the uncompressed bytes, consumed up to its limit
+     * @param dst     receives the compressed bytes from its position
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of bytes written to dst
+     * @throws IOException              if compression fails
+     * @throws BufferOverflowException  if dst does not have enough space left
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static int compress(ByteBuffer src, ByteBuffer dst, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        int start = dst.position();
+        switch (method) {
+            case ZSTD -> compressZstd(src, dst, options);
+            case LZ4_BLOCK -> compressLz4Block(src, dst, options);
+            case LZ4_FRAMED -> compressLz4Frame(src, dst, options);
+            case SNAPPY_FRAMED -> compressSnappy(src, dst, options);
+            default -> compressStream(src, dst, method, options);
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Decompresses the remaining bytes of src into dst.
+     *
+     * @param src    the compressed bytes, consumed up to its limit
+     * @param dst    receives the decompressed bytes from its position
+     * @param method the codec the input was compressed with
+     * @return the number of bytes written to dst
+     * @throws IOException              if the input is corrupt
+     * @throws BufferOverflowException  if dst does not have enough space left
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static int decompress(ByteBuffer src, ByteBuffer dst, CompressionMethodEnum method) throws IOException {
+        int start = dst.position();
+        switch (method) {
+            case ZSTD -> decompressZstd(src, dst);
+            case LZ4_BLOCK -> decompressLz4Block(src, dst);
+            case LZ4_FRAMED -> decompressLz4Frame(src, dst);
+            case SNAPPY_FRAMED -> decompressSnappy(src, dst);
+            default -> decompressStream(src, dst, method);
+        }
+        return dst.position() - start;
+    }
+
+    public static int maxCompressedLength(int length, CompressionMethodEnum method) {
+        return maxCompressedLength(length, method, new CompressionOptions());
+    }
+
+    /**
+     * The most space compress can need for length input bytes. For codecs without a direct-buffer path this is a
+     * conservative estimate: the input size plus an eighth, plus 1 KB.
+     *
+     * @param length  the number of uncompressed bytes
+     * @param method  the codec
+     * @param options the options that will be passed to compress
+     * @return the worst case compressed size, capped at {@link Integer#MAX_VALUE}
+     */
+    public static int maxCompressedLength(int length, CompressionMethodEnum method, CompressionOptions options) {
+        long bound;
+        switch (method) {
+            case ZSTD -> bound = Zstd.compressBound(length);
+            case LZ4_BLOCK -> {
+                LZ4Compressor compressor = CodecRegistry.getLz4Factory().fastCompressor();
+                int blockSize = options.getBlockSize(method);
+                long blocks = length / blockSize;
+                int last = length % blockSize;
+                bound = blocks * (LZ4_BLOCK_HEADER_LENGTH + compressor.maxCompressedLength(blockSize)) + LZ4_BLOCK_HEADER_LENGTH;
+                if (last > 0) {
+                    bound += LZ4_BLOCK_HEADER_LENGTH + compressor.maxCompressedLength(last);
+                }
+            }
+            case LZ4_FRAMED -> {
+                LZ4Compressor compressor = CodecRegistry.getLz4Factory().fastCompressor();
+                int blockSize = getLz4FrameBlockSize(options);
+                long blocks = length / blockSize;
+                int last = length % blockSize;
+                bound = LZ4_FRAME_HEADER_LENGTH + blocks * (4 + compressor.maxCompressedLength(blockSize)) + 4;
+                if (last > 0) {
+                    bound += 4 + compressor.maxCompressedLength(last);
+                }
+            }
+            case SNAPPY_FRAMED -> {
+                int blockSize = options.getBlockSize(method);
+                long blocks = length / blockSize;
+                int last = length % blockSize;
+                bound = SNAPPY_HEADER.length + blocks * (4 + Snappy.maxCompressedLength(blockSize));
+                if (last > 0) {
+                    bound += 4 + Snappy.maxCompressedLength(last);
+                }
+            }
+            default -> bound = length + (length >>> 3) + 1024L;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bound);
+    }
+
+    private static void compressZstd(ByteBuffer src, ByteBuffer dst, CompressionOptions options) throws IOException {
+        checkSpace(dst, maxCompressedLength(src.remaining(), CompressionMethodEnum.ZSTD, options));
+        ByteBuffer source = matchKind(src, dst);
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            ZstdCompressCtx ctx = context.getZstdCompressCtx();
+            ctx.setLevel(options.getLevel(CompressionMethodEnum.ZSTD));
+            ctx.setContentSize(true);
+            if (options.getWindow() != null) {
+                ctx.setLong(options.getWindow());
+            }
+            int written;
+            if (dst.isDirect()) {
+                written = ctx.compressDirectByteBuffer(dst, dst.position(), dst.remaining(), source, source.position(), source.remaining());
+            } else {
+                written = ctx.compressByteArray(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining(),
+                    source.array(), source.arrayOffset() + source.position(), source.remaining());
+            }
+            dst.position(dst.position() + written);
+            src.position(src.limit());
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static void decompressZstd(ByteBuffer src, ByteBuffer dst) throws IOException {
+        ByteBuffer source = matchKind(src, dst);
+        long size;
+        if (source.isDirect()) {
+            size = Zstd.decompressedDirectByteBufferSize(source, source.position(), source.remaining());
+        } else {
+            size = Zstd.decompressedSize(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        }
+        checkSpace(dst, size);
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            ZstdDecompressCtx ctx = context.getZstdDecompressCtx();
+            int written;
+            if (dst.isDirect()) {
+                written = ctx.decompressDirectByteBuffer(dst, dst.position(), dst.remaining(), source, source.position(), source.remaining());
+            } else {
+                written = ctx.decompressByteArray(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining(),
+                    source.array(), source.arrayOffset() + source.position(), source.remaining());
+            }
+            dst.position(dst.position() + written);
+            src.position(src.limit());
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static void compressLz4Block(ByteBuffer src, ByteBuffer dst, CompressionOptions options) {
+        checkSpace(dst, maxCompressedLength(src.remaining(), CompressionMethodEnum.LZ4_BLOCK, options));
+        int blockSize = options.getBlockSize(CompressionMethodEnum.LZ4_BLOCK);
+        int compressionLevel = Math.max(0, 32 - Integer.numberOfLeadingZeros(blockSize - 1) - 10);
+        LZ4Compressor compressor = ByteCompressionController.getLz4Compressor(options.getLevel(CompressionMethodEnum.LZ4_BLOCK));
+        XXHash32 hash = CodecRegistry.getXXHashFactory().hash32();
+        while (src.hasRemaining()) {
+            int length = Math.min(blockSize, src.remaining());
+            int header = dst.position();
+            int data = header + LZ4_BLOCK_HEADER_LENGTH;
+            int compressedLength = compressor.compress(src, src.position(), length, dst, data, dst.limit() - data);
+            int method = LZ4_BLOCK_METHOD_LZ4;
+            if (compressedLength >= length) {
+                dst.put(data, src, src.position(), length);
+                compressedLength = length;
+                method = LZ4_BLOCK_METHOD_RAW;
+            }
+            int checksum = hash.hash(src, src.position(), length, LZ4_BLOCK_SEED) & 0x0FFFFFFF;
+            putLz4BlockHeader(dst, header, method | compressionLevel, compressedLength, length, checksum);
+            dst.position(data + compressedLength);
+            src.position(src.position() + length);
+        }
+        putLz4BlockHeader(dst, dst.position(), LZ4_BLOCK_METHOD_RAW | compressionLevel, 0, 0, 0);
+        dst.position(dst.position() + LZ4_BLOCK_HEADER_LENGTH);
+    }
+
+    private static void putLz4BlockHeader(ByteBuffer dst, int index, int token, int compressedLength, int length, int checksum) {
+        dst.put(index, LZ4_BLOCK_MAGIC);
+        dst.put(index + LZ4_BLOCK_MAGIC.length, (byte) token);
+        putIntLE(dst, index + LZ4_BLOCK_MAGIC.length + 1, compressedLength);
+        putIntLE(dst, index + LZ4_BLOCK_MAGIC.length + 5, length);
+        putIntLE(dst, index + LZ4_BLOCK_MAGIC.length + 9, checksum);
+    }
+
+    private static void decompressLz4Block(ByteBuffer src, ByteBuffer dst) throws IOException {
+        LZ4SafeDecompressor decompressor = CodecRegistry.getLz4Factory().safeDecompressor();
+        XXHash32 hash = CodecRegistry.getXXHashFactory().hash32();
+        while (src.hasRemaining()) {
+            int header = src.position();
+            if (src.remaining() < LZ4_BLOCK_HEADER_LENGTH || src.slice(header, LZ4_BLOCK_MAGIC.length).compareTo(ByteBuffer.wrap(LZ4_BLOCK_MAGIC)) != 0) {
+                throw new IOException("Stream is corrupted");
+            }
+            int token = src.get(header + LZ4_BLOCK_MAGIC.length) & 0xFF;
+            int method = token & 0xF0;
+            int compressedLength = getIntLE(src, header + LZ4_BLOCK_MAGIC.length + 1);
+            int length = getIntLE(src, header + LZ4_BLOCK_MAGIC.length + 5);
+            int checksum = getIntLE(src, header + LZ4_BLOCK_MAGIC.length + 9);
+            int data = header + LZ4_BLOCK_HEADER_LENGTH;
+            if ((method != LZ4_BLOCK_METHOD_RAW && method != LZ4_BLOCK_METHOD_LZ4) || length < 0 || compressedLength < 0
+                || compressedLength > src.limit() - data || (method == LZ4_BLOCK_METHOD_RAW && compressedLength != length)) {
+                throw new IOException("Stream is corrupted");
+            }
+            src.position(data + compressedLength);
+            if (length == 0) {
+                continue;
+            }
+            checkSpace(dst, length);
+            if (method == LZ4_BLOCK_METHOD_RAW) {
+                dst.put(dst.position(), src, data, length);
+            } else {
+                try {
+                    if (decompressor.decompress(src, data, compressedLength, dst, dst.position(), length) != length) {
+                        throw new IOException("Stream is corrupted");
+                    }
+                } catch (LZ4Exception e) {
+                    throw new IOException("Stream is corrupted", e);
+                }
+            }
+            if ((hash.hash(dst, dst.position(), length, LZ4_BLOCK_SEED) & 0x0FFFFFFF) != checksum) {
+                throw new IOException("Stream is corrupted");
+            }
+            dst.position(dst.position() + length);
+        }
+    }
+
+    private static int getLz4FrameBlockSize(CompressionOptions options) {
+        int indicator = ByteCompressionController.getLz4FrameBlockSize(options.getBlockSize(CompressionMethodEnum.LZ4_FRAMED)).getIndicator();
+        return 1 << (2 * indicator + 8);
+    }
+
+    private static void compressLz4Frame(ByteBuffer src, ByteBuffer dst, CompressionOptions options) {
+        checkSpace(dst, maxCompressedLength(src.remaining(), CompressionMethodEnum.LZ4_FRAMED, options));
+        int indicator = ByteCompressionController.getLz4FrameBlockSize(options.getBlockSize(CompressionMethodEnum.LZ4_FRAMED)).getIndicator();
+        int blockSize = 1 << (2 * indicator + 8);
+        LZ4Compressor compressor = ByteCompressionController.getLz4Compressor(options.getLevel(CompressionMethodEnum.LZ4_FRAMED));
+        XXHash32 hash = CodecRegistry.getXXHashFactory().hash32();
+
+        int header = dst.position();
+        putIntLE(dst, header, LZ4_FRAME_MAGIC);
+        dst.put(header + 4, (byte) (LZ4_FLG_VERSION | LZ4_FLG_BLOCK_INDEPENDENCE | LZ4_FLG_CONTENT_SIZE));
+        dst.put(header + 5, (byte) (indicator << 4));
+        putIntLE(dst, header + 6, src.remaining());
+        putIntLE(dst, header + 10, 0);
+        dst.put(header + 14, (byte) (hash.hash(dst, header + 4, 10, 0) >> 8));
+        dst.position(header + LZ4_FRAME_HEADER_LENGTH);
+
+        while (src.hasRemaining()) {
+            int length = Math.min(blockSize, src.remaining());
+            int size = dst.position();
+            int data = size + 4;
+            int compressedLength = compressor.compress(src, src.position(), length, dst, data, dst.limit() - data);
+            if (compressedLength >= length) {
+                dst.put(data, src, src.position(), length);
+                putIntLE(dst, size, length | LZ4_FRAME_INCOMPRESSIBLE);
+                compressedLength = length;
+            } else {
+                putIntLE(dst, size, compressedLength);
+            }
+            dst.position(data + compressedLength);
+            src.position(src.position() + length);
+        }
+        putIntLE(dst, dst.position(), 0);
+        dst.position(dst.position() + 4);
+    }
+
+    private static void decompressLz4Frame(ByteBuffer src, ByteBuffer dst) throws IOException {
+        LZ4SafeDecompressor decompressor = CodecRegistry.getLz4Factory().safeDecompressor();
+        XXHash32 hash = CodecRegistry.getXXHashFactory().hash32();
+        while (src.hasRemaining()) {
+            int header = src.position();
+            int magic = readIntLE(src);
+            if ((magic & 0xFFFFFFF0) == 0x184D2A50) {
+                int skip = readIntLE(src);
+                skipBytes(src, skip);
+                continue;
+            }
+            if (magic != LZ4_FRAME_MAGIC) {
+                throw new IOException("Not an LZ4 frame");
+            }
+            int flg = readByte(src);
+            int bd = readByte(src);
+            if ((flg & 0xC0) != LZ4_FLG_VERSION || (flg & LZ4_FLG_DICTIONARY_ID) != 0) {
+                throw new IOException("Unsupported LZ4 frame");
+            }
+            if ((flg & LZ4_FLG_BLOCK_INDEPENDENCE) == 0) {
+                throw new IOException("Dependent LZ4 blocks are not supported");
+            }
+            int maxBlockSize = 1 << (2 * ((bd >> 4) & 0x7) + 8);
+            if ((flg & LZ4_FLG_CONTENT_SIZE) != 0) {
+                long contentSize = readIntLE(src) & 0xFFFFFFFFL | ((long) readIntLE(src) << 32);
+                checkSpace(dst, contentSize);
+            }
+            int descriptorLength = src.position() - header - 4;
+            int headerChecksum = readByte(src);
+            if (((hash.hash(src, header + 4, descriptorLength, 0) >> 8) & 0xFF) != headerChecksum) {
+                throw new IOException("LZ4 frame descriptor checksum mismatch");
+            }
+            int content = dst.position();
+            while (true) {
+                int size = readIntLE(src);
+                if (size == 0) {
+                    break;
+                }
+                boolean incompressible = (size & LZ4_FRAME_INCOMPRESSIBLE) != 0;
+                size &= ~LZ4_FRAME_INCOMPRESSIBLE;
+                if (size > src.remaining() || size > maxBlockSize) {
+                    throw new IOException("Stream is corrupted");
+                }
+                int data = src.position();
+                skipBytes(src, size);
+                if ((flg & LZ4_FLG_BLOCK_CHECKSUM) != 0 && readIntLE(src) != hash.hash(src, data, size, 0)) {
+                    throw new IOException("LZ4 block checksum mismatch");
+                }
+                if (incompressible) {
+                    checkSpace(dst, size);
+                    dst.put(dst.position(), src, data, size);
+                    dst.position(dst.position() + size);
+                } else {
+                    int room = Math.min(maxBlockSize, dst.remaining());
+                    try {
+                        int written = decompressor.decompress(src, data, size, dst, dst.position(), room);
+                        dst.position(dst.position() + written);
+                    } catch (LZ4Exception e) {
+                        if (room < maxBlockSize) {
+                            throw new BufferOverflowException();
+                        }
+                        throw new IOException("Stream is corrupted", e);
+                    }
+                }
+            }
+            if ((flg & LZ4_FLG_CONTENT_CHECKSUM) != 0 && readIntLE(src) != hash.hash(dst, content, dst.position() - content, 0)) {
+                throw new IOException("LZ4 content checksum mismatch");
+            }
+        }
+    }
+
+    private static void compressSnappy(ByteBuffer src, ByteBuffer dst, CompressionOptions options) throws IOException {
+        checkSpace(dst, maxCompressedLength(src.remaining(), CompressionMethodEnum.SNAPPY_FRAMED, options));
+        int blockSize = options.getBlockSize(CompressionMethodEnum.SNAPPY_FRAMED);
+        ByteBuffer source = matchKind(src, dst);
+        dst.put(SNAPPY_HEADER);
+        while (source.hasRemaining()) {
+            int length = Math.min(blockSize, source.remaining());
+            int size = dst.position();
+            int compressedLength;
+            if (dst.isDirect()) {
+                compressedLength = Snappy.compress(source.slice(source.position(), length), dst.slice(size + 4, dst.limit() - size - 4));
+            } else {
+                compressedLength = Snappy.compress(source.array(), source.arrayOffset() + source.position(), length,
+                    dst.array(), dst.arrayOffset() + size + 4);
+            }
+            putIntBE(dst, size, compressedLength);
+            dst.position(size + 4 + compressedLength);
+            source.position(source.position() + length);
+        }
+        src.position(src.limit());
+    }
+
+    private static void decompressSnappy(ByteBuffer src, ByteBuffer dst) throws IOException {
+        ByteBuffer source = matchKind(src, dst);
+        if (!hasSnappyHeader(source)) {
+            uncompressSnappy(source, source.position(), source.remaining(), dst);
+            src.position(src.limit());
+            return;
+        }
+        while (source.hasRemaining()) {
+            if (hasSnappyHeader(source)) {
+                source.position(source.position() + SNAPPY_HEADER.length);
+                continue;
+            }
+            if (source.remaining() < 4) {
+                throw new IOException("Truncated Snappy chunk");
+            }
+            int length = getIntBE(source, source.position());
+            if (length < 0 || length > source.remaining() - 4) {
+                throw new IOException("Truncated Snappy chunk");
+            }
+            uncompressSnappy(source, source.position() + 4, length, dst);
+            source.position(source.position() + 4 + length);
+        }
+        src.position(src.limit());
+    }
+
+    private static boolean hasSnappyHeader(ByteBuffer source) {
+        return source.remaining() >= SNAPPY_HEADER.length
+            && source.slice(source.position(), 8).compareTo(ByteBuffer.wrap(SNAPPY_HEADER, 0, 8)) == 0;
+    }
+
+    private static void uncompressSnappy(ByteBuffer source, int offset, int length, ByteBuffer dst) throws IOException {
+        ByteBuffer chunk = source.slice(offset, length);
+        int uncompressedLength;
+        if (chunk.isDirect()) {
+            uncompressedLength = Snappy.uncompressedLength(chunk);
+        } else {
+            uncompressedLength = Snappy.uncompressedLength(chunk.array(), chunk.arrayOffset(), length);
+        }
+        checkSpace(dst, uncompressedLength);
+        if (dst.isDirect()) {
+            Snappy.uncompress(chunk, dst.slice(dst.position(), dst.remaining()));
+        } else {
+            Snappy.uncompress(chunk.array(), chunk.arrayOffset(), length, dst.array(), dst.arrayOffset() + dst.position());
+        }
+        dst.position(dst.position() + uncompressedLength);
+    }
+
+    private static void compressStream(ByteBuffer src, ByteBuffer dst, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             OutputStream compressionStream = ByteCompressionController.getCompressionStream(new ByteBufferOutputStream(dst), method, options, context)) {
+            if (src.hasArray()) {
+                compressionStream.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+                src.position(src.limit());
+            } else {
+                byte[] buffer = context.getBuffer();
+                while (src.hasRemaining()) {
+                    int length = Math.min(buffer.length, src.remaining());
+                    src.get(buffer, 0, length);
+                    compressionStream.write(buffer, 0, length);
+                }
+            }
+        }
+    }
+
+    private static void decompressStream(ByteBuffer src, ByteBuffer dst, CompressionMethodEnum method) throws IOException {
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             InputStream compressionStream = ByteCompressionController.getDecompressionStream(new ByteBufferInputStream(src), method, context)) {
+            byte[] buffer = context.getBuffer();
+            int length;
+            if (dst.hasArray()) {
+                while (dst.hasRemaining() && (length = compressionStream.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining())) != -1) {
+                    dst.position(dst.position() + length);
+                }
+                if (!dst.hasRemaining() && compressionStream.read() != -1) {
+                    throw new BufferOverflowException();
+                }
+            } else {
+                while ((length = compressionStream.read(buffer)) != -1) {
+                    dst.put(buffer, 0, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns src itself when it is the same kind of buffer as dst, otherwise a copy of its remaining bytes that is.
+     * Either way the caller advances src once it is done.
+     */
+    private static ByteBuffer matchKind(ByteBuffer src, ByteBuffer dst) {
+        if (dst.isDirect() ? src.isDirect() : src.hasArray()) {
+            return src;
+        }
+        ByteBuffer copy = dst.isDirect() ? ByteBuffer.allocateDirect(src.remaining()) : ByteBuffer.allocate(src.remaining());
+        copy.put(src.duplicate()).flip();
+        return copy;
+    }
+
+    private static void checkSpace(ByteBuffer dst, long needed) {
+        if (needed > dst.remaining()) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private static void putIntLE(ByteBuffer dst, int index, int value) {
+        dst.put(index, (byte) value);
+        dst.put(index + 1, (byte) (value >>> 8));
+        dst.put(index + 2, (byte) (value >>> 16));
+        dst.put(index + 3, (byte) (value >>> 24));
+    }
+
+    private static int getIntLE(ByteBuffer src, int index) {
+        return (src.get(index) & 0xFF) | (src.get(index + 1) & 0xFF) << 8 | (src.get(index + 2) & 0xFF) << 16 | (src.get(index + 3) & 0xFF) << 24;
+    }
+
+    /**
+     * Snappy chunk lengths are big endian whatever order the caller's buffer is set to.
+     */
+    private static void putIntBE(ByteBuffer dst, int index, int value) {
+        dst.put(index, (byte) (value >>> 24));
+        dst.put(index + 1, (byte) (value >>> 16));
+        dst.put(index + 2, (byte) (value >>> 8));
+        dst.put(index + 3, (byte) value);
+    }
+
+    private static int getIntBE(ByteBuffer src, int index) {
+        return (src.get(index) & 0xFF) << 24 | (src.get(index + 1) & 0xFF) << 16 | (src.get(index + 2) & 0xFF) << 8 | (src.get(index + 3) & 0xFF);
+    }
+
+    private static int readIntLE(ByteBuffer src) throws IOException {
+        if (src.remaining() < 4) {
+            throw new IOException("Unexpected end of stream");
+        }
+        int value = getIntLE(src, src.position());
+        src.position(src.position() + 4);
+        return value;
+    }
+
+    private static int readByte(ByteBuffer src) throws IOException {
+        if (!src.hasRemaining()) {
+            throw new IOException("Unexpected end of stream");
+        }
+        return src.get() & 0xFF;
+    }
+
+    private static void skipBytes(ByteBuffer src, int count) throws IOException {
+        if (count < 0 || count > src.remaining()) {
+            throw new IOException("Unexpected end of stream");
+        }
+        src.position(src.position() + count);
+    }
+}
@@ -1,256 +1,413 @@
 package tech.tresearchgroup.libraries.compression.controller;
 
-import com.aayushatharva.brotli4j.Brotli4jLoader;
 import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
 import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
 import com.aayushatharva.brotli4j.encoder.Encoder;
 import com.github.luben.zstd.ZstdInputStream;
 import com.github.luben.zstd.ZstdOutputStream;
-import net.jpountz.lz4.LZ4BlockInputStream;
-import net.jpountz.lz4.LZ4BlockOutputStream;
-import net.jpountz.lz4.LZ4FrameInputStream;
-import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.lz4.*;
 import org.anarres.lzo.*;
 import org.tukaani.xz.*;
-import org.xbib.io.compress.bzip2.Bzip2InputStream;
 import org.xbib.io.compress.bzip2.Bzip2OutputStream;
 import org.xerial.snappy.SnappyInputStream;
 import org.xerial.snappy.SnappyOutputStream;
+import tech.tresearchgroup.libraries.compression.model.CompressionBenchmark;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressorSelectionOptions;
 import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.*;
 
 public class ByteCompressionController {
+    /**
+     * The checksum seed LZ4BlockOutputStream uses by default, which LZ4BlockInputStream expects.
+     */
+    private static final int LZ4_BLOCK_SEED = 0x9747b28c;
+
     public static byte[] compress(InputStream data, CompressionMethodEnum method) throws IOException {
+        return compress(data, method, new CompressionOptions());
+    }
+
+    /**
+     * @param data    the uncompressed input
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressed bytes, or null if the codec's native library is not available. Such calls are counted
+     * by {@link CodecMetrics#getNativeUnavailable()}
+     * @throws IOException if reading or compressing fails
+     */
+    public static byte[] compress(InputStream data, CompressionMethodEnum method, CompressionOptions options) throws IOException {
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-        int len;
+        try {
+            compress(data, byteOutputStream, method, options);
+        } catch (UnsatisfiedLinkError e) {
+            return null;
+        }
+        return byteOutputStream.toByteArray();
+    }
+
+    /**
+     * @param data   the compressed input
+     * @param method the codec the input was compressed with
+     * @return the decompressed bytes, or null if the codec's native library is not available. Such calls are counted
+     * by {@link CodecMetrics#getNativeUnavailable()}
+     * @throws IOException if the input is corrupt
+     */
+    public static byte[] decompress(ByteArrayInputStream data, CompressionMethodEnum method) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try {
+            decompress(data, byteArrayOutputStream, method);
+        } catch (UnsatisfiedLinkError e) {
+            return null;
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Compresses everything readable from data into out using a fixed size buffer. Neither stream is closed.
+     *
+     * @param data   the uncompressed input
+     * @param out    receives the compressed output
+     * @param method the codec to use
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method) throws IOException {
+        return compress(data, out, method, new CompressionOptions());
+    }
+
+    /**
+     * Compresses everything readable from data into out using a fixed size buffer. Neither stream is closed.
+     *
+     * @param data    the uncompressed input
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        long start = MetricsController.start();
+        NonClosingOutputStream compressed = new NonClosingOutputStream(out);
+        long read;
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             OutputStream compressionStream = getCompressionStream(compressed, method, options, context)) {
+            read = transfer(data, compressionStream, context.getBuffer());
+        } catch (IOException | RuntimeException | Error e) {
+            MetricsController.recordFailure(method, true, e);
+            throw e;
+        }
+        MetricsController.recordCompress(method, read, compressed.getCount(), start);
+        return read;
+    }
+
+    /**
+     * Decompresses everything readable from data into out using a fixed size buffer. Neither stream is closed.
+     *
+     * @param data   the compressed input
+     * @param out    receives the decompressed output
+     * @param method the codec the input was compressed with
+     * @return the number of decompressed bytes written
+     * @throws IOException          if reading, writing or decompressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(InputStream data, OutputStream out, CompressionMethodEnum method) throws IOException {
+        long start = MetricsController.start();
+        NonClosingInputStream compressed = new NonClosingInputStream(data);
+        long written;
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             InputStream compressionStream = getDecompressionStream(compressed, method, context)) {
+            written = transfer(compressionStream, out, context.getBuffer());
+        } catch (IOException | RuntimeException | Error e) {
+            MetricsController.recordFailure(method, false, e);
+            throw e;
+        }
+        MetricsController.recordDecompress(method, compressed.getCount(), written, start);
+        return written;
+    }
+
+    /**
+     * Wraps out in a stream that compresses everything written to it. Closing the returned stream finishes the
+     * compressed output and closes out.
+     *
+     * @param out    receives the compressed output
+     * @param method the codec to use
+     * @return the compressing stream
+     * @throws IOException          if the codec header cannot be written
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static OutputStream getCompressionStream(OutputStream out, CompressionMethodEnum method) throws IOException {
+        return getCompressionStream(out, method, new CompressionOptions());
+    }
+
+    /**
+     * Wraps out in a stream that compresses everything written to it. Closing the returned stream finishes the
+     * compressed output and closes out.
+     *
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressing stream
+     * @throws IOException          if the codec header cannot be written or the options are not supported
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static OutputStream getCompressionStream(OutputStream out, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        CodecContext context = new CodecContext();
+        try {
+            return new ContextOutputStream(getCompressionStream(out, method, options, context), context);
+        } catch (IOException | RuntimeException | Error e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps out in a stream that compresses everything written to it, reusing the codec state held by context.
+     * Closing the returned stream finishes the compressed output and closes out, but leaves the context to the
+     * caller.
+     *
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @param context the codec state to reuse, see {@link CodecContextPool#acquire()}
+     * @return the compressing stream
+     * @throws IOException          if the codec header cannot be written or the options are not supported
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static OutputStream getCompressionStream(OutputStream out, CompressionMethodEnum method, CompressionOptions options, CodecContext context) throws IOException {
+        int level = options.getLevel(method);
+        int blockSize = options.getBlockSize(method);
+        CodecRegistry.ensureAvailable(method);
         switch (method) {
             case BROTLI -> {
-                try {
-                    Brotli4jLoader.ensureAvailability();
-                } catch (UnsatisfiedLinkError e) {
-                    return null;
+                Encoder.Parameters brotliParams = new Encoder.Parameters().setQuality(level);
+                if (options.getWindow() != null) {
+                    brotliParams.setWindow(options.getWindow());
                 }
-                Encoder.Parameters brotliParams = new Encoder.Parameters().setQuality(11);
-                BrotliOutputStream compressionStream = new BrotliOutputStream(byteOutputStream, brotliParams);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new BrotliOutputStream(out, brotliParams);
             }
             case BZIP2 -> {
-                Bzip2OutputStream compressionStream = new Bzip2OutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new Bzip2OutputStream(out, level);
             }
             case DEFLATE -> {
-                DeflaterOutputStream compressionStream = new DeflaterOutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new DeflaterOutputStream(out, context.getDeflater(level), CodecContext.BUFFER_SIZE);
             }
             case GZIP -> {
-                GZIPOutputStream compressionStream = new GZIPOutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new GzipContextOutputStream(out, context.getRawDeflater(level));
             }
             case LZ4_BLOCK -> {
-                LZ4BlockOutputStream compressionStream = new LZ4BlockOutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LZ4BlockOutputStream(out, blockSize, getLz4Compressor(level),
+                    CodecRegistry.getXXHashFactory().newStreamingHash32(LZ4_BLOCK_SEED).asChecksum(), false);
             }
             case LZ4_FRAMED -> {
-                LZ4FrameOutputStream compressionStream = new LZ4FrameOutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LZ4FrameOutputStream(out, getLz4FrameBlockSize(blockSize), -1L, getLz4Compressor(level),
+                    CodecRegistry.getXXHashFactory().hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE);
             }
             case LZMA -> {
-                LZMA2Options options = new LZMA2Options();
-                options.setPreset(9);
-                LZMAOutputStream compressionStream = new LZMAOutputStream(byteOutputStream, options, data.available());
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LZMAOutputStream(out, getLzma2Options(level, options.getWindow()), -1, context.getArrayCache());
             }
             case SNAPPY_FRAMED -> {
-                SnappyOutputStream compressionStream = new SnappyOutputStream(byteOutputStream);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new SnappyOutputStream(out, blockSize);
             }
             case XZ -> {
-                LZMA2Options options = new LZMA2Options();
-                options.setPreset(9);
-                XZOutputStream compressionStream = new XZOutputStream(byteOutputStream, options, XZ.CHECK_SHA256);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new XZOutputStream(out, getLzma2Options(level, options.getWindow()), XZ.CHECK_SHA256, context.getArrayCache());
             }
             case ZSTD -> {
-                ZstdOutputStream compressionStream = new ZstdOutputStream(byteOutputStream, 22);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new ZstdContextOutputStream(out, context, level, options.getWindow());
             }
             case LZO -> {
-                LzoAlgorithm algorithm = LzoAlgorithm.LZO1X;
-                LzoCompressor compressor = LzoLibrary.getInstance().newCompressor(algorithm, null);
-                LzoOutputStream compressionStream = new LzoOutputStream(byteOutputStream, compressor, 256);
-                while ((len = data.read(buffer)) != -1) {
-                    compressionStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LzoOutputStream(out, context.getLzoCompressor(), blockSize);
             }
+            default -> throw new IllegalArgumentException("Unsupported compression method: " + method);
         }
-        byteOutputStream.close();
-        byteOutputStream.flush();
-        return byteOutputStream.toByteArray();
     }
 
-    public static byte[] decompress(ByteArrayInputStream data, CompressionMethodEnum method) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        int len;
-        byte[] buffer = new byte[1024];
+    static LZ4Compressor getLz4Compressor(int level) {
+        if (level <= 0) {
+            return CodecRegistry.getLz4Factory().fastCompressor();
+        }
+        return CodecRegistry.getLz4Factory().highCompressor(level);
+    }
+
+    static LZ4FrameOutputStream.BLOCKSIZE getLz4FrameBlockSize(int blockSize) {
+        if (blockSize <= 64 * 1024) {
+            return LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB;
+        } else if (blockSize <= 256 * 1024) {
+            return LZ4FrameOutputStream.BLOCKSIZE.SIZE_256KB;
+        } else if (blockSize <= 1024 * 1024) {
+            return LZ4FrameOutputStream.BLOCKSIZE.SIZE_1MB;
+        }
+        return LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB;
+    }
+
+    private static LZMA2Options getLzma2Options(int preset, Integer window) throws UnsupportedOptionsException {
+        LZMA2Options options = new LZMA2Options(preset);
+        if (window != null) {
+            options.setDictSize(1 << window);
+        }
+        return options;
+    }
+
+    /**
+     * Wraps in in a stream that decompresses everything read from it. Closing the returned stream closes in.
+     *
+     * @param in     the compressed input
+     * @param method the codec the input was compressed with
+     * @return the decompressing stream
+     * @throws IOException          if the codec header cannot be read
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static InputStream getDecompressionStream(InputStream in, CompressionMethodEnum method) throws IOException {
+        CodecContext context = new CodecContext();
+        try {
+            return new ContextInputStream(getDecompressionStream(in, method, context), context);
+        } catch (IOException | RuntimeException | Error e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps in in a stream that decompresses everything read from it, reusing the codec state held by context.
+     * Closing the returned stream closes in, but leaves the context to the caller.
+     *
+     * @param in      the compressed input
+     * @param method  the codec the input was compressed with
+     * @param context the codec state to reuse, see {@link CodecContextPool#acquire()}
+     * @return the decompressing stream
+     * @throws IOException          if the codec header cannot be read
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static InputStream getDecompressionStream(InputStream in, CompressionMethodEnum method, CodecContext context) throws IOException {
+        CodecRegistry.ensureAvailable(method);
         switch (method) {
             case BROTLI -> {
-                try {
-                    Brotli4jLoader.ensureAvailability();
-                } catch (UnsatisfiedLinkError e) {
-                    return null;
-                }
-                BrotliInputStream compressionStream = new BrotliInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new BrotliInputStream(in);
             }
             case BZIP2 -> {
-                Bzip2InputStream compressionStream = new Bzip2InputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new ConcatenatedBzip2InputStream(in);
             }
             case DEFLATE -> {
-                InflaterInputStream compressionStream = new InflaterInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new InflaterInputStream(in, context.getInflater(), CodecContext.BUFFER_SIZE);
             }
             case GZIP -> {
-                GZIPInputStream compressionStream = new GZIPInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new GZIPInputStream(in, CodecContext.BUFFER_SIZE);
             }
             case LZ4_BLOCK -> {
-                LZ4BlockInputStream compressionStream = new LZ4BlockInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LZ4BlockInputStream(in, CodecRegistry.getLz4Factory().fastDecompressor(),
+                    CodecRegistry.getXXHashFactory().newStreamingHash32(LZ4_BLOCK_SEED).asChecksum());
             }
             case LZ4_FRAMED -> {
-                LZ4FrameInputStream compressionStream = new LZ4FrameInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LZ4FrameInputStream(in, CodecRegistry.getLz4Factory().safeDecompressor(),
+                    CodecRegistry.getXXHashFactory().hash32());
             }
             case LZMA -> {
-                LZMAInputStream compressionStream = new LZMAInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                // xz 1.9's LZMAInputStream corrupts its output when it reuses a cached dictionary array
+                return new LZMAInputStream(in);
             }
             case SNAPPY_FRAMED -> {
-                SnappyInputStream compressionStream = new SnappyInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new SnappyInputStream(in);
             }
             case XZ -> {
-                XZInputStream compressionStream = new XZInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new XZInputStream(in, context.getArrayCache());
             }
             case ZSTD -> {
-                ZstdInputStream compressionStream = new ZstdInputStream(data);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new ZstdContextInputStream(in, context);
             }
             case LZO -> {
-                LzoAlgorithm algorithm = LzoAlgorithm.LZO1X;
-                LzoDecompressor decompressor = LzoLibrary.getInstance().newDecompressor(algorithm, null);
-                LzoInputStream compressionStream = new LzoInputStream(data, decompressor);
-                while ((len = compressionStream.read(buffer)) != -1) {
-                    byteArrayOutputStream.write(buffer, 0, len);
-                }
-                compressionStream.close();
+                return new LzoInputStream(in, context.getLzoDecompressor());
             }
+            default -> throw new IllegalArgumentException("Unsupported compression method: " + method);
         }
-        byteArrayOutputStream.flush();
-        byteArrayOutputStream.close();
-        return byteArrayOutputStream.toByteArray();
     }
 
-    public static Map<String, Double> getBestCompressor(File file) throws IOException {
-        Map<String, Double> results = new HashMap<>();
-        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
-            if (!method.equals(CompressionMethodEnum.SMAZ)) {
-                FileInputStream fis = new FileInputStream(file);
-                byte[] data = ByteCompressionController.compress(fis, method);
-                if(data != null) {
-                    results.put(method.name().toLowerCase(), (double) data.length);
-                }
-                fis.close();
+    static long transfer(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        long total = 0;
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    private static class ContextOutputStream extends FilterOutputStream {
+        private final CodecContext context;
+
+        ContextOutputStream(OutputStream out, CodecContext context) {
+            super(out);
+            this.context = context;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                context.close();
             }
         }
-        System.out.println(results);
-        if(!file.delete()) {
-            System.err.println("Failed to delete: " + file.getAbsolutePath());
+    }
+
+    private static class ContextInputStream extends FilterInputStream {
+        private final CodecContext context;
+
+        ContextInputStream(InputStream in, CodecContext context) {
+            super(in);
+            this.context = context;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                context.close();
+            }
         }
-        return results;
     }
 
+
+    /**
+     * Estimates the compressed size of a file with every codec, from samples of it. The file is left in place.
+     *
+     * @param file the file to estimate
+     * @return the lower case codec names mapped to their estimated compressed size
+     * @throws IOException if the file cannot be read
+     * @see CompressorSelectionController#select(java.nio.file.Path, CompressorSelectionOptions)
+     */
+    public static Map<String, Double> getBestCompressor(File file) throws IOException {
+        return getCompressedSizes(CompressorSelectionController.select(file.toPath()));
+    }
+
+    /**
+     * Measures the compressed size of a string with every codec.
+     *
+     * @param string the string to compress
+     * @return the lower case codec names mapped to their compressed size
+     * @throws IOException if a codec fails
+     */
     public static Map<String, Double> getBestCompressor(String string) throws IOException {
+        return getCompressedSizes(CompressorSelectionController.select(string.getBytes()));
+    }
+
+    private static Map<String, Double> getCompressedSizes(List<CompressionBenchmark> benchmarks) {
         Map<String, Double> results = new HashMap<>();
-        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
-            if (!method.equals(CompressionMethodEnum.SMAZ)) {
-                ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(string.getBytes());
-                byte[] data = ByteCompressionController.compress(byteArrayInputStream, method);
-                if(data != null) {
-                    results.put(method.name().toLowerCase(), (double) data.length);
-                }
-                byteArrayInputStream.close();
-            }
+        for (CompressionBenchmark benchmark : benchmarks) {
+            results.put(benchmark.getMethod().name().toLowerCase(), (double) benchmark.getEstimatedCompressedSize());
         }
         return results;
     }
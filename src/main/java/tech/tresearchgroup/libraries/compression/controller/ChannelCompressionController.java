@@ -0,0 +1,199 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Compresses to and from NIO channels, with every codec {@link ByteCompressionController} supports. Channels that can
+ * be non-blocking, such as a SocketChannel, must be in blocking mode.
+ *
+ * <p>Files opened as {@link AsynchronousFileChannel}s go through a pipeline that reads the next chunk of the source and
+ * writes the last chunk of output while the current one is compressed, each through a pair of buffers. Throughput then
+ * approaches whichever of the codec or the disk is slower, rather than the time of both added together.
+ */
+public class ChannelCompressionController {
+    public static final int PIPELINE_BUFFER_SIZE = CodecContext.FILE_BUFFER_SIZE;
+
+    public static WritableByteChannel newCompressionChannel(WritableByteChannel out, CompressionMethodEnum method) throws IOException {
+        return newCompressionChannel(out, method, new CompressionOptions());
+    }
+
+    /**
+     * Wraps out in a channel that compresses everything written to it. Closing the returned channel finishes the
+     * compressed output and closes out.
+     *
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressing channel
+     * @throws IOException          if the codec header cannot be written or the options are not supported
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static WritableByteChannel newCompressionChannel(WritableByteChannel out, CompressionMethodEnum method,
+                                                            CompressionOptions options) throws IOException {
+        // Codecs write headers and trailers a few bytes at a time, which would otherwise each be a channel write
+        OutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(out), CodecContext.BUFFER_SIZE);
+        return new OutputStreamChannel(ByteCompressionController.getCompressionStream(buffered, method, options));
+    }
+
+    /**
+     * Wraps in in a channel that decompresses everything read from it. Closing the returned channel closes in.
+     *
+     * @param in     the compressed input
+     * @param method the codec the input was compressed with
+     * @return the decompressing channel
+     * @throws IOException          if the codec header cannot be read
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static ReadableByteChannel newDecompressionChannel(ReadableByteChannel in, CompressionMethodEnum method) throws IOException {
+        return new InputStreamChannel(ByteCompressionController.getDecompressionStream(Channels.newInputStream(in), method));
+    }
+
+    /**
+     * Compresses everything readable from in into out. Neither channel is closed.
+     *
+     * @param in      the uncompressed input
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(ReadableByteChannel in, WritableByteChannel out, CompressionMethodEnum method,
+                                CompressionOptions options) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(out), CodecContext.BUFFER_SIZE);
+        long read = ByteCompressionController.compress(Channels.newInputStream(in), buffered, method, options);
+        buffered.flush();
+        return read;
+    }
+
+    /**
+     * Decompresses everything readable from in into out. Neither channel is closed.
+     *
+     * @param in     the compressed input
+     * @param out    receives the decompressed output
+     * @param method the codec the input was compressed with
+     * @return the number of decompressed bytes written
+     * @throws IOException          if reading, writing or decompressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(ReadableByteChannel in, WritableByteChannel out, CompressionMethodEnum method) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(out), CodecContext.BUFFER_SIZE);
+        long written = ByteCompressionController.decompress(Channels.newInputStream(in), buffered, method);
+        buffered.flush();
+        return written;
+    }
+
+    /**
+     * Compresses the whole of source into target from position 0, overlapping reads and writes with compression.
+     * Neither channel is closed.
+     *
+     * @param source  the file to compress
+     * @param target  the file to write. It is not truncated, so it should be empty
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(AsynchronousFileChannel source, AsynchronousFileChannel target, CompressionMethodEnum method,
+                                CompressionOptions options) throws IOException {
+        try (AsyncChannelInputStream in = new AsyncChannelInputStream(source, PIPELINE_BUFFER_SIZE);
+             AsyncChannelOutputStream out = new AsyncChannelOutputStream(target, PIPELINE_BUFFER_SIZE)) {
+            return ByteCompressionController.compress(in, out, method, options);
+        }
+    }
+
+    /**
+     * Decompresses the whole of source into target from position 0, overlapping reads and writes with decompression.
+     * Neither channel is closed.
+     *
+     * @param source the compressed file
+     * @param target the file to write. It is not truncated, so it should be empty
+     * @param method the codec source was compressed with
+     * @return the number of decompressed bytes written
+     * @throws IOException          if reading, writing or decompressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(AsynchronousFileChannel source, AsynchronousFileChannel target, CompressionMethodEnum method) throws IOException {
+        try (AsyncChannelInputStream in = new AsyncChannelInputStream(source, PIPELINE_BUFFER_SIZE);
+             AsyncChannelOutputStream out = new AsyncChannelOutputStream(target, PIPELINE_BUFFER_SIZE)) {
+            return ByteCompressionController.decompress(in, out, method);
+        }
+    }
+
+    /**
+     * Compresses source into target through the pipeline, on the executor. The target is created or truncated, and
+     * deleted again if compressing fails.
+     *
+     * @return completes with the number of uncompressed bytes read, or with the error that stopped it. That is a
+     *         {@link RejectedExecutionException} if the executor does not take the task
+     */
+    public static CompletableFuture<Long> compressFileAsync(Path source, Path target, CompressionMethodEnum method,
+                                                            CompressionOptions options, Executor executor) {
+        return runOnFiles(source, target, executor, (in, out) -> compress(in, out, method, options));
+    }
+
+    /**
+     * Decompresses source into target through the pipeline, on the executor. The target is created or truncated, and
+     * deleted again if decompressing fails.
+     *
+     * @return completes with the number of decompressed bytes written, or with the error that stopped it. That is a
+     *         {@link RejectedExecutionException} if the executor does not take the task
+     */
+    public static CompletableFuture<Long> decompressFileAsync(Path source, Path target, CompressionMethodEnum method,
+                                                              Executor executor) {
+        return runOnFiles(source, target, executor, (in, out) -> decompress(in, out, method));
+    }
+
+    private static CompletableFuture<Long> runOnFiles(Path source, Path target, Executor executor, FileTask task) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (Files.exists(target) && Files.isSameFile(source, target)) {
+                        throw new IllegalArgumentException("Source and target are the same file: " + source);
+                    }
+                    long length;
+                    // The target is only deleted on failure once it has been opened, not when the source can't be
+                    try (AsynchronousFileChannel in = AsynchronousFileChannel.open(source, StandardOpenOption.READ)) {
+                        AsynchronousFileChannel out = AsynchronousFileChannel.open(target, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                        try (out) {
+                            length = task.run(in, out);
+                        } catch (IOException | RuntimeException | Error e) {
+                            Files.deleteIfExists(target);
+                            throw e;
+                        }
+                    }
+                    // Only once the channels have closed, since a failed close deletes the target
+                    result.complete(length);
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private interface FileTask {
+        long run(AsynchronousFileChannel in, AsynchronousFileChannel out) throws IOException;
+    }
+}
@@ -0,0 +1,178 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands bytes from one thread to another through a fixed set of buffers. The writer fills a buffer and queues it, the
+ * reader drains it and gives it back, so memory use never grows past bufferCount buffers however far ahead the writer
+ * gets. Unlike {@link java.io.PipedInputStream} neither side polls.
+ */
+class ChunkPipe {
+    private static final Chunk END = new Chunk(new byte[0]);
+
+    private final BlockingQueue<Chunk> full;
+    private final BlockingQueue<Chunk> empty;
+    private final Sink sink = new Sink();
+    private final Source source = new Source();
+    private volatile Throwable error;
+
+    ChunkPipe(int bufferSize, int bufferCount) {
+        this.full = new ArrayBlockingQueue<>(bufferCount + 1);
+        this.empty = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            empty.add(new Chunk(new byte[bufferSize]));
+        }
+    }
+
+    /**
+     * @return the writing end. Closing it ends the stream for the reader
+     */
+    OutputStream getSink() {
+        return sink;
+    }
+
+    /**
+     * @return the reading end
+     */
+    InputStream getSource() {
+        return source;
+    }
+
+    /**
+     * Ends the stream with an error, which the reader gets once it has read everything before it.
+     */
+    void fail(Throwable error) throws InterruptedIOException {
+        this.error = error;
+        put(END);
+    }
+
+    private void put(Chunk chunk) throws InterruptedIOException {
+        try {
+            full.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing over a buffer");
+        }
+    }
+
+    private static Chunk take(BlockingQueue<Chunk> queue) throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a buffer");
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] bytes;
+        private int length;
+        private int position;
+
+        private Chunk(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private final class Sink extends OutputStream {
+        private Chunk current;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                if (current == null) {
+                    current = take(empty);
+                    current.length = 0;
+                }
+                int n = Math.min(len, current.bytes.length - current.length);
+                System.arraycopy(b, off, current.bytes, current.length, n);
+                current.length += n;
+                off += n;
+                len -= n;
+                if (current.length == current.bytes.length) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (current != null && current.length > 0) {
+                current.position = 0;
+                put(current);
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                flush();
+                closed = true;
+                put(END);
+            }
+        }
+    }
+
+    private final class Source extends InputStream {
+        private Chunk current;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (current == END) {
+                return -1;
+            }
+            if (current == null || current.position == current.length) {
+                if (current != null) {
+                    empty.add(current);
+                }
+                current = take(full);
+                if (current == END) {
+                    Throwable cause = error;
+                    if (cause instanceof IOException) {
+                        throw new IOException(cause.getMessage(), cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else if (cause != null) {
+                        throw new IOException(cause);
+                    }
+                    return -1;
+                }
+            }
+            int n = Math.min(len, current.length - current.position);
+            System.arraycopy(current.bytes, current.position, b, off, n);
+            current.position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null || current == END ? 0 : current.length - current.position;
+        }
+    }
+}
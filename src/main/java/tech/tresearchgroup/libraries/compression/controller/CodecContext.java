@@ -0,0 +1,258 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.anarres.lzo.LzoAlgorithm;
+import org.anarres.lzo.LzoCompressor;
+import org.anarres.lzo.LzoDecompressor;
+import org.anarres.lzo.LzoLibrary;
+import org.tukaani.xz.ArrayCache;
+import org.tukaani.xz.BasicArrayCache;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reusable codec state: zlib deflaters and inflaters, Zstd contexts with their direct buffers, aligned file buffers,
+ * the LZMA/XZ array cache, LZO working memory, Smaz arrays and a scratch buffer. Each part is created the first time a
+ * codec needs it and reset when it is handed out again.
+ *
+ * <p>A context is not thread safe and can back one compression and one decompression stream at a time. Get one from
+ * {@link CodecContextPool#acquire()} and close it when the stream is done to hand it back. A context that does not
+ * belong to a pool, or whose pool has been closed, frees its native memory when closed.
+ */
+public class CodecContext implements Closeable {
+    static final int BUFFER_SIZE = 8192;
+    static final int FILE_BUFFER_SIZE = 1024 * 1024;
+    private static final int FILE_BUFFER_ALIGNMENT = 4096;
+
+    private final CodecContextPool pool;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private Deflater deflater;
+    private Deflater rawDeflater;
+    private Inflater inflater;
+    private ZstdCompressCtx zstdCompressCtx;
+    private ZstdDecompressCtx zstdDecompressCtx;
+    private ByteBuffer zstdCompressSource;
+    private ByteBuffer zstdCompressDestination;
+    private ByteBuffer zstdDecompressSource;
+    private ByteBuffer zstdDecompressDestination;
+    private byte[] zstdCompressScratch;
+    private byte[] zstdDecompressScratch;
+    private ByteBuffer fileSource;
+    private ByteBuffer fileDestination;
+    private ArrayCache arrayCache;
+    private LzoCompressor lzoCompressor;
+    private LzoDecompressor lzoDecompressor;
+    private byte[] smazSource;
+    private byte[] smazDestination;
+
+    public CodecContext() {
+        this(null);
+    }
+
+    CodecContext(CodecContextPool pool) {
+        this.pool = pool;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    Deflater getDeflater(int level) {
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        } else {
+            deflater.reset();
+            deflater.setLevel(level);
+        }
+        return deflater;
+    }
+
+    Deflater getRawDeflater(int level) {
+        if (rawDeflater == null) {
+            rawDeflater = new Deflater(level, true);
+        } else {
+            rawDeflater.reset();
+            rawDeflater.setLevel(level);
+        }
+        return rawDeflater;
+    }
+
+    Inflater getInflater() {
+        if (inflater == null) {
+            inflater = new Inflater();
+        } else {
+            inflater.reset();
+        }
+        return inflater;
+    }
+
+    ZstdCompressCtx getZstdCompressCtx() {
+        if (zstdCompressCtx == null) {
+            zstdCompressCtx = new ZstdCompressCtx();
+        } else {
+            zstdCompressCtx.reset();
+        }
+        return zstdCompressCtx;
+    }
+
+    ByteBuffer getZstdCompressSource() {
+        if (zstdCompressSource == null) {
+            zstdCompressSource = ByteBuffer.allocateDirect((int) ZstdOutputStream.recommendedCOutSize());
+        }
+        return zstdCompressSource;
+    }
+
+    ByteBuffer getZstdCompressDestination() {
+        if (zstdCompressDestination == null) {
+            zstdCompressDestination = ByteBuffer.allocateDirect((int) ZstdOutputStream.recommendedCOutSize());
+        }
+        return zstdCompressDestination;
+    }
+
+    byte[] getZstdCompressScratch() {
+        if (zstdCompressScratch == null) {
+            zstdCompressScratch = new byte[(int) ZstdOutputStream.recommendedCOutSize()];
+        }
+        return zstdCompressScratch;
+    }
+
+    ZstdDecompressCtx getZstdDecompressCtx() {
+        if (zstdDecompressCtx == null) {
+            zstdDecompressCtx = new ZstdDecompressCtx();
+        } else {
+            zstdDecompressCtx.reset();
+        }
+        return zstdDecompressCtx;
+    }
+
+    ByteBuffer getZstdDecompressSource() {
+        if (zstdDecompressSource == null) {
+            zstdDecompressSource = ByteBuffer.allocateDirect((int) ZstdInputStream.recommendedDInSize());
+        }
+        return zstdDecompressSource;
+    }
+
+    ByteBuffer getZstdDecompressDestination() {
+        if (zstdDecompressDestination == null) {
+            zstdDecompressDestination = ByteBuffer.allocateDirect((int) ZstdInputStream.recommendedDOutSize());
+        }
+        return zstdDecompressDestination;
+    }
+
+    byte[] getZstdDecompressScratch() {
+        if (zstdDecompressScratch == null) {
+            zstdDecompressScratch = new byte[(int) ZstdInputStream.recommendedDInSize()];
+        }
+        return zstdDecompressScratch;
+    }
+
+    ByteBuffer getFileSource() {
+        if (fileSource == null) {
+            fileSource = allocateFileBuffer();
+        }
+        return fileSource;
+    }
+
+    ByteBuffer getFileDestination() {
+        if (fileDestination == null) {
+            fileDestination = allocateFileBuffer();
+        }
+        return fileDestination;
+    }
+
+    private static ByteBuffer allocateFileBuffer() {
+        return ByteBuffer.allocateDirect(FILE_BUFFER_SIZE + FILE_BUFFER_ALIGNMENT).alignedSlice(FILE_BUFFER_ALIGNMENT)
+            .limit(FILE_BUFFER_SIZE).slice();
+    }
+
+    ArrayCache getArrayCache() {
+        if (arrayCache == null) {
+            arrayCache = new BasicArrayCache();
+        }
+        return arrayCache;
+    }
+
+    LzoCompressor getLzoCompressor() {
+        if (lzoCompressor == null) {
+            lzoCompressor = LzoLibrary.getInstance().newCompressor(LzoAlgorithm.LZO1X, null);
+        }
+        return lzoCompressor;
+    }
+
+    LzoDecompressor getLzoDecompressor() {
+        if (lzoDecompressor == null) {
+            lzoDecompressor = LzoLibrary.getInstance().newDecompressor(LzoAlgorithm.LZO1X, null);
+        }
+        return lzoDecompressor;
+    }
+
+    byte[] getSmazSource(int length) {
+        if (smazSource == null || smazSource.length < length) {
+            smazSource = new byte[Math.max(length, BUFFER_SIZE)];
+        }
+        return smazSource;
+    }
+
+    byte[] getSmazDestination(int length) {
+        if (smazDestination == null || smazDestination.length < length) {
+            smazDestination = new byte[Math.max(length, BUFFER_SIZE)];
+        }
+        return smazDestination;
+    }
+
+    /**
+     * Hands the context back to its pool, or frees it if it has no pool, the pool is closed or the pool is full.
+     */
+    @Override
+    public void close() {
+        if (pool == null || !pool.release(this)) {
+            free();
+        }
+    }
+
+    /**
+     * Frees the native memory held by the context. The context creates its codec state again if it is used after
+     * this.
+     */
+    void free() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (rawDeflater != null) {
+            rawDeflater.end();
+            rawDeflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        if (zstdCompressCtx != null) {
+            zstdCompressCtx.close();
+            zstdCompressCtx = null;
+        }
+        if (zstdDecompressCtx != null) {
+            zstdDecompressCtx.close();
+            zstdDecompressCtx = null;
+        }
+        zstdCompressSource = null;
+        zstdCompressDestination = null;
+        zstdCompressScratch = null;
+        zstdDecompressSource = null;
+        zstdDecompressDestination = null;
+        zstdDecompressScratch = null;
+        fileSource = null;
+        fileDestination = null;
+        arrayCache = null;
+        lzoCompressor = null;
+        lzoDecompressor = null;
+        smazSource = null;
+        smazDestination = null;
+    }
+}
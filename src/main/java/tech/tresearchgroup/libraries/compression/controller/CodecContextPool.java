@@ -0,0 +1,83 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of {@link CodecContext}s shared between threads. Contexts are created on demand, so the pool never
+ * blocks. Only up to maxIdle contexts are kept once they are released; the rest are freed straight away.
+ *
+ * <p>Closing the pool frees every idle context. Contexts that are still in use are freed when they are released.
+ */
+public class CodecContextPool implements Closeable {
+    private static final CodecContextPool DEFAULT = new CodecContextPool(Runtime.getRuntime().availableProcessors() * 2);
+
+    private final int maxIdle;
+    private final ConcurrentLinkedDeque<CodecContext> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    public CodecContextPool(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must not be negative");
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * The pool used by {@link ByteCompressionController}. It keeps up to two contexts per processor.
+     *
+     * @return the shared pool
+     */
+    public static CodecContextPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Takes an idle context, or creates one if none is available.
+     *
+     * @return a context owned by the caller until it is closed
+     */
+    public CodecContext acquire() {
+        CodecContext context = idle.pollFirst();
+        if (context != null) {
+            idleCount.decrementAndGet();
+            return context;
+        }
+        return new CodecContext(this);
+    }
+
+    boolean release(CodecContext context) {
+        if (closed) {
+            return false;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return false;
+        }
+        idle.offerFirst(context);
+        if (closed && idle.remove(context)) {
+            idleCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Frees every idle context. Contexts acquired after this are freed as soon as they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        CodecContext context;
+        while ((context = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            context.free();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for one codec since the JVM started or the last {@link #reset()}. Counters are updated without
+ * locking, so a reading taken while calls are in flight may be a call or two out of step between counters.
+ */
+public class CodecMetrics implements CodecMetricsMXBean {
+    private final CompressionMethodEnum method;
+    private final LongAdder compressCalls = new LongAdder();
+    private final LongAdder decompressCalls = new LongAdder();
+    private final LongAdder uncompressedBytesIn = new LongAdder();
+    private final LongAdder compressedBytesOut = new LongAdder();
+    private final LongAdder compressedBytesIn = new LongAdder();
+    private final LongAdder decompressedBytesOut = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder nativeUnavailable = new LongAdder();
+    private final LatencyHistogram compressLatency = new LatencyHistogram();
+    private final LatencyHistogram decompressLatency = new LatencyHistogram();
+
+    CodecMetrics(CompressionMethodEnum method) {
+        this.method = method;
+    }
+
+    void recordCompress(long bytesIn, long bytesOut, long nanos) {
+        compressCalls.increment();
+        uncompressedBytesIn.add(bytesIn);
+        compressedBytesOut.add(bytesOut);
+        compressLatency.record(nanos);
+    }
+
+    void recordDecompress(long bytesIn, long bytesOut, long nanos) {
+        decompressCalls.increment();
+        compressedBytesIn.add(bytesIn);
+        decompressedBytesOut.add(bytesOut);
+        decompressLatency.record(nanos);
+    }
+
+    void recordFailure(Throwable error) {
+        failures.increment();
+        if (error instanceof LinkageError) {
+            nativeUnavailable.increment();
+        }
+    }
+
+    public CompressionMethodEnum getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCompressCalls() {
+        return compressCalls.sum();
+    }
+
+    @Override
+    public long getDecompressCalls() {
+        return decompressCalls.sum();
+    }
+
+    @Override
+    public long getUncompressedBytesIn() {
+        return uncompressedBytesIn.sum();
+    }
+
+    @Override
+    public long getCompressedBytesOut() {
+        return compressedBytesOut.sum();
+    }
+
+    @Override
+    public long getCompressedBytesIn() {
+        return compressedBytesIn.sum();
+    }
+
+    @Override
+    public long getDecompressedBytesOut() {
+        return decompressedBytesOut.sum();
+    }
+
+    /**
+     * @return uncompressed bytes divided by compressed bytes over every compress call, or 0 if nothing has been
+     * compressed
+     */
+    @Override
+    public double getCompressionRatio() {
+        long out = getCompressedBytesOut();
+        return out == 0 ? 0 : (double) getUncompressedBytesIn() / out;
+    }
+
+    /**
+     * @return how many calls threw, including those counted by {@link #getNativeUnavailable()}
+     */
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return how many calls failed because the codec's native library could not be loaded
+     */
+    @Override
+    public long getNativeUnavailable() {
+        return nativeUnavailable.sum();
+    }
+
+    public LatencyHistogram getCompressLatency() {
+        return compressLatency;
+    }
+
+    public LatencyHistogram getDecompressLatency() {
+        return decompressLatency;
+    }
+
+    @Override
+    public double getCompressMeanMicros() {
+        return compressLatency.getMeanNanos() / 1e3;
+    }
+
+    @Override
+    public double getCompressP50Micros() {
+        return compressLatency.getPercentileNanos(50) / 1e3;
+    }
+
+    @Override
+    public double getCompressP99Micros() {
+        return compressLatency.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public double getCompressMaxMicros() {
+        return compressLatency.getMaxNanos() / 1e3;
+    }
+
+    @Override
+    public double getDecompressMeanMicros() {
+        return decompressLatency.getMeanNanos() / 1e3;
+    }
+
+    @Override
+    public double getDecompressP50Micros() {
+        return decompressLatency.getPercentileNanos(50) / 1e3;
+    }
+
+    @Override
+    public double getDecompressP99Micros() {
+        return decompressLatency.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public double getDecompressMaxMicros() {
+        return decompressLatency.getMaxNanos() / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        compressCalls.reset();
+        decompressCalls.reset();
+        uncompressedBytesIn.reset();
+        compressedBytesOut.reset();
+        compressedBytesIn.reset();
+        decompressedBytesOut.reset();
+        failures.reset();
+        nativeUnavailable.reset();
+        compressLatency.reset();
+        decompressLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CodecMetrics{" +
+            "method=" + method +
+            ", compressCalls=" + getCompressCalls() +
+            ", decompressCalls=" + getDecompressCalls() +
+            ", compressionRatio=" + getCompressionRatio() +
+            ", failures=" + getFailures() +
+            ", nativeUnavailable=" + getNativeUnavailable() +
+            '}';
+    }
+}
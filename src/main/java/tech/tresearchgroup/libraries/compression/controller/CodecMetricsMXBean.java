@@ -0,0 +1,43 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+/**
+ * The JMX view of one codec's {@link CodecMetrics}, registered by {@link MetricsController#registerMBeans()}.
+ * Latencies are in microseconds.
+ */
+public interface CodecMetricsMXBean {
+    long getCompressCalls();
+
+    long getDecompressCalls();
+
+    long getUncompressedBytesIn();
+
+    long getCompressedBytesOut();
+
+    long getCompressedBytesIn();
+
+    long getDecompressedBytesOut();
+
+    double getCompressionRatio();
+
+    long getFailures();
+
+    long getNativeUnavailable();
+
+    double getCompressMeanMicros();
+
+    double getCompressP50Micros();
+
+    double getCompressP99Micros();
+
+    double getCompressMaxMicros();
+
+    double getDecompressMeanMicros();
+
+    double getDecompressP50Micros();
+
+    double getDecompressP99Micros();
+
+    double getDecompressMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,255 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.xerial.snappy.Snappy;
+import org.xerial.snappy.SnappyNative;
+import tech.tresearchgroup.libraries.compression.model.CodecImplementationEnum;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Finds out once which codecs can use their JNI libraries, which run in Java and which cannot run at all.
+ *
+ * <p>Each JNI library is probed the first time its codec is used, or up front by {@link #warmUp()}, and the result is
+ * kept for the life of the JVM, so later calls never retry a library that failed to load. LZ4 and xxHash fall back to
+ * their fastest Java implementation and Snappy to its pure Java one. Zstd and Brotli have no Java fallback and are
+ * reported as {@link CodecImplementationEnum#UNAVAILABLE}. The other codecs are pure Java.
+ */
+public class CodecRegistry {
+    private static final byte[] WARM_UP_DATA = "Warming up the codec with a short sample of text, warming up the codec"
+        .repeat(16).getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param method the codec
+     * @return how it runs, probing its JNI library if that has not been done yet
+     */
+    public static CodecImplementationEnum getImplementation(CompressionMethodEnum method) {
+        return switch (method) {
+            case BROTLI -> Brotli.IMPLEMENTATION;
+            case LZ4_BLOCK, LZ4_FRAMED -> Lz4.IMPLEMENTATION;
+            case SNAPPY_FRAMED -> SnappyProbe.IMPLEMENTATION;
+            case ZSTD -> Zstd.IMPLEMENTATION;
+            default -> CodecImplementationEnum.JAVA;
+        };
+    }
+
+    /**
+     * @param method the codec
+     * @return false if its JNI library could not be loaded and it has no fallback
+     */
+    public static boolean isAvailable(CompressionMethodEnum method) {
+        return getImplementation(method) != CodecImplementationEnum.UNAVAILABLE;
+    }
+
+    /**
+     * @param method the codec
+     * @return why its JNI library could not be loaded, or null if it loaded or the codec does not have one
+     */
+    public static Throwable getUnavailabilityCause(CompressionMethodEnum method) {
+        return switch (method) {
+            case BROTLI -> Brotli.CAUSE;
+            case LZ4_BLOCK, LZ4_FRAMED -> Lz4.CAUSE;
+            case SNAPPY_FRAMED -> SnappyProbe.CAUSE;
+            case ZSTD -> Zstd.CAUSE;
+            default -> null;
+        };
+    }
+
+    /**
+     * Probes every codec.
+     *
+     * @return each codec mapped to how it runs
+     */
+    public static Map<CompressionMethodEnum, CodecImplementationEnum> getImplementations() {
+        Map<CompressionMethodEnum, CodecImplementationEnum> implementations = new EnumMap<>(CompressionMethodEnum.class);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            implementations.put(method, getImplementation(method));
+        }
+        return implementations;
+    }
+
+    /**
+     * Loads every codec and runs a short sample through each available one, so the first real request does not pay
+     * for extracting JNI libraries or loading classes. Meant to be called once at startup.
+     *
+     * @return each codec mapped to how it runs
+     */
+    public static Map<CompressionMethodEnum, CodecImplementationEnum> warmUp() {
+        return warmUp(Arrays.asList(CompressionMethodEnum.values()));
+    }
+
+    /**
+     * Loads the given codecs and runs a short sample through each available one.
+     *
+     * @param methods the codecs to warm up
+     * @return each of them mapped to how it runs
+     * @throws IllegalStateException if an available codec fails to round trip the sample
+     */
+    public static Map<CompressionMethodEnum, CodecImplementationEnum> warmUp(Collection<CompressionMethodEnum> methods) {
+        Map<CompressionMethodEnum, CodecImplementationEnum> implementations = new EnumMap<>(CompressionMethodEnum.class);
+        for (CompressionMethodEnum method : methods) {
+            CodecImplementationEnum implementation = getImplementation(method);
+            implementations.put(method, implementation);
+            if (implementation == CodecImplementationEnum.UNAVAILABLE) {
+                continue;
+            }
+            try {
+                if (!Arrays.equals(WARM_UP_DATA, roundTrip(method))) {
+                    throw new IllegalStateException("Warm up sample did not round trip through " + method);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not warm up " + method, e);
+            }
+        }
+        return implementations;
+    }
+
+    /**
+     * Goes through the stream API directly so that warming up is not counted by {@link MetricsController}.
+     */
+    private static byte[] roundTrip(CompressionMethodEnum method) throws IOException {
+        if (method == CompressionMethodEnum.SMAZ) {
+            Smaz smaz = new Smaz();
+            byte[] compressed = new byte[Smaz.maxCompressedLength(WARM_UP_DATA.length)];
+            int length = smaz.compress(WARM_UP_DATA, 0, WARM_UP_DATA.length, compressed, 0);
+            byte[] decompressed = new byte[WARM_UP_DATA.length];
+            smaz.decompress(compressed, 0, length, decompressed, 0);
+            return decompressed;
+        }
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = ByteCompressionController.getCompressionStream(compressed, method, new CompressionOptions(), context)) {
+                out.write(WARM_UP_DATA);
+            }
+            try (InputStream in = ByteCompressionController.getDecompressionStream(new ByteArrayInputStream(compressed.toByteArray()), method, context)) {
+                return in.readAllBytes();
+            }
+        }
+    }
+
+    /**
+     * Throws the reason the codec cannot run, without probing again.
+     *
+     * @throws UnsatisfiedLinkError if its JNI library could not be loaded and it has no fallback
+     */
+    static void ensureAvailable(CompressionMethodEnum method) {
+        if (!isAvailable(method)) {
+            UnsatisfiedLinkError error = new UnsatisfiedLinkError("Native library for " + method + " is not available");
+            error.initCause(getUnavailabilityCause(method));
+            throw error;
+        }
+    }
+
+    /**
+     * @return the JNI LZ4 implementation if it loaded, otherwise the fastest Java one
+     */
+    static LZ4Factory getLz4Factory() {
+        return Lz4.FACTORY;
+    }
+
+    /**
+     * @return the JNI xxHash implementation if it loaded, otherwise the fastest Java one
+     */
+    static XXHashFactory getXXHashFactory() {
+        return Lz4.HASH_FACTORY;
+    }
+
+    // Each probe is a holder class, so the JVM runs it once, on first use, and later reads are plain static fields
+
+    private static final class Brotli {
+        private static final CodecImplementationEnum IMPLEMENTATION;
+        private static final Throwable CAUSE;
+
+        static {
+            Throwable cause;
+            try {
+                cause = Brotli4jLoader.isAvailable() ? null : Brotli4jLoader.getUnavailabilityCause();
+            } catch (Throwable t) {
+                cause = t;
+            }
+            CAUSE = cause;
+            IMPLEMENTATION = cause == null ? CodecImplementationEnum.NATIVE : CodecImplementationEnum.UNAVAILABLE;
+        }
+    }
+
+    private static final class Lz4 {
+        private static final LZ4Factory FACTORY;
+        private static final XXHashFactory HASH_FACTORY;
+        private static final CodecImplementationEnum IMPLEMENTATION;
+        private static final Throwable CAUSE;
+
+        static {
+            LZ4Factory factory;
+            XXHashFactory hashFactory;
+            Throwable cause = null;
+            try {
+                factory = LZ4Factory.nativeInstance();
+                hashFactory = XXHashFactory.nativeInstance();
+            } catch (Throwable t) {
+                factory = LZ4Factory.fastestJavaInstance();
+                hashFactory = XXHashFactory.fastestJavaInstance();
+                cause = t;
+            }
+            FACTORY = factory;
+            HASH_FACTORY = hashFactory;
+            CAUSE = cause;
+            IMPLEMENTATION = cause == null ? CodecImplementationEnum.NATIVE : CodecImplementationEnum.JAVA;
+        }
+    }
+
+    private static final class SnappyProbe {
+        private static final CodecImplementationEnum IMPLEMENTATION;
+        private static final Throwable CAUSE;
+
+        static {
+            CodecImplementationEnum implementation;
+            Throwable cause = null;
+            try {
+                // snappy-java switches to its pure Java implementation by itself when the JNI library does not load,
+                // which leaves the JNI class unlinked
+                Snappy.maxCompressedLength(1);
+                try {
+                    new SnappyNative().nativeLibraryVersion();
+                    implementation = CodecImplementationEnum.NATIVE;
+                } catch (UnsatisfiedLinkError e) {
+                    implementation = CodecImplementationEnum.JAVA;
+                    cause = e;
+                }
+            } catch (Throwable t) {
+                implementation = CodecImplementationEnum.UNAVAILABLE;
+                cause = t;
+            }
+            IMPLEMENTATION = implementation;
+            CAUSE = cause;
+        }
+    }
+
+    private static final class Zstd {
+        private static final CodecImplementationEnum IMPLEMENTATION;
+        private static final Throwable CAUSE;
+
+        static {
+            Throwable cause = null;
+            try {
+                com.github.luben.zstd.util.Native.load();
+            } catch (Throwable t) {
+                cause = t;
+            }
+            CAUSE = cause;
+            IMPLEMENTATION = cause == null ? CodecImplementationEnum.NATIVE : CodecImplementationEnum.UNAVAILABLE;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionCacheOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers compressed outputs by the content of their input, so compressing the same payload again with the same
+ * codec and options is a lookup instead of a compression. Inputs are identified by their SHA-256 and length rather than
+ * kept, so the cache only holds compressed bytes. A cryptographic digest is used because callers can choose their
+ * inputs, and a collision would hand one caller another input's output.
+ *
+ * <p>When several threads ask for the same missing output at once, one compresses it and the rest wait for its result.
+ * Every caller gets its own copy of the output.
+ */
+public class CompressionCache {
+    /**
+     * Roughly what an entry costs beyond its bytes: the key, the map node and the array or buffer header.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long size;
+
+    public CompressionCache() {
+        this(new CompressionCacheOptions());
+    }
+
+    public CompressionCache(CompressionCacheOptions options) {
+        this.maxBytes = options.getMaxBytes();
+        this.offHeap = options.isOffHeap();
+    }
+
+    public byte[] compress(byte[] data, CompressionMethodEnum method) throws IOException {
+        return compress(data, method, new CompressionOptions());
+    }
+
+    /**
+     * Returns the cached output for data, compressing and caching it first if it is not there.
+     *
+     * @param data    the uncompressed bytes
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressed bytes, the same as {@link ByteCompressionController} would return
+     * @throws IOException          if compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public byte[] compress(byte[] data, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        Key key = new Key(data, method, new CompressionOptions(options));
+        Entry entry = get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.toByteArray();
+        }
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(key, created);
+        if (existing != null) {
+            hits.increment();
+            return await(existing).toByteArray();
+        }
+        try {
+            // Another thread may have finished loading between the lookup and taking the slot
+            entry = get(key);
+            if (entry != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+                ByteCompressionController.compress(new ByteArrayInputStream(data), out, method, key.options);
+                entry = new Entry(out.toByteArray(), offHeap);
+                put(key, entry);
+            }
+            created.complete(entry);
+            return entry.toByteArray();
+        } catch (IOException | RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, created);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for another thread to compress the same data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized Entry get(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        long weight = entry.weight();
+        if (weight > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.weight();
+        }
+        size += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maxBytes) {
+            size -= eldest.next().weight();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes every entry. Statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return calls answered from the cache, including those that waited for another thread's compression
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return calls that had to compress
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the share of calls answered from the cache, or 0 if there have been none
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the bytes held, counting a fixed overhead per entry
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static final class Key {
+        private final byte[] digest;
+        private final int length;
+        private final CompressionMethodEnum method;
+        private final CompressionOptions options;
+        private final int hashCode;
+
+        private Key(byte[] data, CompressionMethodEnum method, CompressionOptions options) {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256").digest(data);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            this.length = data.length;
+            this.method = method;
+            this.options = options;
+            this.hashCode = Arrays.hashCode(digest) * 31 + Objects.hash(method, options);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return Arrays.equals(digest, that.digest) && length == that.length && method == that.method
+                && options.equals(that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] heap;
+        private final ByteBuffer direct;
+
+        private Entry(byte[] compressed, boolean offHeap) {
+            if (offHeap) {
+                this.heap = null;
+                this.direct = ByteBuffer.allocateDirect(compressed.length).put(compressed).flip();
+            } else {
+                this.heap = compressed;
+                this.direct = null;
+            }
+        }
+
+        private byte[] toByteArray() {
+            if (heap != null) {
+                return heap.clone();
+            }
+            byte[] bytes = new byte[direct.capacity()];
+            direct.get(0, bytes);
+            return bytes;
+        }
+
+        private long weight() {
+            return (heap != null ? heap.length : direct.capacity()) + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.AsyncCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.OverflowPolicyEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs compression requests asynchronously on a caller supplied executor, with a bound on how many run at once, a
+ * bound per codec and a bounded queue in front of them, so that a burst of slow requests waits in line instead of
+ * taking every core. See {@link AsyncCompressionOptions} for the limits.
+ *
+ * <p>Requests are started in the order they arrive, taking turns between codecs so that a backlog for one codec does
+ * not hold up the others. Results are the same as {@link ByteCompressionController}'s, and failures complete the
+ * future exceptionally with the exception it would have thrown.
+ *
+ * <p>Closing the service rejects new requests and fails queued ones. Requests that are already running finish, and
+ * the executor is left to the caller.
+ */
+public class CompressionService implements Closeable {
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final int maxQueueDepth;
+    private final OverflowPolicyEnum overflowPolicy;
+    private final int batchBytes;
+    private final boolean coalesce;
+    private final Lane[] lanes;
+    private final Map<CoalesceKey, CompletableFuture<byte[]>> inProgress = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ThreadLocal<ArrayDeque<Batch>> starting = new ThreadLocal<>();
+    private int running;
+    private int queued;
+    private int nextLane;
+    private boolean closed;
+
+    public CompressionService() {
+        this(new AsyncCompressionOptions());
+    }
+
+    /**
+     * @param options the executor and limits, which are copied
+     */
+    public CompressionService(AsyncCompressionOptions options) {
+        this.executor = options.getExecutor();
+        this.maxConcurrency = options.getMaxConcurrency();
+        this.maxQueueDepth = options.getMaxQueueDepth();
+        this.overflowPolicy = options.getOverflowPolicy();
+        this.batchBytes = options.getBatchBytes();
+        this.coalesce = options.isCoalesce();
+        CompressionMethodEnum[] methods = CompressionMethodEnum.values();
+        this.lanes = new Lane[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            lanes[i] = new Lane(options.getCodecConcurrency(methods[i]));
+        }
+    }
+
+    public CompletableFuture<byte[]> compress(byte[] data, CompressionMethodEnum method) {
+        return compress(data, method, new CompressionOptions());
+    }
+
+    /**
+     * Compresses data once a slot is free. A request for the same bytes, codec and options as one that has not
+     * finished yet shares its result, if coalescing is on.
+     *
+     * @param data    the uncompressed bytes, which must not be modified until the future completes
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressed bytes. Fails with a {@link RejectedExecutionException} if the queue is full or the service
+     * is closed
+     */
+    public CompletableFuture<byte[]> compress(byte[] data, CompressionMethodEnum method, CompressionOptions options) {
+        CompressionOptions copy = new CompressionOptions(options);
+        if (!coalesce) {
+            return submit(method, data.length, () -> compressNow(data, method, copy));
+        }
+        CoalesceKey key = new CoalesceKey(data, method, copy);
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inProgress.putIfAbsent(key, created);
+        if (existing != null) {
+            // Each caller gets its own array, since the arrays are mutable
+            return existing.thenApply(byte[]::clone);
+        }
+        submit(method, data.length, () -> compressNow(data, method, copy)).whenComplete((compressed, error) -> {
+            inProgress.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(compressed);
+            }
+        });
+        return created.thenApply(byte[]::clone);
+    }
+
+    /**
+     * Decompresses data once a slot is free.
+     *
+     * @param data   the compressed bytes, which must not be modified until the future completes
+     * @param method the codec data was compressed with
+     * @return the decompressed bytes. Fails with a {@link RejectedExecutionException} if the queue is full or the
+     * service is closed
+     */
+    public CompletableFuture<byte[]> decompress(byte[] data, CompressionMethodEnum method) {
+        return submit(method, data.length, () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteCompressionController.decompress(new ByteArrayInputStream(data), out, method);
+            return out.toByteArray();
+        });
+    }
+
+    /**
+     * Compresses many inputs as separate requests, which run in parallel within the service's limits.
+     *
+     * @param data    the uncompressed inputs
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the compressed bytes in the same order, or the first failure
+     */
+    public CompletableFuture<List<byte[]>> compressAll(List<byte[]> data, CompressionMethodEnum method, CompressionOptions options) {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(data.size());
+        for (byte[] input : data) {
+            futures.add(compress(input, method, options));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<byte[]> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<byte[]> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Compresses a stream once a slot is free, holding the slot until the stream is finished. Neither stream is
+     * closed. Streams are never batched with other requests.
+     *
+     * @param data    the uncompressed input
+     * @param out     receives the compressed output
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of uncompressed bytes read
+     */
+    public CompletableFuture<Long> compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options) {
+        CompressionOptions copy = new CompressionOptions(options);
+        return submit(method, Integer.MAX_VALUE, () -> ByteCompressionController.compress(data, out, method, copy));
+    }
+
+    /**
+     * Decompresses a stream once a slot is free, holding the slot until the stream is finished. Neither stream is
+     * closed.
+     *
+     * @param data   the compressed input
+     * @param out    receives the decompressed output
+     * @param method the codec data was compressed with
+     * @return the number of decompressed bytes written
+     */
+    public CompletableFuture<Long> decompress(InputStream data, OutputStream out, CompressionMethodEnum method) {
+        return submit(method, Integer.MAX_VALUE, () -> ByteCompressionController.decompress(data, out, method));
+    }
+
+    /**
+     * @return how many requests are waiting for a slot
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many tasks are running on the executor
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Job<?>> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (Lane lane : lanes) {
+                cancelled.addAll(lane.jobs);
+                lane.jobs.clear();
+            }
+            queued = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Job<?> job : cancelled) {
+            job.future.completeExceptionally(new RejectedExecutionException("Compression service is closed"));
+        }
+    }
+
+    private static byte[] compressNow(byte[] data, CompressionMethodEnum method, CompressionOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        ByteCompressionController.compress(new ByteArrayInputStream(data), out, method, options);
+        return out.toByteArray();
+    }
+
+    private <T> CompletableFuture<T> submit(CompressionMethodEnum method, int size, Callable<T> task) {
+        Job<T> job = new Job<>(task, size);
+        Lane lane = lanes[method.ordinal()];
+        Throwable rejection = null;
+        List<Batch> ready = List.of();
+        lock.lock();
+        try {
+            while (!closed && !hasRoom(lane) && overflowPolicy == OverflowPolicyEnum.BLOCK) {
+                notFull.await();
+            }
+            if (closed) {
+                rejection = new RejectedExecutionException("Compression service is closed");
+            } else if (!hasRoom(lane)) {
+                rejection = new RejectedExecutionException("Compression queue is full: " + queued);
+            } else {
+                lane.jobs.addLast(job);
+                queued++;
+                ready = dispatch();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejection = e;
+        } finally {
+            lock.unlock();
+        }
+        // Futures are completed and batches started outside the lock, so callbacks and direct executors never run
+        // while it is held
+        if (rejection != null) {
+            job.future.completeExceptionally(rejection);
+        }
+        start(ready);
+        return job.future;
+    }
+
+    /**
+     * A request that can start straight away never waits in the queue, so it is let in even when the queue is full.
+     * Called with the lock held.
+     */
+    private boolean hasRoom(Lane lane) {
+        return queued < maxQueueDepth || lane.jobs.isEmpty() && running < maxConcurrency && lane.running < lane.limit;
+    }
+
+    /**
+     * Takes queued jobs while there are free slots, one batch from each codec in turn, and counts them as running.
+     * Called with the lock held; the batches are started by {@link #start(List)} once it is released.
+     *
+     * @return the batches to start
+     */
+    private List<Batch> dispatch() {
+        List<Batch> ready = new ArrayList<>();
+        int idle = 0;
+        while (running < maxConcurrency && idle < lanes.length) {
+            Lane lane = lanes[nextLane];
+            nextLane = (nextLane + 1) % lanes.length;
+            if (lane.jobs.isEmpty() || lane.running >= lane.limit) {
+                idle++;
+                continue;
+            }
+            idle = 0;
+            List<Job<?>> jobs = new ArrayList<>();
+            long bytes = 0;
+            do {
+                Job<?> job = lane.jobs.removeFirst();
+                bytes += job.size;
+                jobs.add(job);
+            } while (!lane.jobs.isEmpty() && bytes + lane.jobs.peekFirst().size <= batchBytes);
+            queued -= jobs.size();
+            running++;
+            lane.running++;
+            ready.add(new Batch(lane, jobs));
+        }
+        if (!ready.isEmpty()) {
+            notFull.signalAll();
+        }
+        return ready;
+    }
+
+    /**
+     * Hands batches to the executor. Called without the lock. An executor that runs tasks on the calling thread would
+     * start the next batches from inside the one it is running, so those are queued here and started by the outermost
+     * call instead, keeping the stack flat.
+     */
+    private void start(List<Batch> batches) {
+        if (batches.isEmpty()) {
+            return;
+        }
+        ArrayDeque<Batch> pending = starting.get();
+        if (pending != null) {
+            pending.addAll(batches);
+            return;
+        }
+        pending = new ArrayDeque<>(batches);
+        starting.set(pending);
+        try {
+            Batch batch;
+            while ((batch = pending.poll()) != null) {
+                Batch next = batch;
+                try {
+                    executor.execute(() -> run(next));
+                } catch (RejectedExecutionException e) {
+                    lock.lock();
+                    try {
+                        running--;
+                        next.lane.running--;
+                        notFull.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    for (Job<?> job : next.jobs) {
+                        job.future.completeExceptionally(e);
+                    }
+                }
+            }
+        } finally {
+            starting.remove();
+        }
+    }
+
+    private void run(Batch batch) {
+        List<Batch> ready;
+        try {
+            for (Job<?> job : batch.jobs) {
+                job.run();
+            }
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                batch.lane.running--;
+                ready = dispatch();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        start(ready);
+    }
+
+    private static final class Batch {
+        private final Lane lane;
+        private final List<Job<?>> jobs;
+
+        private Batch(Lane lane, List<Job<?>> jobs) {
+            this.lane = lane;
+            this.jobs = jobs;
+        }
+    }
+
+    private static final class Lane {
+        private final ArrayDeque<Job<?>> jobs = new ArrayDeque<>();
+        private final int limit;
+        private int running;
+
+        private Lane(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    private static final class Job<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Callable<T> task;
+        private final int size;
+
+        private Job(Callable<T> task, int size) {
+            this.task = task;
+            this.size = size;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                // Cancelled by the caller while it was queued
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class CoalesceKey {
+        private final byte[] data;
+        private final CompressionMethodEnum method;
+        private final CompressionOptions options;
+        private final int hash;
+
+        private CoalesceKey(byte[] data, CompressionMethodEnum method, CompressionOptions options) {
+            this.data = data;
+            this.method = method;
+            this.options = options;
+            this.hash = (int) CodecRegistry.getXXHashFactory().hash64().hash(data, 0, data.length, 0) * 31
+                + method.hashCode() * 17 + options.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CoalesceKey)) return false;
+            CoalesceKey that = (CoalesceKey) o;
+            return hash == that.hash && method == that.method && options.equals(that.options) && Arrays.equals(data, that.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionBenchmark;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressorSelectionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Picks a codec for an input by benchmarking the candidates on samples of it. Each candidate compresses and
+ * decompresses the sample on the executor, the CPU time of both is measured, and the results are ranked by the
+ * caller's scoring function. LZMA and XZ dictionaries are capped at the sample size, so they don't allocate memory the
+ * sample can't use. The compressed data still decodes identically, but the encoded bytes differ from an uncapped run,
+ * since the stream header records the dictionary size. The input is only read.
+ */
+public class CompressorSelectionController {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static List<CompressionBenchmark> select(Path file) throws IOException {
+        return select(file, new CompressorSelectionOptions());
+    }
+
+    /**
+     * Benchmarks the candidate codecs on evenly spaced samples of a file.
+     *
+     * @param file    the file to sample
+     * @param options the candidates, sampling, executor and scorer
+     * @return one result per codec that is available on this platform, highest score first
+     * @throws IOException if the file cannot be read or a codec fails
+     */
+    public static List<CompressionBenchmark> select(Path file, CompressorSelectionOptions options) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return benchmark(sample(channel, size, options), size, options);
+        }
+    }
+
+    public static List<CompressionBenchmark> select(byte[] data) throws IOException {
+        return select(data, new CompressorSelectionOptions());
+    }
+
+    /**
+     * Benchmarks the candidate codecs on evenly spaced samples of data.
+     *
+     * @param data    the input to sample
+     * @param options the candidates, sampling, executor and scorer
+     * @return one result per codec that is available on this platform, highest score first
+     * @throws IOException if a codec fails
+     */
+    public static List<CompressionBenchmark> select(byte[] data, CompressorSelectionOptions options) throws IOException {
+        int total = getSampleTotal(options);
+        if (data.length <= total) {
+            return benchmark(data, data.length, options);
+        }
+        byte[] sample = new byte[total];
+        for (int i = 0; i < options.getSampleCount(); i++) {
+            System.arraycopy(data, (int) getSampleOffset(data.length, i, options), sample, i * options.getSampleSize(), options.getSampleSize());
+        }
+        return benchmark(sample, data.length, options);
+    }
+
+    private static int getSampleTotal(CompressorSelectionOptions options) {
+        long total = (long) options.getSampleCount() * options.getSampleSize();
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Samples add up to more than an array can hold: " + total);
+        }
+        return (int) total;
+    }
+
+    private static long getSampleOffset(long size, int sample, CompressorSelectionOptions options) {
+        if (options.getSampleCount() == 1) {
+            return (size - options.getSampleSize()) / 2;
+        }
+        return (size - options.getSampleSize()) * sample / (options.getSampleCount() - 1);
+    }
+
+    private static byte[] sample(FileChannel channel, long size, CompressorSelectionOptions options) throws IOException {
+        int total = getSampleTotal(options);
+        if (size <= total) {
+            return read(channel, 0, (int) size);
+        }
+        ByteBuffer sample = ByteBuffer.allocate(total);
+        for (int i = 0; i < options.getSampleCount(); i++) {
+            sample.put(read(channel, getSampleOffset(size, i, options), options.getSampleSize()));
+        }
+        return sample.array();
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("File shrank while it was sampled");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static List<CompressionBenchmark> benchmark(byte[] sample, long inputSize, CompressorSelectionOptions options) throws IOException {
+        List<CompletableFuture<CompressionBenchmark>> futures = new ArrayList<>();
+        for (CompressionMethodEnum method : options.getMethods()) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    CompressionOptions compressionOptions = ParallelCompressionController.getChunkOptions(method, options.getCompressionOptions(), sample.length);
+                    return benchmark(method, sample, inputSize, compressionOptions);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, options.getExecutor()));
+        }
+        List<CompressionBenchmark> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<CompressionBenchmark> future : futures) {
+                CompressionBenchmark result = future.join();
+                if (result != null) {
+                    results.add(result.setScore(options.getScorer().applyAsDouble(result)));
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        results.sort(Comparator.comparingDouble(CompressionBenchmark::getScore).reversed());
+        return results;
+    }
+
+    /**
+     * Compresses and decompresses the sample once, checking that it survives the round trip.
+     *
+     * @return the measurements, or null if the codec's native library is not available
+     */
+    private static CompressionBenchmark benchmark(CompressionMethodEnum method, byte[] sample, long inputSize,
+                                                  CompressionOptions options) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(sample.length / 2);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(sample.length);
+        long compressNanos;
+        long decompressNanos;
+        try {
+            long start = now();
+            ByteCompressionController.compress(new ByteArrayInputStream(sample), compressed, method, options);
+            compressNanos = now() - start;
+            start = now();
+            ByteCompressionController.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed, method);
+            decompressNanos = now() - start;
+        } catch (UnsatisfiedLinkError e) {
+            return null;
+        }
+        if (!Arrays.equals(sample, decompressed.toByteArray())) {
+            throw new IOException(method + " did not decompress to its input");
+        }
+        return new CompressionBenchmark(method, inputSize, sample.length, compressed.size(), compressNanos, decompressNanos);
+    }
+
+    /**
+     * CPU time of the current thread where the JVM can measure it, so codecs running side by side don't inflate each
+     * other's timings. Wall time otherwise.
+     */
+    private static long now() {
+        return THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
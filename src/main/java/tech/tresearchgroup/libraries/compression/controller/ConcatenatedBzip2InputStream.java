@@ -0,0 +1,56 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.xbib.io.compress.bzip2.Bzip2InputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads Bzip2 streams written back to back, as the bzip2 tool and parallel compression produce them. Each time a
+ * stream ends, the next one is started if the input continues with another "BZh" header.
+ */
+class ConcatenatedBzip2InputStream extends InputStream {
+    private final InputStream in;
+    private InputStream current;
+
+    ConcatenatedBzip2InputStream(InputStream in) {
+        this.in = new BufferedInputStream(in, CodecContext.BUFFER_SIZE);
+        this.current = new Bzip2InputStream(this.in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = current.read(b, off, len);
+            if (n != -1) {
+                return n;
+            }
+            if (!hasNextStream()) {
+                return -1;
+            }
+            current = new Bzip2InputStream(in);
+        }
+    }
+
+    private boolean hasNextStream() throws IOException {
+        in.mark(3);
+        byte[] magic = in.readNBytes(3);
+        in.reset();
+        return magic.length == 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h';
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
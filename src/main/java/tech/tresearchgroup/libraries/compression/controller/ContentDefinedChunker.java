@@ -0,0 +1,115 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.DedupOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Cuts a stream into chunks with FastCDC. A gear hash rolls over the last 64 bytes, and a chunk ends where the hash
+ * has enough zero bits. Before the average size a stricter mask is used and after it a looser one, which keeps chunk
+ * sizes close to the average. Since cut points depend only on nearby content, an insertion or deletion moves the cut
+ * points around it and leaves the rest where they were.
+ */
+class ContentDefinedChunker {
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Any fixed table works, but changing it moves every cut point and so loses deduplication against old data
+        SplittableRandom random = new SplittableRandom(0x2F0B3C8A51D7E694L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream in;
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskSmall;
+    private final long maskLarge;
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private boolean eof;
+
+    ContentDefinedChunker(InputStream in, DedupOptions options) {
+        this.in = in;
+        this.minSize = options.getMinChunkSize();
+        this.avgSize = options.getAvgChunkSize();
+        this.maxSize = options.getMaxChunkSize();
+        int bits = 31 - Integer.numberOfLeadingZeros(avgSize);
+        this.maskSmall = getMask(Math.min(bits + 2, 63));
+        this.maskLarge = getMask(Math.max(bits - 2, 1));
+        this.buffer = new byte[maxSize * 2];
+    }
+
+    private static long getMask(int bits) {
+        // The high bits of a gear hash depend on the most bytes, so those are the ones tested
+        return -1L << (64 - bits);
+    }
+
+    /**
+     * @return the next chunk, or null once the stream is used up
+     */
+    byte[] next() throws IOException {
+        fill();
+        int length = cut(buffer, start, end - start);
+        if (length == 0) {
+            return null;
+        }
+        byte[] chunk = Arrays.copyOfRange(buffer, start, start + length);
+        start += length;
+        return chunk;
+    }
+
+    /**
+     * Reads until a whole maximum sized chunk is buffered or the stream ends.
+     */
+    private void fill() throws IOException {
+        if (eof || end - start >= maxSize) {
+            return;
+        }
+        if (buffer.length - start < maxSize) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (end - start < maxSize) {
+            int n = in.read(buffer, end, buffer.length - end);
+            if (n == -1) {
+                eof = true;
+                return;
+            }
+            end += n;
+        }
+    }
+
+    /**
+     * @return the length of the chunk starting at offset, given length bytes are available
+     */
+    private int cut(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int limit = Math.min(length, maxSize);
+        int normal = Math.min(limit, avgSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+}
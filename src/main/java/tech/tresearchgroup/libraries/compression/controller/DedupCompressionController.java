@@ -0,0 +1,394 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdException;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.DedupManifest;
+import tech.tresearchgroup.libraries.compression.model.DedupOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores repeated content once. Inputs are cut into chunks where their content says to (see
+ * {@link DedupOptions}), each chunk is identified by its SHA-256, and only chunks not seen before are compressed. Codecs
+ * only find repeats within their window; this finds them anywhere in an input and across every input written to the
+ * same container, which suits sets of near-identical large files such as VM images or rotated logs.
+ *
+ * <p>A container holds the unique chunks, each compressed on its own, then a table with each chunk's compressed size,
+ * decompressed size and SHA-256, then the chunk list of every stream written, then a footer with the table's offset,
+ * the chunk and stream counts, the codec and the magic number. All numbers are little endian. Since the manifest comes
+ * last, reading needs a {@link SeekableByteChannel}.
+ *
+ * <p>Chunks are hashed and compressed in parallel on {@link DedupOptions#getExecutor()}. Cutting them is sequential,
+ * as every cut depends on the one before.
+ */
+public class DedupCompressionController {
+    private static final int MAGIC = 0x50554444;
+    private static final int FOOTER_LENGTH = 21;
+    private static final int ENTRY_LENGTH = 8 + DedupManifest.HASH_LENGTH;
+
+    public static DedupManifest compress(InputStream data, OutputStream out, CompressionMethodEnum method) throws IOException {
+        return compress(List.of(data), out, method, new CompressionOptions(), new DedupOptions());
+    }
+
+    /**
+     * Deduplicates and compresses each input into one container. Chunks repeated between inputs are stored once.
+     * No stream is closed.
+     *
+     * @param inputs  the uncompressed inputs, read one after another
+     * @param out     receives the container
+     * @param method  the codec to compress each unique chunk with
+     * @param options the level, window and block size to use inside each chunk
+     * @param dedup   the chunk sizes, executor and number of chunks in flight
+     * @return the manifest written at the end of the container
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static DedupManifest compress(List<? extends InputStream> inputs, OutputStream out, CompressionMethodEnum method,
+                                         CompressionOptions options, DedupOptions dedup) throws IOException {
+        int code = MethodCodes.getCode(method);
+        Pipeline pipeline = new Pipeline(out, method, ParallelCompressionController.getChunkOptions(method, options, dedup.getMaxChunkSize()), dedup);
+        int[][] streams = new int[inputs.size()][];
+        try {
+            for (int i = 0; i < streams.length; i++) {
+                streams[i] = pipeline.add(inputs.get(i));
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+        }
+        DedupManifest manifest = new DedupManifest(method, pipeline.compressedSizes.toArray(), pipeline.uncompressedSizes.toArray(),
+            pipeline.hashes.toByteArray(), streams);
+        writeManifest(out, manifest, code);
+        return manifest;
+    }
+
+    private static void writeManifest(OutputStream out, DedupManifest manifest, int code) throws IOException {
+        ByteArrayOutputStream tail = new ByteArrayOutputStream(manifest.getChunkCount() * ENTRY_LENGTH + FOOTER_LENGTH);
+        for (int i = 0; i < manifest.getChunkCount(); i++) {
+            BinaryEncoding.writeIntLE(tail, manifest.getCompressedSize(i));
+            BinaryEncoding.writeIntLE(tail, manifest.getUncompressedSize(i));
+            tail.write(manifest.getHash(i));
+        }
+        for (int stream = 0; stream < manifest.getStreamCount(); stream++) {
+            // New chunks are numbered in the order they are met, so chunk lists are mostly runs
+            IntList runs = new IntList();
+            int length = manifest.getStreamChunkCount(stream);
+            for (int i = 0; i < length; i++) {
+                int chunk = manifest.getStreamChunk(stream, i);
+                if (runs.size > 0 && runs.values[runs.size - 2] + runs.values[runs.size - 1] == chunk) {
+                    runs.values[runs.size - 1]++;
+                } else {
+                    runs.add(chunk);
+                    runs.add(1);
+                }
+            }
+            BinaryEncoding.writeIntLE(tail, runs.size / 2);
+            for (int i = 0; i < runs.size; i++) {
+                BinaryEncoding.writeIntLE(tail, runs.values[i]);
+            }
+        }
+        long tableOffset = manifest.getCompressedSize();
+        BinaryEncoding.writeIntLE(tail, (int) tableOffset);
+        BinaryEncoding.writeIntLE(tail, (int) (tableOffset >>> 32));
+        BinaryEncoding.writeIntLE(tail, manifest.getChunkCount());
+        BinaryEncoding.writeIntLE(tail, manifest.getStreamCount());
+        tail.write(code);
+        BinaryEncoding.writeIntLE(tail, MAGIC);
+        tail.writeTo(out);
+    }
+
+    /**
+     * Reads the manifest from the end of a container.
+     *
+     * @param channel the container
+     * @return the manifest
+     * @throws IOException if the channel does not end in a valid manifest
+     */
+    public static DedupManifest readManifest(SeekableByteChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FOOTER_LENGTH) {
+            throw new IOException("Not a deduplicated container");
+        }
+        ByteBuffer footer = SeekableCompressionController.readFully(channel, size - FOOTER_LENGTH, FOOTER_LENGTH);
+        long tableOffset = footer.getLong(0);
+        int chunks = footer.getInt(8);
+        int streamCount = footer.getInt(12);
+        CompressionMethodEnum method = MethodCodes.getMethod(footer.get(16) & 0xFF);
+        if (footer.getInt(17) != MAGIC || method == null) {
+            throw new IOException("Not a deduplicated container");
+        }
+        long tailLength = size - FOOTER_LENGTH - tableOffset;
+        if (chunks < 0 || streamCount < 0 || tableOffset < 0 || tailLength < (long) chunks * ENTRY_LENGTH + streamCount * 4L
+            || tailLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt manifest");
+        }
+        ByteBuffer tail = SeekableCompressionController.readFully(channel, tableOffset, (int) tailLength);
+        int[] compressedSizes = new int[chunks];
+        int[] uncompressedSizes = new int[chunks];
+        byte[] hashes = new byte[chunks * DedupManifest.HASH_LENGTH];
+        long compressedTotal = 0;
+        for (int i = 0; i < chunks; i++) {
+            compressedSizes[i] = tail.getInt();
+            uncompressedSizes[i] = tail.getInt();
+            if (compressedSizes[i] < 0 || uncompressedSizes[i] < 0) {
+                throw new IOException("Corrupt manifest");
+            }
+            tail.get(hashes, i * DedupManifest.HASH_LENGTH, DedupManifest.HASH_LENGTH);
+            compressedTotal += compressedSizes[i];
+        }
+        if (compressedTotal != tableOffset) {
+            throw new IOException("Manifest does not match the container size");
+        }
+        int[][] streams = new int[streamCount][];
+        for (int stream = 0; stream < streamCount; stream++) {
+            if (tail.remaining() < 4) {
+                throw new IOException("Corrupt manifest");
+            }
+            int runs = tail.getInt();
+            if (runs < 0 || tail.remaining() < runs * 8L) {
+                throw new IOException("Corrupt manifest");
+            }
+            IntList chunkList = new IntList();
+            for (int i = 0; i < runs; i++) {
+                int first = tail.getInt();
+                int length = tail.getInt();
+                if (first < 0 || length < 0 || (long) first + length > chunks || (long) chunkList.size + length > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Corrupt manifest");
+                }
+                for (int j = 0; j < length; j++) {
+                    chunkList.add(first + j);
+                }
+            }
+            streams[stream] = chunkList.toArray();
+        }
+        if (tail.hasRemaining()) {
+            throw new IOException("Corrupt manifest");
+        }
+        return new DedupManifest(method, compressedSizes, uncompressedSizes, hashes, streams);
+    }
+
+    /**
+     * Decompresses the only stream in a container.
+     *
+     * @throws IOException if the container holds more or fewer than one stream, or reading it fails
+     */
+    public static long decompress(SeekableByteChannel channel, OutputStream out) throws IOException {
+        DedupManifest manifest = readManifest(channel);
+        if (manifest.getStreamCount() != 1) {
+            throw new IOException("Container holds " + manifest.getStreamCount() + " streams, not one");
+        }
+        return decompress(channel, manifest, 0, out, new DedupOptions());
+    }
+
+    /**
+     * Decompresses one stream from a container held in memory.
+     *
+     * @see #decompress(SeekableByteChannel, DedupManifest, int, OutputStream, DedupOptions)
+     */
+    public static byte[] decompress(byte[] container, int stream) throws IOException {
+        ByteArrayChannel channel = new ByteArrayChannel(container);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        decompress(channel, readManifest(channel), stream, out, new DedupOptions());
+        return out.toByteArray();
+    }
+
+    /**
+     * Rebuilds one stream, decompressing its chunks in parallel. Chunks are read on the calling thread and written to
+     * out in order, and each is checked against its SHA-256. The stream is not closed.
+     *
+     * @param channel the container
+     * @param manifest the container's manifest, see {@link #readManifest(SeekableByteChannel)}
+     * @param stream  which stream to rebuild, counting from 0 in the order they were written
+     * @param out     receives the decompressed data
+     * @param dedup   the executor and number of chunks in flight. The chunk sizes are not used
+     * @return the number of decompressed bytes written
+     * @throws IOException               if reading, writing or decompressing fails, or a chunk does not match its hash
+     * @throws IndexOutOfBoundsException if there is no such stream
+     * @throws UnsatisfiedLinkError      if the codec's native library is not available
+     */
+    public static long decompress(SeekableByteChannel channel, DedupManifest manifest, int stream, OutputStream out,
+                                  DedupOptions dedup) throws IOException {
+        if (stream < 0 || stream >= manifest.getStreamCount()) {
+            throw new IndexOutOfBoundsException("Stream " + stream + " is outside 0-" + manifest.getStreamCount());
+        }
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        try {
+            for (int i = 0; i < manifest.getStreamChunkCount(stream); i++) {
+                int chunk = manifest.getStreamChunk(stream, i);
+                byte[] compressed = SeekableCompressionController.readFully(channel, manifest.getCompressedOffset(chunk),
+                    manifest.getCompressedSize(chunk)).array();
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return decompressChunk(compressed, manifest, chunk);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, dedup.getExecutor()));
+                if (inFlight.size() >= dedup.getMaxInFlight()) {
+                    byte[] decompressed = ParallelCompressionController.await(inFlight.removeFirst());
+                    out.write(decompressed);
+                    written += decompressed.length;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                byte[] decompressed = ParallelCompressionController.await(inFlight.removeFirst());
+                out.write(decompressed);
+                written += decompressed.length;
+            }
+        } finally {
+            for (CompletableFuture<byte[]> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        return written;
+    }
+
+    private static byte[] decompressChunk(byte[] compressed, DedupManifest manifest, int chunk) throws IOException {
+        CompressionMethodEnum method = manifest.getMethod();
+        int size = manifest.getUncompressedSize(chunk);
+        byte[] decompressed;
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            if (method.equals(CompressionMethodEnum.ZSTD)) {
+                decompressed = context.getZstdDecompressCtx().decompress(compressed, size);
+            } else {
+                try (InputStream in = ByteCompressionController.getDecompressionStream(new ByteArrayInputStream(compressed), method, context)) {
+                    decompressed = in.readNBytes(size);
+                }
+            }
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (decompressed.length != size || !MessageDigest.isEqual(sha256(decompressed), manifest.getHash(chunk))) {
+            throw new IOException("Chunk " + chunk + " does not match its hash");
+        }
+        return decompressed;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Hashes chunks in parallel, decides in input order which are new, and compresses the new ones in parallel. Both
+     * stages hold at most {@link DedupOptions#getMaxInFlight()} chunks.
+     */
+    private static final class Pipeline {
+        private final OutputStream out;
+        private final CompressionMethodEnum method;
+        private final CompressionOptions options;
+        private final DedupOptions dedup;
+        private final Map<ByteBuffer, Integer> known = new HashMap<>();
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private final Deque<CompletableFuture<byte[]>> hashing = new ArrayDeque<>();
+        private final Deque<CompletableFuture<byte[]>> compressing = new ArrayDeque<>();
+        private final IntList compressedSizes = new IntList();
+        private final IntList uncompressedSizes = new IntList();
+        private final ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+        private IntList stream;
+
+        private Pipeline(OutputStream out, CompressionMethodEnum method, CompressionOptions options, DedupOptions dedup) {
+            this.out = out;
+            this.method = method;
+            this.options = options;
+            this.dedup = dedup;
+        }
+
+        /**
+         * @return the stream's chunk list
+         */
+        private int[] add(InputStream data) throws IOException {
+            stream = new IntList();
+            ContentDefinedChunker chunker = new ContentDefinedChunker(data, dedup);
+            byte[] chunk;
+            while ((chunk = chunker.next()) != null) {
+                byte[] input = chunk;
+                chunks.addLast(chunk);
+                hashing.addLast(CompletableFuture.supplyAsync(() -> sha256(input), dedup.getExecutor()));
+                if (hashing.size() >= dedup.getMaxInFlight()) {
+                    resolve();
+                }
+            }
+            while (!hashing.isEmpty()) {
+                resolve();
+            }
+            return stream.toArray();
+        }
+
+        private void resolve() throws IOException {
+            byte[] chunk = chunks.removeFirst();
+            byte[] hash = ParallelCompressionController.await(hashing.removeFirst());
+            Integer index = known.get(ByteBuffer.wrap(hash));
+            if (index == null) {
+                index = known.size();
+                known.put(ByteBuffer.wrap(hash), index);
+                uncompressedSizes.add(chunk.length);
+                hashes.write(hash);
+                compressing.addLast(CompletableFuture.supplyAsync(() -> ParallelCompressionController.compressUnit(chunk, method, options),
+                    dedup.getExecutor()));
+                if (compressing.size() >= dedup.getMaxInFlight()) {
+                    writeNext();
+                }
+            }
+            stream.add(index);
+        }
+
+        private void writeNext() throws IOException {
+            byte[] compressed = ParallelCompressionController.await(compressing.removeFirst());
+            out.write(compressed);
+            compressedSizes.add(compressed.length);
+        }
+
+        private void finish() throws IOException {
+            while (!compressing.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        private void cancel() {
+            for (CompletableFuture<byte[]> future : hashing) {
+                future.cancel(false);
+            }
+            for (CompletableFuture<byte[]> future : compressing) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compresses a new version of a document as a patch against an earlier version, the reference, so content the two
+ * share costs next to nothing. Applying the patch to the same reference gives back the new version.
+ *
+ * <p>ZSTD patches against references of up to {@link #MAX_ZSTD_REFERENCE} bytes held in memory load the reference as
+ * a raw content dictionary, so the target can match any part of it with Zstd's own match finder. Everything else goes
+ * through a {@link RollingHashDiffer}, whose copy and add instructions are then compressed with the chosen codec. The
+ * differ reads the reference once and keeps only a hash per block, so references can be files far larger than memory;
+ * applying such a patch reads just the ranges it copies.
+ *
+ * <p>A patch starts with the magic bytes 0xC7 'D', the mode, the codec's {@link MethodCodes} code and the reference's
+ * length as a varint. Zstd patches add the reference's CRC-32, and instruction patches end with the target's, so a
+ * patch applied to the wrong reference fails instead of producing garbage.
+ */
+public class DeltaCompressionController {
+    /**
+     * The largest reference a ZSTD patch loads as a dictionary. zstd-jni cannot reference a prefix or raise the hash
+     * and chain logs, so past about a megabyte Zstd only indexes the tail of the reference and the differ does better.
+     */
+    public static final int MAX_ZSTD_REFERENCE = 1024 * 1024;
+    private static final int MAGIC_0 = 0xC7;
+    private static final int MAGIC_1 = 'D';
+    private static final int ZSTD_REFERENCE = 0;
+    private static final int INSTRUCTIONS = 1;
+    private static final int ZSTD_MIN_WINDOW = 10;
+    private static final String PATCH = "delta patch";
+
+    public static byte[] compressDelta(byte[] reference, byte[] target, CompressionMethodEnum method) throws IOException {
+        return compressDelta(reference, target, method, new CompressionOptions());
+    }
+
+    /**
+     * @param reference the earlier version
+     * @param target    the new version
+     * @param method    the codec to use
+     * @param options   the level, window and block size to use
+     * @return the patch
+     * @throws IOException          if compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static byte[] compressDelta(byte[] reference, byte[] target, CompressionMethodEnum method, CompressionOptions options)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(target.length / 16 + 64);
+        compressDelta(reference, new ByteArrayInputStream(target), out, method, options);
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses everything readable from target into patch against a reference in memory. Neither stream is closed.
+     *
+     * @param reference the earlier version
+     * @param target    the new version
+     * @param patch     receives the patch
+     * @param method    the codec to use
+     * @param options   the level, window and block size to use
+     * @return the number of target bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compressDelta(byte[] reference, InputStream target, OutputStream patch, CompressionMethodEnum method,
+                                     CompressionOptions options) throws IOException {
+        if (method.equals(CompressionMethodEnum.ZSTD) && reference.length > 0 && reference.length <= MAX_ZSTD_REFERENCE) {
+            return compressZstd(reference, target, patch, options);
+        }
+        return compressDelta(new ByteArrayChannel(reference), target, patch, method, options);
+    }
+
+    /**
+     * Compresses everything readable from target into patch against a reference that may be larger than memory, such
+     * as a file opened with {@link java.nio.file.Files#newByteChannel}. The reference is read once from the start and
+     * then in small ranges; only a hash per block of it is kept. Neither stream nor the channel is closed.
+     *
+     * @param reference the earlier version
+     * @param target    the new version
+     * @param patch     receives the patch
+     * @param method    the codec to compress the instructions with
+     * @param options   the level, window and block size to use
+     * @return the number of target bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compressDelta(SeekableByteChannel reference, InputStream target, OutputStream patch,
+                                     CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        RollingHashDiffer differ = new RollingHashDiffer(reference);
+        writeHeader(patch, INSTRUCTIONS, method, reference.size());
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             OutputStream ops = ByteCompressionController.getCompressionStream(new NonClosingOutputStream(patch), method, options, context)) {
+            return differ.diff(target, ops);
+        }
+    }
+
+    private static long compressZstd(byte[] reference, InputStream target, OutputStream patch, CompressionOptions options)
+        throws IOException {
+        int level = options.getLevel(CompressionMethodEnum.ZSTD);
+        // The window has to reach back over the whole reference from the end of a target of about the same size
+        int window = Math.max(ZSTD_MIN_WINDOW, 65 - Long.numberOfLeadingZeros(reference.length - 1L));
+        if (options.getWindow() != null) {
+            window = Math.max(window, options.getWindow());
+        }
+        writeHeader(patch, ZSTD_REFERENCE, CompressionMethodEnum.ZSTD, reference.length);
+        BinaryEncoding.writeIntLE(patch, crc(reference));
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             ZstdDictCompress dictionary = new ZstdDictCompress(reference, level);
+             OutputStream out = new ZstdContextOutputStream(new NonClosingOutputStream(patch), context, level, window, dictionary)) {
+            return ByteCompressionController.transfer(target, out, context.getBuffer());
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param reference the version the patch was made against
+     * @param patch     the patch
+     * @return the new version
+     * @throws IOException          if the patch is corrupt or was made against another reference
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static byte[] applyDelta(byte[] reference, byte[] patch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(reference.length, 32));
+        applyDelta(reference, new ByteArrayInputStream(patch), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Applies a patch read from patch to a reference in memory, writing the new version to out. Neither stream is
+     * closed.
+     *
+     * @return the number of bytes written
+     * @throws IOException          if reading or writing fails, the patch is corrupt or was made against another
+     *                              reference
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long applyDelta(byte[] reference, InputStream patch, OutputStream out) throws IOException {
+        return applyDelta(new ByteArrayChannel(reference), patch, out);
+    }
+
+    /**
+     * Applies a patch read from patch to a reference that may be larger than memory, writing the new version to out.
+     * Only the ranges the patch copies are read from the reference. Neither stream nor the channel is closed.
+     *
+     * @return the number of bytes written
+     * @throws IOException          if reading or writing fails, the patch is corrupt or was made against another
+     *                              reference
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long applyDelta(SeekableByteChannel reference, InputStream patch, OutputStream out) throws IOException {
+        if (patch.read() != MAGIC_0 || patch.read() != MAGIC_1) {
+            throw new IOException("Not a delta patch");
+        }
+        int mode = patch.read();
+        int code = patch.read();
+        CompressionMethodEnum method = MethodCodes.getMethod(code);
+        if (method == null) {
+            throw new IOException("Unknown compression method code: " + code);
+        }
+        long size = BinaryEncoding.readVarint(patch, PATCH);
+        if (size != reference.size()) {
+            throw new IOException("The patch was made against a " + size + " byte reference, not " + reference.size() + " bytes");
+        }
+        switch (mode) {
+            case ZSTD_REFERENCE -> {
+                if (!method.equals(CompressionMethodEnum.ZSTD) || size > MAX_ZSTD_REFERENCE) {
+                    throw new IOException("Corrupt delta patch");
+                }
+                return applyZstd(readReference(reference, (int) size), patch, out);
+            }
+            case INSTRUCTIONS -> {
+                return applyInstructions(new DeltaReference(reference), patch, out, method);
+            }
+            default -> throw new IOException("Unsupported delta mode: " + mode);
+        }
+    }
+
+    private static long applyZstd(byte[] reference, InputStream patch, OutputStream out) throws IOException {
+        if (BinaryEncoding.readIntLE(patch, PATCH) != crc(reference)) {
+            throw new IOException("The patch was made against a different reference");
+        }
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             ZstdDictDecompress dictionary = new ZstdDictDecompress(reference);
+             InputStream in = new ZstdContextInputStream(new NonClosingInputStream(patch), context, dictionary)) {
+            return ByteCompressionController.transfer(in, out, context.getBuffer());
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static long applyInstructions(DeltaReference reference, InputStream patch, OutputStream out,
+                                          CompressionMethodEnum method) throws IOException {
+        CRC32 crc = new CRC32();
+        CheckedOutputStream checked = new CheckedOutputStream(new NonClosingOutputStream(out), crc);
+        long written = 0;
+        long previousCopyEnd = 0;
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             InputStream ops = new BufferedInputStream(ByteCompressionController.getDecompressionStream(
+                 new NonClosingInputStream(patch), method, context), CodecContext.BUFFER_SIZE)) {
+            while (true) {
+                int op = ops.read();
+                switch (op) {
+                    case RollingHashDiffer.ADD -> {
+                        long length = BinaryEncoding.readVarint(ops, PATCH);
+                        byte[] buffer = context.getBuffer();
+                        for (long remaining = length; remaining > 0; ) {
+                            int n = ops.readNBytes(buffer, 0, (int) Math.min(remaining, buffer.length));
+                            if (n == 0) {
+                                throw new EOFException("Truncated delta patch");
+                            }
+                            checked.write(buffer, 0, n);
+                            remaining -= n;
+                        }
+                        written += length;
+                    }
+                    case RollingHashDiffer.COPY -> {
+                        long zigzag = BinaryEncoding.readVarint(ops, PATCH);
+                        long start = previousCopyEnd + ((zigzag >>> 1) ^ -(zigzag & 1));
+                        long length = BinaryEncoding.readVarint(ops, PATCH);
+                        if (start < 0 || length > reference.size() - start) {
+                            throw new IOException("Corrupt delta patch");
+                        }
+                        reference.copy(start, length, checked);
+                        previousCopyEnd = start + length;
+                        written += length;
+                    }
+                    case RollingHashDiffer.END -> {
+                        if (BinaryEncoding.readVarint(ops, PATCH) != written
+                            || BinaryEncoding.readIntLE(ops, PATCH) != (int) crc.getValue()) {
+                            throw new IOException("The patch was made against a different reference");
+                        }
+                        return written;
+                    }
+                    case -1 -> throw new EOFException("Truncated delta patch");
+                    default -> throw new IOException("Corrupt delta patch");
+                }
+            }
+        }
+    }
+
+    private static byte[] readReference(SeekableByteChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("Reference ended at " + buffer.position() + " of " + size + " bytes");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void writeHeader(OutputStream out, int mode, CompressionMethodEnum method, long referenceSize) throws IOException {
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(mode);
+        out.write(MethodCodes.getCode(method));
+        BinaryEncoding.writeVarint(out, referenceSize);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,72 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Random access to the reference of a delta through one cached, aligned chunk, so the differ can compare a few bytes
+ * at a time and copies can stream out of a reference far larger than memory.
+ */
+class DeltaReference {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final SeekableByteChannel channel;
+    private final long size;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private long chunkStart = -1;
+    private int chunkLength;
+
+    DeltaReference(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return the byte at position, which must be less than {@link #size()}
+     */
+    int byteAt(long position) throws IOException {
+        if (position < chunkStart || position >= chunkStart + chunkLength) {
+            load(position);
+        }
+        return chunk[(int) (position - chunkStart)];
+    }
+
+    /**
+     * Writes length bytes of the reference from position to out.
+     */
+    void copy(long position, long length, OutputStream out) throws IOException {
+        while (length > 0) {
+            if (position < chunkStart || position >= chunkStart + chunkLength) {
+                load(position);
+            }
+            int offset = (int) (position - chunkStart);
+            int n = (int) Math.min(length, chunkLength - offset);
+            out.write(chunk, offset, n);
+            position += n;
+            length -= n;
+        }
+    }
+
+    private void load(long position) throws IOException {
+        long start = position & -CHUNK_SIZE;
+        int length = (int) Math.min(CHUNK_SIZE, size - start);
+        ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        channel.position(start);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                chunkStart = -1;
+                chunkLength = 0;
+                throw new EOFException("Reference ended at " + (start + buffer.position()) + " of " + size + " bytes");
+            }
+        }
+        chunkStart = start;
+        chunkLength = length;
+    }
+}
@@ -0,0 +1,369 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.PreparedDictionary;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import tech.tresearchgroup.libraries.compression.model.CompressionDictionary;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses small payloads against a shared dictionary. Dictionaries are trained from sample records with Zstd's
+ * trainer and work with ZSTD, DEFLATE (as a zlib preset dictionary) and BROTLI (as a raw custom dictionary).
+ *
+ * <p>The native forms of each dictionary, a {@link ZstdDictCompress} per level, a {@link ZstdDictDecompress} and the
+ * Brotli prepared dictionary, are built on first use and cached by dictionary ID, so repeated calls only pay for the
+ * compression itself. The cache is safe to use from any thread. Dictionaries that are
+ * {@link #register(CompressionDictionary) registered} are also found by ID when decompressing ZSTD and DEFLATE data,
+ * since both formats record which dictionary they were compressed with.
+ */
+public class DictionaryController {
+    private static final Map<Integer, CompressionDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+    private static final Map<Integer, DictionaryDigests> DIGESTS = new ConcurrentHashMap<>();
+    private static final int ZSTD_DICTIONARY_MAGIC = 0xEC30A437;
+    private static final int BROTLI_RAW_DICTIONARY = 0;
+
+    /**
+     * Trains a Zstd dictionary from sample records and gives it an ID.
+     *
+     * @param samples        representative records, ideally a few thousand
+     * @param dictionarySize the largest dictionary to produce in bytes, typically 16-112 KB
+     * @param id             the ID to stamp into the dictionary, see {@link CompressionDictionary}
+     * @return the trained dictionary
+     * @throws IOException          if there are too few or too uniform samples to train on
+     * @throws UnsatisfiedLinkError if the Zstd native library is not available
+     */
+    public static CompressionDictionary train(Collection<byte[]> samples, int dictionarySize, int id) throws IOException {
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Samples add up to more than 2 GB");
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) total, dictionarySize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        byte[] content;
+        try {
+            content = trainer.trainSamples();
+        } catch (ZstdException e) {
+            throw new IOException("Dictionary training failed: " + e.getMessage(), e);
+        }
+        // The ID only has a fixed place in a dictionary with a header, so anything else is not patched
+        if (content.length < 8 || getIntLE(content, 0) != ZSTD_DICTIONARY_MAGIC) {
+            throw new IOException("Dictionary training did not produce a Zstd dictionary header");
+        }
+        // The trainer picks a random ID, so replace it with the versioned one
+        putIntLE(content, 4, id);
+        return new CompressionDictionary(id, content);
+    }
+
+    /**
+     * Makes a dictionary available to {@link #decompress(byte[], CompressionMethodEnum)} by its ID, replacing any
+     * dictionary registered under the same ID.
+     */
+    public static void register(CompressionDictionary dictionary) {
+        DICTIONARIES.put(dictionary.getId(), dictionary);
+    }
+
+    /**
+     * Forgets a registered dictionary and drops its cached native forms. Their native memory is released once calls
+     * still using them finish and they are garbage collected.
+     */
+    public static void unregister(int id) {
+        DICTIONARIES.remove(id);
+        DIGESTS.remove(id);
+    }
+
+    /**
+     * @return the dictionary registered under id, or null if there is none
+     */
+    public static CompressionDictionary getDictionary(int id) {
+        return DICTIONARIES.get(id);
+    }
+
+    public static byte[] compress(byte[] data, CompressionMethodEnum method, CompressionDictionary dictionary) throws IOException {
+        return compress(data, method, dictionary, new CompressionOptions());
+    }
+
+    /**
+     * Compresses a payload against a dictionary.
+     *
+     * @param data       the uncompressed payload
+     * @param method     ZSTD, DEFLATE or BROTLI
+     * @param dictionary the dictionary to compress against
+     * @param options    the level to use
+     * @return the compressed payload
+     * @throws IOException              if compression fails
+     * @throws IllegalArgumentException if the codec does not support dictionaries
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static byte[] compress(byte[] data, CompressionMethodEnum method, CompressionDictionary dictionary, CompressionOptions options) throws IOException {
+        if (method.equals(CompressionMethodEnum.ZSTD) && options.getWindow() == null) {
+            try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+                ZstdCompressCtx ctx = context.getZstdCompressCtx();
+                ctx.loadDict(getDigests(dictionary).getZstdCompress(options.getLevel(method)));
+                ctx.setLevel(options.getLevel(method));
+                return ctx.compress(data);
+            } catch (ZstdException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        compress(new ByteArrayInputStream(data), out, method, dictionary, options);
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses everything readable from data into out against a dictionary. Neither stream is closed.
+     *
+     * @param data       the uncompressed input
+     * @param out        receives the compressed output
+     * @param method     ZSTD, DEFLATE or BROTLI
+     * @param dictionary the dictionary to compress against
+     * @param options    the level and window to use
+     * @return the number of uncompressed bytes read
+     * @throws IOException              if reading, writing or compressing fails
+     * @throws IllegalArgumentException if the codec does not support dictionaries
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionDictionary dictionary,
+                                CompressionOptions options) throws IOException {
+        int level = options.getLevel(method);
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            OutputStream target = new NonClosingOutputStream(out);
+            OutputStream compressionStream;
+            switch (method) {
+                case ZSTD -> compressionStream = new ZstdContextOutputStream(target, context, level, options.getWindow(),
+                    getDigests(dictionary).getZstdCompress(level));
+                case DEFLATE -> {
+                    Deflater deflater = context.getDeflater(level);
+                    deflater.setDictionary(dictionary.getContent());
+                    compressionStream = new DeflaterOutputStream(target, deflater, CodecContext.BUFFER_SIZE);
+                }
+                case BROTLI -> {
+                    CodecRegistry.ensureAvailable(CompressionMethodEnum.BROTLI);
+                    Encoder.Parameters parameters = new Encoder.Parameters().setQuality(level);
+                    if (options.getWindow() != null) {
+                        parameters.setWindow(options.getWindow());
+                    }
+                    BrotliOutputStream brotli = new BrotliOutputStream(target, parameters);
+                    brotli.attachDictionary(getDigests(dictionary).getBrotliCompress());
+                    compressionStream = brotli;
+                }
+                default -> throw new IllegalArgumentException("Compression method does not support dictionaries: " + method);
+            }
+            try (compressionStream) {
+                return ByteCompressionController.transfer(data, compressionStream, context.getBuffer());
+            }
+        }
+    }
+
+    /**
+     * Decompresses a ZSTD or DEFLATE payload, looking the dictionary up among the
+     * {@link #register(CompressionDictionary) registered} ones by the ID the payload names. Payloads that were
+     * compressed without a dictionary are decompressed normally.
+     *
+     * @param data   the compressed payload
+     * @param method ZSTD or DEFLATE
+     * @return the decompressed payload
+     * @throws IOException              if the dictionary is not registered or decompression fails
+     * @throws IllegalArgumentException if the codec does not record a dictionary ID
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static byte[] decompress(byte[] data, CompressionMethodEnum method) throws IOException {
+        CompressionDictionary dictionary;
+        switch (method) {
+            case ZSTD -> {
+                int id = (int) Zstd.getDictIdFromFrame(data);
+                if (id == 0) {
+                    return ByteCompressionController.decompress(new ByteArrayInputStream(data), method);
+                }
+                dictionary = DICTIONARIES.get(id);
+                if (dictionary == null) {
+                    throw new IOException("No dictionary registered with ID " + Integer.toUnsignedString(id));
+                }
+            }
+            case DEFLATE -> {
+                if (data.length < 6 || (data[1] & 0x20) == 0) {
+                    return ByteCompressionController.decompress(new ByteArrayInputStream(data), method);
+                }
+                int adler = (data[2] & 0xFF) << 24 | (data[3] & 0xFF) << 16 | (data[4] & 0xFF) << 8 | (data[5] & 0xFF);
+                dictionary = null;
+                for (CompressionDictionary candidate : DICTIONARIES.values()) {
+                    if (getDigests(candidate).getAdler() == adler) {
+                        dictionary = candidate;
+                        break;
+                    }
+                }
+                if (dictionary == null) {
+                    throw new IOException("No dictionary registered with Adler-32 " + Integer.toHexString(adler));
+                }
+            }
+            default -> throw new IllegalArgumentException("Compression method does not record a dictionary ID: " + method);
+        }
+        return decompress(data, method, dictionary);
+    }
+
+    /**
+     * Decompresses a payload that was compressed against a dictionary.
+     *
+     * @param data       the compressed payload
+     * @param method     ZSTD, DEFLATE or BROTLI
+     * @param dictionary the dictionary it was compressed against
+     * @return the decompressed payload
+     * @throws IOException              if decompression fails or the payload names a different dictionary
+     * @throws IllegalArgumentException if the codec does not support dictionaries
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static byte[] decompress(byte[] data, CompressionMethodEnum method, CompressionDictionary dictionary) throws IOException {
+        if (method.equals(CompressionMethodEnum.ZSTD)) {
+            long size = Zstd.decompressedSize(data);
+            if (size > 0 && size < Integer.MAX_VALUE - 8) {
+                try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+                    ZstdDecompressCtx ctx = context.getZstdDecompressCtx();
+                    ctx.loadDict(getDigests(dictionary).getZstdDecompress());
+                    return ctx.decompress(data, (int) size);
+                } catch (ZstdException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        decompress(new ByteArrayInputStream(data), out, method, dictionary);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses everything readable from data into out using a dictionary. Neither stream is closed.
+     *
+     * @param data       the compressed input
+     * @param out        receives the decompressed output
+     * @param method     ZSTD, DEFLATE or BROTLI
+     * @param dictionary the dictionary the input was compressed against
+     * @return the number of decompressed bytes written
+     * @throws IOException              if reading, writing or decompressing fails
+     * @throws IllegalArgumentException if the codec does not support dictionaries
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static long decompress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionDictionary dictionary) throws IOException {
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            InputStream source = new NonClosingInputStream(data);
+            InputStream decompressionStream;
+            switch (method) {
+                case ZSTD -> decompressionStream = new ZstdContextInputStream(source, context, getDigests(dictionary).getZstdDecompress());
+                case DEFLATE -> decompressionStream = new DictionaryInflaterInputStream(source, context.getInflater(), dictionary.getContent());
+                case BROTLI -> {
+                    CodecRegistry.ensureAvailable(CompressionMethodEnum.BROTLI);
+                    BrotliInputStream brotli = new BrotliInputStream(source);
+                    brotli.attachDictionary(getDigests(dictionary).getBrotliDecompress());
+                    decompressionStream = brotli;
+                }
+                default -> throw new IllegalArgumentException("Compression method does not support dictionaries: " + method);
+            }
+            try (decompressionStream) {
+                return ByteCompressionController.transfer(decompressionStream, out, context.getBuffer());
+            }
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static DictionaryDigests getDigests(CompressionDictionary dictionary) {
+        DictionaryDigests digests = DIGESTS.get(dictionary.getId());
+        if (digests == null || (digests.dictionary != dictionary && !digests.dictionary.equals(dictionary))) {
+            digests = new DictionaryDigests(dictionary);
+            DIGESTS.put(dictionary.getId(), digests);
+        }
+        return digests;
+    }
+
+    private static int getIntLE(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8 | (bytes[index + 2] & 0xFF) << 16 | bytes[index + 3] << 24;
+    }
+
+    private static void putIntLE(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) value;
+        bytes[index + 1] = (byte) (value >>> 8);
+        bytes[index + 2] = (byte) (value >>> 16);
+        bytes[index + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * The native forms of one dictionary, each built the first time it is needed.
+     */
+    private static class DictionaryDigests {
+        private final CompressionDictionary dictionary;
+        private final Map<Integer, ZstdDictCompress> zstdCompress = new ConcurrentHashMap<>();
+        private volatile ZstdDictDecompress zstdDecompress;
+        private volatile PreparedDictionary brotliCompress;
+        private volatile ByteBuffer brotliDecompress;
+        private volatile Integer adler;
+
+        DictionaryDigests(CompressionDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        ZstdDictCompress getZstdCompress(int level) {
+            return zstdCompress.computeIfAbsent(level, key -> new ZstdDictCompress(dictionary.getContent(), key));
+        }
+
+        synchronized ZstdDictDecompress getZstdDecompress() {
+            if (zstdDecompress == null) {
+                zstdDecompress = new ZstdDictDecompress(dictionary.getContent());
+            }
+            return zstdDecompress;
+        }
+
+        synchronized PreparedDictionary getBrotliCompress() {
+            if (brotliCompress == null) {
+                brotliCompress = Encoder.prepareDictionary(getBrotliDecompress(), BROTLI_RAW_DICTIONARY);
+            }
+            return brotliCompress;
+        }
+
+        /**
+         * The dictionary in direct memory, which Brotli reads from for as long as the dictionary is in use.
+         */
+        synchronized ByteBuffer getBrotliDecompress() {
+            if (brotliDecompress == null) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(dictionary.getContent().length);
+                buffer.put(dictionary.getContent()).flip();
+                brotliDecompress = buffer;
+            }
+            return brotliDecompress;
+        }
+
+        int getAdler() {
+            if (adler == null) {
+                Adler32 checksum = new Adler32();
+                checksum.update(dictionary.getContent());
+                adler = (int) checksum.getValue();
+            }
+            return adler;
+        }
+    }
+}
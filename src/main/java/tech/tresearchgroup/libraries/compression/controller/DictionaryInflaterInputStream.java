@@ -0,0 +1,36 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Adler32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Inflates a zlib stream that was compressed with a preset dictionary. {@link InflaterInputStream} stops when the
+ * stream asks for one, so this supplies it, after checking that its Adler-32 matches the one the stream names.
+ */
+class DictionaryInflaterInputStream extends InflaterInputStream {
+    private final byte[] dictionary;
+
+    DictionaryInflaterInputStream(InputStream in, Inflater inflater, byte[] dictionary) {
+        super(in, inflater, CodecContext.BUFFER_SIZE);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            int n = super.read(b, off, len);
+            if (n != -1 || !inf.needsDictionary()) {
+                return n;
+            }
+            Adler32 adler = new Adler32();
+            adler.update(dictionary);
+            if ((int) adler.getValue() != inf.getAdler()) {
+                throw new IOException("Data was compressed with a different dictionary");
+            }
+            inf.setDictionary(dictionary);
+        }
+    }
+}
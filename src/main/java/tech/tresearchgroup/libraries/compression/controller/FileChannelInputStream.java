@@ -0,0 +1,74 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionProgressListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file in large chunks at buffer aligned offsets, reporting progress after each chunk. The chunks can also be
+ * taken directly with {@link #fill()} by codecs that work on direct buffers. The channel is left open.
+ */
+class FileChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CompressionProgressListener listener;
+    private final long size;
+    private long position;
+
+    FileChannelInputStream(FileChannel channel, ByteBuffer buffer, CompressionProgressListener listener) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.listener = listener;
+        this.size = channel.size();
+        buffer.clear().flip();
+    }
+
+    /**
+     * Reads the next chunk into the buffer, replacing whatever was left in it.
+     *
+     * @return the buffer, flipped for reading. It is empty at the end of the file
+     */
+    ByteBuffer fill() throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            position += buffer.remaining();
+            listener.onProgress(position, size);
+        }
+        return buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill().hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining() && !fill().hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
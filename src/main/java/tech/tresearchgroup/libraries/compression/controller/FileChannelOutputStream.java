@@ -0,0 +1,77 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Collects writes in a large buffer and hands them to the channel a buffer at a time. Codecs that work on direct
+ * buffers can fill {@link #getBuffer()} themselves and call {@link #drain()} when it is full. Closing flushes but
+ * leaves the channel open.
+ */
+class FileChannelOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long count;
+
+    FileChannelOutputStream(FileChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        buffer.clear();
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes written so far, including those still buffered
+     */
+    long getCount() {
+        return count + buffer.position();
+    }
+
+    /**
+     * Writes everything in the buffer to the channel and clears it.
+     */
+    void drain() throws IOException {
+        buffer.flip();
+        count += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+}
@@ -0,0 +1,186 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProgressListener;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compresses one file into another without holding either on the heap. The source is read in 1 MB chunks at aligned
+ * offsets into a pooled direct buffer, and the output is collected in a second one before it goes to the target
+ * channel. Zstd compresses straight between the two direct buffers. The other codecs go through their streams with one
+ * copy into a heap scratch buffer.
+ *
+ * <p>The output is the same as {@link ByteCompressionController#compress(java.io.InputStream, OutputStream,
+ * CompressionMethodEnum, CompressionOptions)} writes. The target is created or truncated, and deleted again if the
+ * call fails.
+ */
+public class FileCompressionController {
+    private static final CompressionProgressListener NO_PROGRESS = (bytesRead, totalBytes) -> {
+    };
+
+    public static long compressFile(Path source, Path target, CompressionMethodEnum method) throws IOException {
+        return compressFile(source, target, method, new CompressionOptions(), NO_PROGRESS);
+    }
+
+    public static long compressFile(Path source, Path target, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        return compressFile(source, target, method, options, NO_PROGRESS);
+    }
+
+    /**
+     * Compresses source into target.
+     *
+     * @param source   the file to compress
+     * @param target   the file to write, created or truncated
+     * @param method   the codec to use
+     * @param options  the level, window and block size to use
+     * @param listener told how much of source has been read after each chunk
+     * @return the number of uncompressed bytes read
+     * @throws IOException              if reading, writing or compressing fails
+     * @throws IllegalArgumentException if source and target are the same file
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static long compressFile(Path source, Path target, CompressionMethodEnum method, CompressionOptions options,
+                                    CompressionProgressListener listener) throws IOException {
+        checkDistinct(source, target);
+        // The target is only deleted on failure once it has been opened, so a source that cannot be read leaves it alone
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            try (targetChannel; CodecContext context = CodecContextPool.getDefault().acquire()) {
+                FileChannelInputStream in = new FileChannelInputStream(sourceChannel, context.getFileSource(), listener);
+                FileChannelOutputStream out = new FileChannelOutputStream(targetChannel, context.getFileDestination());
+                long read;
+                if (method.equals(CompressionMethodEnum.ZSTD)) {
+                    read = compressZstd(in, out, context, options);
+                } else {
+                    try (OutputStream compressionStream = ByteCompressionController.getCompressionStream(out, method, options, context)) {
+                        read = ByteCompressionController.transfer(in, compressionStream, context.getBuffer());
+                    }
+                }
+                out.drain();
+                return read;
+            } catch (IOException | RuntimeException | Error e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+    }
+
+    public static long decompressFile(Path source, Path target, CompressionMethodEnum method) throws IOException {
+        return decompressFile(source, target, method, NO_PROGRESS);
+    }
+
+    /**
+     * Decompresses source into target.
+     *
+     * @param source   the compressed file
+     * @param target   the file to write, created or truncated
+     * @param method   the codec source was compressed with
+     * @param listener told how much of source has been read after each chunk
+     * @return the number of decompressed bytes written
+     * @throws IOException              if reading, writing or decompressing fails
+     * @throws IllegalArgumentException if source and target are the same file
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public static long decompressFile(Path source, Path target, CompressionMethodEnum method,
+                                      CompressionProgressListener listener) throws IOException {
+        checkDistinct(source, target);
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            try (targetChannel; CodecContext context = CodecContextPool.getDefault().acquire()) {
+                FileChannelInputStream in = new FileChannelInputStream(sourceChannel, context.getFileSource(), listener);
+                FileChannelOutputStream out = new FileChannelOutputStream(targetChannel, context.getFileDestination());
+                if (method.equals(CompressionMethodEnum.ZSTD)) {
+                    decompressZstd(in, out, context);
+                } else {
+                    try (InputStream compressionStream = ByteCompressionController.getDecompressionStream(in, method, context)) {
+                        ByteCompressionController.transfer(compressionStream, out, context.getBuffer());
+                    }
+                }
+                long written = out.getCount();
+                out.drain();
+                return written;
+            } catch (IOException | RuntimeException | Error e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+    }
+
+    private static void checkDistinct(Path source, Path target) throws IOException {
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException("Source and target are the same file: " + source);
+        }
+    }
+
+    private static long compressZstd(FileChannelInputStream in, FileChannelOutputStream out, CodecContext context,
+                                     CompressionOptions options) throws IOException {
+        ZstdCompressCtx ctx = context.getZstdCompressCtx();
+        ctx.setLevel(options.getLevel(CompressionMethodEnum.ZSTD));
+        if (options.getWindow() != null) {
+            ctx.setLong(options.getWindow());
+        }
+        ByteBuffer destination = out.getBuffer();
+        long read = 0;
+        try {
+            boolean end;
+            do {
+                ByteBuffer chunk = in.fill();
+                read += chunk.remaining();
+                end = !chunk.hasRemaining();
+                EndDirective directive = end ? EndDirective.END : EndDirective.CONTINUE;
+                boolean done;
+                do {
+                    if (!destination.hasRemaining()) {
+                        out.drain();
+                    }
+                    done = ctx.compressDirectByteBufferStream(destination, chunk, directive);
+                } while (chunk.hasRemaining() || (end && !done));
+            } while (!end);
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return read;
+    }
+
+    private static void decompressZstd(FileChannelInputStream in, FileChannelOutputStream out, CodecContext context) throws IOException {
+        ZstdDecompressCtx ctx = context.getZstdDecompressCtx();
+        ByteBuffer destination = out.getBuffer();
+        ByteBuffer chunk = in.fill();
+        boolean frameDone = true;
+        try {
+            while (true) {
+                // Room left in the destination means the last call is waiting for more input, not more space
+                if (!chunk.hasRemaining() && destination.hasRemaining()) {
+                    chunk = in.fill();
+                    if (!chunk.hasRemaining()) {
+                        if (!frameDone) {
+                            throw new IOException("Truncated Zstd frame");
+                        }
+                        return;
+                    }
+                }
+                if (!destination.hasRemaining()) {
+                    out.drain();
+                }
+                frameDone = ctx.decompressDirectByteBufferStream(destination, chunk);
+            }
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
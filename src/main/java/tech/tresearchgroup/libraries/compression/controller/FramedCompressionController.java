@@ -0,0 +1,273 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdException;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.FrameHeader;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes compressed data behind a small header that says how to read it back: the magic bytes 0xC7 'F', the codec's
+ * {@link MethodCodes} code, a flags byte, then as unsigned LEB128 varints the original size if known, the level
+ * (zigzag encoded), and the window and block size if they were set. A typical header is 5 to 8 bytes.
+ *
+ * <p>Knowing the original size lets decompression allocate the output once instead of growing a buffer, or decompress
+ * straight into a caller's array. It also lets a size limit reject a decompression bomb from its header, before any
+ * inflating. Frames without a size, or whose header lies, are still stopped as soon as the output passes the limit.
+ */
+public class FramedCompressionController {
+    private static final int MAGIC_0 = 0xC7;
+    private static final int MAGIC_1 = 'F';
+    private static final int HAS_SIZE = 0x01;
+    private static final int HAS_WINDOW = 0x02;
+    private static final int HAS_BLOCK_SIZE = 0x04;
+    private static final String HEADER = "frame header";
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    public static byte[] compress(byte[] data, CompressionMethodEnum method) throws IOException {
+        return compress(data, method, new CompressionOptions());
+    }
+
+    /**
+     * @param data    the uncompressed input
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the header, with the original size, followed by the compressed data
+     * @throws IOException          if compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static byte[] compress(byte[] data, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        compress(new ByteArrayInputStream(data), out, method, options, data.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses everything readable from data into out behind a header. Neither stream is closed.
+     *
+     * @param data    the uncompressed input
+     * @param out     receives the header and the compressed data
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @param size    how many bytes data holds, or -1 if that is not known and should be left out of the header
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails, or data did not hold size bytes
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options,
+                                long size) throws IOException {
+        writeHeader(out, new FrameHeader(method, size, options.getLevel(method), options.getWindow(), options.getBlockSize()));
+        long read = ByteCompressionController.compress(data, out, method, options);
+        if (size != -1 && read != size) {
+            throw new IOException("Read " + read + " bytes, but the header says " + size);
+        }
+        return read;
+    }
+
+    private static void writeHeader(OutputStream out, FrameHeader header) throws IOException {
+        int flags = (header.hasOriginalSize() ? HAS_SIZE : 0) | (header.getWindow() != null ? HAS_WINDOW : 0)
+            | (header.getBlockSize() != null ? HAS_BLOCK_SIZE : 0);
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(MethodCodes.getCode(header.getMethod()));
+        out.write(flags);
+        if (header.hasOriginalSize()) {
+            BinaryEncoding.writeVarint(out, header.getOriginalSize());
+        }
+        BinaryEncoding.writeVarint(out, (header.getLevel() << 1) ^ (header.getLevel() >> 31));
+        if (header.getWindow() != null) {
+            BinaryEncoding.writeVarint(out, Integer.toUnsignedLong(header.getWindow()));
+        }
+        if (header.getBlockSize() != null) {
+            BinaryEncoding.writeVarint(out, Integer.toUnsignedLong(header.getBlockSize()));
+        }
+    }
+
+    /**
+     * Reads the header from the start of a frame, leaving in at the compressed data.
+     *
+     * @param in the frame
+     * @return the header
+     * @throws IOException if in does not start with a valid header
+     */
+    public static FrameHeader readHeader(InputStream in) throws IOException {
+        if (in.read() != MAGIC_0 || in.read() != MAGIC_1) {
+            throw new IOException("Not framed data");
+        }
+        int code = in.read();
+        CompressionMethodEnum method = MethodCodes.getMethod(code);
+        if (method == null) {
+            throw new IOException("Unknown compression method code: " + code);
+        }
+        int flags = in.read();
+        if (flags == -1 || (flags & ~(HAS_SIZE | HAS_WINDOW | HAS_BLOCK_SIZE)) != 0) {
+            throw new IOException("Unsupported frame flags: " + flags);
+        }
+        long size = (flags & HAS_SIZE) != 0 ? BinaryEncoding.readVarint(in, HEADER) : -1;
+        long zigzag = BinaryEncoding.readVarint(in, HEADER);
+        if (size < -1 || zigzag > 0xFFFFFFFFL) {
+            throw new IOException("Corrupt frame header");
+        }
+        int level = (int) (zigzag >>> 1) ^ -(int) (zigzag & 1);
+        Integer window = (flags & HAS_WINDOW) != 0 ? readInt(in) : null;
+        Integer blockSize = (flags & HAS_BLOCK_SIZE) != 0 ? readInt(in) : null;
+        return new FrameHeader(method, size, level, window, blockSize);
+    }
+
+    public static byte[] decompress(byte[] data) throws IOException {
+        return decompress(data, MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * Decompresses a frame held in memory. When the header has the original size, the output is allocated once at
+     * that size and a size over maxSize is rejected without decompressing anything.
+     *
+     * @param data    the frame
+     * @param maxSize the most decompressed bytes to accept
+     * @return the decompressed data
+     * @throws IOException          if the frame is corrupt, does not match its header or decompresses to more than
+     *                              maxSize bytes
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static byte[] decompress(byte[] data, long maxSize) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(data);
+        FrameHeader header = readHeader(in);
+        long limit = getLimit(header, Math.min(maxSize, MAX_ARRAY_SIZE));
+        if (!header.hasOriginalSize()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(data.length * 2L, Math.min(limit, MAX_ARRAY_SIZE)));
+            decompress(in, out, header, limit);
+            return out.toByteArray();
+        }
+        byte[] out = new byte[(int) header.getOriginalSize()];
+        decompress(data, data.length - in.available(), header, out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * Decompresses a frame held in memory straight into dst.
+     *
+     * @param data   the frame
+     * @param dst    receives the decompressed data
+     * @param offset where in dst to start writing
+     * @return the number of decompressed bytes written
+     * @throws IOException               if the frame is corrupt, does not match its header or does not fit in dst
+     * @throws IndexOutOfBoundsException if offset is outside dst
+     * @throws UnsatisfiedLinkError      if the codec's native library is not available
+     */
+    public static int decompress(byte[] data, byte[] dst, int offset) throws IOException {
+        if (offset < 0 || offset > dst.length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside 0-" + dst.length);
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(data);
+        FrameHeader header = readHeader(in);
+        int capacity = dst.length - offset;
+        int length = (int) (header.hasOriginalSize() ? getLimit(header, capacity) : capacity);
+        return decompress(data, data.length - in.available(), header, dst, offset, length);
+    }
+
+    /**
+     * Decompresses a frame from data into out. Neither stream is closed.
+     *
+     * @param data    the frame
+     * @param out     receives the decompressed data
+     * @param maxSize the most decompressed bytes to accept. Decompression stops once the output passes it, so at most
+     *                one buffer more than maxSize is ever inflated
+     * @return the number of decompressed bytes written
+     * @throws IOException          if reading, writing or decompressing fails, the frame does not match its header
+     *                              or it decompresses to more than maxSize bytes
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(InputStream data, OutputStream out, long maxSize) throws IOException {
+        FrameHeader header = readHeader(data);
+        return decompress(data, out, header, getLimit(header, maxSize));
+    }
+
+    /**
+     * @return the most bytes to let the frame decompress to
+     * @throws IOException if the header alone already says the frame is too large
+     */
+    private static long getLimit(FrameHeader header, long maxSize) throws IOException {
+        if (header.getOriginalSize() > maxSize) {
+            throw new IOException("Frame decompresses to " + header.getOriginalSize() + " bytes, over the limit of " + maxSize);
+        }
+        return header.hasOriginalSize() ? header.getOriginalSize() : maxSize;
+    }
+
+    private static long decompress(InputStream data, OutputStream out, FrameHeader header, long limit) throws IOException {
+        CompressionMethodEnum method = header.getMethod();
+        long start = MetricsController.start();
+        NonClosingInputStream compressed = new NonClosingInputStream(data);
+        long written = 0;
+        try (CodecContext context = CodecContextPool.getDefault().acquire();
+             InputStream in = ByteCompressionController.getDecompressionStream(compressed, method, context)) {
+            byte[] buffer = context.getBuffer();
+            int len;
+            // Ask for one byte past the limit, which is enough to tell that it was passed. Compared before adding one so
+            // a limit of Long.MAX_VALUE cannot overflow
+            while ((len = in.read(buffer, 0, limit - written >= buffer.length ? buffer.length : (int) (limit - written + 1))) != -1) {
+                written += len;
+                if (written > limit) {
+                    throw new IOException("Frame decompresses to more than " + limit + " bytes");
+                }
+                out.write(buffer, 0, len);
+            }
+            if (header.hasOriginalSize() && written != header.getOriginalSize()) {
+                throw new IOException("Frame decompressed to " + written + " bytes, but its header says " + header.getOriginalSize());
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            MetricsController.recordFailure(method, false, e);
+            throw e;
+        }
+        MetricsController.recordDecompress(method, compressed.getCount(), written, start);
+        return written;
+    }
+
+    /**
+     * Decompresses the frame body at data[position] into at most length bytes of dst.
+     */
+    private static int decompress(byte[] data, int position, FrameHeader header, byte[] dst, int offset, int length) throws IOException {
+        CompressionMethodEnum method = header.getMethod();
+        long start = MetricsController.start();
+        int written;
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            if (method.equals(CompressionMethodEnum.ZSTD) && header.hasOriginalSize()) {
+                CodecRegistry.ensureAvailable(method);
+                written = context.getZstdDecompressCtx().decompressByteArray(dst, offset, length, data, position, data.length - position);
+            } else {
+                try (InputStream in = ByteCompressionController.getDecompressionStream(
+                    new ByteArrayInputStream(data, position, data.length - position), method, context)) {
+                    written = in.readNBytes(dst, offset, length);
+                    // Reading to the end also makes codecs with a trailer check it
+                    if (in.read() != -1) {
+                        throw new IOException("Frame decompresses to more than " + length + " bytes");
+                    }
+                }
+            }
+            if (header.hasOriginalSize() && written != header.getOriginalSize()) {
+                throw new IOException("Frame decompressed to " + written + " bytes, but its header says " + header.getOriginalSize());
+            }
+        } catch (ZstdException e) {
+            IOException error = new IOException(e.getMessage(), e);
+            MetricsController.recordFailure(method, false, error);
+            throw error;
+        } catch (IOException | RuntimeException | Error e) {
+            MetricsController.recordFailure(method, false, e);
+            throw e;
+        }
+        MetricsController.recordDecompress(method, data.length - position, written, start);
+        return written;
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        long value = BinaryEncoding.readVarint(in, HEADER);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt frame header");
+        }
+        return (int) value;
+    }
+}
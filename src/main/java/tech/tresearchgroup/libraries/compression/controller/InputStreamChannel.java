@@ -0,0 +1,59 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel that reads from a stream. Heap buffers are filled through their backing array without a copy, direct ones
+ * through a small scratch array. Closing the channel closes the stream.
+ */
+class InputStreamChannel implements ReadableByteChannel {
+    private final InputStream in;
+    private byte[] scratch;
+    private boolean open = true;
+
+    InputStreamChannel(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (dst.hasArray()) {
+            int n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (n > 0) {
+                dst.position(dst.position() + n);
+            }
+            return n;
+        }
+        if (scratch == null) {
+            scratch = new byte[CodecContext.BUFFER_SIZE];
+        }
+        int n = in.read(scratch, 0, Math.min(dst.remaining(), scratch.length));
+        if (n > 0) {
+            dst.put(scratch, 0, n);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressedObject;
+import tech.tresearchgroup.libraries.compression.model.CompressedObjectStore;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.FrameHeader;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps each object in a file of its own in one directory, as a frame from {@link FramedCompressionController} so the
+ * codec is read from the file itself. New content is written to a temporary file next to the object and renamed over
+ * it, so readers see the old or the new object and never a partial one; a reader that opened the old file keeps
+ * reading it.
+ *
+ * <p>Reads and writes made through the store are tracked in memory. Objects found on disk start out with their file
+ * times and no reads. The store assumes it is the only writer to its directory.
+ */
+public class LocalCompressedObjectStore implements CompressedObjectStore {
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,199}");
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private final Path directory;
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * @param directory where to keep the objects, created if needed
+     * @throws IOException if the directory cannot be created
+     */
+    public LocalCompressedObjectStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Compresses data into the object at key, replacing any object already there.
+     *
+     * @param key     letters, digits, '.', '_' and '-', not starting with '.'
+     * @param data    the content to store
+     * @param method  the codec to use
+     * @param options the level, window and block size to use
+     * @return the number of decompressed bytes stored
+     * @throws IOException              if reading data or writing the object fails
+     * @throws IllegalArgumentException if the key is not valid
+     * @throws UnsatisfiedLinkError     if the codec's native library is not available
+     */
+    public long put(String key, InputStream data, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        Path target = getPath(key);
+        Path temp = Files.createTempFile(directory, TEMP_PREFIX, null);
+        try {
+            long written = write(temp, data, method, options);
+            synchronized (this) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                long now = System.currentTimeMillis();
+                usage.put(key, new Usage(now, now, versions.incrementAndGet()));
+            }
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public long put(String key, byte[] data, CompressionMethodEnum method) throws IOException {
+        return put(key, new ByteArrayInputStream(data), method, new CompressionOptions());
+    }
+
+    /**
+     * Decompresses the object at key into out, counting it as an access. The stream is not closed.
+     *
+     * @return the number of decompressed bytes written
+     * @throws NoSuchFileException if there is no such object
+     * @throws IOException         if reading or decompressing fails
+     */
+    public long get(String key, OutputStream out) throws IOException {
+        try (InputStream in = open(key)) {
+            getUsage(key, Files.readAttributes(getPath(key), BasicFileAttributes.class)).recordAccess();
+            return in.transferTo(out);
+        }
+    }
+
+    public byte[] get(String key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        get(key, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if there was an object to delete
+     */
+    public synchronized boolean delete(String key) throws IOException {
+        usage.remove(key);
+        return Files.deleteIfExists(getPath(key));
+    }
+
+    @Override
+    public List<CompressedObject> list() throws IOException {
+        List<CompressedObject> objects = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> KEY.matcher(file.getFileName().toString()).matches()).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String key = file.getFileName().toString();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                FrameHeader header;
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 32)) {
+                    header = FramedCompressionController.readHeader(in);
+                }
+                Usage objectUsage = getUsage(key, attributes);
+                objects.add(new CompressedObject(key, header.getMethod(), attributes.size(), objectUsage.createdTime,
+                    objectUsage.lastAccessTime, objectUsage.accessCount.get(), objectUsage.version));
+            } catch (NoSuchFileException e) {
+                // Deleted while listing
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(getPath(key)), CodecContext.BUFFER_SIZE);
+        try {
+            FrameHeader header = FramedCompressionController.readHeader(in);
+            return ByteCompressionController.getDecompressionStream(in, header.getMethod());
+        } catch (IOException | RuntimeException | Error e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean recompress(CompressedObject expected, InputStream data, CompressionMethodEnum method,
+                              CompressionOptions options) throws IOException {
+        Path target = getPath(expected.getKey());
+        Path temp = Files.createTempFile(directory, TEMP_PREFIX, null);
+        try {
+            write(temp, data, method, options);
+            synchronized (this) {
+                Usage objectUsage = usage.get(expected.getKey());
+                if (objectUsage == null || objectUsage.version != expected.getVersion() || !Files.exists(target)
+                    || Files.size(temp) >= expected.getSize()) {
+                    return false;
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                objectUsage.version = versions.incrementAndGet();
+                return true;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long write(Path file, InputStream data, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), CodecContext.BUFFER_SIZE)) {
+            return FramedCompressionController.compress(data, out, method, options, -1);
+        }
+    }
+
+    private Usage getUsage(String key, BasicFileAttributes attributes) {
+        return usage.computeIfAbsent(key, k -> new Usage(attributes.creationTime().toMillis(),
+            attributes.lastModifiedTime().toMillis(), versions.incrementAndGet()));
+    }
+
+    private Path getPath(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Not a valid key: " + key);
+        }
+        return directory.resolve(key);
+    }
+
+    private static final class Usage {
+        private final long createdTime;
+        private final AtomicLong accessCount = new AtomicLong();
+        private volatile long lastAccessTime;
+        private volatile long version;
+
+        private Usage(long createdTime, long lastAccessTime, long version) {
+            this.createdTime = createdTime;
+            this.lastAccessTime = lastAccessTime;
+            this.version = version;
+        }
+
+        private void recordAccess() {
+            accessCount.incrementAndGet();
+            lastAccessTime = System.currentTimeMillis();
+        }
+    }
+}
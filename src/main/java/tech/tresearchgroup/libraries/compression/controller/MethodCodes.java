@@ -0,0 +1,52 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+/**
+ * Fixed one byte codes for writing a codec into self-describing output. The enum's ordinals are not used because
+ * the enum lives in another library and may be reordered. Codes must never be changed or reused once data has been
+ * written with them.
+ */
+class MethodCodes {
+    static final int STORED = 0;
+
+    static int getCode(CompressionMethodEnum method) {
+        return switch (method) {
+            case BROTLI -> 1;
+            case BZIP2 -> 2;
+            case DEFLATE -> 3;
+            case GZIP -> 4;
+            case LZ4_BLOCK -> 5;
+            case LZ4_FRAMED -> 6;
+            case LZMA -> 7;
+            case SNAPPY_FRAMED -> 8;
+            case XZ -> 9;
+            case ZSTD -> 10;
+            case LZO -> 11;
+            case SMAZ -> 12;
+            default -> throw new IllegalArgumentException("No code assigned to compression method: " + method);
+        };
+    }
+
+    /**
+     * @param code a code written by {@link #getCode(CompressionMethodEnum)}
+     * @return the codec, or null for {@link #STORED} and codes that are not assigned
+     */
+    static CompressionMethodEnum getMethod(int code) {
+        return switch (code) {
+            case 1 -> CompressionMethodEnum.BROTLI;
+            case 2 -> CompressionMethodEnum.BZIP2;
+            case 3 -> CompressionMethodEnum.DEFLATE;
+            case 4 -> CompressionMethodEnum.GZIP;
+            case 5 -> CompressionMethodEnum.LZ4_BLOCK;
+            case 6 -> CompressionMethodEnum.LZ4_FRAMED;
+            case 7 -> CompressionMethodEnum.LZMA;
+            case 8 -> CompressionMethodEnum.SNAPPY_FRAMED;
+            case 9 -> CompressionMethodEnum.XZ;
+            case 10 -> CompressionMethodEnum.ZSTD;
+            case 11 -> CompressionMethodEnum.LZO;
+            case 12 -> CompressionMethodEnum.SMAZ;
+            default -> null;
+        };
+    }
+}
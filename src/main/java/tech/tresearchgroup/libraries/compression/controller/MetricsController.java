@@ -0,0 +1,176 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionMetricsListener;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per codec call counts, byte counts, latencies and failures for {@link ByteCompressionController#compress(
+ * java.io.InputStream, java.io.OutputStream, CompressionMethodEnum, tech.tresearchgroup.libraries.compression.model.CompressionOptions)},
+ * {@link ByteCompressionController#decompress(java.io.InputStream, java.io.OutputStream, CompressionMethodEnum)}, the
+ * methods built on them and {@link Smaz}. They can be read here, through JMX once {@link #registerMBeans()} has been
+ * called, or pushed to a {@link CompressionMetricsListener}.
+ *
+ * <p>Recording is on by default and costs two clock reads and a few uncontended adds per call. Starting the JVM with
+ * {@code -Dtech.tresearchgroup.libraries.compression.metrics=false} turns it off; the check is a constant, so the JIT
+ * removes the recording code entirely.
+ */
+public class MetricsController {
+    public static final String ENABLED_PROPERTY = "tech.tresearchgroup.libraries.compression.metrics";
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    private static final String OBJECT_NAME = "tech.tresearchgroup.libraries.compression:type=CodecMetrics,name=";
+    private static final Map<CompressionMethodEnum, CodecMetrics> METRICS = new EnumMap<>(CompressionMethodEnum.class);
+    private static final List<CompressionMetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong LISTENER_FAILURES = new AtomicLong();
+
+    static {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            METRICS.put(method, new CodecMetrics(method));
+        }
+    }
+
+    /**
+     * @return false if recording was turned off when the JVM started
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @param method the codec
+     * @return its metrics, which stay at zero if recording is turned off
+     */
+    public static CodecMetrics getMetrics(CompressionMethodEnum method) {
+        return METRICS.get(method);
+    }
+
+    /**
+     * Adds a listener that is called on the codec's thread after every recorded call. Anything it throws is counted by
+     * {@link #getListenerFailures()} and otherwise ignored, so it never fails the call or hides a codec error.
+     */
+    public static void addListener(CompressionMetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(CompressionMetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * @return how many times a listener has thrown
+     */
+    public static long getListenerFailures() {
+        return LISTENER_FAILURES.get();
+    }
+
+    /**
+     * Zeroes every codec's metrics.
+     */
+    public static void reset() {
+        for (CodecMetrics metrics : METRICS.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers a {@link CodecMetricsMXBean} per codec with the platform MBean server, named
+     * {@code tech.tresearchgroup.libraries.compression:type=CodecMetrics,name=<codec>}. Codecs that are already
+     * registered are left as they are.
+     *
+     * @throws IllegalStateException if the MBean server rejects a bean
+     */
+    public static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CodecMetrics metrics : METRICS.values()) {
+            try {
+                server.registerMBean(metrics, new ObjectName(OBJECT_NAME + metrics.getMethod().name()));
+            } catch (InstanceAlreadyExistsException e) {
+                // Registered by an earlier call
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not register metrics for " + metrics.getMethod(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes the beans added by {@link #registerMBeans()}, so the class can be unloaded.
+     */
+    public static void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CodecMetrics metrics : METRICS.values()) {
+            try {
+                server.unregisterMBean(new ObjectName(OBJECT_NAME + metrics.getMethod().name()));
+            } catch (InstanceNotFoundException e) {
+                // Never registered
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not unregister metrics for " + metrics.getMethod(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the time to pass to the record methods once the call finishes, or 0 if recording is off
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static void recordCompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long start) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - start;
+            METRICS.get(method).recordCompress(bytesIn, bytesOut, nanos);
+            for (CompressionMetricsListener listener : LISTENERS) {
+                try {
+                    listener.onCompress(method, bytesIn, bytesOut, nanos);
+                } catch (RuntimeException | Error e) {
+                    listenerFailed(e);
+                }
+            }
+        }
+    }
+
+    static void recordDecompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long start) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - start;
+            METRICS.get(method).recordDecompress(bytesIn, bytesOut, nanos);
+            for (CompressionMetricsListener listener : LISTENERS) {
+                try {
+                    listener.onDecompress(method, bytesIn, bytesOut, nanos);
+                } catch (RuntimeException | Error e) {
+                    listenerFailed(e);
+                }
+            }
+        }
+    }
+
+    static void recordFailure(CompressionMethodEnum method, boolean compressing, Throwable error) {
+        if (ENABLED) {
+            METRICS.get(method).recordFailure(error);
+            for (CompressionMetricsListener listener : LISTENERS) {
+                try {
+                    listener.onFailure(method, compressing, error);
+                } catch (RuntimeException | Error e) {
+                    listenerFailed(e);
+                }
+            }
+        }
+    }
+
+    private static void listenerFailed(Throwable error) {
+        if (error instanceof VirtualMachineError) {
+            throw (VirtualMachineError) error;
+        }
+        LISTENER_FAILURES.incrementAndGet();
+    }
+}
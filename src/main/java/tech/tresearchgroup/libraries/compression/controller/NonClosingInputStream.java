@@ -0,0 +1,63 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keeps a codec stream from closing the caller's stream when the codec releases its own resources. Counts the bytes
+ * read for {@link MetricsController}.
+ */
+class NonClosingInputStream extends FilterInputStream {
+    private long count;
+    private long markedCount;
+
+    NonClosingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            count += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        in.mark(readlimit);
+        markedCount = count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        count = markedCount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    long getCount() {
+        return count;
+    }
+}
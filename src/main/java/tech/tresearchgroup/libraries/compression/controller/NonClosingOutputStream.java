@@ -0,0 +1,38 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Keeps a codec stream from closing the caller's stream. Closing only flushes, so the codec can write its trailer
+ * while the underlying stream stays open. Counts the bytes written for {@link MetricsController}.
+ */
+class NonClosingOutputStream extends FilterOutputStream {
+    private long count;
+
+    NonClosingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,56 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel that writes to a stream. Heap buffers are written from their backing array without a copy, direct ones
+ * through a small scratch array. Closing the channel closes the stream.
+ */
+class OutputStreamChannel implements WritableByteChannel {
+    private final OutputStream out;
+    private byte[] scratch;
+    private boolean open = true;
+
+    OutputStreamChannel(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int length = src.remaining();
+        if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+        if (scratch == null) {
+            scratch = new byte[CodecContext.BUFFER_SIZE];
+        }
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), scratch.length);
+            src.get(scratch, 0, n);
+            out.write(scratch, 0, n);
+        }
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            out.close();
+        }
+    }
+}
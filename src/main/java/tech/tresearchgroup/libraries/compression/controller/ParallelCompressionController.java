@@ -0,0 +1,258 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdException;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses large inputs on several cores. The input is cut into chunks that are compressed independently on an
+ * executor and written out in order, each as a unit the codec already knows how to chain:
+ * <ul>
+ *     <li>GZIP writes one member per chunk.</li>
+ *     <li>DEFLATE writes one zlib stream. Each chunk is a run of raw deflate blocks ending in a sync flush, and the
+ *     Adler-32 is computed over the whole input as it is read.</li>
+ *     <li>ZSTD writes one frame per chunk, with the content size set.</li>
+ *     <li>XZ writes one stream per chunk. The dictionary is capped at the chunk size, since a larger one can't be
+ *     filled.</li>
+ *     <li>LZ4_FRAMED writes one frame per chunk, and LZ4_BLOCK one run of blocks with a single end mark.</li>
+ *     <li>BZIP2, SNAPPY_FRAMED and LZO write one stream per chunk.</li>
+ * </ul>
+ * The result decodes with the codec's standard tools and with {@link ByteCompressionController}. BROTLI and LZMA have
+ * no way to chain independent units, so they are compressed on the calling thread as before.
+ *
+ * <p>Chunks are only read while fewer than {@link ParallelCompressionOptions#getMaxInFlight()} of them are waiting to
+ * be written, which bounds the memory in use.
+ */
+public class ParallelCompressionController {
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method) throws IOException {
+        return compress(data, out, method, new CompressionOptions(), new ParallelCompressionOptions());
+    }
+
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options) throws IOException {
+        return compress(data, out, method, options, new ParallelCompressionOptions());
+    }
+
+    /**
+     * Compresses everything readable from data into out, one chunk per task. Neither stream is closed.
+     *
+     * @param data     the uncompressed input
+     * @param out      receives the compressed output
+     * @param method   the codec to use
+     * @param options  the level, window and block size to use
+     * @param parallel the executor, chunk size and number of chunks in flight
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options,
+                                ParallelCompressionOptions parallel) throws IOException {
+        if (!isParallel(method)) {
+            return ByteCompressionController.compress(data, out, method, options);
+        }
+        CompressionOptions chunkOptions = getChunkOptions(method, options, parallel.getChunkSize());
+        Adler32 adler = new Adler32();
+        if (method.equals(CompressionMethodEnum.DEFLATE)) {
+            out.write(getZlibHeader(chunkOptions.getLevel(method)));
+        }
+        long read = compressChunks(data, parallel, chunk -> compressChunk(chunk, method, chunkOptions), (chunk, compressed) -> {
+            if (method.equals(CompressionMethodEnum.DEFLATE)) {
+                adler.update(chunk);
+            }
+            out.write(compressed);
+        });
+        if (method.equals(CompressionMethodEnum.DEFLATE)) {
+            // An empty final block ends the deflate stream, then the zlib trailer
+            int checksum = (int) adler.getValue();
+            out.write(new byte[]{0x03, 0x00, (byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum});
+        } else if (method.equals(CompressionMethodEnum.LZ4_BLOCK)) {
+            out.write(getLz4BlockEndMark(chunkOptions));
+        } else if (read == 0) {
+            // No chunks means no members, frames or streams at all, so write the codec's own empty output
+            return ByteCompressionController.compress(data, out, method, options);
+        }
+        return read;
+    }
+
+    /**
+     * Reads data a chunk at a time, compresses the chunks on the executor and hands them to writer in input order.
+     * At most {@link ParallelCompressionOptions#getMaxInFlight()} chunks are held at once.
+     *
+     * @param data       the uncompressed input
+     * @param parallel   the executor, chunk size and number of chunks in flight
+     * @param compressor compresses one chunk. IOExceptions are passed up wrapped in an {@link UncheckedIOException}
+     * @param writer     receives each chunk together with its compressed form
+     * @return the number of uncompressed bytes read
+     */
+    static long compressChunks(InputStream data, ParallelCompressionOptions parallel, Function<byte[], byte[]> compressor,
+                               ChunkWriter writer) throws IOException {
+        Deque<byte[]> chunks = new ArrayDeque<>();
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        long read = 0;
+        try {
+            byte[] chunk;
+            while ((chunk = data.readNBytes(parallel.getChunkSize())).length > 0) {
+                read += chunk.length;
+                byte[] input = chunk;
+                chunks.addLast(chunk);
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> compressor.apply(input), parallel.getExecutor()));
+                if (inFlight.size() >= parallel.getMaxInFlight()) {
+                    writer.write(chunks.removeFirst(), await(inFlight.removeFirst()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writer.write(chunks.removeFirst(), await(inFlight.removeFirst()));
+            }
+        } finally {
+            for (CompletableFuture<byte[]> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        return read;
+    }
+
+    private static boolean isParallel(CompressionMethodEnum method) {
+        return switch (method) {
+            case BZIP2, DEFLATE, GZIP, LZ4_BLOCK, LZ4_FRAMED, SNAPPY_FRAMED, XZ, ZSTD, LZO -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Copies options for compressing chunks of at most chunkSize bytes. LZMA and XZ dictionaries are capped at the
+     * chunk size, since a larger one can't be filled but is still allocated.
+     */
+    static CompressionOptions getChunkOptions(CompressionMethodEnum method, CompressionOptions options, int chunkSize) throws IOException {
+        CompressionOptions chunkOptions = new CompressionOptions(options);
+        if ((method.equals(CompressionMethodEnum.LZMA) || method.equals(CompressionMethodEnum.XZ)) && options.getWindow() == null) {
+            int window = Math.max(12, 32 - Integer.numberOfLeadingZeros(chunkSize - 1));
+            int presetWindow = 31 - Integer.numberOfLeadingZeros(new LZMA2Options(options.getLevel(method)).getDictSize());
+            if (window < presetWindow) {
+                chunkOptions.setWindow(window);
+            }
+        }
+        return chunkOptions;
+    }
+
+    private static byte[] compressChunk(byte[] chunk, CompressionMethodEnum method, CompressionOptions options) {
+        switch (method) {
+            case DEFLATE -> {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(chunk.length / 2);
+                try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+                    Deflater deflater = context.getRawDeflater(options.getLevel(method));
+                    byte[] buffer = context.getBuffer();
+                    deflater.setInput(chunk);
+                    int length;
+                    do {
+                        length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        compressed.write(buffer, 0, length);
+                    } while (length == buffer.length || !deflater.needsInput());
+                }
+                return compressed.toByteArray();
+            }
+            case LZ4_BLOCK -> {
+                try {
+                    byte[] compressed = compressUnit(chunk, method, options);
+                    return Arrays.copyOf(compressed, compressed.length - getLz4BlockEndMark(options).length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            default -> {
+                return compressUnit(chunk, method, options);
+            }
+        }
+    }
+
+    /**
+     * Compresses chunk into output that decodes on its own, such as a Zstd frame, a GZIP member or an XZ stream.
+     */
+    static byte[] compressUnit(byte[] chunk, CompressionMethodEnum method, CompressionOptions options) {
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            if (method.equals(CompressionMethodEnum.ZSTD)) {
+                ZstdCompressCtx ctx = context.getZstdCompressCtx();
+                ctx.setLevel(options.getLevel(method));
+                ctx.setContentSize(true);
+                if (options.getWindow() != null) {
+                    ctx.setLong(options.getWindow());
+                }
+                return ctx.compress(chunk);
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(chunk.length / 2);
+            try (OutputStream compressionStream = ByteCompressionController.getCompressionStream(compressed, method, options, context)) {
+                compressionStream.write(chunk);
+            }
+            return compressed.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ZstdException e) {
+            throw new UncheckedIOException(new IOException(e.getMessage(), e));
+        }
+    }
+
+    static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static byte[] getZlibHeader(int level) {
+        int flevel;
+        if (level < 2) {
+            flevel = 0;
+        } else if (level < 6) {
+            flevel = 1;
+        } else if (level == 6) {
+            flevel = 2;
+        } else {
+            flevel = 3;
+        }
+        int cmf = 0x78;
+        int flg = flevel << 6;
+        flg += (31 - (cmf * 256 + flg) % 31) % 31;
+        return new byte[]{(byte) cmf, (byte) flg};
+    }
+
+    private static byte[] getLz4BlockEndMark(CompressionOptions options) throws IOException {
+        ByteArrayOutputStream endMark = new ByteArrayOutputStream();
+        new LZ4BlockOutputStream(endMark, options.getBlockSize(CompressionMethodEnum.LZ4_BLOCK)).close();
+        return endMark.toByteArray();
+    }
+
+    /**
+     * Receives each chunk with its compressed form, in input order.
+     */
+    interface ChunkWriter {
+        void write(byte[] chunk, byte[] compressed) throws IOException;
+    }
+}
@@ -0,0 +1,194 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressedObject;
+import tech.tresearchgroup.libraries.compression.model.CompressedObjectStore;
+import tech.tresearchgroup.libraries.compression.model.RecompressionOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.NoSuchFileException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves cold objects in a store to a higher ratio codec in the background, so data can be written fast with LZ4 or
+ * Snappy and shrunk with Zstd or XZ once nobody reads it any more. What counts as cold, and how hard the scheduler may
+ * work, is set by {@link RecompressionOptions}.
+ *
+ * <p>Each pass lists the store and recompresses the cold objects one at a time on a single low priority thread. A
+ * pass stops early when the load goes above the limit and sleeps between objects to stay under the byte rate. The
+ * swap itself is left to {@link CompressedObjectStore#recompress}, which keeps objects written during a
+ * recompression and objects that would not shrink as they are. Objects that did not shrink are not tried again until
+ * they are written again.
+ */
+public class RecompressionScheduler implements Closeable {
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final CompressedObjectStore store;
+    private final RecompressionOptions options;
+    private final OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+    private final Set<String> unshrinkable = ConcurrentHashMap.newKeySet();
+    private final AtomicLong recompressed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private ScheduledExecutorService timer;
+    private volatile boolean closed;
+
+    public RecompressionScheduler(CompressedObjectStore store, RecompressionOptions options) {
+        this.store = store;
+        this.options = options;
+    }
+
+    /**
+     * Starts running a pass every {@link RecompressionOptions#getInterval()} on a daemon thread. Does nothing if
+     * already started.
+     *
+     * @throws IllegalStateException if the scheduler has been closed
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Recompression scheduler is closed");
+        }
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recompression-scheduler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        long interval = options.getInterval().toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            // Anything thrown out of here would silently cancel every later pass
+            try {
+                runOnce();
+            } catch (Throwable e) {
+                failures.incrementAndGet();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one pass on the calling thread.
+     *
+     * @return how many objects were recompressed
+     * @throws IOException if the store cannot be listed. Objects that fail, including with a {@link LinkageError} from
+     *                     a codec that is not available, are counted by {@link #getFailures()} and skipped
+     */
+    public int runOnce() throws IOException {
+        long start = System.nanoTime();
+        long passBytes = 0;
+        int count = 0;
+        for (CompressedObject object : store.list()) {
+            if (closed || !isIdle()) {
+                break;
+            }
+            String attempt = object.getKey() + '@' + object.getVersion();
+            if (!isCold(object, System.currentTimeMillis()) || unshrinkable.contains(attempt)) {
+                continue;
+            }
+            NonClosingInputStream counted;
+            boolean swapped;
+            try (InputStream in = store.open(object.getKey())) {
+                counted = new NonClosingInputStream(in);
+                swapped = store.recompress(object, counted, options.getTargetMethod(), options.getTargetOptions());
+            } catch (NoSuchFileException e) {
+                // Deleted since the listing
+                continue;
+            } catch (IOException | RuntimeException | LinkageError e) {
+                // LinkageError covers a target codec whose native library is not available
+                failures.incrementAndGet();
+                continue;
+            }
+            if (swapped) {
+                recompressed.incrementAndGet();
+                count++;
+            } else {
+                unshrinkable.add(attempt);
+            }
+            bytesRead.addAndGet(counted.getCount());
+            passBytes += counted.getCount();
+            if (!throttle(start, passBytes)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private boolean isCold(CompressedObject object, long now) {
+        if (object.getMethod().equals(options.getTargetMethod())) {
+            return false;
+        }
+        long idle = now - object.getLastAccessTime();
+        // Objects younger than a day are judged as if a day old, so one early read does not make them look hot
+        double days = Math.max(now - object.getCreatedTime(), MILLIS_PER_DAY) / (double) MILLIS_PER_DAY;
+        return idle >= options.getMinIdle().toMillis() && object.getAccessCount() / days <= options.getMaxAccessesPerDay();
+    }
+
+    private boolean isIdle() {
+        double load = system.getSystemLoadAverage();
+        return load < 0 || load / system.getAvailableProcessors() <= options.getMaxLoad();
+    }
+
+    /**
+     * Sleeps until the pass is back under the byte rate.
+     *
+     * @return false if interrupted
+     */
+    private boolean throttle(long start, long bytes) {
+        if (options.getMaxBytesPerSecond() == 0) {
+            return true;
+        }
+        long due = start + (long) (bytes * 1e9 / options.getMaxBytesPerSecond());
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return how many objects have been recompressed
+     */
+    public long getRecompressed() {
+        return recompressed.get();
+    }
+
+    /**
+     * @return how many objects, or passes, failed with an error
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the decompressed bytes read for recompression, including objects that did not shrink
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Stops scheduling passes. A pass already running finishes the object it is on.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (timer != null) {
+            timer.shutdown();
+        }
+    }
+}
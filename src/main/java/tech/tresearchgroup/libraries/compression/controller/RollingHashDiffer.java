@@ -0,0 +1,268 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Describes a target as copies out of a reference and added literal bytes, in the way of rsync and xdelta. Every
+ * aligned block of the reference is hashed into a table, then a rolling hash slides over the target one byte at a
+ * time. Where it finds a reference block the match is checked byte by byte and grown in both directions, so edits cost
+ * little more than the bytes that changed, wherever they fall.
+ *
+ * <p>Only the table is held in memory. It has a slot for every two blocks or more, rounded up to a power of two, at
+ * 12 bytes a slot, so 24 to 48 bytes per block. The block size doubles as needed to keep it under {@link #MAX_BLOCKS}
+ * entries, which bounds the table at 96 MB for references up to 1 TB. The target is read once through a fixed buffer.
+ *
+ * <p>The instructions are varints: {@link #ADD} with a length and that many bytes, {@link #COPY} with the zigzag
+ * distance from the end of the previous copy and a length, and a final {@link #END} with the target's length and its
+ * CRC-32 as four little endian bytes.
+ *
+ * <p>A differ is used for one target.
+ */
+class RollingHashDiffer {
+    static final int ADD = 0;
+    static final int COPY = 1;
+    static final int END = 2;
+    private static final int MIN_BLOCK_SIZE = 32;
+    private static final int MAX_BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_BLOCKS = 1 << 22;
+    private static final int LITERAL_LIMIT = 64 * 1024;
+    private static final long PRIME = 0x100000001B3L;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final SeekableByteChannel channel;
+    private final DeltaReference reference;
+    private final int blockSize;
+    private final long power;
+    private long[] hashes;
+    private int[] blocks;
+    private int shift;
+
+    private final byte[] literals = new byte[LITERAL_LIMIT];
+    private int literalCount;
+    private long previousCopyEnd;
+    // Instructions are gathered here and handed to the codec in large writes, since some codecs cannot be flushed
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(CodecContext.BUFFER_SIZE * 2);
+    private OutputStream ops;
+    private InputStream target;
+    private byte[] buffer;
+    private int position;
+    private int filled;
+    private long targetLength;
+    private final CRC32 crc = new CRC32();
+
+    RollingHashDiffer(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.reference = new DeltaReference(channel);
+        int size = MIN_BLOCK_SIZE;
+        while (size < MAX_BLOCK_SIZE && reference.size() / size > MAX_BLOCKS) {
+            size <<= 1;
+        }
+        this.blockSize = size;
+        long p = 1;
+        for (int i = 1; i < size; i++) {
+            p *= PRIME;
+        }
+        this.power = p;
+    }
+
+    /**
+     * Reads the whole reference once and hashes its blocks.
+     */
+    private void index() throws IOException {
+        long count = reference.size() / blockSize;
+        // At most half full, so probes stay short
+        long entries = Math.max(Math.min(count, 1 << 27), 1);
+        int capacity = Integer.highestOneBit((int) (entries * 2 - 1)) << 1;
+        hashes = new long[capacity];
+        blocks = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        ByteBuffer chunk = ByteBuffer.allocate(Math.max(CodecContext.FILE_BUFFER_SIZE, blockSize));
+        channel.position(0);
+        long block = 0;
+        while (block < count) {
+            chunk.clear();
+            // Fill the chunk so blocks stay aligned
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk) == -1) {
+                    break;
+                }
+            }
+            byte[] bytes = chunk.array();
+            for (int offset = 0; offset + blockSize <= chunk.position() && block < count; offset += blockSize, block++) {
+                put(hash(bytes, offset), block);
+            }
+            if (chunk.hasRemaining()) {
+                break;
+            }
+        }
+    }
+
+    private void put(long hash, long block) {
+        int mask = hashes.length - 1;
+        for (int slot = (int) ((hash * MIX) >>> shift); ; slot = (slot + 1) & mask) {
+            if (blocks[slot] == 0) {
+                hashes[slot] = hash;
+                blocks[slot] = (int) (block + 1);
+                return;
+            }
+            if (hashes[slot] == hash) {
+                // Keep the first block with this content
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the block with this hash, or -1 if there is none
+     */
+    private long get(long hash) {
+        int mask = hashes.length - 1;
+        for (int slot = (int) ((hash * MIX) >>> shift); blocks[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                return blocks[slot] - 1L;
+            }
+        }
+        return -1;
+    }
+
+    private long hash(byte[] bytes, int offset) {
+        long hash = 0;
+        for (int i = 0; i < blockSize; i++) {
+            hash = hash * PRIME + (bytes[offset + i] & 0xFF);
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the instructions that turn the reference into target. Neither stream is closed.
+     *
+     * @param target the new version
+     * @param ops    receives the instructions
+     * @return the number of target bytes read
+     */
+    long diff(InputStream target, OutputStream ops) throws IOException {
+        index();
+        this.target = target;
+        this.ops = ops;
+        this.buffer = new byte[Math.max(CodecContext.FILE_BUFFER_SIZE, blockSize * 4)];
+        long hash = 0;
+        boolean hashed = false;
+        while (true) {
+            if (filled - position < blockSize) {
+                fill();
+                if (filled - position < blockSize) {
+                    break;
+                }
+            }
+            if (!hashed) {
+                hash = hash(buffer, position);
+                hashed = true;
+            }
+            long block = get(hash);
+            if (block >= 0 && match(block * blockSize)) {
+                hashed = false;
+                continue;
+            }
+            addLiteral(buffer[position]);
+            if (position + blockSize < filled) {
+                hash = (hash - (buffer[position] & 0xFF) * power) * PRIME + (buffer[position + blockSize] & 0xFF);
+            } else {
+                hashed = false;
+            }
+            position++;
+        }
+        while (position < filled) {
+            addLiteral(buffer[position++]);
+        }
+        flushLiterals();
+        out.write(END);
+        BinaryEncoding.writeVarint(out, targetLength);
+        BinaryEncoding.writeIntLE(out, (int) crc.getValue());
+        out.writeTo(ops);
+        return targetLength;
+    }
+
+    /**
+     * Checks the block at the current position against the reference at start, and if it matches, grows the match
+     * backwards into the pending literals and forwards through the target, then writes it as a copy.
+     *
+     * @return false if the block only shared a hash with the reference
+     */
+    private boolean match(long start) throws IOException {
+        for (int i = 0; i < blockSize; i++) {
+            if (buffer[position + i] != (byte) reference.byteAt(start + i)) {
+                return false;
+            }
+        }
+        long end = start + blockSize;
+        position += blockSize;
+        while (literalCount > 0 && start > 0 && literals[literalCount - 1] == (byte) reference.byteAt(start - 1)) {
+            literalCount--;
+            start--;
+        }
+        while (end < reference.size()) {
+            if (position == filled) {
+                fill();
+                if (position == filled) {
+                    break;
+                }
+            }
+            if (buffer[position] != (byte) reference.byteAt(end)) {
+                break;
+            }
+            position++;
+            end++;
+        }
+        flushLiterals();
+        out.write(COPY);
+        long distance = start - previousCopyEnd;
+        BinaryEncoding.writeVarint(out, (distance << 1) ^ (distance >> 63));
+        BinaryEncoding.writeVarint(out, end - start);
+        previousCopyEnd = end;
+        drain();
+        return true;
+    }
+
+    private void addLiteral(byte b) throws IOException {
+        if (literalCount == LITERAL_LIMIT) {
+            flushLiterals();
+        }
+        literals[literalCount++] = b;
+    }
+
+    private void flushLiterals() throws IOException {
+        if (literalCount > 0) {
+            out.write(ADD);
+            BinaryEncoding.writeVarint(out, literalCount);
+            out.write(literals, 0, literalCount);
+            literalCount = 0;
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (out.size() >= CodecContext.BUFFER_SIZE) {
+            out.writeTo(ops);
+            out.reset();
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads until it is full or the target ends.
+     */
+    private void fill() throws IOException {
+        System.arraycopy(buffer, position, buffer, 0, filled - position);
+        filled -= position;
+        position = 0;
+        int n = target.readNBytes(buffer, filled, buffer.length - filled);
+        crc.update(buffer, filled, n);
+        filled += n;
+        targetLength += n;
+    }
+}
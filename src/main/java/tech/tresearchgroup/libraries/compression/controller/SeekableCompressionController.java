@@ -0,0 +1,276 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdException;
+import net.jpountz.xxhash.XXHash64;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.SeekableIndex;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes and reads seekable containers: the input is cut into blocks that are compressed independently, followed by
+ * a table of their sizes. Reading a range only decompresses the blocks it touches, and whole containers decompress
+ * on several cores.
+ *
+ * <p>The table is the one from the Zstd seekable format: a skippable frame holding a compressed size, a decompressed
+ * size and the low 32 bits of the XXH64 of the decompressed block for every block, then the block count, a descriptor
+ * byte and the magic number 0x8F92EAB1. A ZSTD container is therefore a valid Zstd seekable file, and plain Zstd
+ * decoders read it as a sequence of frames. Other codecs use the same table after blocks of their own format, so the
+ * caller has to name the codec when reading, as everywhere else.
+ */
+public class SeekableCompressionController {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A5E;
+    private static final int SEEKABLE_MAGIC = 0x8F92EAB1;
+    private static final int FOOTER_LENGTH = 9;
+    private static final int CHECKSUM_FLAG = 0x80;
+    private static final int MAX_BLOCKS = (Integer.MAX_VALUE - FOOTER_LENGTH) / 12;
+
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method) throws IOException {
+        return compress(data, out, method, new CompressionOptions(),
+            new ParallelCompressionOptions().setChunkSize(DEFAULT_BLOCK_SIZE));
+    }
+
+    /**
+     * Compresses everything readable from data into a seekable container. Blocks are compressed in parallel and
+     * {@link ParallelCompressionOptions#getChunkSize()} is the block size. Neither stream is closed.
+     *
+     * @param data     the uncompressed input
+     * @param out      receives the container
+     * @param method   the codec to compress each block with
+     * @param options  the level, window and block size to use inside each block
+     * @param parallel the executor, block size and number of blocks in flight
+     * @return the number of uncompressed bytes read
+     * @throws IOException          if reading, writing or compressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long compress(InputStream data, OutputStream out, CompressionMethodEnum method, CompressionOptions options,
+                                ParallelCompressionOptions parallel) throws IOException {
+        XXHash64 hash = CodecRegistry.getXXHashFactory().hash64();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        // Caps LZMA and XZ dictionaries at the block size, so each block in flight does not hold a full preset one
+        CompressionOptions blockOptions = ParallelCompressionController.getChunkOptions(method, options, parallel.getChunkSize());
+        long read = ParallelCompressionController.compressChunks(data, parallel,
+            chunk -> ParallelCompressionController.compressUnit(chunk, method, blockOptions), (chunk, compressed) -> {
+                if (table.size() / 12 >= MAX_BLOCKS) {
+                    throw new IOException("Too many blocks for a seekable container");
+                }
+                out.write(compressed);
+                BinaryEncoding.writeIntLE(table, compressed.length);
+                BinaryEncoding.writeIntLE(table, chunk.length);
+                BinaryEncoding.writeIntLE(table, (int) hash.hash(chunk, 0, chunk.length, 0));
+            });
+        BinaryEncoding.writeIntLE(out, SKIPPABLE_MAGIC);
+        BinaryEncoding.writeIntLE(out, table.size() + FOOTER_LENGTH);
+        table.writeTo(out);
+        BinaryEncoding.writeIntLE(out, table.size() / 12);
+        out.write(CHECKSUM_FLAG);
+        BinaryEncoding.writeIntLE(out, SEEKABLE_MAGIC);
+        return read;
+    }
+
+    /**
+     * Reads the block table from the end of a container.
+     *
+     * @param channel the container
+     * @return the block table
+     * @throws IOException if the channel does not end in a valid seek table
+     */
+    public static SeekableIndex readIndex(SeekableByteChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FOOTER_LENGTH + 8) {
+            throw new IOException("Not a seekable container");
+        }
+        ByteBuffer footer = readFully(channel, size - FOOTER_LENGTH, FOOTER_LENGTH);
+        int blocks = footer.getInt(0);
+        int descriptor = footer.get(4) & 0xFF;
+        if (footer.getInt(5) != SEEKABLE_MAGIC || (descriptor & 0x7C) != 0) {
+            throw new IOException("Not a seekable container");
+        }
+        boolean checksums = (descriptor & CHECKSUM_FLAG) != 0;
+        int entryLength = checksums ? 12 : 8;
+        if (blocks < 0 || blocks > MAX_BLOCKS || (long) blocks * entryLength + FOOTER_LENGTH + 8 > size) {
+            throw new IOException("Corrupt seek table");
+        }
+        int tableLength = blocks * entryLength;
+        long tableStart = size - FOOTER_LENGTH - tableLength - 8;
+        ByteBuffer table = readFully(channel, tableStart, tableLength + 8);
+        if ((table.getInt(0) & 0xFFFFFFF0) != (SKIPPABLE_MAGIC & 0xFFFFFFF0) || table.getInt(4) != tableLength + FOOTER_LENGTH) {
+            throw new IOException("Corrupt seek table");
+        }
+        int[] compressedSizes = new int[blocks];
+        int[] uncompressedSizes = new int[blocks];
+        int[] blockChecksums = checksums ? new int[blocks] : null;
+        long compressedTotal = 0;
+        for (int i = 0; i < blocks; i++) {
+            int entry = 8 + i * entryLength;
+            compressedSizes[i] = table.getInt(entry);
+            uncompressedSizes[i] = table.getInt(entry + 4);
+            if (compressedSizes[i] < 0 || uncompressedSizes[i] < 0) {
+                throw new IOException("Corrupt seek table");
+            }
+            if (checksums) {
+                blockChecksums[i] = table.getInt(entry + 8);
+            }
+            compressedTotal += compressedSizes[i];
+        }
+        if (compressedTotal != tableStart) {
+            throw new IOException("Seek table does not match the container size");
+        }
+        return new SeekableIndex(compressedSizes, uncompressedSizes, blockChecksums);
+    }
+
+    /**
+     * Reads a range of the decompressed data from a container held in memory.
+     *
+     * @see #read(SeekableByteChannel, SeekableIndex, CompressionMethodEnum, long, int)
+     */
+    public static byte[] read(byte[] container, CompressionMethodEnum method, long offset, int length) throws IOException {
+        ByteArrayChannel channel = new ByteArrayChannel(container);
+        return read(channel, readIndex(channel), method, offset, length);
+    }
+
+    /**
+     * Reads a range of the decompressed data, decompressing only the blocks it overlaps.
+     *
+     * @param channel the container
+     * @param index   the container's block table, see {@link #readIndex(SeekableByteChannel)}
+     * @param method  the codec the blocks were compressed with
+     * @param offset  where the range starts in the decompressed data
+     * @param length  how many bytes to read. The result is shorter if the data ends first
+     * @return the decompressed range
+     * @throws IOException               if reading fails or a block is corrupt
+     * @throws IndexOutOfBoundsException if offset or length is negative
+     * @throws UnsatisfiedLinkError      if the codec's native library is not available
+     */
+    public static byte[] read(SeekableByteChannel channel, SeekableIndex index, CompressionMethodEnum method, long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IndexOutOfBoundsException("Negative offset or length: " + offset + ", " + length);
+        }
+        long end = Math.min(offset + length, index.getUncompressedSize());
+        if (offset >= end) {
+            return new byte[0];
+        }
+        byte[] range = new byte[(int) (end - offset)];
+        int block = index.getBlock(offset);
+        int written = 0;
+        while (written < range.length) {
+            byte[] decompressed = readBlock(channel, index, method, block);
+            int from = (int) (offset + written - index.getUncompressedOffset(block));
+            int n = Math.min(decompressed.length - from, range.length - written);
+            System.arraycopy(decompressed, from, range, written, n);
+            written += n;
+            block++;
+        }
+        return range;
+    }
+
+    public static long decompress(SeekableByteChannel channel, OutputStream out, CompressionMethodEnum method) throws IOException {
+        return decompress(channel, readIndex(channel), out, method, new ParallelCompressionOptions());
+    }
+
+    /**
+     * Decompresses a whole container, one block per task. Blocks are read on the calling thread and written to out
+     * in order. The stream is not closed.
+     *
+     * @param channel  the container
+     * @param index    the container's block table, see {@link #readIndex(SeekableByteChannel)}
+     * @param out      receives the decompressed data
+     * @param method   the codec the blocks were compressed with
+     * @param parallel the executor and number of blocks in flight. The chunk size is not used
+     * @return the number of decompressed bytes written
+     * @throws IOException          if reading, writing or decompressing fails
+     * @throws UnsatisfiedLinkError if the codec's native library is not available
+     */
+    public static long decompress(SeekableByteChannel channel, SeekableIndex index, OutputStream out, CompressionMethodEnum method,
+                                  ParallelCompressionOptions parallel) throws IOException {
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        try {
+            for (int i = 0; i < index.getBlockCount(); i++) {
+                byte[] compressed = readCompressedBlock(channel, index, i);
+                int block = i;
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return decompressBlock(compressed, index, method, block);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, parallel.getExecutor()));
+                if (inFlight.size() >= parallel.getMaxInFlight()) {
+                    byte[] decompressed = ParallelCompressionController.await(inFlight.removeFirst());
+                    out.write(decompressed);
+                    written += decompressed.length;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                byte[] decompressed = ParallelCompressionController.await(inFlight.removeFirst());
+                out.write(decompressed);
+                written += decompressed.length;
+            }
+        } finally {
+            for (CompletableFuture<byte[]> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        return written;
+    }
+
+    private static byte[] readBlock(SeekableByteChannel channel, SeekableIndex index, CompressionMethodEnum method, int block) throws IOException {
+        return decompressBlock(readCompressedBlock(channel, index, block), index, method, block);
+    }
+
+    private static byte[] readCompressedBlock(SeekableByteChannel channel, SeekableIndex index, int block) throws IOException {
+        return readFully(channel, index.getCompressedOffset(block), index.getCompressedSize(block)).array();
+    }
+
+    private static byte[] decompressBlock(byte[] compressed, SeekableIndex index, CompressionMethodEnum method, int block) throws IOException {
+        int size = index.getUncompressedSize(block);
+        byte[] decompressed;
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            if (method.equals(CompressionMethodEnum.ZSTD)) {
+                decompressed = context.getZstdDecompressCtx().decompress(compressed, size);
+            } else {
+                try (InputStream in = ByteCompressionController.getDecompressionStream(new ByteArrayInputStream(compressed), method, context)) {
+                    decompressed = in.readNBytes(size);
+                }
+            }
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (decompressed.length != size) {
+            throw new IOException("Block " + block + " decompressed to " + decompressed.length + " bytes, expected " + size);
+        }
+        if (index.hasChecksums()) {
+            int checksum = (int) CodecRegistry.getXXHashFactory().hash64().hash(decompressed, 0, decompressed.length, 0);
+            if (checksum != index.getChecksum(block)) {
+                throw new IOException("Checksum mismatch in block " + block);
+            }
+        }
+        return decompressed;
+    }
+
+    static ByteBuffer readFully(SeekableByteChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Unexpected end of container");
+            }
+        }
+        return buffer.flip();
+    }
+}
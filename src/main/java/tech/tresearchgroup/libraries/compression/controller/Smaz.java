@@ -16,13 +16,24 @@
  */
 package tech.tresearchgroup.libraries.compression.controller;
 
-import java.io.*;
-import java.nio.CharBuffer;
+import tech.tresearchgroup.libraries.compression.model.SmazCodebook;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Smaz class for compression small strings. Port to java from <a href="https://github.com/antirez/smaz/">antirez</a>
  * This class is immutable.
  *
+ * <p>The codebooks are flattened into byte tables once, and the byte[] and {@link ByteBuffer} methods work on the
+ * caller's arrays without allocating. The output is the same as the original port's, quirks included. A codebook
+ * trained for other kinds of strings can be used instead of the built in one, see {@link SmazCodebook}, and strings
+ * that are not ASCII can be compressed in UTF-8 mode, see {@link #Smaz(boolean)}.
+ *
  * @author icedrake
  */
 public class Smaz {
@@ -103,152 +114,641 @@ public class Smaz {
         "e, ", " it", "whi", " ma", "ge", "x", "e c", "men", ".com"
     };
 
+    private static final int SLOT_COUNT = 241;
+    private static final int MAX_MATCH = 7;
+    private static final int MAX_VERBATIM = 256;
+    private static final int VERBATIM_BYTE = 254;
+    private static final int VERBATIM_RUN = 255;
+    private static final int SCRATCH_LIMIT = 64 * 1024;
+
+    private static final Tables DEFAULT_TABLES = createDefaultTables();
+
+    private final Tables tables;
+    private final boolean utf8;
+
+    /**
+     * Uses the built in codebook, which suits English text and HTML.
+     */
+    public Smaz() {
+        this(false);
+    }
+
+    /**
+     * Uses the built in codebook, optionally in UTF-8 mode. In UTF-8 mode strings are compressed from their UTF-8
+     * bytes instead of being limited to ASCII, any bytes are accepted, and non-ASCII bytes are stored in verbatim runs.
+     * ASCII strings compress to the same bytes in both modes, so UTF-8 mode reads everything the ASCII mode wrote.
+     *
+     * @param utf8 whether to accept any string
+     */
+    public Smaz(boolean utf8) {
+        this.tables = DEFAULT_TABLES;
+        this.utf8 = utf8;
+    }
+
+    /**
+     * Uses a trained codebook. Its lookup tables are built here, so keep the instance rather than creating one per
+     * string. Unlike the built in codebook, the byte[] and {@link ByteBuffer} methods accept any bytes with it.
+     *
+     * @param codebook the codebook to compress and decompress with
+     */
+    public Smaz(SmazCodebook codebook) {
+        this(codebook, false);
+    }
+
+    /**
+     * Uses a trained codebook, optionally compressing strings from their UTF-8 bytes, see {@link #Smaz(boolean)}.
+     *
+     * @param codebook the codebook to compress and decompress with
+     * @param utf8     whether to accept any string
+     */
+    public Smaz(SmazCodebook codebook, boolean utf8) {
+        this.tables = createTables(codebook);
+        this.utf8 = utf8;
+    }
+
+    public boolean isUtf8() {
+        return utf8;
+    }
+
+    private static Tables createDefaultTables() {
+        int[] slotOffsets = new int[SLOT_COUNT + 1];
+        int total = 0;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            slotOffsets[slot] = total;
+            total += CODEBOOK[slot].length();
+        }
+        slotOffsets[SLOT_COUNT] = total;
+        byte[] slots = new byte[total];
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            putLatin1(CODEBOOK[slot], slots, slotOffsets[slot]);
+        }
+
+        // Slots are scanned a byte at a time rather than entry by entry, so a code byte from 1 to 7 can also start a
+        // match. Every position is kept to produce the same output as before, except one too close to the end of its
+        // slot to be followed by a code, which no input can reach.
+        int[] candidates = new int[total * MAX_MATCH];
+        byte[] codes = new byte[total * MAX_MATCH];
+        int[] candidateOffsets = new int[SLOT_COUNT * (MAX_MATCH + 1) + 1];
+        int count = 0;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            for (int length = 0; length <= MAX_MATCH; length++) {
+                candidateOffsets[slot * (MAX_MATCH + 1) + length] = count;
+                for (int i = slotOffsets[slot]; length > 0 && i + length + 1 < slotOffsets[slot + 1]; i++) {
+                    if (slots[i] == length) {
+                        candidates[count] = i + 1;
+                        codes[count++] = slots[i + length + 1];
+                    }
+                }
+            }
+        }
+        candidateOffsets[SLOT_COUNT * (MAX_MATCH + 1)] = count;
+
+        int[] reverseOffsets = new int[REVERSE_CODEBOOK.length + 1];
+        total = 0;
+        for (int code = 0; code < REVERSE_CODEBOOK.length; code++) {
+            reverseOffsets[code] = total;
+            total += REVERSE_CODEBOOK[code].length();
+        }
+        reverseOffsets[REVERSE_CODEBOOK.length] = total;
+        byte[] reverse = new byte[total];
+        for (int code = 0; code < REVERSE_CODEBOOK.length; code++) {
+            putLatin1(REVERSE_CODEBOOK[code], reverse, reverseOffsets[code]);
+        }
+        return new Tables(slots, Arrays.copyOf(candidates, count), Arrays.copyOf(codes, count), candidateOffsets,
+            reverse, reverseOffsets, true);
+    }
+
+    /**
+     * Places each entry under the slot its first bytes hash to, the same way the built in codebook is laid out, but
+     * only at entry boundaries.
+     */
+    private static Tables createTables(SmazCodebook codebook) {
+        int size = codebook.size();
+        int[] reverseOffsets = new int[size + 1];
+        int total = 0;
+        for (int code = 0; code < size; code++) {
+            reverseOffsets[code] = total;
+            total += codebook.getEntry(code).length;
+        }
+        reverseOffsets[size] = total;
+        byte[] reverse = new byte[total];
+        int[] keys = new int[size];
+        int[] candidateOffsets = new int[SLOT_COUNT * (MAX_MATCH + 1) + 1];
+        for (int code = 0; code < size; code++) {
+            byte[] entry = codebook.getEntry(code);
+            System.arraycopy(entry, 0, reverse, reverseOffsets[code], entry.length);
+            keys[code] = getSlot(entry, 0, entry.length, entry.length) * (MAX_MATCH + 1) + entry.length;
+            candidateOffsets[keys[code] + 1]++;
+        }
+        for (int key = 1; key < candidateOffsets.length; key++) {
+            candidateOffsets[key] += candidateOffsets[key - 1];
+        }
+        int[] candidates = new int[size];
+        byte[] codes = new byte[size];
+        int[] next = Arrays.copyOf(candidateOffsets, candidateOffsets.length);
+        for (int code = 0; code < size; code++) {
+            int index = next[keys[code]]++;
+            candidates[index] = reverseOffsets[code];
+            codes[index] = (byte) code;
+        }
+        return new Tables(reverse, candidates, codes, candidateOffsets, reverse, reverseOffsets, false);
+    }
+
+    private static int getSlot(byte[] src, int position, int remaining, int length) {
+        int h1, h2, h3;
+        h1 = h2 = (src[position] & 0xFF) << 3;
+        if (remaining > 1) {
+            h2 += src[position + 1] & 0xFF;
+        }
+        h3 = remaining > 2 ? h2 ^ (src[position + 2] & 0xFF) : 0;
+        return (length == 1 ? h1 : length == 2 ? h2 : h3) % SLOT_COUNT;
+    }
+
+    private static void putLatin1(String string, byte[] bytes, int offset) {
+        for (int i = 0; i < string.length(); i++) {
+            bytes[offset + i] = (byte) string.charAt(i);
+        }
+    }
+
+    /**
+     * The most bytes {@link #compress(byte[], int, int, byte[], int)} can write for an input of the given length.
+     *
+     * @param length the number of input bytes
+     * @return the size of output buffer that is always large enough
+     */
+    public static int maxCompressedLength(int length) {
+        if (length < 0 || length > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+        // A lone verbatim byte takes two bytes, everything else takes less
+        return length * 2;
+    }
+
     /**
      * Returns compressed byte array for the specified string
      *
-     * @param inString
+     * @param inString an ASCII string, or any string in UTF-8 mode
      * @return byte array
+     * @throws IllegalArgumentException if the string is not ASCII and this is not in UTF-8 mode
      */
     public byte[] compress(String inString) {
-        confirmOnlyAscii(inString);
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            int maxLength = getMaxCompressedLength(inString);
+            byte[] destination = maxLength > SCRATCH_LIMIT ? new byte[maxLength] : context.getSmazDestination(maxLength);
+            return Arrays.copyOf(destination, compress(inString, context, destination, 0));
+        }
+    }
 
-        StringBuilder verb = new StringBuilder();
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
+    /**
+     * @return the most bytes {@link #compress(String)} can write for the string
+     */
+    int getMaxCompressedLength(String string) {
+        // A char takes at most 3 bytes in UTF-8, a surrogate pair 4
+        return maxCompressedLength(utf8 ? Math.multiplyExact(string.length(), 3) : string.length());
+    }
 
-        CharBuffer charBuffer = CharBuffer.wrap(inString);
-        int inlen;
+    /**
+     * Compresses a string into dst, using context's source array for its bytes.
+     *
+     * @return the number of bytes written
+     */
+    int compress(String string, CodecContext context, byte[] dst, int dstOff) {
+        int length = string.length();
+        int maxLength = utf8 ? length * 3 : length;
+        byte[] source = maxLength > SCRATCH_LIMIT ? new byte[maxLength] : context.getSmazSource(maxLength);
+        if (utf8) {
+            length = encodeUtf8(string, source);
+        } else {
+            for (int i = 0; i < length; i++) {
+                char c = string.charAt(i);
+                if (c > 127) {
+                    throw new IllegalArgumentException("Only ASCII can be smazed at this time");
+                }
+                source[i] = (byte) c;
+            }
+        }
+        return compress(source, 0, length, dst, dstOff, dst.length);
+    }
 
-        // loop through input looking for matches in codebook
-        while ((inlen = charBuffer.remaining()) > 0) {
-            int h1, h2, h3;
-            charBuffer.mark();
-            h1 = h2 = charBuffer.get() << 3;
-            if (inlen > 1) h2 += charBuffer.get();
-            if (inlen > 2) {
-                h3 = h2 ^ charBuffer.get();
+    /**
+     * Encodes like {@link String#getBytes(java.nio.charset.Charset)} with UTF-8 does, including replacing unpaired
+     * surrogates with '?', but into an existing array.
+     *
+     * @return the number of bytes written
+     */
+    private static int encodeUtf8(String string, byte[] bytes) {
+        int length = string.length();
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[out++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[out++] = (byte) (0xC0 | c >> 6);
+                bytes[out++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                    bytes[out++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[out++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[out++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[out++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    bytes[out++] = '?';
+                }
             } else {
-                h3 = 0;
+                bytes[out++] = (byte) (0xE0 | c >> 12);
+                bytes[out++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[out++] = (byte) (0x80 | c & 0x3F);
             }
-            charBuffer.reset();
+        }
+        return out;
+    }
 
-            int j = 7;
-            if (j > inlen) j = inlen;
+    /**
+     * Compresses bytes into a caller supplied array without allocating.
+     *
+     * @param src    the input
+     * @param srcOff where the input starts
+     * @param srcLen the number of input bytes
+     * @param dst    receives the compressed bytes
+     * @param dstOff where to start writing
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the built in codebook is used in ASCII mode and the input is not ASCII
+     * @throws BufferOverflowException  if dst is too small, see {@link #maxCompressedLength(int)}
+     */
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        Objects.checkFromIndexSize(srcOff, srcLen, src.length);
+        Objects.checkFromToIndex(dstOff, dst.length, dst.length);
+        return compress(src, srcOff, srcLen, dst, dstOff, dst.length);
+    }
 
-            boolean found = false;
+    private int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstEnd) {
+        long start = MetricsController.start();
+        int written;
+        try {
+            written = encode(src, srcOff, srcLen, dst, dstOff, dstEnd);
+        } catch (RuntimeException e) {
+            MetricsController.recordFailure(CompressionMethodEnum.SMAZ, true, e);
+            throw e;
+        }
+        MetricsController.recordCompress(CompressionMethodEnum.SMAZ, srcLen, written, start);
+        return written;
+    }
 
+    private int encode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstEnd) {
+        int end = srcOff + srcLen;
+        for (int i = srcOff; tables.asciiOnly && !utf8 && i < end; i++) {
+            if (src[i] < 0) {
+                throw new IllegalArgumentException("Only ASCII can be smazed at this time");
+            }
+        }
+        // The built in codebook can match across its code bytes, which are not ASCII, so in UTF-8 mode only runs of
+        // ASCII input are looked up in it
+        boolean asciiMatches = tables.asciiOnly && utf8;
+        int ascii = MAX_MATCH;
+        int position = srcOff;
+        int out = dstOff;
+        int verbatim = 0;
+        int remaining;
+        while ((remaining = end - position) > 0) {
+            if (asciiMatches) {
+                ascii = countAscii(src, position, end);
+            }
+            int h1, h2, h3;
+            h1 = h2 = (src[position] & 0xFF) << 3;
+            if (remaining > 1) {
+                h2 += src[position + 1] & 0xFF;
+            }
+            h3 = remaining > 2 ? h2 ^ (src[position + 2] & 0xFF) : 0;
 
-            /* Try to lookup substrings into the codebook, starting from the
-             * longer to the shorter substrings */
-            for (; j > 0; j--) {
-                CharBuffer slot;
-                if (j == 1) {
-                    slot = CharBuffer.wrap(CODEBOOK[h1 % 241]);
-                } else if (j == 2) {
-                    slot = CharBuffer.wrap(CODEBOOK[h2 % 241]);
-                } else {
-                    slot = CharBuffer.wrap(CODEBOOK[h3 % 241]);
+            // Try the longer substrings first. Like the original port this keeps trying shorter ones after a match,
+            // against the input that follows it but with the hashes of the input before it.
+            boolean found = false;
+            for (int length = Math.min(MAX_MATCH, remaining); length > 0; length--) {
+                if (remaining < length || ascii < length) {
+                    continue;
                 }
-
-                int slotLength = slot.length();
-                int slotIndex = 0;
-                int slotEndIndex = slotIndex + j + 1;
-                while (slotLength > 0 && slotEndIndex <= slotLength) {
-                    if (slot.get(slotIndex) == j && inlen >= j &&
-                        slot.subSequence(slotIndex + 1, slotEndIndex).toString()
-                            .equals(charBuffer.subSequence(0, j).toString())) {
-                        // Match found in codebook
-                        // Add verbatim data if needed
-                        if (verb.length() > 0) {
-                            // output the verbatim data now
-                            outputVerb(output, verb.toString());
-                            verb.setLength(0);
-                        }
-
-                        // Add encoded data and ditch unnecessary part of input string
-                        output.write(slot.get(slot.get(slotIndex) + 1 + slotIndex));
-                        charBuffer.position(charBuffer.position() + j);
-                        inlen -= j;
-                        found = true;
-                        break;
-                    } else {
-                        slotIndex++;
-                        slotEndIndex = slotIndex + j + 1;
+                int slot = (length == 1 ? h1 : length == 2 ? h2 : h3) % SLOT_COUNT;
+                int candidate = findCandidate(slot, length, src, position);
+                if (candidate >= 0) {
+                    if (verbatim > 0) {
+                        out = putVerbatim(src, position - verbatim, verbatim, dst, out, dstEnd);
+                        verbatim = 0;
+                    }
+                    if (out == dstEnd) {
+                        throw new BufferOverflowException();
+                    }
+                    dst[out++] = tables.codes[candidate];
+                    position += length;
+                    remaining -= length;
+                    found = true;
+                    if (asciiMatches) {
+                        ascii = countAscii(src, position, end);
                     }
                 }
             }
 
-            // match not found, add to verbatim
             if (!found) {
-                if (inlen > 0) {
-                    inlen--;
-                    verb.append(charBuffer.subSequence(0, 1).toString());
-                }
-                charBuffer.position(charBuffer.position() + 1);
+                verbatim++;
+                position++;
+                remaining--;
             }
-
-            // If the verbatim buffer is getting too long or we're at the end of the doc
-            // throw the verbatim buffer to the output queue
-            int verbLength = verb.length();
-            if (verbLength == 256 || verbLength > 0 && inlen == 0) {
-                outputVerb(output, verb.toString());
-                verb.setLength(0);
+            if (verbatim == MAX_VERBATIM || verbatim > 0 && remaining == 0) {
+                out = putVerbatim(src, position - verbatim, verbatim, dst, out, dstEnd);
+                verbatim = 0;
             }
+        }
+        return out - dstOff;
+    }
 
+    /**
+     * @return how many of the next bytes, up to the longest match, are ASCII
+     */
+    private static int countAscii(byte[] src, int position, int end) {
+        int limit = Math.min(end, position + MAX_MATCH);
+        int i = position;
+        while (i < limit && src[i] >= 0) {
+            i++;
         }
-        return output.toByteArray();
+        return i - position;
     }
 
     /**
-     * Outputs the verbatim string to the output stream
-     *
-     * @param baos
-     * @param str
+     * @return the index of the candidate that matches the input, or -1 if none does
      */
-    private void outputVerb(ByteArrayOutputStream baos, String str) {
-        if (str.length() == 1) {
-            baos.write(254);
-            baos.write(str.toCharArray()[0]);
-        } else {
-            baos.write(255);
-            baos.write(str.length());
-            try {
-                baos.write(str.getBytes());
-            } catch (IOException ignored) {
+    private int findCandidate(int slot, int length, byte[] src, int position) {
+        int key = slot * (MAX_MATCH + 1) + length;
+        for (int c = tables.candidateOffsets[key]; c < tables.candidateOffsets[key + 1]; c++) {
+            int start = tables.candidates[c];
+            int i = 0;
+            while (i < length && tables.match[start + i] == src[position + i]) {
+                i++;
+            }
+            if (i == length) {
+                return c;
             }
         }
+        return -1;
     }
 
-    private void confirmOnlyAscii(String input) {
-        char[] chars = input.toCharArray();
-        for (char c : chars) {
-            if (c > 127) throw new IllegalArgumentException("Only ASCII can be smazed at this time");
+    /**
+     * Writes a verbatim run. A run of 256 bytes writes 0 as its length, which {@link #decompress(byte[])} reads back
+     * as 256.
+     */
+    private static int putVerbatim(byte[] src, int offset, int length, byte[] dst, int out, int end) {
+        int needed = length == 1 ? 2 : length + 2;
+        if (end - out < needed) {
+            throw new BufferOverflowException();
+        }
+        if (length == 1) {
+            dst[out++] = (byte) VERBATIM_BYTE;
+            dst[out++] = src[offset];
+        } else {
+            dst[out++] = (byte) VERBATIM_RUN;
+            dst[out++] = (byte) length;
+            System.arraycopy(src, offset, dst, out, length);
+            out += length;
+        }
+        return out;
+    }
+
+    /**
+     * Compresses the remaining bytes of src into dst, advancing both positions. Heap buffers are compressed in place,
+     * direct buffers are copied through pooled arrays.
+     *
+     * @param src the input
+     * @param dst receives the compressed bytes
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the built in codebook is used in ASCII mode and the input is not ASCII
+     * @throws BufferOverflowException  if dst is too small, in which case neither position moves
+     */
+    public int compress(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        if (src.hasArray() && dst.hasArray()) {
+            int dstOff = dst.arrayOffset() + dst.position();
+            int written = compress(src.array(), src.arrayOffset() + src.position(), length, dst.array(), dstOff, dstOff + dst.remaining());
+            src.position(src.limit());
+            dst.position(dst.position() + written);
+            return written;
+        }
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            byte[] source = length > SCRATCH_LIMIT ? new byte[length] : context.getSmazSource(length);
+            src.get(src.position(), source, 0, length);
+            int maxLength = Math.min(maxCompressedLength(length), dst.remaining());
+            byte[] destination = maxLength > SCRATCH_LIMIT ? new byte[maxLength] : context.getSmazDestination(maxLength);
+            int written = compress(source, 0, length, destination, 0, maxLength);
+            dst.put(destination, 0, written);
+            src.position(src.limit());
+            return written;
         }
     }
 
     /**
      * Decompress byte array from compress back into String
      *
-     * @param strBytes
+     * @param strBytes the compressed bytes
      * @return decompressed String
+     * @throws IllegalArgumentException if the data is truncated or uses a code the codebook does not have
      * @see Smaz#compress(String)
      */
     public String decompress(byte[] strBytes) {
-        StringBuilder out = new StringBuilder();
-        for (int i = 0; i < strBytes.length; i++) {
-            char b = (char) (0xFF & strBytes[i]);
-            if (b == 254) {
-                out.append((char) strBytes[++i]);
-            } else if (b == 255) {
-                byte length = strBytes[++i];
-                for (int j = 1; j <= length; j++) {
-                    out.append((char) strBytes[i + j]);
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            return decompress(strBytes, 0, strBytes.length, context);
+        }
+    }
+
+    /**
+     * Decompresses part of src into a string, using context's destination array for its bytes.
+     */
+    String decompress(byte[] src, int srcOff, int srcLen, CodecContext context) {
+        int length = getDecompressedLength(src, srcOff, srcLen);
+        byte[] destination = length > SCRATCH_LIMIT ? new byte[length] : context.getSmazDestination(length);
+        decompress(src, srcOff, srcLen, destination, 0, length);
+        return new String(destination, 0, length, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Works out how many bytes data decompresses to without decompressing it.
+     *
+     * @param src    the compressed bytes
+     * @param srcOff where they start
+     * @param srcLen how many there are
+     * @return the decompressed length
+     * @throws IllegalArgumentException if the data is truncated or uses a code the codebook does not have
+     */
+    public int getDecompressedLength(byte[] src, int srcOff, int srcLen) {
+        Objects.checkFromIndexSize(srcOff, srcLen, src.length);
+        int end = srcOff + srcLen;
+        long length = 0;
+        int i = srcOff;
+        while (i < end) {
+            int code = src[i++] & 0xFF;
+            if (code == VERBATIM_BYTE) {
+                length++;
+                i++;
+            } else if (code == VERBATIM_RUN) {
+                if (i == end) {
+                    throw new IllegalArgumentException("Truncated Smaz data");
                 }
-                i += length;
+                int run = getRunLength(src[i++]);
+                length += run;
+                i += run;
             } else {
-                int loc = (0xFF & b);
-                out.append(REVERSE_CODEBOOK[loc]);
+                checkCode(code);
+                length += tables.reverseOffsets[code + 1] - tables.reverseOffsets[code];
+            }
+        }
+        if (i > end) {
+            throw new IllegalArgumentException("Truncated Smaz data");
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Decompressed data is too large for an array: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Decompresses into a caller supplied array without allocating.
+     *
+     * @param src    the compressed bytes
+     * @param srcOff where they start
+     * @param srcLen how many there are
+     * @param dst    receives the decompressed bytes
+     * @param dstOff where to start writing
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the data is truncated or uses a code the codebook does not have
+     * @throws BufferOverflowException  if dst is too small, see {@link #getDecompressedLength(byte[], int, int)}
+     */
+    public int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        Objects.checkFromIndexSize(srcOff, srcLen, src.length);
+        Objects.checkFromToIndex(dstOff, dst.length, dst.length);
+        return decompress(src, srcOff, srcLen, dst, dstOff, dst.length);
+    }
+
+    private int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstEnd) {
+        long start = MetricsController.start();
+        int written;
+        try {
+            written = decode(src, srcOff, srcLen, dst, dstOff, dstEnd);
+        } catch (RuntimeException e) {
+            MetricsController.recordFailure(CompressionMethodEnum.SMAZ, false, e);
+            throw e;
+        }
+        MetricsController.recordDecompress(CompressionMethodEnum.SMAZ, srcLen, written, start);
+        return written;
+    }
+
+    private int decode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstEnd) {
+        int end = srcOff + srcLen;
+        int out = dstOff;
+        int i = srcOff;
+        while (i < end) {
+            int code = src[i++] & 0xFF;
+            int offset;
+            int length;
+            byte[] from;
+            if (code == VERBATIM_BYTE) {
+                from = src;
+                offset = i;
+                length = 1;
+            } else if (code == VERBATIM_RUN) {
+                if (i == end) {
+                    throw new IllegalArgumentException("Truncated Smaz data");
+                }
+                length = getRunLength(src[i++]);
+                from = src;
+                offset = i;
+            } else {
+                checkCode(code);
+                from = tables.reverse;
+                offset = tables.reverseOffsets[code];
+                length = tables.reverseOffsets[code + 1] - offset;
+            }
+            if (from == src) {
+                if (end - i < length) {
+                    throw new IllegalArgumentException("Truncated Smaz data");
+                }
+                i += length;
+            }
+            if (dstEnd - out < length) {
+                throw new BufferOverflowException();
             }
+            System.arraycopy(from, offset, dst, out, length);
+            out += length;
+        }
+        return out - dstOff;
+    }
+
+    private void checkCode(int code) {
+        if (code >= tables.reverseOffsets.length - 1) {
+            throw new IllegalArgumentException("Unknown Smaz code: " + code);
+        }
+    }
+
+    /**
+     * Reads the length of a verbatim run as unsigned, with 0 standing for a full run of 256 bytes.
+     */
+    private static int getRunLength(byte length) {
+        return length == 0 ? MAX_VERBATIM : length & 0xFF;
+    }
+
+    /**
+     * Decompresses the remaining bytes of src into dst, advancing both positions. Heap buffers are decompressed in
+     * place, direct buffers are copied through pooled arrays.
+     *
+     * @param src the compressed bytes
+     * @param dst receives the decompressed bytes
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the data is truncated or uses a code the codebook does not have
+     * @throws BufferOverflowException  if dst is too small, in which case neither position moves
+     */
+    public int decompress(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        if (src.hasArray() && dst.hasArray()) {
+            int dstOff = dst.arrayOffset() + dst.position();
+            int written = decompress(src.array(), src.arrayOffset() + src.position(), length, dst.array(), dstOff, dstOff + dst.remaining());
+            src.position(src.limit());
+            dst.position(dst.position() + written);
+            return written;
+        }
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            byte[] source = length > SCRATCH_LIMIT ? new byte[length] : context.getSmazSource(length);
+            src.get(src.position(), source, 0, length);
+            int decompressedLength = getDecompressedLength(source, 0, length);
+            if (decompressedLength > dst.remaining()) {
+                throw new BufferOverflowException();
+            }
+            byte[] destination = decompressedLength > SCRATCH_LIMIT ? new byte[decompressedLength] : context.getSmazDestination(decompressedLength);
+            int written = decompress(source, 0, length, destination, 0, decompressedLength);
+            dst.put(destination, 0, written);
+            src.position(src.limit());
+            return written;
+        }
+    }
+
+    /**
+     * The lookup tables for one codebook. Candidates are grouped by slot and match length, each pointing at the bytes
+     * it matches in match and paired with its code.
+     */
+    private static final class Tables {
+        private final byte[] match;
+        private final int[] candidates;
+        private final byte[] codes;
+        private final int[] candidateOffsets;
+        private final byte[] reverse;
+        private final int[] reverseOffsets;
+        private final boolean asciiOnly;
+
+        private Tables(byte[] match, int[] candidates, byte[] codes, int[] candidateOffsets, byte[] reverse,
+                       int[] reverseOffsets, boolean asciiOnly) {
+            this.match = match;
+            this.candidates = candidates;
+            this.codes = codes;
+            this.candidateOffsets = candidateOffsets;
+            this.reverse = reverse;
+            this.reverseOffsets = reverseOffsets;
+            this.asciiOnly = asciiOnly;
         }
-        return out.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,452 @@
 package tech.tresearchgroup.libraries.compression.controller;
 
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.SmazBatch;
+import tech.tresearchgroup.libraries.compression.model.SmazCodebook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class StringCompressionController {
+    private static final int TRAINING_LIMIT = 1024 * 1024;
+    private static final int TRAINING_ROUNDS = 6;
+    private static final int FIRST_REPLACEMENTS = 64;
+    private static final Map<SmazCodebook, Smaz> CODEBOOKS = new ConcurrentHashMap<>();
+    private static final Smaz DEFAULT_SMAZ = new Smaz();
+    private static final Smaz UTF8_SMAZ = new Smaz(true);
+
     public static byte[] smazCompress(String compressThis) {
-        Smaz smaz = new Smaz();
-        return smaz.compress(compressThis);
+        return DEFAULT_SMAZ.compress(compressThis);
+    }
+
+    /**
+     * Compresses an ASCII string with a trained codebook. The codebook's lookup tables are built on first use and
+     * kept, so this suits a handful of long lived codebooks. Use a {@link Smaz} instance directly for anything else.
+     *
+     * @param compressThis the string to compress
+     * @param codebook     the codebook to compress with
+     * @return the compressed bytes
+     * @throws IllegalArgumentException if the string is not ASCII
+     */
+    public static byte[] smazCompress(String compressThis, SmazCodebook codebook) {
+        return getSmaz(codebook).compress(compressThis);
+    }
+
+    public static String smazDecompress(byte[] data) {
+        return DEFAULT_SMAZ.decompress(data);
+    }
+
+    /**
+     * Compresses any string with the built in codebook, in one pass over its UTF-8 bytes. ASCII strings give the same
+     * bytes as {@link #smazCompress(String)}.
+     *
+     * @param compressThis the string to compress
+     * @return the compressed bytes
+     */
+    public static byte[] smazCompressUtf8(String compressThis) {
+        return UTF8_SMAZ.compress(compressThis);
+    }
+
+    /**
+     * Decompresses a string compressed by {@link #smazCompressUtf8(String)} or {@link #smazCompress(String)}.
+     *
+     * @param data the compressed bytes
+     * @return the string
+     * @throws IllegalArgumentException if the data is truncated
+     */
+    public static String smazDecompressUtf8(byte[] data) {
+        return UTF8_SMAZ.decompress(data);
+    }
+
+    /**
+     * Decompresses a string compressed with a trained codebook.
+     *
+     * @param data     the compressed bytes
+     * @param codebook the codebook they were compressed with
+     * @return the string
+     * @throws IllegalArgumentException if the data is truncated or uses a code the codebook does not have
+     */
+    public static String smazDecompress(byte[] data, SmazCodebook codebook) {
+        return getSmaz(codebook).decompress(data);
+    }
+
+    private static Smaz getSmaz(SmazCodebook codebook) {
+        return codebook == null ? DEFAULT_SMAZ : CODEBOOKS.computeIfAbsent(codebook, Smaz::new);
+    }
+
+    public static SmazBatch compressAll(String[] strings) {
+        return compressAll(Arrays.asList(strings), null);
+    }
+
+    public static SmazBatch compressAll(List<String> strings) {
+        return compressAll(strings, null);
+    }
+
+    /**
+     * Compresses ASCII strings into one packed {@link SmazBatch} instead of an array per string.
+     *
+     * @param strings  the strings to compress
+     * @param codebook the codebook to compress with, or null for the built in one
+     * @return the packed strings, in the same order
+     * @throws IllegalArgumentException if a string is not ASCII
+     */
+    public static SmazBatch compressAll(List<String> strings, SmazCodebook codebook) {
+        PackedChunk chunk = compressRange(getSmaz(codebook), strings, 0, strings.size());
+        return toBatch(codebook, strings.size(), List.of(chunk));
+    }
+
+    /**
+     * Compresses ASCII strings into one packed {@link SmazBatch}, splitting them into runs of about chunkSize
+     * characters that are compressed on the executor.
+     *
+     * @param strings  the strings to compress
+     * @param codebook the codebook to compress with, or null for the built in one
+     * @param parallel the executor and how many characters each task compresses
+     * @return the packed strings, in the same order
+     * @throws IllegalArgumentException if a string is not ASCII
+     */
+    public static SmazBatch compressAll(List<String> strings, SmazCodebook codebook, ParallelCompressionOptions parallel) {
+        Smaz smaz = getSmaz(codebook);
+        List<CompletableFuture<PackedChunk>> futures = new ArrayList<>();
+        int from = 0;
+        while (from < strings.size()) {
+            int start = from;
+            long characters = 0;
+            while (from < strings.size() && (from == start || characters < parallel.getChunkSize())) {
+                characters += strings.get(from++).length();
+            }
+            int end = from;
+            futures.add(CompletableFuture.supplyAsync(() -> compressRange(smaz, strings, start, end), parallel.getExecutor()));
+        }
+        List<PackedChunk> chunks = new ArrayList<>(futures.size());
+        for (CompletableFuture<PackedChunk> future : futures) {
+            chunks.add(join(future));
+        }
+        return toBatch(codebook, strings.size(), chunks);
+    }
+
+    public static String[] decompressAll(SmazBatch batch) {
+        return decompressAll(batch, null);
+    }
+
+    /**
+     * Decompresses every string in a batch.
+     *
+     * @param batch    the packed strings
+     * @param codebook the codebook they were compressed with, or null for the built in one
+     * @return the strings, in order
+     * @throws IllegalArgumentException if the codebook is not the one the batch was compressed with
+     */
+    public static String[] decompressAll(SmazBatch batch, SmazCodebook codebook) {
+        String[] strings = new String[batch.size()];
+        decompressRange(getSmaz(checkCodebook(batch, codebook)), batch, 0, batch.size(), strings);
+        return strings;
+    }
+
+    /**
+     * Decompresses every string in a batch, splitting them into runs of about chunkSize compressed bytes that are
+     * decompressed on the executor.
+     *
+     * @param batch    the packed strings
+     * @param codebook the codebook they were compressed with, or null for the built in one
+     * @param parallel the executor and how many compressed bytes each task decompresses
+     * @return the strings, in order
+     * @throws IllegalArgumentException if the codebook is not the one the batch was compressed with
+     */
+    public static String[] decompressAll(SmazBatch batch, SmazCodebook codebook, ParallelCompressionOptions parallel) {
+        Smaz smaz = getSmaz(checkCodebook(batch, codebook));
+        String[] strings = new String[batch.size()];
+        int[] offsets = batch.getOffsets();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        int from = 0;
+        while (from < batch.size()) {
+            int start = from;
+            while (from < batch.size() && (from == start || offsets[from] - offsets[start] < parallel.getChunkSize())) {
+                from++;
+            }
+            int end = from;
+            futures.add(CompletableFuture.runAsync(() -> decompressRange(smaz, batch, start, end, strings), parallel.getExecutor()));
+        }
+        for (CompletableFuture<Void> future : futures) {
+            join(future);
+        }
+        return strings;
+    }
+
+    public static String get(SmazBatch batch, int index) {
+        return get(batch, index, null);
+    }
+
+    /**
+     * Decompresses one string from a batch without touching the others.
+     *
+     * @param batch    the packed strings
+     * @param index    which string to decompress
+     * @param codebook the codebook they were compressed with, or null for the built in one
+     * @return the string
+     * @throws IllegalArgumentException if the codebook is not the one the batch was compressed with
+     */
+    public static String get(SmazBatch batch, int index, SmazCodebook codebook) {
+        Objects.checkIndex(index, batch.size());
+        Smaz smaz = getSmaz(checkCodebook(batch, codebook));
+        int[] offsets = batch.getOffsets();
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            return smaz.decompress(batch.getData(), offsets[index], offsets[index + 1] - offsets[index], context);
+        }
+    }
+
+    private static SmazCodebook checkCodebook(SmazBatch batch, SmazCodebook codebook) {
+        int version = codebook == null ? 0 : codebook.getVersion();
+        if (batch.getCodebookVersion() != version) {
+            throw new IllegalArgumentException("Batch was compressed with codebook version " + batch.getCodebookVersion() + ", not " + version);
+        }
+        return codebook;
+    }
+
+    private static PackedChunk compressRange(Smaz smaz, List<String> strings, int from, int to) {
+        long characters = 0;
+        for (int i = from; i < to; i++) {
+            characters += strings.get(i).length();
+        }
+        byte[] data = new byte[(int) Math.min(Math.max(characters, 16), Integer.MAX_VALUE - 8)];
+        int[] ends = new int[to - from];
+        int size = 0;
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            for (int i = from; i < to; i++) {
+                String string = strings.get(i);
+                int maxLength = smaz.getMaxCompressedLength(string);
+                if (data.length - size < maxLength) {
+                    data = Arrays.copyOf(data, (int) Math.min(Math.max((long) data.length * 2, (long) size + maxLength), Integer.MAX_VALUE - 8));
+                }
+                size += smaz.compress(string, context, data, size);
+                ends[i - from] = size;
+            }
+        }
+        return new PackedChunk(data, ends);
+    }
+
+    private static void decompressRange(Smaz smaz, SmazBatch batch, int from, int to, String[] strings) {
+        int[] offsets = batch.getOffsets();
+        try (CodecContext context = CodecContextPool.getDefault().acquire()) {
+            for (int i = from; i < to; i++) {
+                strings[i] = smaz.decompress(batch.getData(), offsets[i], offsets[i + 1] - offsets[i], context);
+            }
+        }
+    }
+
+    private static SmazBatch toBatch(SmazCodebook codebook, int count, List<PackedChunk> chunks) {
+        long total = 0;
+        for (PackedChunk chunk : chunks) {
+            total += chunk.size();
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Compressed strings are too large for one batch: " + total);
+        }
+        byte[] data = new byte[(int) total];
+        int[] offsets = new int[count + 1];
+        int size = 0;
+        int index = 1;
+        for (PackedChunk chunk : chunks) {
+            System.arraycopy(chunk.data, 0, data, size, chunk.size());
+            for (int end : chunk.ends) {
+                offsets[index++] = size + end;
+            }
+            size += chunk.size();
+        }
+        return new SmazBatch(codebook == null ? 0 : codebook.getVersion(), data, offsets);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Strings compressed back to back by one task, with where each of them ends.
+     */
+    private static class PackedChunk {
+        private final byte[] data;
+        private final int[] ends;
+
+        PackedChunk(byte[] data, int[] ends) {
+            this.data = data;
+            this.ends = ends;
+        }
+
+        int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+    }
+
+    /**
+     * Trains a Smaz codebook for strings like the samples, such as identifiers, log keys or URLs. Every substring of 1
+     * to 7 bytes that occurs more than once is ranked by how many bytes it would save, and the best 254 become the
+     * first codebook. Each round then compresses the samples, replaces the entries that saved the least with the next
+     * best substrings, and the codebook that compressed the samples smallest is kept. Only the first 1 MB of samples
+     * is used.
+     *
+     * @param samples representative strings, ideally thousands of them
+     * @param version the version of the codebook, see {@link SmazCodebook}
+     * @return the trained codebook
+     * @throws IllegalArgumentException if the samples are empty
+     */
+    public static SmazCodebook trainCodebook(Collection<byte[]> samples, int version) {
+        List<byte[]> corpus = new ArrayList<>();
+        int total = 0;
+        for (byte[] sample : samples) {
+            if (total + sample.length > TRAINING_LIMIT) {
+                break;
+            }
+            if (sample.length > 0) {
+                corpus.add(sample);
+                total += sample.length;
+            }
+        }
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("No samples to train on");
+        }
+
+        List<Long> ranked = rankSubstrings(corpus);
+        List<Long> entries = new ArrayList<>(ranked.subList(0, Math.min(SmazCodebook.MAX_ENTRIES, ranked.size())));
+        int next = entries.size();
+        SmazCodebook best = null;
+        long bestSize = Long.MAX_VALUE;
+        int replacements = FIRST_REPLACEMENTS;
+        byte[] scratch = new byte[Smaz.maxCompressedLength(getLongest(corpus))];
+        for (int round = 0; round < TRAINING_ROUNDS; round++) {
+            SmazCodebook codebook = toCodebook(entries, version);
+            Smaz smaz = new Smaz(codebook);
+            long[] uses = new long[codebook.size()];
+            long size = 0;
+            for (byte[] sample : corpus) {
+                int written = smaz.compress(sample, 0, sample.length, scratch, 0);
+                countCodes(scratch, written, uses);
+                size += written;
+            }
+            if (size < bestSize) {
+                best = codebook;
+                bestSize = size;
+            }
+            if (next == ranked.size() || replacements == 0) {
+                break;
+            }
+
+            // Swap the entries that saved the least for the best substrings not tried yet
+            List<Integer> order = new ArrayList<>();
+            for (int code = 0; code < entries.size(); code++) {
+                order.add(code);
+            }
+            order.sort((a, b) -> Long.compare(getSaving(entries.get(a), uses[a]), getSaving(entries.get(b), uses[b])));
+            for (int i = 0; i < replacements && next < ranked.size(); i++) {
+                entries.set(order.get(i), ranked.get(next++));
+            }
+            replacements /= 2;
+        }
+        return best;
+    }
+
+    /**
+     * @return every substring that occurs more than once, packed by {@link #pack}, most valuable first
+     */
+    private static List<Long> rankSubstrings(List<byte[]> corpus) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (byte[] sample : corpus) {
+            for (int i = 0; i < sample.length; i++) {
+                for (int length = 1; length <= SmazCodebook.MAX_ENTRY_LENGTH && i + length <= sample.length; length++) {
+                    counts.merge(pack(sample, i, length), 1, Integer::sum);
+                }
+            }
+        }
+        List<Long> ranked = new ArrayList<>();
+        Map<Long, Long> savings = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1 || getLength(entry.getKey()) == 1) {
+                ranked.add(entry.getKey());
+                savings.put(entry.getKey(), getSaving(entry.getKey(), entry.getValue()));
+            }
+        }
+        ranked.sort((a, b) -> {
+            int compare = Long.compare(savings.get(b), savings.get(a));
+            return compare != 0 ? compare : Long.compare(a, b);
+        });
+        return ranked;
+    }
+
+    /**
+     * A code saves the bytes it stands for less the code itself. Single bytes save half a byte on average by not
+     * starting or lengthening a verbatim run.
+     */
+    private static long getSaving(long substring, long uses) {
+        int length = getLength(substring);
+        return length == 1 ? uses / 2 : uses * (length - 1);
+    }
+
+    private static void countCodes(byte[] compressed, int length, long[] uses) {
+        int i = 0;
+        while (i < length) {
+            int code = compressed[i++] & 0xFF;
+            if (code == 254) {
+                i++;
+            } else if (code == 255) {
+                int run = compressed[i++] & 0xFF;
+                i += run == 0 ? 256 : run;
+            } else {
+                uses[code]++;
+            }
+        }
+    }
+
+    private static int getLongest(List<byte[]> corpus) {
+        int longest = 0;
+        for (byte[] sample : corpus) {
+            longest = Math.max(longest, sample.length);
+        }
+        return longest;
+    }
+
+    private static SmazCodebook toCodebook(List<Long> entries, int version) {
+        List<byte[]> bytes = new ArrayList<>(entries.size());
+        for (long entry : entries) {
+            bytes.add(unpack(entry));
+        }
+        return new SmazCodebook(version, bytes);
+    }
+
+    /**
+     * Packs up to 7 bytes and their length into a long, so substrings can be counted without copying them.
+     */
+    private static long pack(byte[] bytes, int offset, int length) {
+        long packed = length;
+        for (int i = 0; i < length; i++) {
+            packed = packed << 8 | (bytes[offset + i] & 0xFF);
+        }
+        return packed << (SmazCodebook.MAX_ENTRY_LENGTH - length) * 8;
+    }
+
+    private static int getLength(long packed) {
+        return (int) (packed >>> SmazCodebook.MAX_ENTRY_LENGTH * 8);
+    }
+
+    private static byte[] unpack(long packed) {
+        int length = getLength(packed);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (packed >>> (SmazCodebook.MAX_ENTRY_LENGTH - 1 - i) * 8);
+        }
+        return bytes;
     }
 }
@@ -0,0 +1,248 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.TranscodeOptions;
+import tech.tresearchgroup.libraries.compression.model.TranscodeResult;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts compressed data from one codec to another without ever holding it all. A decoding thread decompresses the
+ * input into a small set of buffers (see {@link TranscodeOptions}) while the calling thread compresses from them, so
+ * both codecs run at once and memory use does not depend on the size of the data.
+ *
+ * <p>Decoding threads come from a pool of their own rather than an executor the caller passes, so a directory
+ * transcode on a bounded executor can never deadlock waiting for its own decoders.
+ */
+public class TranscodeController {
+    private static final ExecutorService DECODERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "transcode-decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static long transcode(InputStream in, CompressionMethodEnum from, OutputStream out, CompressionMethodEnum to) throws IOException {
+        return transcode(in, from, out, to, new CompressionOptions(), new TranscodeOptions());
+    }
+
+    public static long transcode(InputStream in, CompressionMethodEnum from, OutputStream out, CompressionMethodEnum to,
+                                 CompressionOptions options) throws IOException {
+        return transcode(in, from, out, to, options, new TranscodeOptions());
+    }
+
+    /**
+     * Decompresses in with one codec and compresses the result into out with another. Neither stream is closed.
+     *
+     * @param in        the compressed input
+     * @param from      the codec in was compressed with
+     * @param out       receives the output compressed with the new codec
+     * @param to        the codec to compress with
+     * @param options   the level, window and block size to compress with
+     * @param transcode the size and number of buffers between the two codecs
+     * @return the number of decompressed bytes passed from one codec to the other
+     * @throws IOException          if reading, writing, decompressing or compressing fails
+     * @throws UnsatisfiedLinkError if either codec's native library is not available
+     */
+    public static long transcode(InputStream in, CompressionMethodEnum from, OutputStream out, CompressionMethodEnum to,
+                                 CompressionOptions options, TranscodeOptions transcode) throws IOException {
+        CodecRegistry.ensureAvailable(from);
+        CodecRegistry.ensureAvailable(to);
+        ChunkPipe pipe = new ChunkPipe(transcode.getBufferSize(), transcode.getBufferCount());
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<Void> decoded = new CompletableFuture<>();
+        Future<?> decoder = DECODERS.submit(() -> {
+            if (!started.compareAndSet(false, true)) {
+                // The encoder failed before this started
+                return;
+            }
+            try {
+                ByteCompressionController.decompress(in, pipe.getSink(), from);
+                pipe.getSink().close();
+                decoded.complete(null);
+            } catch (Throwable t) {
+                decoded.completeExceptionally(t);
+                try {
+                    pipe.fail(t);
+                } catch (InterruptedIOException e) {
+                    // The encoder has given up and nobody is left to tell
+                }
+            }
+        });
+        try {
+            return ByteCompressionController.compress(pipe.getSource(), out, to, options);
+        } catch (IOException | RuntimeException | Error e) {
+            // Unblocks the decoder if it is waiting for a buffer the encoder will never give back
+            decoder.cancel(true);
+            if (!started.compareAndSet(false, true)) {
+                // The decoder may still be reading the caller's stream, so wait for it, interrupted or not
+                try {
+                    decoded.join();
+                } catch (CompletionException decodeError) {
+                    Throwable cause = decodeError.getCause();
+                    if (cause != e && cause != e.getCause()) {
+                        e.addSuppressed(cause);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Transcodes one file into another. The target is created or truncated, and deleted again if the call fails.
+     *
+     * @return the number of decompressed bytes passed from one codec to the other
+     * @throws IOException              if reading, writing, decompressing or compressing fails
+     * @throws IllegalArgumentException if source and target are the same file
+     * @throws UnsatisfiedLinkError     if either codec's native library is not available
+     * @see #transcode(InputStream, CompressionMethodEnum, OutputStream, CompressionMethodEnum, CompressionOptions, TranscodeOptions)
+     */
+    public static long transcodeFile(Path source, Path target, CompressionMethodEnum from, CompressionMethodEnum to,
+                                     CompressionOptions options, TranscodeOptions transcode) throws IOException {
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException("Source and target are the same file: " + source);
+        }
+        // The target is only deleted on failure once it has been opened, not when the source can't be
+        try (InputStream in = Files.newInputStream(source)) {
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), CodecContext.BUFFER_SIZE);
+            try (out) {
+                return transcode(in, from, out, to, options, transcode);
+            } catch (IOException | RuntimeException | Error e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Transcodes every file under source into the same relative path under target, up to
+     * {@link TranscodeOptions#getMaxConcurrentFiles()} at a time on {@link TranscodeOptions#getExecutor()}. A file
+     * name ending in the old codec's usual extension gets the new codec's instead, so archive.tar.gz becomes
+     * archive.tar.zst; other names get the new extension added. Files that fail are reported in the result and do not
+     * stop the others. Files that would be written to the same target, such as x and x.gz, are all reported as failed
+     * with a {@link FileAlreadyExistsException} and none of them is written, and so are files the executor rejects.
+     *
+     * @param source    the directory to read
+     * @param target    the directory to write, created if needed
+     * @param from      the codec the files were compressed with
+     * @param to        the codec to compress with
+     * @param options   the level, window and block size to compress with
+     * @param transcode the buffers for each file, the executor and how many files to transcode at once
+     * @return how many files were transcoded and which failed
+     * @throws IOException if source cannot be listed or the calling thread is interrupted
+     */
+    public static TranscodeResult transcodeDirectory(Path source, Path target, CompressionMethodEnum from, CompressionMethodEnum to,
+                                                     CompressionOptions options, TranscodeOptions transcode) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        Semaphore slots = new Semaphore(transcode.getMaxConcurrentFiles());
+        AtomicInteger transcoded = new AtomicInteger();
+        LongAdder bytes = new LongAdder();
+        Map<Path, Throwable> failures = new ConcurrentHashMap<>();
+        // Names like x and x.gz both become x.zst, so files that would overwrite each other are all failed up front
+        Map<Path, List<Path>> outputs = new LinkedHashMap<>();
+        for (Path file : files) {
+            outputs.computeIfAbsent(target.resolve(getTargetPath(source.relativize(file), from, to).toString()),
+                key -> new ArrayList<>()).add(file);
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (Map.Entry<Path, List<Path>> entry : outputs.entrySet()) {
+                Path output = entry.getKey();
+                List<Path> claimants = entry.getValue();
+                if (claimants.size() > 1) {
+                    for (Path file : claimants) {
+                        failures.put(file, new FileAlreadyExistsException(file.toString(), output.toString(),
+                            "Transcodes to the same file as " + claimants.stream().filter(other -> !other.equals(file))
+                                .map(Path::toString).collect(Collectors.joining(", "))));
+                    }
+                    continue;
+                }
+                Path file = claimants.get(0);
+                slots.acquire();
+                try {
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            Files.createDirectories(output.getParent());
+                            bytes.add(transcodeFile(file, output, from, to, options, transcode));
+                            transcoded.incrementAndGet();
+                        } catch (Throwable t) {
+                            failures.put(file, t);
+                        } finally {
+                            slots.release();
+                        }
+                    }, transcode.getExecutor()));
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    failures.put(file, e);
+                }
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transcoding " + source);
+        } catch (ExecutionException e) {
+            // Every task catches its own errors, so this is not expected
+            throw new IOException(e.getCause());
+        }
+        return new TranscodeResult(transcoded.get(), bytes.sum(), failures);
+    }
+
+    private static Path getTargetPath(Path relative, CompressionMethodEnum from, CompressionMethodEnum to) {
+        String name = relative.getFileName().toString();
+        String oldExtension = "." + getExtension(from);
+        if (name.endsWith(oldExtension) && name.length() > oldExtension.length()) {
+            name = name.substring(0, name.length() - oldExtension.length());
+        }
+        return relative.resolveSibling(name + "." + getExtension(to));
+    }
+
+    /**
+     * @return the file extension usually given to the codec's output, without the dot
+     */
+    static String getExtension(CompressionMethodEnum method) {
+        return switch (method) {
+            case BROTLI -> "br";
+            case BZIP2 -> "bz2";
+            case DEFLATE -> "zz";
+            case GZIP -> "gz";
+            case LZ4_BLOCK -> "lz4b";
+            case LZ4_FRAMED -> "lz4";
+            case LZMA -> "lzma";
+            case SNAPPY_FRAMED -> "snappy";
+            case XZ -> "xz";
+            case ZSTD -> "zst";
+            case LZO -> "lzo";
+            case SMAZ -> "smaz";
+            default -> method.name().toLowerCase();
+        };
+    }
+}
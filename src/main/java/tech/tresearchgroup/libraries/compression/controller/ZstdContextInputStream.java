@@ -0,0 +1,102 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads one or more concatenated Zstd frames through a reusable {@link ZstdDecompressCtx} instead of creating a
+ * native stream per call like {@link com.github.luben.zstd.ZstdInputStream} does.
+ */
+class ZstdContextInputStream extends InputStream {
+    private final InputStream in;
+    private final ZstdDecompressCtx ctx;
+    private final ByteBuffer source;
+    private final ByteBuffer destination;
+    private final byte[] scratch;
+    private boolean started;
+    private boolean frameDone;
+    private boolean needInput = true;
+    private boolean closed;
+
+    ZstdContextInputStream(InputStream in, CodecContext context) {
+        this(in, context, null);
+    }
+
+    /**
+     * @param dictionary the dictionary the frames were compressed with, or null if they use none
+     */
+    ZstdContextInputStream(InputStream in, CodecContext context, ZstdDictDecompress dictionary) {
+        this.in = in;
+        this.ctx = context.getZstdDecompressCtx();
+        this.source = context.getZstdDecompressSource();
+        this.destination = context.getZstdDecompressDestination();
+        this.scratch = context.getZstdDecompressScratch();
+        if (dictionary != null) {
+            ctx.loadDict(dictionary);
+        }
+        source.clear().flip();
+        destination.clear().flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (destination.hasRemaining()) {
+                int n = Math.min(len, destination.remaining());
+                destination.get(b, off, n);
+                return n;
+            }
+            if (needInput && !source.hasRemaining() && !fill()) {
+                if (frameDone || !started) {
+                    return -1;
+                }
+                throw new IOException("Truncated Zstd frame");
+            }
+            destination.clear();
+            frameDone = ctx.decompressDirectByteBufferStream(destination, source);
+            started = true;
+            destination.flip();
+            needInput = frameDone || !destination.hasRemaining();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int len = in.read(scratch, 0, scratch.length);
+        if (len == -1) {
+            return false;
+        }
+        source.clear();
+        source.put(scratch, 0, len);
+        source.flip();
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return destination.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a standard Zstd frame through a reusable {@link ZstdCompressCtx} instead of creating a native stream per
+ * call like {@link com.github.luben.zstd.ZstdOutputStream} does.
+ */
+class ZstdContextOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final ZstdCompressCtx ctx;
+    private final ByteBuffer source;
+    private final ByteBuffer destination;
+    private final byte[] scratch;
+    private boolean closed;
+
+    ZstdContextOutputStream(OutputStream out, CodecContext context, int level, Integer window) {
+        this(out, context, level, window, null);
+    }
+
+    /**
+     * @param dictionary a dictionary digested for the same level, or null to compress without one
+     */
+    ZstdContextOutputStream(OutputStream out, CodecContext context, int level, Integer window, ZstdDictCompress dictionary) {
+        this.out = out;
+        this.ctx = context.getZstdCompressCtx();
+        this.source = context.getZstdCompressSource();
+        this.destination = context.getZstdCompressDestination();
+        this.scratch = context.getZstdCompressScratch();
+        source.clear();
+        if (dictionary != null) {
+            ctx.loadDict(dictionary);
+        }
+        ctx.setLevel(level);
+        if (window != null) {
+            ctx.setLong(window);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, source.remaining());
+            source.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!source.hasRemaining()) {
+                compress(EndDirective.CONTINUE);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        compress(EndDirective.FLUSH);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            compress(EndDirective.END);
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void compress(EndDirective directive) throws IOException {
+        source.flip();
+        boolean done;
+        do {
+            destination.clear();
+            done = ctx.compressDirectByteBufferStream(destination, source, directive);
+            destination.flip();
+            while (destination.hasRemaining()) {
+                int n = Math.min(scratch.length, destination.remaining());
+                destination.get(scratch, 0, n);
+                out.write(scratch, 0, n);
+            }
+        } while (source.hasRemaining() || (directive != EndDirective.CONTINUE && !done));
+        source.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for a compression service. At most maxConcurrency requests run at once, and no more than a codec's own
+ * limit of them use that codec. Up to maxQueueDepth more wait their turn; past that the overflow policy decides.
+ * Queued requests for the same codec are run together in one task until they add up to batchBytes, so small requests
+ * do not each pay for a hand off to the executor.
+ */
+public class AsyncCompressionOptions {
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+
+    private Executor executor = ForkJoinPool.commonPool();
+    private int maxConcurrency = Runtime.getRuntime().availableProcessors();
+    private int maxQueueDepth = 1024;
+    private final Map<CompressionMethodEnum, Integer> codecConcurrency = new EnumMap<>(CompressionMethodEnum.class);
+    private OverflowPolicyEnum overflowPolicy = OverflowPolicyEnum.REJECT;
+    private int batchBytes = DEFAULT_BATCH_BYTES;
+    private boolean coalesce = true;
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor runs the requests. The service never has more than maxConcurrency tasks on it, so a virtual
+     *                 thread per task executor is safe to use
+     */
+    public AsyncCompressionOptions setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public AsyncCompressionOptions setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public AsyncCompressionOptions setMaxQueueDepth(int maxQueueDepth) {
+        if (maxQueueDepth < 0) {
+            throw new IllegalArgumentException("Queue depth must not be negative: " + maxQueueDepth);
+        }
+        this.maxQueueDepth = maxQueueDepth;
+        return this;
+    }
+
+    /**
+     * @return how many requests may use the codec at once, which is maxConcurrency unless set lower
+     */
+    public int getCodecConcurrency(CompressionMethodEnum method) {
+        return Math.min(maxConcurrency, codecConcurrency.getOrDefault(method, maxConcurrency));
+    }
+
+    /**
+     * Limits a slow codec, such as XZ at a high level, so it cannot take every thread from the others.
+     */
+    public AsyncCompressionOptions setCodecConcurrency(CompressionMethodEnum method, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        codecConcurrency.put(method, concurrency);
+        return this;
+    }
+
+    public OverflowPolicyEnum getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public AsyncCompressionOptions setOverflowPolicy(OverflowPolicyEnum overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+        return this;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * @param batchBytes how many bytes of queued requests for one codec are run in a single task. Larger requests
+     *                   always run alone
+     */
+    public AsyncCompressionOptions setBatchBytes(int batchBytes) {
+        if (batchBytes < 0) {
+            throw new IllegalArgumentException("Batch size must not be negative: " + batchBytes);
+        }
+        this.batchBytes = batchBytes;
+        return this;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    /**
+     * @param coalesce whether a request for the same bytes, codec and options as one still in progress waits for that
+     *                 one's result instead of being compressed again
+     */
+    public AsyncCompressionOptions setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncCompressionOptions{" +
+            "executor=" + executor +
+            ", maxConcurrency=" + maxConcurrency +
+            ", maxQueueDepth=" + maxQueueDepth +
+            ", codecConcurrency=" + codecConcurrency +
+            ", overflowPolicy=" + overflowPolicy +
+            ", batchBytes=" + batchBytes +
+            ", coalesce=" + coalesce +
+            '}';
+    }
+}
@@ -0,0 +1,19 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * How a codec runs in this JVM, as found by {@code CodecRegistry}.
+ */
+public enum CodecImplementationEnum {
+    /**
+     * Through its JNI library.
+     */
+    NATIVE,
+    /**
+     * In Java, either because the codec is pure Java or because its JNI library could not be loaded and it fell back.
+     */
+    JAVA,
+    /**
+     * Not at all: its JNI library could not be loaded and it has no Java fallback.
+     */
+    UNAVAILABLE
+}
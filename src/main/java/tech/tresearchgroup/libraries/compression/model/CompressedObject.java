@@ -0,0 +1,78 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+/**
+ * What a {@link CompressedObjectStore} knows about one of its objects when it is listed. The version changes every
+ * time the object is written, so it tells whether the object is still the one that was listed.
+ */
+public class CompressedObject {
+    private final String key;
+    private final CompressionMethodEnum method;
+    private final long size;
+    private final long createdTime;
+    private final long lastAccessTime;
+    private final long accessCount;
+    private final long version;
+
+    /**
+     * @param key            the object's key in its store
+     * @param method         the codec the object is compressed with
+     * @param size           the compressed size in bytes
+     * @param createdTime    when the object was first written, in milliseconds since the epoch
+     * @param lastAccessTime when the object was last read or written, in milliseconds since the epoch
+     * @param accessCount    how many times the object has been read since it was first written
+     * @param version        changes whenever the object is written
+     */
+    public CompressedObject(String key, CompressionMethodEnum method, long size, long createdTime, long lastAccessTime,
+                            long accessCount, long version) {
+        this.key = key;
+        this.method = method;
+        this.size = size;
+        this.createdTime = createdTime;
+        this.lastAccessTime = lastAccessTime;
+        this.accessCount = accessCount;
+        this.version = version;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public CompressionMethodEnum getMethod() {
+        return method;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public long getAccessCount() {
+        return accessCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedObject{" +
+            "key='" + key + '\'' +
+            ", method=" + method +
+            ", size=" + size +
+            ", createdTime=" + createdTime +
+            ", lastAccessTime=" + lastAccessTime +
+            ", accessCount=" + accessCount +
+            ", version=" + version +
+            '}';
+    }
+}
@@ -0,0 +1,44 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Holds compressed objects by key and tracks how they are used, so a
+ * {@link tech.tresearchgroup.libraries.compression.controller.RecompressionScheduler} can find the cold ones and
+ * swap them for a smaller form.
+ */
+public interface CompressedObjectStore {
+    /**
+     * @return every object in the store, with its codec and usage
+     * @throws IOException if the store cannot be read
+     */
+    List<CompressedObject> list() throws IOException;
+
+    /**
+     * Opens an object for reading its decompressed content. This is not counted as an access.
+     *
+     * @param key the object's key
+     * @return the decompressed content. The caller closes it
+     * @throws java.nio.file.NoSuchFileException if there is no such object
+     * @throws IOException                       if the object cannot be read
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Compresses data with another codec and swaps it in for the object in one step, so readers see either the old
+     * form or the new one and never a mix. Nothing changes if the object has been written or deleted since expected
+     * was listed, or if the new form is not smaller.
+     *
+     * @param expected the object as it was listed
+     * @param data     the object's decompressed content
+     * @param method   the codec to compress with
+     * @param options  the level, window and block size to compress with
+     * @return true if the object was replaced
+     * @throws IOException if reading data or writing the new form fails. The object is left as it was
+     */
+    boolean recompress(CompressedObject expected, InputStream data, CompressionMethodEnum method, CompressionOptions options) throws IOException;
+}
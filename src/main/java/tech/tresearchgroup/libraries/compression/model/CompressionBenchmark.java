@@ -0,0 +1,121 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * How one codec did on a sample: the compressed size, the CPU time spent compressing and decompressing it, and the
+ * score the caller's scoring function gave it. Sizes are extrapolated to the whole input by
+ * {@link #getEstimatedCompressedSize()}.
+ */
+public class CompressionBenchmark {
+    /**
+     * Bytes saved for every millisecond of CPU spent compressing and decompressing. Favours codecs that are cheap
+     * for the space they save.
+     */
+    public static final ToDoubleFunction<CompressionBenchmark> BYTES_SAVED_PER_CPU_MS = benchmark ->
+        (benchmark.getSampleSize() - benchmark.getCompressedSize())
+            / Math.max(1e-3, (benchmark.getCompressNanos() + benchmark.getDecompressNanos()) / 1e6);
+
+    /**
+     * The smallest output wins, regardless of speed. This is how codecs were ranked before timings were measured.
+     */
+    public static final ToDoubleFunction<CompressionBenchmark> SMALLEST = benchmark -> -benchmark.getCompressedSize();
+
+    private final CompressionMethodEnum method;
+    private final long inputSize;
+    private final long sampleSize;
+    private final long compressedSize;
+    private final long compressNanos;
+    private final long decompressNanos;
+    private double score;
+
+    public CompressionBenchmark(CompressionMethodEnum method, long inputSize, long sampleSize, long compressedSize,
+                                long compressNanos, long decompressNanos) {
+        this.method = method;
+        this.inputSize = inputSize;
+        this.sampleSize = sampleSize;
+        this.compressedSize = compressedSize;
+        this.compressNanos = compressNanos;
+        this.decompressNanos = decompressNanos;
+    }
+
+    public CompressionMethodEnum getMethod() {
+        return method;
+    }
+
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    public long getSampleSize() {
+        return sampleSize;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public CompressionBenchmark setScore(double score) {
+        this.score = score;
+        return this;
+    }
+
+    /**
+     * @return the compressed size divided by the sample size
+     */
+    public double getRatio() {
+        return sampleSize == 0 ? 1 : (double) compressedSize / sampleSize;
+    }
+
+    /**
+     * @return the compressed size the whole input is expected to have, exact when the sample was the whole input
+     */
+    public long getEstimatedCompressedSize() {
+        return sampleSize == inputSize ? compressedSize : Math.round(getRatio() * inputSize);
+    }
+
+    /**
+     * @return uncompressed megabytes compressed per CPU second
+     */
+    public double getCompressThroughput() {
+        return throughput(compressNanos);
+    }
+
+    /**
+     * @return uncompressed megabytes produced per CPU second of decompression
+     */
+    public double getDecompressThroughput() {
+        return throughput(decompressNanos);
+    }
+
+    private double throughput(long nanos) {
+        return sampleSize / 1e6 / Math.max(1e-9, nanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionBenchmark{" +
+            "method=" + method +
+            ", inputSize=" + inputSize +
+            ", sampleSize=" + sampleSize +
+            ", compressedSize=" + compressedSize +
+            ", compressNanos=" + compressNanos +
+            ", decompressNanos=" + decompressNanos +
+            ", score=" + score +
+            '}';
+    }
+}
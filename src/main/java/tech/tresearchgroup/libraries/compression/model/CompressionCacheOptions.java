@@ -0,0 +1,42 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * Settings for a compression cache. The least recently used outputs are evicted once the compressed bytes held add up
+ * to more than maxBytes. Off heap entries are kept in direct buffers, which keeps a large cache out of the garbage
+ * collector's way at the cost of a copy on every hit.
+ */
+public class CompressionCacheOptions {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private boolean offHeap;
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public CompressionCacheOptions setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public CompressionCacheOptions setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionCacheOptions{" +
+            "maxBytes=" + maxBytes +
+            ", offHeap=" + offHeap +
+            '}';
+    }
+}
@@ -0,0 +1,65 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.util.Arrays;
+
+/**
+ * A compression dictionary and the ID it is known by. Zstd writes the ID into every frame it compresses with the
+ * dictionary, so bumping it whenever the dictionary is retrained keeps old and new data apart. Zstd reserves IDs
+ * below 32768 for dictionaries shared in public registries, so private ones should start above that.
+ *
+ * <p>The content is either a dictionary trained by Zstd or plain sample content. Deflate and Brotli use the bytes as
+ * they are, which works for both since a trained dictionary ends with its content.
+ */
+public class CompressionDictionary {
+    private final int id;
+    private final byte[] content;
+    private final int hashCode;
+
+    /**
+     * @param id      the ID, greater than zero
+     * @param content the dictionary bytes, which are copied
+     */
+    public CompressionDictionary(int id, byte[] content) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Dictionary ID must be positive: " + id);
+        }
+        if (content.length == 0) {
+            throw new IllegalArgumentException("Dictionary is empty");
+        }
+        this.id = id;
+        this.content = content.clone();
+        this.hashCode = 31 * id + Arrays.hashCode(content);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the dictionary bytes. The array is shared and must not be modified
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompressionDictionary that = (CompressionDictionary) o;
+        return id == that.id && hashCode == that.hashCode && Arrays.equals(content, that.content);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDictionary{" +
+            "id=" + id +
+            ", size=" + content.length +
+            '}';
+    }
+}
@@ -0,0 +1,36 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+/**
+ * Receives every compression and decompression call as it finishes, for exporting to a metrics system. Listeners are
+ * called on the thread that did the work, so they should return quickly and must not throw.
+ */
+public interface CompressionMetricsListener {
+    /**
+     * @param method   the codec used
+     * @param bytesIn  how many uncompressed bytes were read
+     * @param bytesOut how many compressed bytes were written
+     * @param nanos    how long the call took
+     */
+    default void onCompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+    }
+
+    /**
+     * @param method   the codec used
+     * @param bytesIn  how many compressed bytes were read
+     * @param bytesOut how many decompressed bytes were written
+     * @param nanos    how long the call took
+     */
+    default void onDecompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+    }
+
+    /**
+     * @param method      the codec used
+     * @param compressing true if the call was compressing, false if it was decompressing
+     * @param error       what the call threw. A {@link LinkageError} means the codec's native library is not
+     *                    available
+     */
+    default void onFailure(CompressionMethodEnum method, boolean compressing, Throwable error) {
+    }
+}
@@ -0,0 +1,162 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.util.Objects;
+
+/**
+ * Per-call codec settings. Anything not set explicitly comes from the profile, which defaults to
+ * {@link CompressionProfileEnum#DEFAULT}: the levels each codec used before options existed, so calls without options
+ * keep their old speed and output. The other profiles are opt-in; MAX_RATIO in particular raises DEFLATE and GZIP to
+ * level 9 and switches LZ4 to the high compressor, which is much slower.
+ *
+ * <table>
+ *     <caption>Profile defaults</caption>
+ *     <tr><th>Codec</th><th>Setting</th><th>DEFAULT</th><th>FASTEST</th><th>BALANCED</th><th>MAX_RATIO</th></tr>
+ *     <tr><td>BROTLI</td><td>quality (0-11)</td><td>11</td><td>1</td><td>6</td><td>11</td></tr>
+ *     <tr><td>BZIP2</td><td>block size in 100 KB units (1-9)</td><td>9</td><td>1</td><td>5</td><td>9</td></tr>
+ *     <tr><td>DEFLATE, GZIP</td><td>level (0-9)</td><td>6</td><td>1</td><td>6</td><td>9</td></tr>
+ *     <tr><td>LZ4_BLOCK, LZ4_FRAMED</td><td>level (0 is the fast compressor, 1-17 the high compressor)</td><td>0</td><td>0</td><td>0</td><td>17</td></tr>
+ *     <tr><td>LZMA, XZ</td><td>preset (0-9)</td><td>9</td><td>0</td><td>6</td><td>9</td></tr>
+ *     <tr><td>ZSTD</td><td>level (1-22)</td><td>22</td><td>1</td><td>3</td><td>22</td></tr>
+ *     <tr><td>SNAPPY_FRAMED, LZO</td><td>no levels</td><td>-</td><td>-</td><td>-</td><td>-</td></tr>
+ * </table>
+ *
+ * <p>The window is a base 2 logarithm. It sets the Brotli window (10-24), the LZMA/XZ dictionary size and the Zstd
+ * long distance matching window. If it is not set, each codec uses its own default.
+ *
+ * <p>The block size is in bytes. It applies to LZ4_BLOCK (default 64 KB), LZ4_FRAMED (rounded up to 64 KB, 256 KB,
+ * 1 MB or 4 MB, default 4 MB), SNAPPY_FRAMED (default 32 KB) and LZO (default 256 bytes).
+ */
+public class CompressionOptions {
+    private CompressionProfileEnum profile;
+    private Integer level;
+    private Integer window;
+    private Integer blockSize;
+
+    public CompressionOptions() {
+        this(CompressionProfileEnum.DEFAULT);
+    }
+
+    public CompressionOptions(CompressionProfileEnum profile) {
+        this.profile = profile;
+    }
+
+    public CompressionOptions(CompressionOptions options) {
+        this.profile = options.profile;
+        this.level = options.level;
+        this.window = options.window;
+        this.blockSize = options.blockSize;
+    }
+
+    public CompressionProfileEnum getProfile() {
+        return profile;
+    }
+
+    public CompressionOptions setProfile(CompressionProfileEnum profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    public CompressionOptions setLevel(Integer level) {
+        this.level = level;
+        return this;
+    }
+
+    public Integer getWindow() {
+        return window;
+    }
+
+    public CompressionOptions setWindow(Integer window) {
+        this.window = window;
+        return this;
+    }
+
+    public Integer getBlockSize() {
+        return blockSize;
+    }
+
+    public CompressionOptions setBlockSize(Integer blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Resolves the level for a codec, falling back to the profile default.
+     *
+     * @param method the codec
+     * @return the explicit level if one was set, otherwise the profile default for the codec
+     */
+    public int getLevel(CompressionMethodEnum method) {
+        if (level != null) {
+            return level;
+        }
+        return switch (method) {
+            case BROTLI -> pick(11, 1, 6, 11);
+            case BZIP2 -> pick(9, 1, 5, 9);
+            case DEFLATE, GZIP -> pick(6, 1, 6, 9);
+            case LZ4_BLOCK, LZ4_FRAMED -> pick(0, 0, 0, 17);
+            case LZMA, XZ -> pick(9, 0, 6, 9);
+            case ZSTD -> pick(22, 1, 3, 22);
+            default -> 0;
+        };
+    }
+
+    /**
+     * Resolves the block size for a codec, falling back to the codec default.
+     *
+     * @param method the codec
+     * @return the explicit block size if one was set, otherwise the codec default in bytes
+     */
+    public int getBlockSize(CompressionMethodEnum method) {
+        if (blockSize != null) {
+            return blockSize;
+        }
+        return switch (method) {
+            case LZ4_BLOCK -> 64 * 1024;
+            case LZ4_FRAMED -> 4 * 1024 * 1024;
+            case SNAPPY_FRAMED -> 32 * 1024;
+            case LZO -> 256;
+            default -> 0;
+        };
+    }
+
+    private int pick(int standard, int fastest, int balanced, int maxRatio) {
+        return switch (profile) {
+            case DEFAULT -> standard;
+            case FASTEST -> fastest;
+            case BALANCED -> balanced;
+            case MAX_RATIO -> maxRatio;
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompressionOptions that = (CompressionOptions) o;
+        return profile == that.profile &&
+            Objects.equals(level, that.level) &&
+            Objects.equals(window, that.window) &&
+            Objects.equals(blockSize, that.blockSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(profile, level, window, blockSize);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionOptions{" +
+            "profile=" + profile +
+            ", level=" + level +
+            ", window=" + window +
+            ", blockSize=" + blockSize +
+            '}';
+    }
+}
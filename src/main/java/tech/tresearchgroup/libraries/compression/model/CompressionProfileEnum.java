@@ -0,0 +1,15 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * Trades compression ratio for throughput. The levels each profile selects per codec are listed on
+ * {@link CompressionOptions}.
+ */
+public enum CompressionProfileEnum {
+    /**
+     * The levels each codec used before profiles were added, and what calls without options get.
+     */
+    DEFAULT,
+    FASTEST,
+    BALANCED,
+    MAX_RATIO
+}
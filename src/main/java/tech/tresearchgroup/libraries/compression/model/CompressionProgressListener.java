@@ -0,0 +1,13 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * Receives progress from long running compression calls, once per chunk read.
+ */
+@FunctionalInterface
+public interface CompressionProgressListener {
+    /**
+     * @param bytesRead  how many bytes of the input have been read so far
+     * @param totalBytes the size of the input, or -1 if it is not known
+     */
+    void onProgress(long bytesRead, long totalBytes);
+}
@@ -0,0 +1,84 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Settings for picking a codec. The candidates are benchmarked on sampleCount evenly spaced samples of sampleSize
+ * bytes each, or on the whole input if it is no larger than that. They run in parallel on the executor and are ranked
+ * by the scorer, highest score first.
+ */
+public class CompressorSelectionOptions {
+    private Set<CompressionMethodEnum> methods = EnumSet.complementOf(EnumSet.of(CompressionMethodEnum.SMAZ));
+    private CompressionOptions compressionOptions = new CompressionOptions();
+    private int sampleCount = 8;
+    private int sampleSize = 256 * 1024;
+    private Executor executor = ForkJoinPool.commonPool();
+    private ToDoubleFunction<CompressionBenchmark> scorer = CompressionBenchmark.BYTES_SAVED_PER_CPU_MS;
+
+    public Set<CompressionMethodEnum> getMethods() {
+        return methods;
+    }
+
+    public CompressorSelectionOptions setMethods(Set<CompressionMethodEnum> methods) {
+        this.methods = EnumSet.copyOf(methods);
+        return this;
+    }
+
+    public CompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    public CompressorSelectionOptions setCompressionOptions(CompressionOptions compressionOptions) {
+        this.compressionOptions = Objects.requireNonNull(compressionOptions, "compressionOptions");
+        return this;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public CompressorSelectionOptions setSampleCount(int sampleCount) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("Sample count must be positive: " + sampleCount);
+        }
+        this.sampleCount = sampleCount;
+        return this;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public CompressorSelectionOptions setSampleSize(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public CompressorSelectionOptions setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public ToDoubleFunction<CompressionBenchmark> getScorer() {
+        return scorer;
+    }
+
+    public CompressorSelectionOptions setScorer(ToDoubleFunction<CompressionBenchmark> scorer) {
+        this.scorer = Objects.requireNonNull(scorer, "scorer");
+        return this;
+    }
+}
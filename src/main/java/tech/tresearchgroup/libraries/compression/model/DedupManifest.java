@@ -0,0 +1,139 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+/**
+ * What a deduplicated container holds: a table of unique chunks, each compressed on its own, and for every stream
+ * written into it the list of chunks that rebuild it. A chunk that appears several times, in one stream or across
+ * several, is stored once.
+ */
+public class DedupManifest {
+    public static final int HASH_LENGTH = 32;
+
+    private final CompressionMethodEnum method;
+    private final long[] compressedOffsets;
+    private final int[] uncompressedSizes;
+    private final byte[] hashes;
+    private final int[][] streams;
+
+    /**
+     * @param method            the codec the chunks were compressed with
+     * @param compressedSizes   the compressed size of each unique chunk, in file order
+     * @param uncompressedSizes the decompressed size of each unique chunk
+     * @param hashes            the SHA-256 of each unique chunk's decompressed bytes, {@link #HASH_LENGTH} bytes each
+     * @param streams           for each stream, the indexes of its chunks in order
+     */
+    public DedupManifest(CompressionMethodEnum method, int[] compressedSizes, int[] uncompressedSizes, byte[] hashes, int[][] streams) {
+        if (compressedSizes.length != uncompressedSizes.length || hashes.length != (long) compressedSizes.length * HASH_LENGTH) {
+            throw new IllegalArgumentException("Chunk sizes and hashes must have one entry per chunk");
+        }
+        this.method = method;
+        this.compressedOffsets = new long[compressedSizes.length + 1];
+        for (int i = 0; i < compressedSizes.length; i++) {
+            compressedOffsets[i + 1] = compressedOffsets[i] + Integer.toUnsignedLong(compressedSizes[i]);
+        }
+        this.uncompressedSizes = uncompressedSizes;
+        this.hashes = hashes;
+        for (int[] stream : streams) {
+            for (int chunk : stream) {
+                if (chunk < 0 || chunk >= compressedSizes.length) {
+                    throw new IllegalArgumentException("Stream refers to chunk " + chunk + " of " + compressedSizes.length);
+                }
+            }
+        }
+        this.streams = streams;
+    }
+
+    public CompressionMethodEnum getMethod() {
+        return method;
+    }
+
+    public int getChunkCount() {
+        return uncompressedSizes.length;
+    }
+
+    public long getCompressedOffset(int chunk) {
+        return compressedOffsets[chunk];
+    }
+
+    public int getCompressedSize(int chunk) {
+        return (int) (compressedOffsets[chunk + 1] - compressedOffsets[chunk]);
+    }
+
+    public int getUncompressedSize(int chunk) {
+        return uncompressedSizes[chunk];
+    }
+
+    /**
+     * @return a copy of the SHA-256 of the chunk's decompressed bytes
+     */
+    public byte[] getHash(int chunk) {
+        byte[] hash = new byte[HASH_LENGTH];
+        System.arraycopy(hashes, chunk * HASH_LENGTH, hash, 0, HASH_LENGTH);
+        return hash;
+    }
+
+    public int getStreamCount() {
+        return streams.length;
+    }
+
+    public int getStreamChunkCount(int stream) {
+        return streams[stream].length;
+    }
+
+    /**
+     * @return the index of the chunk at position i of the stream
+     */
+    public int getStreamChunk(int stream, int i) {
+        return streams[stream][i];
+    }
+
+    public long getStreamSize(int stream) {
+        long size = 0;
+        for (int chunk : streams[stream]) {
+            size += uncompressedSizes[chunk];
+        }
+        return size;
+    }
+
+    /**
+     * @return the total size of the compressed chunks, not counting the manifest itself
+     */
+    public long getCompressedSize() {
+        return compressedOffsets[compressedOffsets.length - 1];
+    }
+
+    /**
+     * @return the decompressed size of the unique chunks, which is what was left to compress after deduplication
+     */
+    public long getUniqueSize() {
+        long size = 0;
+        for (int chunkSize : uncompressedSizes) {
+            size += chunkSize;
+        }
+        return size;
+    }
+
+    /**
+     * @return the decompressed size of every stream together
+     */
+    public long getTotalSize() {
+        long size = 0;
+        for (int i = 0; i < streams.length; i++) {
+            size += getStreamSize(i);
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "DedupManifest{" +
+            "method=" + method +
+            ", chunks=" + getChunkCount() +
+            ", streams=" + getStreamCount() +
+            ", totalSize=" + getTotalSize() +
+            ", uniqueSize=" + getUniqueSize() +
+            ", compressedSize=" + getCompressedSize() +
+            '}';
+    }
+}
@@ -0,0 +1,84 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for deduplicating compression. The input is cut into chunks where its content says to, so an insertion
+ * only changes the chunks around it. Chunks are never shorter than minChunkSize unless the input ends, never longer
+ * than maxChunkSize, and average about avgChunkSize. Smaller chunks find more duplicates but cost more index and
+ * compress less well on their own.
+ *
+ * <p>Chunks are hashed and compressed on the executor, with at most maxInFlight of each waiting to be written.
+ */
+public class DedupOptions {
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 2 * 1024;
+    public static final int DEFAULT_AVG_CHUNK_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 64 * 1024;
+
+    private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    private int avgChunkSize = DEFAULT_AVG_CHUNK_SIZE;
+    private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 4;
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public int getAvgChunkSize() {
+        return avgChunkSize;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * @param min the smallest chunk, at least 64 bytes
+     * @param avg the average chunk, between min and max. It is rounded down to a power of two
+     * @param max the largest chunk, at most 64 MB
+     */
+    public DedupOptions setChunkSizes(int min, int avg, int max) {
+        if (min < 64 || avg < min || max < avg || max > 64 * 1024 * 1024) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 64 <= min <= avg <= max <= 64 MB: " + min + ", " + avg + ", " + max);
+        }
+        this.minChunkSize = min;
+        this.avgChunkSize = avg;
+        this.maxChunkSize = max;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public DedupOptions setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public DedupOptions setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Chunks in flight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "DedupOptions{" +
+            "minChunkSize=" + minChunkSize +
+            ", avgChunkSize=" + avgChunkSize +
+            ", maxChunkSize=" + maxChunkSize +
+            ", executor=" + executor +
+            ", maxInFlight=" + maxInFlight +
+            '}';
+    }
+}
@@ -0,0 +1,78 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+/**
+ * The header at the start of framed output: the codec and settings it was compressed with and, when the writer knew
+ * it, the size of the original data.
+ */
+public class FrameHeader {
+    private final CompressionMethodEnum method;
+    private final long originalSize;
+    private final int level;
+    private final Integer window;
+    private final Integer blockSize;
+
+    /**
+     * @param method       the codec
+     * @param originalSize the decompressed size, or -1 if it is not known
+     * @param level        the level the data was compressed at
+     * @param window       the window if one was set explicitly, otherwise null
+     * @param blockSize    the block size if one was set explicitly, otherwise null
+     */
+    public FrameHeader(CompressionMethodEnum method, long originalSize, int level, Integer window, Integer blockSize) {
+        if (originalSize < -1) {
+            throw new IllegalArgumentException("Original size must be -1 or more: " + originalSize);
+        }
+        this.method = method;
+        this.originalSize = originalSize;
+        this.level = level;
+        this.window = window;
+        this.blockSize = blockSize;
+    }
+
+    public CompressionMethodEnum getMethod() {
+        return method;
+    }
+
+    public boolean hasOriginalSize() {
+        return originalSize != -1;
+    }
+
+    /**
+     * @return the decompressed size, or -1 if it is not known
+     */
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Integer getWindow() {
+        return window;
+    }
+
+    public Integer getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return options that compress the same way the frame was compressed
+     */
+    public CompressionOptions getOptions() {
+        return new CompressionOptions().setLevel(level).setWindow(window).setBlockSize(blockSize);
+    }
+
+    @Override
+    public String toString() {
+        return "FrameHeader{" +
+            "method=" + method +
+            ", originalSize=" + originalSize +
+            ", level=" + level +
+            ", window=" + window +
+            ", blockSize=" + blockSize +
+            '}';
+    }
+}
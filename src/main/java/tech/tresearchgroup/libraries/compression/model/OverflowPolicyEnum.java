@@ -0,0 +1,15 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * What a compression service does with a request when its queue is full.
+ */
+public enum OverflowPolicyEnum {
+    /**
+     * Fail the request's future straight away with a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    REJECT,
+    /**
+     * Block the submitting thread until there is room, which pushes back on callers. Best with virtual threads.
+     */
+    BLOCK
+}
@@ -0,0 +1,60 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for parallel compression. The input is cut into chunks of chunkSize bytes that are compressed on the
+ * executor, and at most maxInFlight chunks are read ahead of the writer. Memory use is therefore bounded by about
+ * maxInFlight times chunkSize, plus their compressed output.
+ */
+public class ParallelCompressionOptions {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private Executor executor = ForkJoinPool.commonPool();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public ParallelCompressionOptions setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public ParallelCompressionOptions setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ParallelCompressionOptions setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Chunks in flight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelCompressionOptions{" +
+            "executor=" + executor +
+            ", chunkSize=" + chunkSize +
+            ", maxInFlight=" + maxInFlight +
+            '}';
+    }
+}
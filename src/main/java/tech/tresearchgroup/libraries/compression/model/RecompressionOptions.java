@@ -0,0 +1,120 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for a recompression scheduler. An object is cold once it has not been accessed for minIdle and has been
+ * read no more than maxAccessesPerDay times a day on average since it was written. Cold objects are recompressed with
+ * the target codec every interval, but only while the system load average per processor is at most maxLoad, and no
+ * faster than maxBytesPerSecond of decompressed data.
+ */
+public class RecompressionOptions {
+    private CompressionMethodEnum targetMethod = CompressionMethodEnum.ZSTD;
+    private CompressionOptions targetOptions = new CompressionOptions();
+    private Duration minIdle = Duration.ofDays(1);
+    private double maxAccessesPerDay = 1;
+    private double maxLoad = 0.5;
+    private long maxBytesPerSecond = 32L * 1024 * 1024;
+    private Duration interval = Duration.ofMinutes(10);
+
+    public CompressionMethodEnum getTargetMethod() {
+        return targetMethod;
+    }
+
+    public CompressionOptions getTargetOptions() {
+        return targetOptions;
+    }
+
+    /**
+     * @param method  the higher ratio codec to move cold objects to, such as ZSTD or XZ
+     * @param options the level, window and block size to use, such as Zstd level 19
+     */
+    public RecompressionOptions setTarget(CompressionMethodEnum method, CompressionOptions options) {
+        this.targetMethod = Objects.requireNonNull(method, "method");
+        this.targetOptions = new CompressionOptions(options);
+        return this;
+    }
+
+    public Duration getMinIdle() {
+        return minIdle;
+    }
+
+    public RecompressionOptions setMinIdle(Duration minIdle) {
+        if (minIdle.isNegative()) {
+            throw new IllegalArgumentException("Idle time must not be negative: " + minIdle);
+        }
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    public double getMaxAccessesPerDay() {
+        return maxAccessesPerDay;
+    }
+
+    public RecompressionOptions setMaxAccessesPerDay(double maxAccessesPerDay) {
+        if (!(maxAccessesPerDay >= 0)) {
+            throw new IllegalArgumentException("Access rate must not be negative: " + maxAccessesPerDay);
+        }
+        this.maxAccessesPerDay = maxAccessesPerDay;
+        return this;
+    }
+
+    public double getMaxLoad() {
+        return maxLoad;
+    }
+
+    /**
+     * @param maxLoad the highest one minute load average per processor at which to keep working. Where the load
+     *                average is not available every moment counts as idle
+     */
+    public RecompressionOptions setMaxLoad(double maxLoad) {
+        if (!(maxLoad >= 0)) {
+            throw new IllegalArgumentException("Load must not be negative: " + maxLoad);
+        }
+        this.maxLoad = maxLoad;
+        return this;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * @param maxBytesPerSecond the most decompressed bytes to recompress per second, or 0 for no limit
+     */
+    public RecompressionOptions setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate must not be negative: " + maxBytesPerSecond);
+        }
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        return this;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public RecompressionOptions setInterval(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.interval = interval;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RecompressionOptions{" +
+            "targetMethod=" + targetMethod +
+            ", targetOptions=" + targetOptions +
+            ", minIdle=" + minIdle +
+            ", maxAccessesPerDay=" + maxAccessesPerDay +
+            ", maxLoad=" + maxLoad +
+            ", maxBytesPerSecond=" + maxBytesPerSecond +
+            ", interval=" + interval +
+            '}';
+    }
+}
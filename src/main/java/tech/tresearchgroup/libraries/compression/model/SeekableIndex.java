@@ -0,0 +1,92 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.util.Arrays;
+
+/**
+ * The block table of a seekable container: where each compressed block starts, how much it decompresses to and,
+ * optionally, a checksum of its decompressed bytes.
+ */
+public class SeekableIndex {
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+    private final int[] checksums;
+
+    /**
+     * @param compressedSizes   the compressed size of each block, in file order
+     * @param uncompressedSizes the decompressed size of each block
+     * @param checksums         the low 32 bits of each block's XXH64, or null if the container has none
+     */
+    public SeekableIndex(int[] compressedSizes, int[] uncompressedSizes, int[] checksums) {
+        if (compressedSizes.length != uncompressedSizes.length || (checksums != null && checksums.length != compressedSizes.length)) {
+            throw new IllegalArgumentException("Block sizes and checksums must have one entry per block");
+        }
+        this.compressedOffsets = new long[compressedSizes.length + 1];
+        this.uncompressedOffsets = new long[uncompressedSizes.length + 1];
+        for (int i = 0; i < compressedSizes.length; i++) {
+            compressedOffsets[i + 1] = compressedOffsets[i] + Integer.toUnsignedLong(compressedSizes[i]);
+            uncompressedOffsets[i + 1] = uncompressedOffsets[i] + Integer.toUnsignedLong(uncompressedSizes[i]);
+        }
+        this.checksums = checksums;
+    }
+
+    public int getBlockCount() {
+        return compressedOffsets.length - 1;
+    }
+
+    public long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    public int getCompressedSize(int block) {
+        return (int) (compressedOffsets[block + 1] - compressedOffsets[block]);
+    }
+
+    public long getUncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    public int getUncompressedSize(int block) {
+        return (int) (uncompressedOffsets[block + 1] - uncompressedOffsets[block]);
+    }
+
+    /**
+     * @return the total size of the compressed blocks, not counting the index itself
+     */
+    public long getCompressedSize() {
+        return compressedOffsets[compressedOffsets.length - 1];
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedOffsets[uncompressedOffsets.length - 1];
+    }
+
+    public boolean hasChecksums() {
+        return checksums != null;
+    }
+
+    public int getChecksum(int block) {
+        return checksums[block];
+    }
+
+    /**
+     * Finds the block holding an uncompressed offset.
+     *
+     * @param offset an offset into the decompressed data
+     * @return the index of the block that contains it
+     * @throws IndexOutOfBoundsException if offset is negative or not below the uncompressed size
+     */
+    public int getBlock(long offset) {
+        if (offset < 0 || offset >= getUncompressedSize()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside 0-" + getUncompressedSize());
+        }
+        int found = Arrays.binarySearch(uncompressedOffsets, offset);
+        if (found < 0) {
+            return -found - 2;
+        }
+        // Skip over empty blocks that start at the same offset
+        while (uncompressedOffsets[found + 1] == offset) {
+            found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,66 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+/**
+ * Many Smaz compressed strings packed into one array. String i is stored from {@code getOffsets()[i]} up to
+ * {@code getOffsets()[i + 1]}, so a batch costs two objects however many strings it holds.
+ */
+public class SmazBatch {
+    private final int codebookVersion;
+    private final byte[] data;
+    private final int[] offsets;
+
+    /**
+     * @param codebookVersion the version of the codebook the strings were compressed with, or 0 for the built in one
+     * @param data            the compressed strings back to back
+     * @param offsets         where each string starts, followed by where the last one ends
+     */
+    public SmazBatch(int codebookVersion, byte[] data, int[] offsets) {
+        if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] > data.length) {
+            throw new IllegalArgumentException("Offsets must start at 0 and end within the data");
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw new IllegalArgumentException("Offsets must not decrease: " + i);
+            }
+        }
+        this.codebookVersion = codebookVersion;
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    public int getCodebookVersion() {
+        return codebookVersion;
+    }
+
+    /**
+     * @return the compressed strings. The array is shared and must not be modified
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return where each string starts, followed by where the last one ends. The array is shared and must not be
+     * modified
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public int getCompressedSize() {
+        return offsets[offsets.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "SmazBatch{" +
+            "codebookVersion=" + codebookVersion +
+            ", size=" + size() +
+            ", compressedSize=" + getCompressedSize() +
+            '}';
+    }
+}
@@ -0,0 +1,145 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Smaz codebook: up to 254 strings of 1 to 7 bytes, each of which compresses to the one byte code of its index.
+ * Codebooks are trained for a kind of data by {@code StringCompressionController.trainCodebook} and loaded with
+ * {@code new Smaz(codebook)}.
+ *
+ * <p>Smaz output does not say which codebook it was compressed with, so the version should be stored next to it and
+ * bumped whenever the codebook is retrained.
+ */
+public class SmazCodebook {
+    public static final int MAX_ENTRIES = 254;
+    public static final int MAX_ENTRY_LENGTH = 7;
+    private static final byte[] MAGIC = {'S', 'M', 'Z', 'C'};
+    private static final int FORMAT = 1;
+
+    private final int version;
+    private final byte[][] entries;
+    private final int hashCode;
+
+    /**
+     * @param version the version, greater than zero
+     * @param entries the strings to give codes to, in code order. They are copied
+     */
+    public SmazCodebook(int version, List<byte[]> entries) {
+        if (version <= 0) {
+            throw new IllegalArgumentException("Codebook version must be positive: " + version);
+        }
+        if (entries.isEmpty() || entries.size() > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Codebook must have 1 to " + MAX_ENTRIES + " entries: " + entries.size());
+        }
+        this.version = version;
+        this.entries = new byte[entries.size()][];
+        Set<String> seen = new HashSet<>();
+        int hash = version;
+        for (int i = 0; i < entries.size(); i++) {
+            byte[] entry = entries.get(i);
+            if (entry.length == 0 || entry.length > MAX_ENTRY_LENGTH) {
+                throw new IllegalArgumentException("Codebook entries must be 1 to " + MAX_ENTRY_LENGTH + " bytes: " + entry.length);
+            }
+            if (!seen.add(new String(entry, StandardCharsets.ISO_8859_1))) {
+                throw new IllegalArgumentException("Duplicate codebook entry at " + i);
+            }
+            this.entries[i] = entry.clone();
+            hash = 31 * hash + Arrays.hashCode(entry);
+        }
+        this.hashCode = hash;
+    }
+
+    /**
+     * Reads a codebook written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized codebook
+     * @return the codebook
+     * @throws IOException if the bytes are not a codebook in a format this version can read
+     */
+    public static SmazCodebook fromByteArray(byte[] bytes) throws IOException {
+        if (bytes.length < 9 || !Arrays.equals(bytes, 0, 4, MAGIC, 0, 4)) {
+            throw new IOException("Not a Smaz codebook");
+        }
+        if (bytes[4] != FORMAT) {
+            throw new IOException("Unsupported Smaz codebook format: " + bytes[4]);
+        }
+        int version = (bytes[5] & 0xFF) << 24 | (bytes[6] & 0xFF) << 16 | (bytes[7] & 0xFF) << 8 | (bytes[8] & 0xFF);
+        byte[][] entries = new byte[MAX_ENTRIES][];
+        int count = 0;
+        int i = 9;
+        while (i < bytes.length) {
+            int length = bytes[i++];
+            if (count == MAX_ENTRIES || length < 1 || length > MAX_ENTRY_LENGTH || bytes.length - i < length) {
+                throw new IOException("Corrupt Smaz codebook");
+            }
+            entries[count++] = Arrays.copyOfRange(bytes, i, i + length);
+            i += length;
+        }
+        try {
+            return new SmazCodebook(version, Arrays.asList(entries).subList(0, count));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt Smaz codebook: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the codebook as the magic bytes "SMZC", a format byte, the version as 4 big endian bytes and then each
+     * entry as its length followed by its bytes
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(9 + entries.length * 4);
+        out.writeBytes(MAGIC);
+        out.write(FORMAT);
+        out.write(version >>> 24);
+        out.write(version >>> 16);
+        out.write(version >>> 8);
+        out.write(version);
+        for (byte[] entry : entries) {
+            out.write(entry.length);
+            out.writeBytes(entry);
+        }
+        return out.toByteArray();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return the string with the given code. The array is shared and must not be modified
+     */
+    public byte[] getEntry(int code) {
+        return entries[code];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmazCodebook that = (SmazCodebook) o;
+        return version == that.version && hashCode == that.hashCode && Arrays.deepEquals(entries, that.entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "SmazCodebook{" +
+            "version=" + version +
+            ", entries=" + entries.length +
+            '}';
+    }
+}
@@ -0,0 +1,79 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for transcoding. Decoded data is handed from the decoding thread to the encoding one through bufferCount
+ * buffers of bufferSize bytes, which bounds the memory one transcode uses however large the data. When transcoding a
+ * directory, up to maxConcurrentFiles files are encoded on the executor at once.
+ */
+public class TranscodeOptions {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int bufferCount = DEFAULT_BUFFER_COUNT;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int maxConcurrentFiles = Runtime.getRuntime().availableProcessors();
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public TranscodeOptions setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    /**
+     * @param bufferCount how many buffers to share between decoding and encoding. Two is enough to keep both busy;
+     *                    more smooths out codecs that produce output in bursts
+     */
+    public TranscodeOptions setBufferCount(int bufferCount) {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("Buffer count must be positive: " + bufferCount);
+        }
+        this.bufferCount = bufferCount;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public TranscodeOptions setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public int getMaxConcurrentFiles() {
+        return maxConcurrentFiles;
+    }
+
+    public TranscodeOptions setMaxConcurrentFiles(int maxConcurrentFiles) {
+        if (maxConcurrentFiles <= 0) {
+            throw new IllegalArgumentException("Concurrent files must be positive: " + maxConcurrentFiles);
+        }
+        this.maxConcurrentFiles = maxConcurrentFiles;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "TranscodeOptions{" +
+            "bufferSize=" + bufferSize +
+            ", bufferCount=" + bufferCount +
+            ", executor=" + executor +
+            ", maxConcurrentFiles=" + maxConcurrentFiles +
+            '}';
+    }
+}
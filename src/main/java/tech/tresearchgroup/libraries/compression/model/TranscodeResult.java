@@ -0,0 +1,48 @@
+package tech.tresearchgroup.libraries.compression.model;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of transcoding a directory: how many files were transcoded, how much data they held, and why each of
+ * the others failed. A failed file does not stop the rest.
+ */
+public class TranscodeResult {
+    private final int transcodedFiles;
+    private final long uncompressedBytes;
+    private final Map<Path, Throwable> failures;
+
+    public TranscodeResult(int transcodedFiles, long uncompressedBytes, Map<Path, Throwable> failures) {
+        this.transcodedFiles = transcodedFiles;
+        this.uncompressedBytes = uncompressedBytes;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public int getTranscodedFiles() {
+        return transcodedFiles;
+    }
+
+    /**
+     * @return the decompressed size of every file transcoded
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /**
+     * @return the source files that could not be transcoded, mapped to the error that stopped each
+     */
+    public Map<Path, Throwable> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "TranscodeResult{" +
+            "transcodedFiles=" + transcodedFiles +
+            ", uncompressedBytes=" + uncompressedBytes +
+            ", failures=" + failures.size() +
+            '}';
+    }
+}
@@ -0,0 +1,220 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.AsyncCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.OverflowPolicyEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncCompressDecompress {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Holds every task it is given until released, counting how many it has been given.
+     */
+    private static class GatedExecutor implements java.util.concurrent.Executor {
+        private final List<Runnable> held = new ArrayList<>();
+        private final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            tasks.incrementAndGet();
+            held.add(command);
+        }
+
+        synchronized void releaseOne() {
+            held.remove(0).run();
+        }
+
+        synchronized int heldCount() {
+            return held.size();
+        }
+    }
+
+    @Test
+    void roundTripsThroughTheExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (CompressionService service = new CompressionService(new AsyncCompressionOptions().setExecutor(executor))) {
+            for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP,
+                CompressionMethodEnum.LZ4_FRAMED, CompressionMethodEnum.XZ}) {
+                byte[] compressed = service.compress(TEST_DATA, method).get(30, TimeUnit.SECONDS);
+                assertArrayEquals(TEST_DATA, service.decompress(compressed, method).get(30, TimeUnit.SECONDS));
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            assertEquals(TEST_DATA.length, service.compress(new ByteArrayInputStream(TEST_DATA), compressed, CompressionMethodEnum.ZSTD,
+                new CompressionOptions()).get(30, TimeUnit.SECONDS));
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            service.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed, CompressionMethodEnum.ZSTD)
+                .get(30, TimeUnit.SECONDS);
+            assertArrayEquals(TEST_DATA, decompressed.toByteArray());
+
+            List<byte[]> inputs = List.of(TEST_DATA, "short".getBytes(StandardCharsets.UTF_8), new byte[0]);
+            List<byte[]> outputs = service.compressAll(inputs, CompressionMethodEnum.DEFLATE, new CompressionOptions()).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < inputs.size(); i++) {
+                assertArrayEquals(inputs.get(i), service.decompress(outputs.get(i), CompressionMethodEnum.DEFLATE).get(30, TimeUnit.SECONDS));
+            }
+
+            CompletableFuture<byte[]> corrupt = service.decompress(TEST_DATA, CompressionMethodEnum.GZIP);
+            assertThrows(CompletionException.class, corrupt::join);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void limitsConcurrencyAndRejectsWhenTheQueueIsFull() {
+        GatedExecutor executor = new GatedExecutor();
+        AsyncCompressionOptions options = new AsyncCompressionOptions()
+            .setExecutor(executor)
+            .setMaxConcurrency(2)
+            .setCodecConcurrency(CompressionMethodEnum.XZ, 1)
+            .setMaxQueueDepth(2)
+            .setBatchBytes(0)
+            .setCoalesce(false);
+        try (CompressionService service = new CompressionService(options)) {
+            CompletableFuture<byte[]> first = service.compress(TEST_DATA, CompressionMethodEnum.XZ);
+            CompletableFuture<byte[]> second = service.compress(TEST_DATA, CompressionMethodEnum.XZ);
+            CompletableFuture<byte[]> third = service.compress(TEST_DATA, CompressionMethodEnum.GZIP);
+            // XZ may only run one at a time, so the second waits while GZIP takes the other slot
+            assertEquals(2, executor.heldCount());
+            assertEquals(1, service.getQueueDepth());
+            CompletableFuture<byte[]> fourth = service.compress(TEST_DATA, CompressionMethodEnum.ZSTD);
+            CompletableFuture<byte[]> rejected = service.compress(TEST_DATA, CompressionMethodEnum.ZSTD);
+            CompletionException error = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+            executor.releaseOne();
+            assertNotNull(first.join());
+            // The freed slot goes to the next codec in turn
+            assertEquals(2, executor.heldCount());
+            executor.releaseOne();
+            executor.releaseOne();
+            executor.releaseOne();
+            assertNotNull(second.join());
+            assertNotNull(third.join());
+            assertNotNull(fourth.join());
+            assertEquals(0, service.getQueueDepth());
+            assertEquals(0, service.getRunning());
+            assertEquals(4, executor.tasks.get());
+        }
+    }
+
+    @Test
+    void batchesSmallRequestsAndCoalescesDuplicates() {
+        GatedExecutor executor = new GatedExecutor();
+        AsyncCompressionOptions options = new AsyncCompressionOptions().setExecutor(executor).setMaxConcurrency(1);
+        try (CompressionService service = new CompressionService(options)) {
+            CompletableFuture<byte[]> blocker = service.compress(TEST_DATA, CompressionMethodEnum.ZSTD);
+            List<CompletableFuture<byte[]>> small = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                small.add(service.compress(("small string " + i).getBytes(StandardCharsets.UTF_8), CompressionMethodEnum.ZSTD));
+            }
+            CompletableFuture<byte[]> duplicate = service.compress(TEST_DATA, CompressionMethodEnum.ZSTD);
+            assertEquals(10, service.getQueueDepth());
+
+            executor.releaseOne();
+            // All ten small requests fit in one batch
+            assertEquals(1, executor.heldCount());
+            executor.releaseOne();
+            assertEquals(2, executor.tasks.get());
+            assertArrayEquals(blocker.join(), duplicate.join());
+            assertNotSame(blocker.join(), duplicate.join());
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(("small string " + i).getBytes(StandardCharsets.UTF_8),
+                    com.github.luben.zstd.Zstd.decompress(small.get(i).join(), 64));
+            }
+        }
+    }
+
+    @Test
+    void blockingPolicyWaitsForRoomAndCloseFailsQueuedRequests() throws Exception {
+        GatedExecutor executor = new GatedExecutor();
+        AsyncCompressionOptions options = new AsyncCompressionOptions()
+            .setExecutor(executor)
+            .setMaxConcurrency(1)
+            .setMaxQueueDepth(1)
+            .setBatchBytes(0)
+            .setCoalesce(false)
+            .setOverflowPolicy(OverflowPolicyEnum.BLOCK);
+        CompressionService service = new CompressionService(options);
+        CompletableFuture<byte[]> running = service.compress(TEST_DATA, CompressionMethodEnum.GZIP);
+        CompletableFuture<byte[]> queued = service.compress(TEST_DATA, CompressionMethodEnum.GZIP);
+        CompletableFuture<CompletableFuture<byte[]>> blocked = CompletableFuture.supplyAsync(() -> service.compress(TEST_DATA, CompressionMethodEnum.GZIP));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone());
+
+        executor.releaseOne();
+        CompletableFuture<byte[]> third = blocked.get(10, TimeUnit.SECONDS);
+        assertNotNull(running.join());
+        assertEquals(1, service.getQueueDepth());
+
+        service.close();
+        CompletionException error = assertThrows(CompletionException.class, third::join);
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertThrows(CompletionException.class, () -> service.compress(TEST_DATA, CompressionMethodEnum.GZIP).join());
+        executor.releaseOne();
+        assertNotNull(queued.join());
+    }
+
+    @Test
+    void callerRunsExecutorsRunOutsideTheLockWithoutRecursing() throws Exception {
+        AtomicInteger deepest = new AtomicInteger();
+        AtomicInteger locked = new AtomicInteger();
+        CompressionService[] service = new CompressionService[1];
+        GatedExecutor gate = new GatedExecutor();
+        java.util.concurrent.Executor executor = command -> {
+            if (gate.tasks.get() == 0) {
+                gate.execute(command);
+                return;
+            }
+            // Another thread must still be able to take the lock while a batch runs here
+            try {
+                if (locked.get() == 0) {
+                    CompletableFuture.supplyAsync(service[0]::getRunning).get(10, TimeUnit.SECONDS);
+                }
+            } catch (Exception e) {
+                locked.incrementAndGet();
+            }
+            deepest.accumulateAndGet(Thread.currentThread().getStackTrace().length, Math::max);
+            command.run();
+        };
+        AsyncCompressionOptions options = new AsyncCompressionOptions()
+            .setExecutor(executor)
+            .setMaxConcurrency(1)
+            .setBatchBytes(0)
+            .setCoalesce(false);
+        try (CompressionService started = new CompressionService(options)) {
+            service[0] = started;
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(started.compress(("request " + i).getBytes(StandardCharsets.UTF_8), CompressionMethodEnum.GZIP));
+            }
+            assertEquals(199, started.getQueueDepth());
+            int base = Thread.currentThread().getStackTrace().length;
+            gate.releaseOne();
+            for (CompletableFuture<byte[]> future : futures) {
+                assertNotNull(future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(0, started.getQueueDepth());
+            assertEquals(0, locked.get());
+            assertTrue(deepest.get() < base + 50, "Batches were started recursively: " + deepest.get());
+        }
+    }
+}
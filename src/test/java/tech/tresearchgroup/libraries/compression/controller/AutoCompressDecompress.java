@@ -0,0 +1,96 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutoCompressDecompress {
+    private static byte[] createText() {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(42);
+        String[] words = {"lovely", "data", "to", "compress", "this", "is", "some", "more", "of", "the"};
+        while (text.length() < 200_000) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] createNoise(int length) {
+        byte[] noise = new byte[length];
+        new Random(42).nextBytes(noise);
+        return noise;
+    }
+
+    private static byte[] roundTrip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        assertEquals(data.length, AutoCompressionController.compress(new ByteArrayInputStream(data), compressed));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        AutoCompressionController.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+        assertArrayEquals(data, AutoCompressionController.decompress(AutoCompressionController.compress(data)));
+        return compressed.toByteArray();
+    }
+
+    @Test
+    void textIsCompressed() throws IOException {
+        byte[] text = createText();
+        byte[] compressed = roundTrip(text);
+        assertEquals(MethodCodes.getCode(CompressionMethodEnum.ZSTD), compressed[2]);
+        assertTrue(compressed.length < text.length / 3);
+    }
+
+    @Test
+    void levelFollowsTheDataClass() throws IOException {
+        assertEquals(3, AutoCompressionController.chooseOptions(CompressionMethodEnum.ZSTD).getLevel(CompressionMethodEnum.ZSTD));
+        assertEquals(0, AutoCompressionController.chooseOptions(CompressionMethodEnum.LZ4_FRAMED).getLevel(CompressionMethodEnum.LZ4_FRAMED));
+        // Without options the chosen level is used, not the highest one
+        byte[] text = createText();
+        assertArrayEquals(AutoCompressionController.compress(text, AutoCompressionController.chooseOptions(CompressionMethodEnum.ZSTD)),
+            AutoCompressionController.compress(text));
+        assertFalse(Arrays.equals(AutoCompressionController.compress(text, new CompressionOptions(CompressionProfileEnum.MAX_RATIO)),
+            AutoCompressionController.compress(text)));
+    }
+
+    @Test
+    void incompressibleDataIsStored() throws IOException {
+        byte[] noise = createNoise(200_000);
+        byte[] compressed = roundTrip(noise);
+        assertEquals(MethodCodes.STORED, compressed[2]);
+        assertEquals(noise.length + 3, compressed.length);
+
+        byte[] jpeg = createText();
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        assertNull(AutoCompressionController.chooseMethod(jpeg, jpeg.length));
+        assertEquals(MethodCodes.STORED, roundTrip(jpeg)[2]);
+    }
+
+    @Test
+    void repeatedNoiseIsCompressed() throws IOException {
+        byte[] block = createNoise(4096);
+        byte[] repeated = new byte[block.length * 16];
+        for (int i = 0; i < 16; i++) {
+            System.arraycopy(block, 0, repeated, i * block.length, block.length);
+        }
+        assertTrue(AutoCompressionController.getEntropy(repeated, repeated.length) > 7.9);
+        assertNotNull(AutoCompressionController.chooseMethod(repeated, repeated.length));
+        assertTrue(roundTrip(repeated).length < repeated.length / 4);
+    }
+
+    @Test
+    void unknownHeaderIsRejected() {
+        assertThrows(IOException.class, () -> AutoCompressionController.decompress(new byte[]{1, 2, 3, 4}));
+        assertThrows(IOException.class, () -> AutoCompressionController.decompress(new byte[]{(byte) 0xC7, 'A', (byte) 200}));
+    }
+}
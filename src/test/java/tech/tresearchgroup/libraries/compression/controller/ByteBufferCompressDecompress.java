@@ -0,0 +1,124 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteBufferCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[300_000];
+        for (int i = 0; i < 200_000; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        byte[] noise = new byte[data.length - 200_000];
+        random.nextBytes(noise);
+        System.arraycopy(noise, 0, data, 200_000, noise.length);
+        return data;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void bufferRoundTrip() throws IOException {
+        CompressionOptions options = new CompressionOptions();
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                for (int kinds = 0; kinds < 4; kinds++) {
+                    boolean directSource = (kinds & 1) != 0;
+                    boolean directTarget = (kinds & 2) != 0;
+                    String message = method + " direct source " + directSource + " direct target " + directTarget;
+                    ByteBuffer source = allocate(TEST_DATA.length, directSource).put(TEST_DATA).flip();
+                    ByteBuffer compressed = allocate(ByteBufferCompressionController.maxCompressedLength(TEST_DATA.length, method, options), directTarget);
+                    int written = ByteBufferCompressionController.compress(source, compressed, method, options);
+                    assertFalse(source.hasRemaining(), message);
+                    assertEquals(written, compressed.position(), message);
+                    compressed.flip();
+                    ByteBuffer decompressed = allocate(TEST_DATA.length, directSource);
+                    assertEquals(TEST_DATA.length, ByteBufferCompressionController.decompress(compressed, decompressed, method), message);
+                    assertFalse(compressed.hasRemaining(), message);
+                    assertArrayEquals(TEST_DATA, toArray(decompressed.flip()), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void bufferOutputMatchesStreams() throws IOException {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                ByteBuffer compressed = ByteBuffer.allocateDirect(ByteBufferCompressionController.maxCompressedLength(TEST_DATA.length, method));
+                ByteBufferCompressionController.compress(ByteBuffer.wrap(TEST_DATA), compressed, method);
+                ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                ByteCompressionController.decompress(new ByteArrayInputStream(toArray(compressed.flip())), decompressed, method);
+                assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+
+                ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+                ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), streamed, method);
+                ByteBuffer source = ByteBuffer.allocateDirect(streamed.size()).put(streamed.toByteArray()).flip();
+                ByteBuffer target = ByteBuffer.allocateDirect(TEST_DATA.length);
+                ByteBufferCompressionController.decompress(source, target, method);
+                assertArrayEquals(TEST_DATA, toArray(target.flip()), method.name());
+            }
+        }
+    }
+
+    @Test
+    void littleEndianBuffersRoundTrip() throws IOException {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                for (boolean direct : new boolean[]{false, true}) {
+                    String message = method + " direct " + direct;
+                    ByteBuffer source = allocate(TEST_DATA.length, direct).order(ByteOrder.LITTLE_ENDIAN).put(TEST_DATA).flip();
+                    ByteBuffer compressed = allocate(ByteBufferCompressionController.maxCompressedLength(TEST_DATA.length, method), direct)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                    ByteBufferCompressionController.compress(source, compressed, method);
+                    compressed.flip();
+                    byte[] bytes = toArray(compressed.duplicate());
+
+                    ByteBuffer decompressed = allocate(TEST_DATA.length, direct).order(ByteOrder.LITTLE_ENDIAN);
+                    ByteBufferCompressionController.decompress(compressed, decompressed, method);
+                    assertArrayEquals(TEST_DATA, toArray(decompressed.flip()), message);
+
+                    // The framing does not depend on the buffer's order, so streams read it too
+                    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+                    ByteCompressionController.decompress(new ByteArrayInputStream(bytes), streamed, method);
+                    assertArrayEquals(TEST_DATA, streamed.toByteArray(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void smallTargetOverflows() throws IOException {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                ByteBuffer compressed = ByteBuffer.allocate(ByteBufferCompressionController.maxCompressedLength(TEST_DATA.length, method));
+                ByteBufferCompressionController.compress(ByteBuffer.wrap(TEST_DATA), compressed, method);
+                compressed.flip();
+                assertThrows(BufferOverflowException.class,
+                    () -> ByteBufferCompressionController.decompress(compressed, ByteBuffer.allocate(TEST_DATA.length - 1), method), method.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+
+    @TempDir
+    Path directory;
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        // Several pipeline buffers long, so reads and writes have to overlap
+        byte[] data = new byte[3 * ChannelCompressionController.PIPELINE_BUFFER_SIZE + 12345];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static boolean isSupported(CompressionMethodEnum method) {
+        return !method.equals(CompressionMethodEnum.SMAZ) && CodecRegistry.isAvailable(method);
+    }
+
+    @Test
+    void channelsRoundTripWithHeapAndDirectBuffers() throws IOException {
+        CompressionOptions options = new CompressionOptions(CompressionProfileEnum.FASTEST);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (!isSupported(method)) {
+                continue;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (WritableByteChannel channel = ChannelCompressionController.newCompressionChannel(Channels.newChannel(compressed), method, options)) {
+                ByteBuffer direct = ByteBuffer.allocateDirect(100_000);
+                direct.put(TEST_DATA, 0, direct.capacity()).flip();
+                assertEquals(100_000, channel.write(direct));
+                assertEquals(TEST_DATA.length - 100_000, channel.write(ByteBuffer.wrap(TEST_DATA, 100_000, TEST_DATA.length - 100_000)));
+            }
+            assertArrayEquals(TEST_DATA, ByteCompressionController.decompress(new ByteArrayInputStream(compressed.toByteArray()), method), method.name());
+
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            try (ReadableByteChannel channel = ChannelCompressionController.newDecompressionChannel(
+                Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())), method)) {
+                ByteBuffer direct = ByteBuffer.allocateDirect(5000);
+                ByteBuffer heap = ByteBuffer.allocate(7000);
+                boolean useDirect = true;
+                ByteBuffer buffer = direct;
+                while (channel.read(buffer.clear()) != -1) {
+                    buffer.flip();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    decompressed.writeBytes(bytes);
+                    useDirect = !useDirect;
+                    buffer = useDirect ? direct : heap;
+                }
+            }
+            assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+        }
+    }
+
+    @Test
+    void fileChannelsRoundTrip() throws IOException {
+        Path source = Files.write(directory.resolve("source"), TEST_DATA);
+        Path compressed = directory.resolve("compressed");
+        Path decompressed = directory.resolve("decompressed");
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(compressed, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            assertEquals(TEST_DATA.length, ChannelCompressionController.compress(in, out, CompressionMethodEnum.GZIP, new CompressionOptions()));
+            assertTrue(out.isOpen());
+        }
+        try (FileChannel in = FileChannel.open(compressed, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(decompressed, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            assertEquals(TEST_DATA.length, ChannelCompressionController.decompress(in, out, CompressionMethodEnum.GZIP));
+        }
+        assertArrayEquals(TEST_DATA, Files.readAllBytes(decompressed));
+    }
+
+    @Test
+    void asyncPipelineMatchesTheStreamOutput() throws Exception {
+        Path source = Files.write(directory.resolve("source"), TEST_DATA);
+        Path compressed = directory.resolve("compressed");
+        Path decompressed = directory.resolve("decompressed");
+        CompressionOptions options = new CompressionOptions(CompressionProfileEnum.FASTEST);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP,
+                CompressionMethodEnum.LZ4_FRAMED, CompressionMethodEnum.XZ}) {
+                assertEquals(TEST_DATA.length, ChannelCompressionController.compressFileAsync(source, compressed, method, options, executor).get());
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), expected, method, options);
+                assertArrayEquals(expected.toByteArray(), Files.readAllBytes(compressed), method.name());
+
+                assertEquals(TEST_DATA.length, ChannelCompressionController.decompressFileAsync(compressed, decompressed, method, executor).get());
+                assertArrayEquals(TEST_DATA, Files.readAllBytes(decompressed), method.name());
+            }
+
+            // A failed call leaves no target behind
+            Path corrupt = directory.resolve("corrupt");
+            CompletionException error = assertThrows(CompletionException.class,
+                () -> ChannelCompressionController.decompressFileAsync(source, corrupt, CompressionMethodEnum.GZIP, executor).join());
+            assertInstanceOf(IOException.class, error.getCause());
+            assertFalse(Files.exists(corrupt));
+        } finally {
+            executor.shutdown();
+        }
+
+        // A shut down executor fails the call instead of leaving it waiting
+        CompletionException rejected = assertThrows(CompletionException.class,
+            () -> ChannelCompressionController.compressFileAsync(source, compressed, CompressionMethodEnum.ZSTD, options, executor).join());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+    }
+}
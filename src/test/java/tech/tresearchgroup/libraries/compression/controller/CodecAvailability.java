@@ -0,0 +1,63 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CodecImplementationEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecAvailability {
+    /**
+     * The check every round trip test makes before using a codec: it has a stream form, which Smaz does not, and the
+     * registry found it can run here.
+     */
+    static boolean isStreamable(CompressionMethodEnum method) {
+        return !method.equals(CompressionMethodEnum.SMAZ) && CodecRegistry.isAvailable(method);
+    }
+
+    @Test
+    void everyCodecIsClassified() {
+        Map<CompressionMethodEnum, CodecImplementationEnum> implementations = CodecRegistry.getImplementations();
+        assertEquals(CompressionMethodEnum.values().length, implementations.size());
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.BZIP2, CompressionMethodEnum.DEFLATE,
+            CompressionMethodEnum.GZIP, CompressionMethodEnum.LZMA, CompressionMethodEnum.XZ, CompressionMethodEnum.LZO,
+            CompressionMethodEnum.SMAZ}) {
+            assertEquals(CodecImplementationEnum.JAVA, implementations.get(method), method.name());
+            assertNull(CodecRegistry.getUnavailabilityCause(method));
+        }
+        // LZ4 and Snappy fall back to Java, so they can always run
+        assertTrue(CodecRegistry.isAvailable(CompressionMethodEnum.LZ4_BLOCK));
+        assertTrue(CodecRegistry.isAvailable(CompressionMethodEnum.LZ4_FRAMED));
+        assertTrue(CodecRegistry.isAvailable(CompressionMethodEnum.SNAPPY_FRAMED));
+        assertEquals(implementations.get(CompressionMethodEnum.LZ4_BLOCK), implementations.get(CompressionMethodEnum.LZ4_FRAMED));
+    }
+
+    @Test
+    void unavailableCodecsFailWithTheirCause() throws IOException {
+        byte[] data = "Some lovely data to compress".getBytes(StandardCharsets.UTF_8);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecRegistry.isAvailable(method)) {
+                assertDoesNotThrow(() -> CodecRegistry.ensureAvailable(method));
+                continue;
+            }
+            assertNotNull(CodecRegistry.getUnavailabilityCause(method));
+            UnsatisfiedLinkError error = assertThrows(UnsatisfiedLinkError.class, () -> CodecRegistry.ensureAvailable(method));
+            assertSame(CodecRegistry.getUnavailabilityCause(method), error.getCause());
+            long unavailable = MetricsController.getMetrics(method).getNativeUnavailable();
+            assertNull(ByteCompressionController.compress(new ByteArrayInputStream(data), method));
+            assertEquals(unavailable + 1, MetricsController.getMetrics(method).getNativeUnavailable());
+        }
+    }
+
+    @Test
+    void warmUpRoundTripsEveryAvailableCodecWithoutCountingIt() {
+        long calls = MetricsController.getMetrics(CompressionMethodEnum.GZIP).getCompressCalls();
+        assertEquals(CodecRegistry.getImplementations(), CodecRegistry.warmUp());
+        assertEquals(calls, MetricsController.getMetrics(CompressionMethodEnum.GZIP).getCompressCalls());
+    }
+}
@@ -0,0 +1,104 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionCacheOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionCaching {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void repeatedPayloadsAreServedFromTheCache() throws IOException {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            CompressionCache cache = new CompressionCache(new CompressionCacheOptions().setOffHeap(offHeap));
+            byte[] first = cache.compress(TEST_DATA, CompressionMethodEnum.ZSTD);
+            byte[] second = cache.compress(TEST_DATA.clone(), CompressionMethodEnum.ZSTD);
+            assertArrayEquals(ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.ZSTD), first);
+            assertArrayEquals(first, second);
+            assertNotSame(first, second);
+            assertEquals(1, cache.getMissCount());
+            assertEquals(1, cache.getHitCount());
+            assertEquals(0.5, cache.getHitRate());
+
+            // A different codec or level is a different entry
+            cache.compress(TEST_DATA, CompressionMethodEnum.GZIP);
+            cache.compress(TEST_DATA, CompressionMethodEnum.ZSTD, new CompressionOptions(CompressionProfileEnum.FASTEST));
+            assertEquals(3, cache.getMissCount());
+            assertEquals(3, cache.getEntryCount());
+
+            // Changing the caller's copy does not change the cache
+            first[0]++;
+            assertArrayEquals(second, cache.compress(TEST_DATA, CompressionMethodEnum.ZSTD));
+            cache.clear();
+            assertEquals(0, cache.getEntryCount());
+            assertEquals(0, cache.getSize());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        CompressionCache cache = new CompressionCache(new CompressionCacheOptions().setMaxBytes(500));
+        byte[][] inputs = new byte[4][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = ("payload number " + i).repeat(20).getBytes(StandardCharsets.UTF_8);
+            cache.compress(inputs[i], CompressionMethodEnum.DEFLATE);
+            // Touch the first entry so it stays
+            cache.compress(inputs[0], CompressionMethodEnum.DEFLATE);
+        }
+        assertTrue(cache.getSize() <= 500);
+        assertTrue(cache.getEvictionCount() > 0);
+        long misses = cache.getMissCount();
+        cache.compress(inputs[0], CompressionMethodEnum.DEFLATE);
+        assertEquals(misses, cache.getMissCount());
+        cache.compress(inputs[1], CompressionMethodEnum.DEFLATE);
+        assertEquals(misses + 1, cache.getMissCount());
+
+        // Outputs bigger than the whole cache are returned but not kept
+        CompressionCache tiny = new CompressionCache(new CompressionCacheOptions().setMaxBytes(10));
+        assertNotNull(tiny.compress(TEST_DATA, CompressionMethodEnum.DEFLATE));
+        assertEquals(0, tiny.getEntryCount());
+    }
+
+    @Test
+    void concurrentIdenticalRequestsCompressOnce() throws Exception {
+        CompressionCache cache = new CompressionCache();
+        byte[] large = "Another lovely payload that takes a little while to compress at the highest level "
+            .repeat(20000).getBytes(StandardCharsets.UTF_8);
+        CompressionOptions options = new CompressionOptions(CompressionProfileEnum.MAX_RATIO);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.compress(large, CompressionMethodEnum.XZ, options);
+                }));
+            }
+            start.countDown();
+            byte[] expected = futures.get(0).get();
+            for (Future<byte[]> future : futures) {
+                assertArrayEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(7, cache.getHitCount());
+    }
+}
@@ -0,0 +1,149 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionMetricsListener;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionMetrics {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void callsAreCountedAndReported() throws IOException {
+        assertTrue(MetricsController.isEnabled());
+        CodecMetrics metrics = MetricsController.getMetrics(CompressionMethodEnum.ZSTD);
+        long compressCalls = metrics.getCompressCalls();
+        long decompressCalls = metrics.getDecompressCalls();
+        long failures = MetricsController.getMetrics(CompressionMethodEnum.GZIP).getFailures();
+        List<String> events = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        CompressionMetricsListener listener = new CompressionMetricsListener() {
+            @Override
+            public void onCompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+                if (Thread.currentThread() == thread) {
+                    events.add("compress " + method + " " + bytesIn + " " + bytesOut);
+                }
+            }
+
+            @Override
+            public void onDecompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+                if (Thread.currentThread() == thread) {
+                    events.add("decompress " + method + " " + bytesIn + " " + bytesOut);
+                }
+            }
+
+            @Override
+            public void onFailure(CompressionMethodEnum method, boolean compressing, Throwable error) {
+                if (Thread.currentThread() == thread) {
+                    events.add("failure " + method + " " + compressing);
+                }
+            }
+        };
+        MetricsController.addListener(listener);
+        try {
+            byte[] compressed = ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.ZSTD);
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            ByteCompressionController.decompress(new ByteArrayInputStream(compressed), decompressed, CompressionMethodEnum.ZSTD);
+            assertThrows(IOException.class, () -> ByteCompressionController.decompress(new ByteArrayInputStream(TEST_DATA),
+                new ByteArrayOutputStream(), CompressionMethodEnum.GZIP));
+            byte[] smazed = new Smaz().compress("the rain in spain");
+            new Smaz().decompress(smazed);
+
+            assertEquals(List.of(
+                "compress ZSTD " + TEST_DATA.length + " " + compressed.length,
+                "decompress ZSTD " + compressed.length + " " + TEST_DATA.length,
+                "failure GZIP false",
+                "compress SMAZ 17 " + smazed.length,
+                "decompress SMAZ " + smazed.length + " 17"
+            ), events);
+        } finally {
+            MetricsController.removeListener(listener);
+        }
+        assertTrue(metrics.getCompressCalls() > compressCalls);
+        assertTrue(metrics.getDecompressCalls() > decompressCalls);
+        assertTrue(MetricsController.getMetrics(CompressionMethodEnum.GZIP).getFailures() > failures);
+        assertTrue(metrics.getCompressionRatio() > 1);
+        assertTrue(metrics.getCompressLatency().getPercentileNanos(50) <= metrics.getCompressLatency().getMaxNanos());
+    }
+
+    @Test
+    void throwingListenersDoNotFailCalls() throws IOException {
+        CompressionMetricsListener listener = new CompressionMetricsListener() {
+            @Override
+            public void onCompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+                throw new IllegalStateException("listener broke");
+            }
+
+            @Override
+            public void onDecompress(CompressionMethodEnum method, long bytesIn, long bytesOut, long nanos) {
+                throw new IllegalStateException("listener broke");
+            }
+
+            @Override
+            public void onFailure(CompressionMethodEnum method, boolean compressing, Throwable error) {
+                throw new IllegalStateException("listener broke");
+            }
+        };
+        long listenerFailures = MetricsController.getListenerFailures();
+        MetricsController.addListener(listener);
+        try {
+            byte[] compressed = ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.ZSTD);
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            ByteCompressionController.decompress(new ByteArrayInputStream(compressed), decompressed, CompressionMethodEnum.ZSTD);
+            assertArrayEquals(TEST_DATA, decompressed.toByteArray());
+            // The codec's own error still reaches the caller
+            IOException error = assertThrows(IOException.class, () -> ByteCompressionController.decompress(
+                new ByteArrayInputStream(TEST_DATA), new ByteArrayOutputStream(), CompressionMethodEnum.GZIP));
+            assertNotEquals("listener broke", error.getMessage());
+        } finally {
+            MetricsController.removeListener(listener);
+        }
+        assertTrue(MetricsController.getListenerFailures() >= listenerFailures + 3);
+    }
+
+    @Test
+    void metricsAreReadableOverJmx() throws Exception {
+        MetricsController.registerMBeans();
+        MetricsController.registerMBeans();
+        try {
+            ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.GZIP);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("tech.tresearchgroup.libraries.compression:type=CodecMetrics,name=GZIP");
+            assertTrue((Long) server.getAttribute(name, "CompressCalls") > 0);
+            assertTrue((Double) server.getAttribute(name, "CompressionRatio") > 1);
+        } finally {
+            MetricsController.unregisterMBeans();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(
+            new ObjectName("tech.tresearchgroup.libraries.compression:type=CodecMetrics,*"), null).isEmpty());
+    }
+
+    @Test
+    void histogramPercentilesAreBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(1_000_000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(127, histogram.getPercentileNanos(50));
+        assertEquals(127, histogram.getPercentileNanos(99));
+        assertEquals(1_000_000, histogram.getPercentileNanos(100));
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,66 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressionBenchmark;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressorSelectionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressorSelection {
+    private static final byte[] TEST_DATA = createTestData();
+
+    @TempDir
+    Path directory;
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[1_000_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    @Test
+    void resultsAreRankedByScore() throws IOException {
+        Path file = Files.write(directory.resolve("input"), TEST_DATA);
+        CompressorSelectionOptions options = new CompressorSelectionOptions()
+            .setMethods(EnumSet.of(CompressionMethodEnum.GZIP, CompressionMethodEnum.LZ4_FRAMED, CompressionMethodEnum.XZ, CompressionMethodEnum.ZSTD))
+            .setCompressionOptions(new CompressionOptions(CompressionProfileEnum.BALANCED))
+            .setSampleCount(4)
+            .setSampleSize(32 * 1024)
+            .setScorer(CompressionBenchmark.SMALLEST);
+        List<CompressionBenchmark> results = CompressorSelectionController.select(file, options);
+        assertEquals(4, results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getCompressedSize() <= results.get(i).getCompressedSize());
+        }
+        for (CompressionBenchmark result : results) {
+            assertEquals(TEST_DATA.length, result.getInputSize());
+            assertEquals(4 * 32 * 1024, result.getSampleSize());
+            assertTrue(result.getEstimatedCompressedSize() < TEST_DATA.length);
+        }
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void bestCompressorKeepsTheFile() throws IOException {
+        Path file = Files.write(directory.resolve("input"), TEST_DATA);
+        Map<String, Double> sizes = ByteCompressionController.getBestCompressor(file.toFile());
+        assertTrue(sizes.containsKey("zstd"));
+        assertFalse(sizes.containsKey("smaz"));
+        assertTrue(Files.exists(file));
+    }
+}
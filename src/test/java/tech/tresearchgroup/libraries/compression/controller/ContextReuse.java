@@ -0,0 +1,100 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextReuse {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] compress(byte[] data, CompressionMethodEnum method, CompressionOptions options, CodecContext context) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = ByteCompressionController.getCompressionStream(compressed, method, options, context)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] data, CompressionMethodEnum method, CodecContext context) throws IOException {
+        try (InputStream in = ByteCompressionController.getDecompressionStream(new ByteArrayInputStream(data), method, context)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void contextIsReusableAcrossCodecsAndLevels() throws IOException {
+        try (CodecContext context = new CodecContext()) {
+            for (int round = 0; round < 3; round++) {
+                for (CompressionProfileEnum profile : CompressionProfileEnum.values()) {
+                    for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+                        if (!CodecAvailability.isStreamable(method)) {
+                            continue;
+                        }
+                        byte[] compressed = compress(TEST_DATA, method, new CompressionOptions(profile), context);
+                        assertArrayEquals(TEST_DATA, decompress(compressed, method, context), profile + " " + method);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void zstdContextStreamsInteroperate() throws IOException {
+        try (CodecContext context = new CodecContext()) {
+            byte[] compressed = compress(TEST_DATA, CompressionMethodEnum.ZSTD, new CompressionOptions(CompressionProfileEnum.BALANCED), context);
+            try (ZstdInputStream in = new ZstdInputStream(new ByteArrayInputStream(compressed))) {
+                assertArrayEquals(TEST_DATA, in.readAllBytes());
+            }
+
+            ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+            for (int i = 0; i < 2; i++) {
+                try (ZstdOutputStream out = new ZstdOutputStream(concatenated, 3)) {
+                    out.write(TEST_DATA);
+                }
+            }
+            byte[] decompressed = decompress(concatenated.toByteArray(), CompressionMethodEnum.ZSTD, context);
+            assertEquals(TEST_DATA.length * 2, decompressed.length);
+        }
+    }
+
+    @Test
+    void gzipMatchesJdkOutput() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(expected)) {
+            out.write(TEST_DATA);
+        }
+        try (CodecContext context = new CodecContext()) {
+            byte[] actual = compress(TEST_DATA, CompressionMethodEnum.GZIP, new CompressionOptions().setLevel(-1), context);
+            assertArrayEquals(expected.toByteArray(), actual);
+        }
+    }
+
+    @Test
+    void poolKeepsReleasedContextsUntilClosed() {
+        CodecContextPool pool = new CodecContextPool(1);
+        CodecContext first = pool.acquire();
+        CodecContext second = pool.acquire();
+        first.close();
+        second.close();
+        assertEquals(1, pool.getIdleCount());
+        assertSame(first, pool.acquire());
+        pool.close();
+        assertEquals(0, pool.getIdleCount());
+        first.close();
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,102 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.DedupManifest;
+import tech.tresearchgroup.libraries.compression.model.DedupOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedupCompressDecompress {
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void repeatedContentIsStoredOnce() throws IOException {
+        // Random bytes do not compress, so any saving comes from deduplication
+        byte[] block = random(256 * 1024, 1);
+        byte[] data = concat(block, random(1000, 2), block, block);
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP,
+            CompressionMethodEnum.LZ4_FRAMED}) {
+            ByteArrayOutputStream container = new ByteArrayOutputStream();
+            DedupManifest manifest = DedupCompressionController.compress(new ByteArrayInputStream(data), container, method);
+            assertEquals(data.length, manifest.getTotalSize());
+            assertTrue(manifest.getUniqueSize() < data.length / 2, manifest.toString());
+            assertTrue(container.size() < data.length / 2, manifest.toString());
+            assertArrayEquals(data, DedupCompressionController.decompress(container.toByteArray(), 0));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(data.length, DedupCompressionController.decompress(new ByteArrayChannel(container.toByteArray()), out));
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    @Test
+    void nearIdenticalInputsShareChunks() throws IOException {
+        byte[] original = random(1024 * 1024, 3);
+        // An insertion shifts everything after it, which fixed size blocks would never line up again
+        byte[] edited = concat(Arrays.copyOf(original, 300_000), random(77, 4),
+            Arrays.copyOfRange(original, 300_000, original.length));
+        byte[] empty = new byte[0];
+        List<InputStream> inputs = List.of(new ByteArrayInputStream(original), new ByteArrayInputStream(edited), new ByteArrayInputStream(empty));
+        DedupOptions dedup = new DedupOptions().setChunkSizes(1024, 4096, 16384).setMaxInFlight(3);
+        ByteArrayOutputStream container = new ByteArrayOutputStream();
+        DedupManifest manifest = DedupCompressionController.compress(inputs, container, CompressionMethodEnum.ZSTD, new CompressionOptions(), dedup);
+        assertEquals(3, manifest.getStreamCount());
+        assertEquals(original.length, manifest.getStreamSize(0));
+        assertEquals(edited.length, manifest.getStreamSize(1));
+        assertEquals(0, manifest.getStreamChunkCount(2));
+        assertTrue(manifest.getUniqueSize() < original.length + 40_000, manifest.toString());
+        for (int i = 0; i < manifest.getStreamChunkCount(0); i++) {
+            int size = manifest.getUncompressedSize(manifest.getStreamChunk(0, i));
+            assertTrue(size <= 16384);
+            assertTrue(size >= 1024 || i == manifest.getStreamChunkCount(0) - 1);
+        }
+
+        byte[] bytes = container.toByteArray();
+        DedupManifest read = DedupCompressionController.readManifest(new ByteArrayChannel(bytes));
+        assertEquals(manifest.getChunkCount(), read.getChunkCount());
+        assertEquals(CompressionMethodEnum.ZSTD, read.getMethod());
+        assertArrayEquals(original, DedupCompressionController.decompress(bytes, 0));
+        assertArrayEquals(edited, DedupCompressionController.decompress(bytes, 1));
+        assertArrayEquals(empty, DedupCompressionController.decompress(bytes, 2));
+        assertThrows(IOException.class, () -> DedupCompressionController.decompress(new ByteArrayChannel(bytes), new ByteArrayOutputStream()));
+        assertThrows(IndexOutOfBoundsException.class, () -> DedupCompressionController.decompress(bytes, 3));
+    }
+
+    @Test
+    void corruptContainersAreRejected() throws IOException {
+        byte[] data = random(100_000, 5);
+        ByteArrayOutputStream container = new ByteArrayOutputStream();
+        DedupCompressionController.compress(new ByteArrayInputStream(data), container, CompressionMethodEnum.XZ);
+        byte[] bytes = container.toByteArray();
+
+        byte[] badChunk = bytes.clone();
+        badChunk[100] ^= 1;
+        assertThrows(IOException.class, () -> DedupCompressionController.decompress(badChunk, 0));
+        byte[] badFooter = bytes.clone();
+        badFooter[badFooter.length - 1] ^= 1;
+        assertThrows(IOException.class, () -> DedupCompressionController.decompress(badFooter, 0));
+        assertThrows(IOException.class, () -> DedupCompressionController.decompress(new byte[10], 0));
+    }
+}
@@ -0,0 +1,139 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaCompressDecompress {
+    @TempDir
+    Path directory;
+
+    private static byte[] random(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * The reference with a few bytes flipped, a run inserted, a run deleted and a block moved to the end.
+     */
+    private static byte[] edit(byte[] reference) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int third = reference.length / 3;
+        byte[] head = reference.clone();
+        Random random = new Random(3);
+        for (int i = 0; i < 10; i++) {
+            head[random.nextInt(third)] ^= 1;
+        }
+        out.write(head, 0, third);
+        out.write(random(100, 4), 0, 100);
+        out.write(reference, third + 1000, third - 1000);
+        out.write(reference, 2 * third, reference.length - 2 * third);
+        out.write(reference, third / 2, 5000);
+        return out.toByteArray();
+    }
+
+    private static boolean isTestable(CompressionMethodEnum method) {
+        return !method.equals(CompressionMethodEnum.SMAZ) && CodecRegistry.isAvailable(method);
+    }
+
+    @Test
+    void patchesAreTinyForEveryCodec() throws IOException {
+        byte[] reference = random(2 * 1024 * 1024, 1);
+        byte[] target = edit(reference);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (!isTestable(method)) {
+                continue;
+            }
+            byte[] patch = DeltaCompressionController.compressDelta(reference, target, method);
+            assertTrue(patch.length < target.length / 100, method + " patch is " + patch.length + " bytes");
+            assertArrayEquals(target, DeltaCompressionController.applyDelta(reference, patch), method.toString());
+        }
+    }
+
+    @Test
+    void zstdUsesTheReferenceAsADictionary() throws IOException {
+        // Small edits to text, shorter than the differ's blocks, still match through Zstd's own match finder
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(5);
+        for (int i = 0; i < 20000; i++) {
+            text.append(Integer.toString(random.nextInt(), 36)).append(i % 12 == 0 ? '\n' : ' ');
+        }
+        byte[] reference = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] target = text.toString().replace("a", "A").getBytes(StandardCharsets.UTF_8);
+        byte[] patch = DeltaCompressionController.compressDelta(reference, target, CompressionMethodEnum.ZSTD);
+        byte[] plain = ByteCompressionController.compress(new ByteArrayInputStream(target), CompressionMethodEnum.ZSTD);
+        assertTrue(patch.length < plain.length / 4, patch.length + " against " + plain.length);
+        assertArrayEquals(target, DeltaCompressionController.applyDelta(reference, patch));
+
+        byte[] small = random(512 * 1024, 6);
+        byte[] edited = edit(small);
+        patch = DeltaCompressionController.compressDelta(small, edited, CompressionMethodEnum.ZSTD);
+        assertTrue(patch.length < edited.length / 100, "patch is " + patch.length + " bytes");
+        assertArrayEquals(edited, DeltaCompressionController.applyDelta(small, patch));
+    }
+
+    @Test
+    void streamsLargeReferencesFromFiles() throws IOException {
+        byte[] reference = random(12 * 1024 * 1024, 7);
+        byte[] target = edit(reference);
+        Path referenceFile = Files.write(directory.resolve("reference"), reference);
+        Path patchFile = directory.resolve("patch");
+
+        try (SeekableByteChannel channel = Files.newByteChannel(referenceFile);
+             OutputStream patch = Files.newOutputStream(patchFile)) {
+            assertEquals(target.length, DeltaCompressionController.compressDelta(channel, new ByteArrayInputStream(target), patch,
+                CompressionMethodEnum.ZSTD, new CompressionOptions()));
+        }
+        assertTrue(Files.size(patchFile) < target.length / 1000, "patch is " + Files.size(patchFile) + " bytes");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SeekableByteChannel channel = Files.newByteChannel(referenceFile);
+             InputStream patch = Files.newInputStream(patchFile)) {
+            assertEquals(target.length, DeltaCompressionController.applyDelta(channel, patch, out));
+        }
+        assertArrayEquals(target, out.toByteArray());
+    }
+
+    @Test
+    void handlesEmptyAndUnrelatedInputs() throws IOException {
+        byte[] data = random(100_000, 8);
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP}) {
+            assertArrayEquals(new byte[0], DeltaCompressionController.applyDelta(data,
+                DeltaCompressionController.compressDelta(data, new byte[0], method)));
+            assertArrayEquals(data, DeltaCompressionController.applyDelta(new byte[0],
+                DeltaCompressionController.compressDelta(new byte[0], data, method)));
+            byte[] other = random(100_000, 9);
+            assertArrayEquals(other, DeltaCompressionController.applyDelta(data,
+                DeltaCompressionController.compressDelta(data, other, method)));
+        }
+    }
+
+    @Test
+    void rejectsTheWrongReference() throws IOException {
+        byte[] reference = random(300_000, 10);
+        byte[] target = edit(reference);
+        byte[] other = reference.clone();
+        other[1000] ^= 1;
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.LZ4_FRAMED}) {
+            byte[] patch = DeltaCompressionController.compressDelta(reference, target, method);
+            assertThrows(IOException.class, () -> DeltaCompressionController.applyDelta(other, patch), method.toString());
+            assertThrows(IOException.class, () -> DeltaCompressionController.applyDelta(random(1000, 11), patch));
+        }
+        assertThrows(IOException.class, () -> DeltaCompressionController.applyDelta(reference, target));
+    }
+}
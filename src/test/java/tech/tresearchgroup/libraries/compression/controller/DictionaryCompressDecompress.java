@@ -0,0 +1,112 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionDictionary;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DictionaryCompressDecompress {
+    private static final String[] NAMES = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+    private static final String[] STATES = {"active", "suspended", "pending", "closed"};
+
+    private static byte[] createRecord(Random random) {
+        return ("{\"id\":" + random.nextInt(1_000_000)
+            + ",\"name\":\"" + NAMES[random.nextInt(NAMES.length)]
+            + "\",\"email\":\"" + NAMES[random.nextInt(NAMES.length)] + "@example.com"
+            + "\",\"state\":\"" + STATES[random.nextInt(STATES.length)]
+            + "\",\"balance\":" + random.nextInt(10_000) + "." + random.nextInt(100)
+            + ",\"tags\":[\"customer\",\"newsletter\"],\"createdAt\":\"2022-0" + (1 + random.nextInt(9)) + "-1"
+            + random.nextInt(10) + "T12:00:00Z\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> createRecords(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(createRecord(random));
+        }
+        return records;
+    }
+
+    private static CompressionDictionary train(int id) throws IOException {
+        return DictionaryController.train(createRecords(2000, 42), 16 * 1024, id);
+    }
+
+    @Test
+    void zstdDictionaryShrinksSmallRecords() throws IOException {
+        CompressionDictionary dictionary = train(1);
+        assertEquals(1, dictionary.getId());
+        int plain = 0;
+        int withDictionary = 0;
+        for (byte[] record : createRecords(100, 7)) {
+            plain += ByteCompressionController.compress(new ByteArrayInputStream(record), CompressionMethodEnum.ZSTD).length;
+            byte[] compressed = DictionaryController.compress(record, CompressionMethodEnum.ZSTD, dictionary);
+            withDictionary += compressed.length;
+            assertArrayEquals(record, DictionaryController.decompress(compressed, CompressionMethodEnum.ZSTD, dictionary));
+        }
+        assertTrue(withDictionary < plain / 2, withDictionary + " vs " + plain);
+    }
+
+    @Test
+    void registeredDictionaryIsFoundFromData() throws IOException {
+        CompressionDictionary dictionary = train(2);
+        DictionaryController.register(dictionary);
+        try {
+            byte[] record = createRecord(new Random(7));
+            for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.DEFLATE}) {
+                byte[] compressed = DictionaryController.compress(record, method, dictionary);
+                assertArrayEquals(record, DictionaryController.decompress(compressed, method));
+            }
+            byte[] plain = ByteCompressionController.compress(new ByteArrayInputStream(record), CompressionMethodEnum.ZSTD);
+            assertArrayEquals(record, DictionaryController.decompress(plain, CompressionMethodEnum.ZSTD));
+        } finally {
+            DictionaryController.unregister(2);
+        }
+        assertNull(DictionaryController.getDictionary(2));
+    }
+
+    @Test
+    void streamsRoundTrip() throws IOException {
+        CompressionDictionary dictionary = train(3);
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (byte[] record : createRecords(500, 9)) {
+            all.write(record);
+        }
+        byte[] data = all.toByteArray();
+        List<CompressionMethodEnum> methods = new ArrayList<>(List.of(CompressionMethodEnum.ZSTD, CompressionMethodEnum.DEFLATE));
+        if (CodecRegistry.isAvailable(CompressionMethodEnum.BROTLI)) {
+            methods.add(CompressionMethodEnum.BROTLI);
+        }
+        for (CompressionMethodEnum method : methods) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            assertEquals(data.length, DictionaryController.compress(new ByteArrayInputStream(data), compressed, method, dictionary,
+                new CompressionOptions()));
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            DictionaryController.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed, method, dictionary);
+            assertArrayEquals(data, decompressed.toByteArray(), method.toString());
+        }
+    }
+
+    @Test
+    void wrongDictionaryIsRejected() throws IOException {
+        CompressionDictionary dictionary = train(4);
+        CompressionDictionary other = new CompressionDictionary(5, "some other dictionary content".getBytes(StandardCharsets.UTF_8));
+        byte[] record = createRecord(new Random(7));
+        byte[] zstd = DictionaryController.compress(record, CompressionMethodEnum.ZSTD, dictionary);
+        assertThrows(IOException.class, () -> DictionaryController.decompress(zstd, CompressionMethodEnum.ZSTD, other));
+        assertThrows(IOException.class, () -> DictionaryController.decompress(zstd, CompressionMethodEnum.ZSTD));
+        byte[] deflate = DictionaryController.compress(record, CompressionMethodEnum.DEFLATE, dictionary);
+        assertThrows(IOException.class, () -> DictionaryController.decompress(deflate, CompressionMethodEnum.DEFLATE, other));
+        assertThrows(IllegalArgumentException.class, () -> DictionaryController.compress(record, CompressionMethodEnum.LZ4_FRAMED, dictionary));
+    }
+}
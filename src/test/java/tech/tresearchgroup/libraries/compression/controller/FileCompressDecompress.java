@@ -0,0 +1,76 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+
+    @TempDir
+    Path directory;
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[2_500_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    @Test
+    void fileRoundTrip() throws IOException {
+        Path source = Files.write(directory.resolve("source"), TEST_DATA);
+        Path compressed = directory.resolve("compressed");
+        Path decompressed = directory.resolve("decompressed");
+        CompressionOptions options = new CompressionOptions(CompressionProfileEnum.FASTEST);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                List<Long> progress = new ArrayList<>();
+                long read = FileCompressionController.compressFile(source, compressed, method, options,
+                    (bytesRead, totalBytes) -> {
+                        assertEquals(TEST_DATA.length, totalBytes, method.name());
+                        progress.add(bytesRead);
+                    });
+                assertEquals(TEST_DATA.length, read, method.name());
+                assertEquals(List.of(1024L * 1024, 2048L * 1024, (long) TEST_DATA.length), progress, method.name());
+
+                ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+                ByteCompressionController.decompress(new ByteArrayInputStream(Files.readAllBytes(compressed)), streamed, method);
+                assertArrayEquals(TEST_DATA, streamed.toByteArray(), method.name());
+
+                long written = FileCompressionController.decompressFile(compressed, decompressed, method);
+                assertEquals(TEST_DATA.length, written, method.name());
+                assertArrayEquals(TEST_DATA, Files.readAllBytes(decompressed), method.name());
+            }
+        }
+    }
+
+    @Test
+    void failedCallRemovesTarget() throws IOException {
+        Path source = Files.write(directory.resolve("source"), TEST_DATA);
+        Path compressed = directory.resolve("compressed");
+        FileCompressionController.compressFile(source, compressed, CompressionMethodEnum.ZSTD);
+        byte[] whole = Files.readAllBytes(compressed);
+        Path damaged = Files.write(directory.resolve("damaged"), Arrays.copyOf(whole, whole.length / 2));
+        Path decompressed = directory.resolve("decompressed");
+        assertThrows(IOException.class, () -> FileCompressionController.decompressFile(damaged, decompressed, CompressionMethodEnum.ZSTD));
+        assertFalse(Files.exists(decompressed));
+        assertThrows(IllegalArgumentException.class, () -> FileCompressionController.compressFile(source, source, CompressionMethodEnum.ZSTD));
+    }
+}
@@ -0,0 +1,117 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.libraries.compression.model.FrameHeader;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramedCompressDecompress {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void framesRoundTripAndDescribeThemselves() throws IOException {
+        CompressionOptions options = new CompressionOptions(CompressionProfileEnum.BALANCED).setWindow(20).setBlockSize(65536);
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP,
+            CompressionMethodEnum.DEFLATE, CompressionMethodEnum.LZ4_FRAMED, CompressionMethodEnum.XZ, CompressionMethodEnum.SNAPPY_FRAMED}) {
+            for (byte[] data : new byte[][]{TEST_DATA, new byte[0]}) {
+                byte[] framed = FramedCompressionController.compress(data, method, options);
+                FrameHeader header = FramedCompressionController.readHeader(new ByteArrayInputStream(framed));
+                assertEquals(method, header.getMethod());
+                assertEquals(data.length, header.getOriginalSize());
+                assertEquals(options.getLevel(method), header.getLevel());
+                assertEquals(20, header.getWindow());
+                assertEquals(65536, header.getBlockSize());
+                assertArrayEquals(data, FramedCompressionController.decompress(framed), method.toString());
+
+                byte[] dst = new byte[data.length + 10];
+                assertEquals(data.length, FramedCompressionController.decompress(framed, dst, 10));
+                assertArrayEquals(data, Arrays.copyOfRange(dst, 10, dst.length));
+            }
+        }
+    }
+
+    @Test
+    void framesWithoutASizeStillDecompress() throws IOException {
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        assertEquals(TEST_DATA.length, FramedCompressionController.compress(new ByteArrayInputStream(TEST_DATA), framed,
+            CompressionMethodEnum.ZSTD, new CompressionOptions(), -1));
+        FrameHeader header = FramedCompressionController.readHeader(new ByteArrayInputStream(framed.toByteArray()));
+        assertFalse(header.hasOriginalSize());
+        assertNull(header.getWindow());
+        assertArrayEquals(TEST_DATA, FramedCompressionController.decompress(framed.toByteArray()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(TEST_DATA.length, FramedCompressionController.decompress(new ByteArrayInputStream(framed.toByteArray()), out, TEST_DATA.length));
+        assertArrayEquals(TEST_DATA, out.toByteArray());
+
+        assertThrows(IOException.class, () -> FramedCompressionController.compress(new ByteArrayInputStream(TEST_DATA), new ByteArrayOutputStream(),
+            CompressionMethodEnum.ZSTD, new CompressionOptions(), 10));
+    }
+
+    @Test
+    void framesWithoutASizeDecompressWithoutALimit() throws IOException {
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        FramedCompressionController.compress(new ByteArrayInputStream(TEST_DATA), framed, CompressionMethodEnum.GZIP,
+            new CompressionOptions(), -1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Adding one to the remaining room used to overflow here and read nothing forever
+        assertEquals(TEST_DATA.length, assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+            FramedCompressionController.decompress(new ByteArrayInputStream(framed.toByteArray()), out, Long.MAX_VALUE)));
+        assertArrayEquals(TEST_DATA, out.toByteArray());
+    }
+
+    @Test
+    void outputLimitsStopDecompressionBombs() throws IOException {
+        byte[] bomb = new byte[16 * 1024 * 1024];
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.ZSTD, CompressionMethodEnum.GZIP}) {
+            byte[] framed = FramedCompressionController.compress(bomb, method);
+            assertTrue(framed.length < 64 * 1024);
+            // The header alone is enough to refuse it
+            assertThrows(IOException.class, () -> FramedCompressionController.decompress(framed, 1024 * 1024));
+            assertThrows(IOException.class, () -> FramedCompressionController.decompress(framed, new byte[1024], 0));
+
+            // Without a size the limit is enforced while inflating
+            ByteArrayOutputStream unsized = new ByteArrayOutputStream();
+            FramedCompressionController.compress(new ByteArrayInputStream(bomb), unsized, method, new CompressionOptions(), -1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertThrows(IOException.class, () -> FramedCompressionController.decompress(new ByteArrayInputStream(unsized.toByteArray()), out, 1024 * 1024));
+            assertTrue(out.size() <= 1024 * 1024);
+            assertThrows(IOException.class, () -> FramedCompressionController.decompress(unsized.toByteArray(), new byte[1024], 0));
+        }
+    }
+
+    @Test
+    void headersThatDoNotMatchTheDataAreRejected() throws IOException {
+        byte[] framed = FramedCompressionController.compress(TEST_DATA, CompressionMethodEnum.GZIP);
+        // Claim one byte less than the data holds
+        ByteArrayOutputStream lying = new ByteArrayOutputStream();
+        lying.write(framed, 0, 4);
+        int sizeLength = 0;
+        while ((framed[4 + sizeLength] & 0x80) != 0) {
+            sizeLength++;
+        }
+        long shorter = TEST_DATA.length - 1;
+        while ((shorter & ~0x7FL) != 0) {
+            lying.write((int) (shorter & 0x7F) | 0x80);
+            shorter >>>= 7;
+        }
+        lying.write((int) shorter);
+        lying.write(framed, 5 + sizeLength, framed.length - 5 - sizeLength);
+        assertThrows(IOException.class, () -> FramedCompressionController.decompress(lying.toByteArray()));
+        assertThrows(IOException.class, () -> FramedCompressionController.decompress(new ByteArrayInputStream(lying.toByteArray()),
+            new ByteArrayOutputStream(), Long.MAX_VALUE));
+
+        assertThrows(IOException.class, () -> FramedCompressionController.decompress(TEST_DATA));
+        assertThrows(IOException.class, () -> FramedCompressionController.decompress(Arrays.copyOf(framed, 5)));
+    }
+}
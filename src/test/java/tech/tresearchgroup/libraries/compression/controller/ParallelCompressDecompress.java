@@ -0,0 +1,89 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[1_000_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] compress(CompressionMethodEnum method, ParallelCompressionOptions parallel) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long read = ParallelCompressionController.compress(new ByteArrayInputStream(TEST_DATA), compressed, method,
+            new CompressionOptions(CompressionProfileEnum.FASTEST), parallel);
+        assertEquals(TEST_DATA.length, read, method.name());
+        return compressed.toByteArray();
+    }
+
+    @Test
+    void parallelRoundTrip() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ParallelCompressionOptions parallel = new ParallelCompressionOptions().setExecutor(executor).setChunkSize(150_000).setMaxInFlight(3);
+            for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+                if (CodecAvailability.isStreamable(method)) {
+                    byte[] compressed = compress(method, parallel);
+                    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                    ByteCompressionController.decompress(new ByteArrayInputStream(compressed), decompressed, method);
+                    assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void zlibOutputReadsWithJdkStreams() throws IOException {
+        ParallelCompressionOptions parallel = new ParallelCompressionOptions().setChunkSize(100_000);
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compress(CompressionMethodEnum.DEFLATE, parallel)))) {
+            assertArrayEquals(TEST_DATA, in.readAllBytes());
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compress(CompressionMethodEnum.GZIP, parallel)))) {
+            assertArrayEquals(TEST_DATA, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void chunksInFlightAreBounded() throws IOException {
+        AtomicInteger submitted = new AtomicInteger();
+        // Runs each chunk on the calling thread, so any read ahead beyond the bound would show up as extra submissions
+        ParallelCompressionOptions parallel = new ParallelCompressionOptions()
+            .setExecutor(task -> {
+                submitted.incrementAndGet();
+                task.run();
+            })
+            .setChunkSize(100_000)
+            .setMaxInFlight(2);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelCompressionController.compress(new ByteArrayInputStream(TEST_DATA), compressed, CompressionMethodEnum.ZSTD,
+            new CompressionOptions(), parallel);
+        assertEquals(10, submitted.get());
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        ByteCompressionController.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed, CompressionMethodEnum.ZSTD);
+        assertArrayEquals(TEST_DATA, decompressed.toByteArray());
+    }
+}
@@ -0,0 +1,177 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressedObject;
+import tech.tresearchgroup.libraries.compression.model.CompressedObjectStore;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.RecompressionOptions;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecompressionScheduling {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private static RecompressionOptions coldNow() {
+        // Everything is idle straight away and any load is low enough, so only the access count decides
+        return new RecompressionOptions()
+            .setTarget(CompressionMethodEnum.ZSTD, new CompressionOptions().setLevel(19))
+            .setMinIdle(Duration.ZERO)
+            .setMaxAccessesPerDay(2)
+            .setMaxLoad(1000)
+            .setMaxBytesPerSecond(0);
+    }
+
+    private static CompressedObject find(LocalCompressedObjectStore store, String key) throws IOException {
+        return store.list().stream().filter(object -> object.getKey().equals(key)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void recompressesColdObjectsOnly() throws IOException {
+        LocalCompressedObjectStore store = new LocalCompressedObjectStore(directory);
+        store.put("cold-1", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+        store.put("cold-2", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+        store.put("hot", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+        for (int i = 0; i < 5; i++) {
+            store.get("hot");
+        }
+        long coldSize = find(store, "cold-1").getSize();
+
+        try (RecompressionScheduler scheduler = new RecompressionScheduler(store, coldNow())) {
+            assertEquals(2, scheduler.runOnce());
+            assertEquals(0, scheduler.runOnce());
+            assertEquals(2, scheduler.getRecompressed());
+            assertEquals(0, scheduler.getFailures());
+        }
+        CompressedObject cold = find(store, "cold-1");
+        assertEquals(CompressionMethodEnum.ZSTD, cold.getMethod());
+        assertTrue(cold.getSize() < coldSize);
+        assertEquals(CompressionMethodEnum.ZSTD, find(store, "cold-2").getMethod());
+        assertEquals(CompressionMethodEnum.LZ4_FRAMED, find(store, "hot").getMethod());
+        assertArrayEquals(TEST_DATA, store.get("cold-1"));
+        assertArrayEquals(TEST_DATA, store.get("cold-2"));
+        assertArrayEquals(TEST_DATA, store.get("hot"));
+    }
+
+    @Test
+    void keepsObjectsThatDoNotShrink() throws IOException {
+        byte[] random = new byte[64 * 1024];
+        new Random(7).nextBytes(random);
+        LocalCompressedObjectStore store = new LocalCompressedObjectStore(directory);
+        store.put("random", random, CompressionMethodEnum.LZ4_FRAMED);
+        CompressedObject before = find(store, "random");
+
+        // XZ adds more framing than LZ4 to data it cannot shrink
+        RecompressionOptions options = coldNow().setTarget(CompressionMethodEnum.XZ, new CompressionOptions());
+        try (RecompressionScheduler scheduler = new RecompressionScheduler(store, options)) {
+            assertEquals(0, scheduler.runOnce());
+            long read = scheduler.getBytesRead();
+            assertEquals(random.length, read);
+            // Not tried again while unchanged
+            assertEquals(0, scheduler.runOnce());
+            assertEquals(read, scheduler.getBytesRead());
+        }
+        CompressedObject after = find(store, "random");
+        assertEquals(CompressionMethodEnum.LZ4_FRAMED, after.getMethod());
+        assertEquals(before.getVersion(), after.getVersion());
+        assertArrayEquals(random, store.get("random"));
+    }
+
+    @Test
+    void refusesStaleObjects() throws IOException {
+        LocalCompressedObjectStore store = new LocalCompressedObjectStore(directory);
+        store.put("object", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+        CompressedObject stale = find(store, "object");
+        byte[] replacement = "Written after the listing".repeat(100).getBytes(StandardCharsets.UTF_8);
+        store.put("object", replacement, CompressionMethodEnum.LZ4_FRAMED);
+
+        assertFalse(store.recompress(stale, new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.ZSTD,
+            new CompressionOptions()));
+        assertArrayEquals(replacement, store.get("object"));
+        store.delete("object");
+        assertFalse(store.recompress(stale, new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.ZSTD,
+            new CompressionOptions()));
+        assertTrue(store.list().isEmpty());
+    }
+
+    @Test
+    void runsInTheBackground() throws IOException, InterruptedException {
+        LocalCompressedObjectStore store = new LocalCompressedObjectStore(directory);
+        store.put("object", TEST_DATA, CompressionMethodEnum.GZIP);
+
+        RecompressionScheduler scheduler = new RecompressionScheduler(store, coldNow().setInterval(Duration.ofMillis(20)));
+        scheduler.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scheduler.getRecompressed() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        scheduler.close();
+        assertEquals(1, scheduler.getRecompressed());
+        assertEquals(CompressionMethodEnum.ZSTD, find(store, "object").getMethod());
+        assertArrayEquals(TEST_DATA, store.get("object"));
+        assertThrows(IllegalStateException.class, scheduler::start);
+    }
+
+    @Test
+    void keepsRunningAfterCodecErrors() throws IOException, InterruptedException {
+        LocalCompressedObjectStore local = new LocalCompressedObjectStore(directory);
+        local.put("object", TEST_DATA, CompressionMethodEnum.GZIP);
+        // What a target codec without its native library throws
+        CompressedObjectStore store = new CompressedObjectStore() {
+            @Override
+            public List<CompressedObject> list() throws IOException {
+                return local.list();
+            }
+
+            @Override
+            public InputStream open(String key) throws IOException {
+                return local.open(key);
+            }
+
+            @Override
+            public boolean recompress(CompressedObject expected, InputStream data, CompressionMethodEnum method,
+                                      CompressionOptions options) {
+                throw new UnsatisfiedLinkError("no zstd in java.library.path");
+            }
+        };
+
+        RecompressionScheduler scheduler = new RecompressionScheduler(store, coldNow().setInterval(Duration.ofMillis(20)));
+        scheduler.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scheduler.getFailures() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        scheduler.close();
+        assertTrue(scheduler.getFailures() >= 3, "later passes still run");
+        assertEquals(0, scheduler.getRecompressed());
+    }
+
+    @Test
+    void throttlesToTheByteRate() throws IOException {
+        LocalCompressedObjectStore store = new LocalCompressedObjectStore(directory);
+        store.put("a", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+        store.put("b", TEST_DATA, CompressionMethodEnum.LZ4_FRAMED);
+
+        // Two objects at twice their size per second take at least a second
+        RecompressionOptions options = coldNow().setMaxBytesPerSecond(TEST_DATA.length * 2L);
+        try (RecompressionScheduler scheduler = new RecompressionScheduler(store, options)) {
+            long start = System.nanoTime();
+            assertEquals(2, scheduler.runOnce());
+            assertTrue(System.nanoTime() - start >= 900_000_000L);
+        }
+    }
+}
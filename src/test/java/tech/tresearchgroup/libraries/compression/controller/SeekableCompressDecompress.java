@@ -0,0 +1,100 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.SeekableIndex;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeekableCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[500_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] compress(CompressionMethodEnum method) throws IOException {
+        ByteArrayOutputStream container = new ByteArrayOutputStream();
+        SeekableCompressionController.compress(new ByteArrayInputStream(TEST_DATA), container, method,
+            new CompressionOptions(CompressionProfileEnum.FASTEST), new ParallelCompressionOptions().setChunkSize(BLOCK_SIZE));
+        return container.toByteArray();
+    }
+
+    @Test
+    void randomAccessRoundTrip() throws IOException {
+        Random random = new Random(7);
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                byte[] container = compress(method);
+                SeekableIndex index = SeekableCompressionController.readIndex(new ByteArrayChannel(container));
+                assertEquals((TEST_DATA.length + BLOCK_SIZE - 1) / BLOCK_SIZE, index.getBlockCount(), method.name());
+                assertEquals(TEST_DATA.length, index.getUncompressedSize(), method.name());
+                for (int i = 0; i < 20; i++) {
+                    int offset = random.nextInt(TEST_DATA.length);
+                    int length = random.nextInt(3 * BLOCK_SIZE);
+                    byte[] expected = Arrays.copyOfRange(TEST_DATA, offset, Math.min(TEST_DATA.length, offset + length));
+                    assertArrayEquals(expected, SeekableCompressionController.read(container, method, offset, length), method.name());
+                }
+
+                ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                long written = SeekableCompressionController.decompress(new ByteArrayChannel(container), decompressed, method);
+                assertEquals(TEST_DATA.length, written, method.name());
+                assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+            }
+        }
+    }
+
+    @Test
+    void lzmaBlocksUseADictionaryNoLargerThanTheBlock() throws IOException {
+        for (CompressionMethodEnum method : new CompressionMethodEnum[]{CompressionMethodEnum.LZMA, CompressionMethodEnum.XZ}) {
+            ByteArrayOutputStream container = new ByteArrayOutputStream();
+            SeekableCompressionController.compress(new ByteArrayInputStream(TEST_DATA), container, method,
+                new CompressionOptions(CompressionProfileEnum.MAX_RATIO), new ParallelCompressionOptions().setChunkSize(BLOCK_SIZE));
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            SeekableCompressionController.decompress(new ByteArrayChannel(container.toByteArray()), decompressed, method);
+            assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+        }
+
+        // A .lzma header is a properties byte followed by the little endian dictionary size
+        ByteArrayOutputStream container = new ByteArrayOutputStream();
+        SeekableCompressionController.compress(new ByteArrayInputStream(TEST_DATA), container, CompressionMethodEnum.LZMA,
+            new CompressionOptions(CompressionProfileEnum.MAX_RATIO), new ParallelCompressionOptions().setChunkSize(BLOCK_SIZE));
+        byte[] bytes = container.toByteArray();
+        int dictionarySize = (bytes[1] & 0xFF) | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF) << 16 | (bytes[4] & 0xFF) << 24;
+        assertTrue(dictionarySize <= BLOCK_SIZE, "Dictionary size " + dictionarySize);
+    }
+
+    @Test
+    void zstdContainerIsPlainZstd() throws IOException {
+        byte[] container = compress(CompressionMethodEnum.ZSTD);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        ByteCompressionController.decompress(new ByteArrayInputStream(container), decompressed, CompressionMethodEnum.ZSTD);
+        assertArrayEquals(TEST_DATA, decompressed.toByteArray());
+    }
+
+    @Test
+    void corruptBlockIsDetected() throws IOException {
+        byte[] container = compress(CompressionMethodEnum.LZ4_FRAMED);
+        SeekableIndex index = SeekableCompressionController.readIndex(new ByteArrayChannel(container));
+        // Flip a byte of the second block's content size so the frame still parses but the checksum fails
+        container[(int) index.getCompressedOffset(1) + 6] ^= 1;
+        assertArrayEquals(Arrays.copyOf(TEST_DATA, 100), SeekableCompressionController.read(container, CompressionMethodEnum.LZ4_FRAMED, 0, 100));
+        assertThrows(IOException.class, () -> SeekableCompressionController.read(container, CompressionMethodEnum.LZ4_FRAMED, BLOCK_SIZE, 100));
+        assertThrows(IOException.class, () -> SeekableCompressionController.readIndex(new ByteArrayChannel(Arrays.copyOf(container, container.length - 1))));
+    }
+}
@@ -0,0 +1,203 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.ParallelCompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.SmazBatch;
+import tech.tresearchgroup.libraries.compression.model.SmazCodebook;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmazCompressDecompress {
+    // Output of the original CharBuffer based implementation
+    private static final String[][] EXPECTED = {
+        {"This is some lovely data to compress", "fe544c38170a930b16066fc71827045200752d3c21a6"},
+        {"the quick brown fox jumps over the lazy dog", "0100fe712683fe6b5e734129dcfa00fe6a262d3c95e70d0b89db4718063b"},
+        {"<a href=\"http://www.example.com/index.html\">Their website</a>",
+            "e1a312212ca9434141416e02fa042d3c57fdc50f6afa6e12032d1665de48084b915ad445f104de"},
+        {"\u0001\u0002\u0003ly ass\u0007arir\r\n\r\n", "ff03010203c7d3fe074f080ca831"},
+    };
+
+    private static String createSymbols() {
+        Random random = new Random(42);
+        StringBuilder symbols = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            symbols.append("{|}~#%".charAt(random.nextInt(6)));
+        }
+        return symbols.toString();
+    }
+
+    @Test
+    void outputMatchesOriginal() {
+        Smaz smaz = new Smaz();
+        for (String[] expected : EXPECTED) {
+            byte[] compressed = smaz.compress(expected[0]);
+            assertEquals(expected[1], HexFormat.of().formatHex(compressed));
+            assertEquals(expected[0], smaz.decompress(compressed));
+        }
+    }
+
+    @Test
+    void longVerbatimRunsRoundTrip() {
+        Smaz smaz = new Smaz();
+        String symbols = createSymbols();
+        byte[] compressed = smaz.compress(symbols);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        assertEquals(606, compressed.length);
+        assertEquals(0xccb3d93eL, crc.getValue());
+        assertEquals(0, compressed[1]);
+        assertEquals(symbols, smaz.decompress(compressed));
+    }
+
+    @Test
+    void arraysAndBuffersMatchStrings() {
+        Smaz smaz = new Smaz();
+        String text = EXPECTED[2][0];
+        byte[] expected = smaz.compress(text);
+        byte[] input = ("xx" + text).getBytes();
+        byte[] output = new byte[Smaz.maxCompressedLength(text.length()) + 3];
+        int written = smaz.compress(input, 2, text.length(), output, 3);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 3, 3 + written));
+        assertEquals(text.length(), smaz.getDecompressedLength(output, 3, written));
+
+        byte[] decompressed = new byte[text.length()];
+        assertEquals(text.length(), smaz.decompress(output, 3, written, decompressed, 0));
+        assertEquals(text, new String(decompressed));
+
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuffer source = direct ? ByteBuffer.allocateDirect(input.length) : ByteBuffer.allocate(input.length);
+            source.put(input).position(2);
+            ByteBuffer compressed = direct ? ByteBuffer.allocateDirect(output.length) : ByteBuffer.allocate(output.length);
+            assertEquals(expected.length, smaz.compress(source, compressed));
+            assertFalse(source.hasRemaining());
+            compressed.flip();
+            ByteBuffer result = ByteBuffer.allocate(text.length());
+            assertEquals(text.length(), smaz.decompress(compressed, result));
+            assertEquals(text, new String(result.array()));
+        }
+    }
+
+    private static List<byte[]> createUrls(int count, long seed) {
+        Random random = new Random(seed);
+        String[] paths = {"orders", "customers", "invoices", "shipments", "products"};
+        String[] actions = {"view", "edit", "history", "export"};
+        List<byte[]> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add(("https://api.tresearchgroup.tech/v2/" + paths[random.nextInt(paths.length)] + "/"
+                + random.nextInt(100_000) + "/" + actions[random.nextInt(actions.length)] + "?lang=en_US").getBytes(StandardCharsets.US_ASCII));
+        }
+        return urls;
+    }
+
+    @Test
+    void trainedCodebookBeatsDefault() throws IOException {
+        SmazCodebook codebook = StringCompressionController.trainCodebook(createUrls(2000, 42), 3);
+        assertEquals(3, codebook.getVersion());
+        assertEquals(codebook, SmazCodebook.fromByteArray(codebook.toByteArray()));
+        Smaz trained = new Smaz(codebook);
+        Smaz standard = new Smaz();
+        int trainedSize = 0;
+        int standardSize = 0;
+        for (byte[] url : createUrls(200, 7)) {
+            String string = new String(url, StandardCharsets.US_ASCII);
+            byte[] compressed = StringCompressionController.smazCompress(string, codebook);
+            assertEquals(string, StringCompressionController.smazDecompress(compressed, codebook));
+            assertEquals(string, trained.decompress(compressed));
+            trainedSize += compressed.length;
+            standardSize += standard.compress(string).length;
+        }
+        assertTrue(trainedSize < standardSize * 2 / 3, trainedSize + " vs " + standardSize);
+    }
+
+    @Test
+    void trainedCodebookAcceptsAnyBytes() {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        Smaz smaz = new Smaz(StringCompressionController.trainCodebook(List.of(data), 1));
+        byte[] compressed = new byte[Smaz.maxCompressedLength(data.length)];
+        int written = smaz.compress(data, 0, data.length, compressed, 0);
+        byte[] decompressed = new byte[data.length];
+        assertEquals(data.length, smaz.decompress(compressed, 0, written, decompressed, 0));
+        assertArrayEquals(data, decompressed);
+        assertThrows(IllegalArgumentException.class, () -> new Smaz(new SmazCodebook(1, List.of(new byte[]{'a'}))).decompress(new byte[]{5}));
+        assertThrows(IOException.class, () -> SmazCodebook.fromByteArray(new byte[]{'S', 'M', 'Z', 'C', 1, 0, 0, 0, 1, 9}));
+    }
+
+    @Test
+    void batchesPackStrings() {
+        List<String> strings = new ArrayList<>();
+        for (byte[] url : createUrls(5000, 11)) {
+            strings.add(new String(url, StandardCharsets.US_ASCII));
+        }
+        strings.add("");
+        strings.add(createSymbols());
+        SmazBatch batch = StringCompressionController.compressAll(strings);
+        assertEquals(strings.size(), batch.size());
+        assertEquals(batch.getCompressedSize(), batch.getData().length);
+        assertArrayEquals(strings.toArray(new String[0]), StringCompressionController.decompressAll(batch));
+        for (int i = 0; i < strings.size(); i += 97) {
+            assertEquals(strings.get(i), StringCompressionController.get(batch, i));
+            assertArrayEquals(StringCompressionController.smazCompress(strings.get(i)),
+                Arrays.copyOfRange(batch.getData(), batch.getOffsets()[i], batch.getOffsets()[i + 1]));
+        }
+
+        ParallelCompressionOptions parallel = new ParallelCompressionOptions().setChunkSize(4096);
+        SmazBatch parallelBatch = StringCompressionController.compressAll(strings, null, parallel);
+        assertArrayEquals(batch.getData(), parallelBatch.getData());
+        assertArrayEquals(batch.getOffsets(), parallelBatch.getOffsets());
+        assertArrayEquals(strings.toArray(new String[0]), StringCompressionController.decompressAll(parallelBatch, null, parallel));
+
+        SmazCodebook codebook = new SmazCodebook(2, List.of("https".getBytes(StandardCharsets.US_ASCII)));
+        assertThrows(IllegalArgumentException.class, () -> StringCompressionController.get(batch, 0, codebook));
+        SmazBatch trained = StringCompressionController.compressAll(strings, codebook);
+        assertEquals(2, trained.getCodebookVersion());
+        assertEquals(strings.get(3), StringCompressionController.get(trained, 3, codebook));
+        assertThrows(IllegalArgumentException.class, () -> StringCompressionController.compressAll(new String[]{"ok", "caf\u00e9"}));
+    }
+
+    @Test
+    void utf8ModeRoundTrips() {
+        Smaz utf8 = new Smaz(true);
+        for (String[] expected : EXPECTED) {
+            assertEquals(expected[1], HexFormat.of().formatHex(utf8.compress(expected[0])));
+        }
+        String[] strings = {"caf\u00e9 cr\u00e8me br\u00fbl\u00e9e", "\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8 and the rest",
+            "emoji \ud83d\ude00 in the middle", "\u00ff\u00fe\u00b6\u00e0\u00e9 of the"};
+        for (String string : strings) {
+            byte[] compressed = StringCompressionController.smazCompressUtf8(string);
+            assertEquals(string, StringCompressionController.smazDecompressUtf8(compressed));
+        }
+        assertEquals("unpaired ? surrogate", utf8.decompress(utf8.compress("unpaired \ud83d surrogate")));
+
+        Random random = new Random(42);
+        String alphabet = "the and of http://www. \u00e9\u00b6\u4e2d\u0001\u0007";
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder string = new StringBuilder();
+            int length = random.nextInt(i % 100 == 0 ? 1000 : 40);
+            for (int j = 0; j < length; j++) {
+                string.append(random.nextInt(4) == 0 ? (char) random.nextInt(0xD800) : alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquals(string.toString(), utf8.decompress(utf8.compress(string.toString())));
+        }
+    }
+
+    @Test
+    void invalidInputIsRejected() {
+        Smaz smaz = new Smaz();
+        assertThrows(IllegalArgumentException.class, () -> smaz.compress("caf\u00e9"));
+        assertThrows(BufferOverflowException.class, () -> smaz.compress("{{{{".getBytes(), 0, 4, new byte[5], 0));
+        assertThrows(IllegalArgumentException.class, () -> smaz.decompress(new byte[]{(byte) 255, 10, 'a'}));
+        assertThrows(IllegalArgumentException.class, () -> smaz.decompress(new byte[]{(byte) 254}));
+    }
+}
@@ -0,0 +1,86 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.CompressionProfileEnum;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCompressDecompress {
+    private static final byte[] TEST_DATA = createTestData();
+
+    private static byte[] createTestData() {
+        Random random = new Random(42);
+        byte[] data = new byte[300_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    @Test
+    void streamRoundTrip() throws IOException {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                long read = ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), compressed, method);
+                assertEquals(TEST_DATA.length, read, method.name());
+                ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                long written = ByteCompressionController.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed, method);
+                assertEquals(TEST_DATA.length, written, method.name());
+                assertArrayEquals(TEST_DATA, decompressed.toByteArray(), method.name());
+            }
+        }
+    }
+
+    @Test
+    void wrappingStreamRoundTrip() throws IOException {
+        for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+            if (CodecAvailability.isStreamable(method)) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (OutputStream out = ByteCompressionController.getCompressionStream(compressed, method)) {
+                    out.write(TEST_DATA);
+                }
+                try (InputStream in = ByteCompressionController.getDecompressionStream(new ByteArrayInputStream(compressed.toByteArray()), method)) {
+                    assertArrayEquals(TEST_DATA, in.readAllBytes(), method.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void profileRoundTrip() throws IOException {
+        for (CompressionProfileEnum profile : CompressionProfileEnum.values()) {
+            for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+                if (CodecAvailability.isStreamable(method)) {
+                    CompressionOptions options = new CompressionOptions(profile).setBlockSize(128 * 1024);
+                    byte[] compressed = ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), method, options);
+                    assertNotNull(compressed);
+                    byte[] decompressed = ByteCompressionController.decompress(new ByteArrayInputStream(compressed), method);
+                    assertArrayEquals(TEST_DATA, decompressed, profile + " " + method);
+                }
+            }
+        }
+    }
+
+    @Test
+    void callerStreamsStayOpen() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("Caller stream was closed");
+            }
+        };
+        ByteCompressionController.compress(new ByteArrayInputStream(TEST_DATA), compressed, CompressionMethodEnum.GZIP);
+        compressed.write(1);
+        assertTrue(compressed.size() > 1);
+    }
+}
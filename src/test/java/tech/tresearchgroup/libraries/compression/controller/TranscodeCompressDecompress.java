@@ -0,0 +1,166 @@
+package tech.tresearchgroup.libraries.compression.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tresearchgroup.libraries.compression.model.CompressionOptions;
+import tech.tresearchgroup.libraries.compression.model.TranscodeOptions;
+import tech.tresearchgroup.libraries.compression.model.TranscodeResult;
+import tech.tresearchgroup.schemas.compression.model.CompressionMethodEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranscodeCompressDecompress {
+    private static final byte[] TEST_DATA = "This is some lovely data to compress, and then some more lovely data to compress"
+        .repeat(20000).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private static byte[] compress(byte[] data, CompressionMethodEnum method) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteCompressionController.compress(new ByteArrayInputStream(data), out, method);
+        return out.toByteArray();
+    }
+
+    @Test
+    void transcodesThroughSmallBuffers() throws IOException {
+        // Buffers far smaller than the data, so decoding has to wait on encoding many times
+        TranscodeOptions transcode = new TranscodeOptions().setBufferSize(4096).setBufferCount(2);
+        for (CompressionMethodEnum from : new CompressionMethodEnum[]{CompressionMethodEnum.GZIP, CompressionMethodEnum.BZIP2,
+            CompressionMethodEnum.XZ}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long transcoded = TranscodeController.transcode(new ByteArrayInputStream(compress(TEST_DATA, from)), from, out,
+                CompressionMethodEnum.ZSTD, new CompressionOptions(), transcode);
+            assertEquals(TEST_DATA.length, transcoded);
+            assertArrayEquals(compress(TEST_DATA, CompressionMethodEnum.ZSTD), out.toByteArray(), from.name());
+        }
+    }
+
+    @Test
+    void decodingErrorsReachTheCaller() throws IOException {
+        byte[] corrupt = compress(TEST_DATA, CompressionMethodEnum.GZIP);
+        corrupt[corrupt.length / 2] ^= 0x55;
+        assertThrows(IOException.class, () -> TranscodeController.transcode(new ByteArrayInputStream(corrupt), CompressionMethodEnum.GZIP,
+            new ByteArrayOutputStream(), CompressionMethodEnum.ZSTD));
+        assertThrows(IOException.class, () -> TranscodeController.transcode(new ByteArrayInputStream(TEST_DATA), CompressionMethodEnum.XZ,
+            new ByteArrayOutputStream(), CompressionMethodEnum.ZSTD));
+    }
+
+    @Test
+    void encodingErrorsWaitForTheDecoderToStopReading() throws IOException {
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger reading = new AtomicInteger();
+        InputStream slow = new FilterInputStream(new ByteArrayInputStream(compress(TEST_DATA, CompressionMethodEnum.GZIP))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                reading.incrementAndGet();
+                try {
+                    if (reads.getAndIncrement() > 0) {
+                        // A read that does not notice interrupts, like most blocking streams
+                        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                        boolean interrupted = false;
+                        while (System.nanoTime() < end) {
+                            try {
+                                Thread.sleep(10);
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                        if (interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.read(b, off, Math.min(len, 256));
+                } finally {
+                    reading.decrementAndGet();
+                }
+            }
+        };
+        OutputStream full = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        IOException error = assertThrows(IOException.class, () -> TranscodeController.transcode(slow, CompressionMethodEnum.GZIP, full,
+            CompressionMethodEnum.LZ4_FRAMED, new CompressionOptions(), new TranscodeOptions().setBufferSize(4096).setBufferCount(2)));
+        assertEquals("Disk full", error.getMessage());
+        assertEquals(0, reading.get());
+        int readsOnReturn = reads.get();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Thread.sleep(500));
+        assertEquals(readsOnReturn, reads.get());
+    }
+
+    @Test
+    void transcodesADirectoryConcurrently() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source/nested"));
+        Files.write(directory.resolve("source/first.log.gz"), compress(TEST_DATA, CompressionMethodEnum.GZIP));
+        Files.write(source.resolve("second.gz"), compress("second".getBytes(StandardCharsets.UTF_8), CompressionMethodEnum.GZIP));
+        Files.write(source.resolve("broken.gz"), TEST_DATA);
+        Path target = directory.resolve("target");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            TranscodeResult result = TranscodeController.transcodeDirectory(directory.resolve("source"), target, CompressionMethodEnum.GZIP,
+                CompressionMethodEnum.ZSTD, new CompressionOptions(), new TranscodeOptions().setExecutor(executor).setMaxConcurrentFiles(2));
+            assertEquals(2, result.getTranscodedFiles());
+            assertEquals(TEST_DATA.length + 6, result.getUncompressedBytes());
+            assertEquals(1, result.getFailures().size());
+            assertInstanceOf(IOException.class, result.getFailures().get(source.resolve("broken.gz")));
+        } finally {
+            executor.shutdown();
+        }
+        assertArrayEquals(TEST_DATA, ByteCompressionController.decompress(
+            new ByteArrayInputStream(Files.readAllBytes(target.resolve("first.log.zst"))), CompressionMethodEnum.ZSTD));
+        assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), ByteCompressionController.decompress(
+            new ByteArrayInputStream(Files.readAllBytes(target.resolve("nested/second.zst"))), CompressionMethodEnum.ZSTD));
+        assertFalse(Files.exists(target.resolve("nested/broken.zst")));
+    }
+
+    @Test
+    void collidingTargetsAndRejectedFilesFail() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        byte[] gzipped = compress(TEST_DATA, CompressionMethodEnum.GZIP);
+        Files.write(source.resolve("x"), gzipped);
+        Files.write(source.resolve("x.gz"), gzipped);
+        Files.write(source.resolve("y.gz"), gzipped);
+        Files.write(source.resolve("z.gz"), gzipped);
+        Path target = directory.resolve("target");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TranscodeResult result = TranscodeController.transcodeDirectory(source, target, CompressionMethodEnum.GZIP,
+                CompressionMethodEnum.ZSTD, new CompressionOptions(), new TranscodeOptions().setExecutor(executor));
+            assertEquals(2, result.getTranscodedFiles());
+            assertEquals(2, result.getFailures().size());
+            assertInstanceOf(FileAlreadyExistsException.class, result.getFailures().get(source.resolve("x")));
+            assertInstanceOf(FileAlreadyExistsException.class, result.getFailures().get(source.resolve("x.gz")));
+            assertFalse(Files.exists(target.resolve("x.zst")));
+        } finally {
+            executor.shutdown();
+        }
+
+        // A rejected file gives its slot back, so a single slot does not block the next file forever
+        TranscodeResult result = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> TranscodeController.transcodeDirectory(source,
+            directory.resolve("rejected"), CompressionMethodEnum.GZIP, CompressionMethodEnum.ZSTD, new CompressionOptions(),
+            new TranscodeOptions().setExecutor(executor).setMaxConcurrentFiles(1)));
+        assertEquals(0, result.getTranscodedFiles());
+        assertInstanceOf(RejectedExecutionException.class, result.getFailures().get(source.resolve("y.gz")));
+        assertInstanceOf(RejectedExecutionException.class, result.getFailures().get(source.resolve("z.gz")));
+    }
+}